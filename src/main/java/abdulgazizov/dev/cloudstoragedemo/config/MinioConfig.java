@@ -1,21 +1,102 @@
 package abdulgazizov.dev.cloudstoragedemo.config;
 
 import abdulgazizov.dev.cloudstoragedemo.properties.MinioProperties;
+import abdulgazizov.dev.cloudstoragedemo.storage.MultipartMinioClient;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.okhttp3.OkHttpConnectionPoolMetrics;
+import io.micrometer.core.instrument.binder.okhttp3.OkHttpMetricsEventListener;
+import io.minio.MinioAsyncClient;
 import io.minio.MinioClient;
 import lombok.RequiredArgsConstructor;
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import org.springframework.boot.autoconfigure.thread.Threading;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
 @Configuration
 @RequiredArgsConstructor
 public class MinioConfig {
+    private static final String METRIC_PREFIX = "minio.http";
+    private static final Tags METRIC_TAGS = Tags.of("client", "minio");
+
     private final MinioProperties minioProperties;
 
+    /**
+     * The HTTP client shared by both MinIO clients, so uploads, downloads and multipart sessions reuse
+     * one connection pool. The MinIO SDK sends every request through {@link Dispatcher}, whose per-host
+     * limit (5 by default) would otherwise cap concurrent transfers to the single MinIO host.
+     * With {@code spring.threads.virtual.enabled} the dispatcher runs the calls on virtual threads too.
+     */
+    @Bean
+    public OkHttpClient minioHttpClient(MeterRegistry meterRegistry, Environment environment) {
+        Dispatcher dispatcher = Threading.VIRTUAL.isActive(environment)
+                ? new Dispatcher(Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("minio-http-", 0).factory()))
+                : new Dispatcher();
+        dispatcher.setMaxRequests(minioProperties.maxRequests());
+        dispatcher.setMaxRequestsPerHost(minioProperties.maxRequestsPerHost());
+        return new OkHttpClient.Builder()
+                .connectionPool(new ConnectionPool(minioProperties.maxIdleConnections(),
+                        minioProperties.keepAlive().toMillis(), TimeUnit.MILLISECONDS))
+                .dispatcher(dispatcher)
+                .connectTimeout(minioProperties.connectTimeout())
+                .readTimeout(minioProperties.readTimeout())
+                .writeTimeout(minioProperties.writeTimeout())
+                // same protocol as the client the SDK builds by default
+                .protocols(List.of(Protocol.HTTP_1_1))
+                .eventListener(OkHttpMetricsEventListener.builder(meterRegistry, METRIC_PREFIX + ".requests")
+                        .tags(METRIC_TAGS)
+                        .build())
+                .build();
+    }
+
+    /**
+     * Exports the utilization of the pool ({@code minio.http.pool.connection.*}) and the backlog of the
+     * dispatcher ({@code minio.http.dispatcher.*}).
+     */
+    @Bean
+    public MeterBinder minioHttpClientMetrics(OkHttpClient minioHttpClient) {
+        OkHttpConnectionPoolMetrics poolMetrics = new OkHttpConnectionPoolMetrics(minioHttpClient.connectionPool(),
+                METRIC_PREFIX + ".pool", METRIC_TAGS, minioProperties.maxIdleConnections());
+        Dispatcher dispatcher = minioHttpClient.dispatcher();
+        return registry -> {
+            poolMetrics.bindTo(registry);
+            Gauge.builder(METRIC_PREFIX + ".dispatcher.running", dispatcher, Dispatcher::runningCallsCount)
+                    .tags(METRIC_TAGS)
+                    .description("Requests to the storage in flight")
+                    .register(registry);
+            Gauge.builder(METRIC_PREFIX + ".dispatcher.queued", dispatcher, Dispatcher::queuedCallsCount)
+                    .tags(METRIC_TAGS)
+                    .description("Requests to the storage waiting for a free slot")
+                    .register(registry);
+        };
+    }
+
     @Bean
-    public MinioClient minioClient() {
+    public MinioClient minioClient(OkHttpClient minioHttpClient) {
         return MinioClient.builder()
                 .endpoint(minioProperties.url())
                 .credentials(minioProperties.accessKey(), minioProperties.secretKey())
+                .httpClient(minioHttpClient)
                 .build();
     }
+
+    @Bean
+    public MultipartMinioClient multipartMinioClient(OkHttpClient minioHttpClient) {
+        return new MultipartMinioClient(MinioAsyncClient.builder()
+                .endpoint(minioProperties.url())
+                .credentials(minioProperties.accessKey(), minioProperties.secretKey())
+                .httpClient(minioHttpClient)
+                .build());
+    }
 }
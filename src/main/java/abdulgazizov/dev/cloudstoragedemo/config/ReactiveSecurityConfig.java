@@ -0,0 +1,44 @@
+package abdulgazizov.dev.cloudstoragedemo.config;
+
+import abdulgazizov.dev.cloudstoragedemo.filter.ReactiveJwtFilter;
+import abdulgazizov.dev.cloudstoragedemo.jwt.AccessTokenAuthenticator;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpStatus;
+import org.springframework.security.config.annotation.web.reactive.EnableWebFluxSecurity;
+import org.springframework.security.config.web.server.SecurityWebFiltersOrder;
+import org.springframework.security.config.web.server.ServerHttpSecurity;
+import org.springframework.security.web.server.SecurityWebFilterChain;
+import org.springframework.security.web.server.authentication.HttpStatusServerEntryPoint;
+import org.springframework.security.web.server.context.NoOpServerSecurityContextRepository;
+
+/**
+ * Security of the reactive file API, see {@code ReactiveFileStorageController}. Mirrors {@link SecurityConfig}:
+ * stateless, authenticated by the access token only, and answering unauthenticated requests with 403.
+ */
+@Configuration
+@EnableWebFluxSecurity
+@RequiredArgsConstructor
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReactiveSecurityConfig {
+    private final AccessTokenAuthenticator accessTokenAuthenticator;
+
+    @Bean
+    public SecurityWebFilterChain securityWebFilterChain(ServerHttpSecurity http) {
+        return http.csrf(ServerHttpSecurity.CsrfSpec::disable)
+                .httpBasic(ServerHttpSecurity.HttpBasicSpec::disable)
+                .formLogin(ServerHttpSecurity.FormLoginSpec::disable)
+                .logout(ServerHttpSecurity.LogoutSpec::disable)
+                .securityContextRepository(NoOpServerSecurityContextRepository.getInstance())
+                .exceptionHandling(exceptions -> exceptions
+                        .authenticationEntryPoint(new HttpStatusServerEntryPoint(HttpStatus.FORBIDDEN)))
+                .authorizeExchange(exchange -> exchange
+                        .pathMatchers("/.well-known/jwks.json").permitAll()
+                        .pathMatchers("/file", "/file/stream", "/list").hasAnyRole("ADMIN", "USER")
+                        .anyExchange().authenticated())
+                .addFilterAt(new ReactiveJwtFilter(accessTokenAuthenticator), SecurityWebFiltersOrder.AUTHENTICATION)
+                .build();
+    }
+}
@@ -1,30 +1,65 @@
 package abdulgazizov.dev.cloudstoragedemo.controllers;
 
+import abdulgazizov.dev.cloudstoragedemo.dtos.ArchiveEntry;
+import abdulgazizov.dev.cloudstoragedemo.dtos.FileContent;
+import abdulgazizov.dev.cloudstoragedemo.dtos.FileDeleteResult;
 import abdulgazizov.dev.cloudstoragedemo.dtos.FileDto;
 import abdulgazizov.dev.cloudstoragedemo.dtos.FileNameDto;
+import abdulgazizov.dev.cloudstoragedemo.dtos.FileNamesDto;
+import abdulgazizov.dev.cloudstoragedemo.dtos.FilePage;
+import abdulgazizov.dev.cloudstoragedemo.dtos.FileSort;
+import abdulgazizov.dev.cloudstoragedemo.dtos.FileStat;
+import abdulgazizov.dev.cloudstoragedemo.dtos.FileUploadResult;
+import abdulgazizov.dev.cloudstoragedemo.dtos.PresignedUrl;
+import abdulgazizov.dev.cloudstoragedemo.exceptions.FileNotModifiedException;
+import abdulgazizov.dev.cloudstoragedemo.exceptions.RangeNotSatisfiableException;
 import abdulgazizov.dev.cloudstoragedemo.mappers.FileMapper;
 import abdulgazizov.dev.cloudstoragedemo.services.FileStorageService;
+import abdulgazizov.dev.cloudstoragedemo.storage.LazyInputStream;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.coyote.BadRequestException;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.core.io.InputStreamResource;
 import org.springframework.core.io.Resource;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.lang.NonNull;
 import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.util.MimeTypeUtils;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.stream.Collectors;
 
 @Slf4j
 @RestController
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
 @RequiredArgsConstructor
 public class FileStorageController {
+    private static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+    static final String ARCHIVE_FILE_NAME = "files.zip";
+    static final MediaType ARCHIVE_MEDIA_TYPE = MediaType.parseMediaType("application/zip");
+    // request attributes of Tomcat's sendfile support, see org.apache.coyote.Constants
+    private static final String SENDFILE_SUPPORTED_ATTR = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME_ATTR = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START_ATTR = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END_ATTR = "org.apache.tomcat.sendfile.end";
     private final FileStorageService fileStorageService;
 
     @PreAuthorize("hasAnyRole('ADMIN','USER')")
@@ -40,25 +75,82 @@ public class FileStorageController {
         return ResponseEntity.ok("File uploaded successfully: " + customFileName);
     }
 
+    @PreAuthorize("hasAnyRole('ADMIN','USER')")
+    @PostMapping("file/stream")
+    public ResponseEntity<String> uploadStream(@RequestParam("filename") @NonNull String fileName, HttpServletRequest request) throws IOException {
+        long size = request.getContentLengthLong();
+        log.debug("Received streaming upload request: filename={}, size={}", fileName, size);
+        if (size == 0) {
+            log.debug("No file provided");
+            return ResponseEntity.badRequest().body("No file provided");
+        }
+        String customFileName = fileStorageService.upload(request.getInputStream(), size, fileName, request.getContentType());
+        log.info("File uploaded successfully: {}", customFileName);
+        return ResponseEntity.ok("File uploaded successfully: " + customFileName);
+    }
+
+    @PreAuthorize("hasAnyRole('ADMIN','USER')")
+    @PostMapping("files")
+    public ResponseEntity<List<FileUploadResult>> uploadAll(@RequestParam("files") List<MultipartFile> files) {
+        log.debug("Received batch upload request: {} files", files.size());
+        return ResponseEntity.ok(fileStorageService.upload(files));
+    }
+
     @PreAuthorize("hasAnyRole('USER','ADMIN')")
     @GetMapping("list")
-    public ResponseEntity<List<FileDto>> getFiles(@RequestParam("limit") @NonNull int limit) throws BadRequestException {
-        log.debug("Received request to get files with limit={}", limit);
-        List<FileDto> resources = fileStorageService.getFiles(limit).stream().map(FileMapper::toFileDto).collect(Collectors.toList());
+    public ResponseEntity<List<FileDto>> getFiles(@RequestParam("limit") @NonNull int limit,
+                                                  @RequestParam(value = "sort", defaultValue = "name") String sort,
+                                                  @RequestParam(value = "cursor", required = false) String cursor) throws BadRequestException {
+        log.debug("Received request to get files with limit={}, sort={}, cursor={}", limit, sort, cursor);
+        FilePage page = fileStorageService.getFiles(limit, FileSort.fromParam(sort), cursor);
+        List<FileDto> resources = page.getFiles().stream().map(FileMapper::toFileDto).collect(Collectors.toList());
         log.info("Files retrieved successfully");
-        return ResponseEntity.ok().body(resources);
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (page.getNextCursor() != null) {
+            response.header(NEXT_CURSOR_HEADER, page.getNextCursor());
+        }
+        return response.body(resources);
     }
 
+    /**
+     * Downloads a file. Answers {@code If-None-Match} and {@code If-Modified-Since} with 304 without
+     * reading the object, and serves {@code Range} requests by reading only the requested bytes from
+     * the storage: one range as a 206 response, several as {@code multipart/byteranges}.
+     * <p>
+     * Whole-file and single-range downloads take one storage request, which also supplies the response
+     * headers. Suffix ranges, several ranges and several entity tags need the file size or a comparison
+     * the storage cannot make, so they stat the file first.
+     * <p>
+     * A file in the local disk cache is handed to the connector with {@code sendfile} when it supports
+     * it, so the kernel copies the bytes from the page cache to the socket.
+     */
     @PreAuthorize("hasAnyRole('ADMIN','USER')")
     @GetMapping("file")
-    public ResponseEntity<Resource> download(@RequestParam("filename") @NonNull String fileName) throws IOException {
+    public ResponseEntity<Resource> download(@RequestParam("filename") @NonNull String fileName,
+                                             @RequestHeader HttpHeaders headers,
+                                             HttpServletRequest request) throws IOException {
         log.debug("Received request to download file: {}", fileName);
-        Resource file = fileStorageService.download(fileName);
-        log.info("File downloaded successfully: {}", fileName);
-        return ResponseEntity.ok()
-                .contentType(MediaType.APPLICATION_OCTET_STREAM)
-                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + fileName + "\"")
-                .body(file);
+        List<HttpRange> ranges = requestedRanges(headers);
+        List<String> ifNoneMatch = headers.getIfNoneMatch();
+        ResponseEntity<Resource> response;
+        if (isDirectDownload(ranges, ifNoneMatch)) {
+            response = downloadDirect(fileName, ranges, ifNoneMatch, headers.getIfModifiedSince(), request);
+        } else {
+            response = downloadAfterStat(fileName, ranges, headers);
+        }
+        log.info("File downloaded successfully: {}, ranges: {}", fileName, ranges.size());
+        return response;
+    }
+
+    /**
+     * Returns a short-lived URL from which the client downloads the file straight from the storage. Large
+     * downloads this way take no bandwidth or thread of the application.
+     */
+    @PreAuthorize("hasAnyRole('ADMIN','USER')")
+    @GetMapping("file/url")
+    public ResponseEntity<PresignedUrl> downloadUrl(@RequestParam("filename") @NonNull String fileName) throws IOException {
+        log.debug("Received request for download URL of file: {}", fileName);
+        return ResponseEntity.ok(fileStorageService.getDownloadUrl(fileName));
     }
 
     @PreAuthorize("hasAnyRole('ADMIN','USER')")
@@ -70,6 +162,29 @@ public class FileStorageController {
         return ResponseEntity.ok("File deleted successfully");
     }
 
+    @PreAuthorize("hasAnyRole('ADMIN','USER')")
+    @PostMapping("files/delete")
+    public ResponseEntity<List<FileDeleteResult>> deleteAll(@RequestBody @Valid FileNamesDto fileNamesDto) {
+        log.debug("Received request to delete {} files", fileNamesDto.getFileNames().size());
+        return ResponseEntity.ok(fileStorageService.delete(fileNamesDto.getFileNames()));
+    }
+
+    /**
+     * Downloads several files as a ZIP archive. The files are resolved before the response starts, so a
+     * missing file is answered with 404; the archive itself is written while it is sent, with no known
+     * length, and a storage failure midway truncates it.
+     */
+    @PreAuthorize("hasAnyRole('ADMIN','USER')")
+    @PostMapping("files/archive")
+    public ResponseEntity<StreamingResponseBody> archive(@RequestBody @Valid FileNamesDto fileNamesDto) throws IOException {
+        log.debug("Received request to archive {} files", fileNamesDto.getFileNames().size());
+        List<ArchiveEntry> entries = fileStorageService.getArchiveEntries(fileNamesDto.getFileNames());
+        return ResponseEntity.ok()
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + ARCHIVE_FILE_NAME + "\"")
+                .contentType(ARCHIVE_MEDIA_TYPE)
+                .body(outputStream -> fileStorageService.writeArchive(entries, outputStream));
+    }
+
     @PreAuthorize("hasAnyRole('ADMIN','USER')")
     @PutMapping("file")
     public ResponseEntity<String> edit(@RequestParam("filename") @NonNull String oldFileName, @RequestBody @Valid FileNameDto fileNameDto) throws IOException {
@@ -78,4 +193,166 @@ public class FileStorageController {
         log.info("File edited successfully: oldFilename={}, newFilename={}", oldFileName, fileNameDto.getFileName());
         return ResponseEntity.ok("File edited successfully");
     }
+
+    private ResponseEntity<Resource> downloadDirect(String fileName, List<HttpRange> ranges, List<String> ifNoneMatch,
+                                                    long ifModifiedSince, HttpServletRequest request) throws IOException {
+        Long offset = null;
+        Long length = null;
+        if (!ranges.isEmpty()) {
+            // without the file size only the explicit positions of a byte range are known
+            offset = ranges.get(0).getRangeStart(Long.MAX_VALUE);
+            long end = ranges.get(0).getRangeEnd(Long.MAX_VALUE);
+            length = end == Long.MAX_VALUE - 1 ? null : end - offset + 1;
+        }
+        FileContent content = fileStorageService.download(fileName, offset, length,
+                ifNoneMatch.isEmpty() ? null : unquote(ifNoneMatch.get(0)),
+                ifModifiedSince < 0 ? null : Instant.ofEpochMilli(ifModifiedSince));
+
+        ResponseEntity.BodyBuilder response = downloadResponse(fileName, content.file(), !ranges.isEmpty())
+                .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                .contentLength(content.length());
+        if (!ranges.isEmpty()) {
+            response.header(HttpHeaders.CONTENT_RANGE,
+                    contentRange(content.offset(), content.offset() + content.length() - 1, content.file().size()));
+        }
+        if (content.localFile() != null && Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORTED_ATTR))) {
+            content.content().close();
+            // the connector sends the pinned file after the headers, so the response has no body of its own;
+            // Tomcat only accepts a canonical path
+            request.setAttribute(SENDFILE_FILENAME_ATTR, content.localFile().toRealPath().toString());
+            request.setAttribute(SENDFILE_START_ATTR, content.offset());
+            request.setAttribute(SENDFILE_END_ATTR, content.offset() + content.length());
+            return response.build();
+        }
+        return response.body(new InputStreamResource(content.content()));
+    }
+
+    private ResponseEntity<Resource> downloadAfterStat(String fileName, List<HttpRange> requestedRanges,
+                                                       HttpHeaders headers) throws IOException {
+        FileStat file = fileStorageService.getFileStat(fileName);
+        if (isNotModified(headers, file)) {
+            throw new FileNotModifiedException("File not modified: " + fileName, file.etag());
+        }
+        List<HttpRange> ranges = satisfiableRanges(requestedRanges, file.size());
+        if (ranges.isEmpty() && !requestedRanges.isEmpty()) {
+            throw new RangeNotSatisfiableException("Range not satisfiable: " + fileName, file.size());
+        }
+
+        ResponseEntity.BodyBuilder response = downloadResponse(fileName, file, !ranges.isEmpty());
+        Resource body;
+        if (ranges.isEmpty()) {
+            response.contentType(MediaType.APPLICATION_OCTET_STREAM).contentLength(file.size());
+            body = new InputStreamResource(fileStorageService.download(file, 0, file.size()));
+        } else if (ranges.size() == 1) {
+            long start = ranges.get(0).getRangeStart(file.size());
+            long end = ranges.get(0).getRangeEnd(file.size());
+            response.contentType(MediaType.APPLICATION_OCTET_STREAM)
+                    .contentLength(end - start + 1)
+                    .header(HttpHeaders.CONTENT_RANGE, contentRange(start, end, file.size()));
+            body = new InputStreamResource(fileStorageService.download(file, start, end - start + 1));
+        } else {
+            String boundary = MimeTypeUtils.generateMultipartBoundaryString();
+            response.contentType(MediaType.parseMediaType("multipart/byteranges; boundary=" + boundary));
+            body = multipartByteRanges(file, ranges, boundary, response);
+        }
+        return response.body(body);
+    }
+
+    /**
+     * Reads the {@code Range} header. An invalid header is ignored, which serves the whole file.
+     */
+    static List<HttpRange> requestedRanges(HttpHeaders headers) {
+        try {
+            return headers.getRange();
+        } catch (IllegalArgumentException e) {
+            log.debug("Ignoring invalid range header: {}", e.getMessage());
+            return List.of();
+        }
+    }
+
+    /**
+     * Tells whether a download can be answered by a single storage request, see {@link #download}.
+     */
+    static boolean isDirectDownload(List<HttpRange> ranges, List<String> ifNoneMatch) {
+        return ranges.size() <= 1 && (ranges.isEmpty() || !isSuffixRange(ranges.get(0)))
+                && ifNoneMatch.size() <= 1 && !ifNoneMatch.contains("*");
+    }
+
+    static ResponseEntity.BodyBuilder downloadResponse(String fileName, FileStat file, boolean partial) {
+        ResponseEntity.BodyBuilder response = partial ? ResponseEntity.status(HttpStatus.PARTIAL_CONTENT) : ResponseEntity.ok();
+        response.header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + fileName + "\"")
+                .header(HttpHeaders.ACCEPT_RANGES, "bytes");
+        if (file.etag() != null) {
+            response.eTag(file.etag());
+        }
+        if (file.lastModified() != null) {
+            response.lastModified(file.lastModified());
+        }
+        return response;
+    }
+
+    /**
+     * Tells a suffix range ({@code bytes=-500}), which cannot be resolved without the file size, from
+     * a byte range with an explicit first position.
+     */
+    private static boolean isSuffixRange(HttpRange range) {
+        return range.toString().startsWith("-");
+    }
+
+    /**
+     * Evaluates the conditional headers of a download against the file metadata. As required by
+     * RFC 9110, {@code If-Modified-Since} is ignored when {@code If-None-Match} is present.
+     */
+    static boolean isNotModified(HttpHeaders headers, FileStat file) {
+        List<String> ifNoneMatch = headers.getIfNoneMatch();
+        if (!ifNoneMatch.isEmpty()) {
+            return ifNoneMatch.stream().anyMatch(tag -> tag.equals("*") || unquote(tag).equals(unquote(file.etag())));
+        }
+        long ifModifiedSince = headers.getIfModifiedSince();
+        return ifModifiedSince >= 0 && file.lastModified().getEpochSecond() * 1000 <= ifModifiedSince;
+    }
+
+    static String unquote(String etag) {
+        String tag = etag.startsWith("W/") ? etag.substring(2) : etag;
+        return tag.length() > 1 && tag.startsWith("\"") && tag.endsWith("\"") ? tag.substring(1, tag.length() - 1) : tag;
+    }
+
+    /**
+     * Drops the ranges that start past the end of the file, as a range request is only rejected
+     * when none of its ranges can be served.
+     */
+    static List<HttpRange> satisfiableRanges(List<HttpRange> ranges, long size) {
+        return ranges.stream()
+                .filter(range -> range.getRangeStart(size) < size && range.getRangeStart(size) <= range.getRangeEnd(size))
+                .toList();
+    }
+
+    static String contentRange(long start, long end, long size) {
+        return "bytes " + start + "-" + end + "/" + size;
+    }
+
+    /**
+     * Builds a {@code multipart/byteranges} body. Each range is fetched from the storage only when the
+     * body is written up to it, so at most one storage connection is open at a time.
+     */
+    private Resource multipartByteRanges(FileStat file, List<HttpRange> ranges, String boundary,
+                                         ResponseEntity.BodyBuilder response) {
+        List<InputStream> parts = new ArrayList<>();
+        long contentLength = 0;
+        for (HttpRange range : ranges) {
+            long start = range.getRangeStart(file.size());
+            long end = range.getRangeEnd(file.size());
+            byte[] partHeader = ("\r\n--" + boundary + "\r\n"
+                    + HttpHeaders.CONTENT_TYPE + ": " + MediaType.APPLICATION_OCTET_STREAM_VALUE + "\r\n"
+                    + HttpHeaders.CONTENT_RANGE + ": " + contentRange(start, end, file.size()) + "\r\n\r\n")
+                    .getBytes(StandardCharsets.US_ASCII);
+            parts.add(new ByteArrayInputStream(partHeader));
+            parts.add(new LazyInputStream(() -> fileStorageService.download(file, start, end - start + 1)));
+            contentLength += partHeader.length + end - start + 1;
+        }
+        byte[] closing = ("\r\n--" + boundary + "--\r\n").getBytes(StandardCharsets.US_ASCII);
+        parts.add(new ByteArrayInputStream(closing));
+        response.contentLength(contentLength + closing.length);
+        return new InputStreamResource(new SequenceInputStream(Collections.enumeration(parts)));
+    }
 }
@@ -0,0 +1,38 @@
+package abdulgazizov.dev.cloudstoragedemo.controllers;
+
+import abdulgazizov.dev.cloudstoragedemo.jwt.JwtKeys;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.CacheControl;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Publishes the public keys access tokens are verified with, so edge nodes verify tokens without the
+ * signing key. Verifiers may cache the set briefly and should fetch it again on an unknown {@code kid}.
+ * Served by both the servlet and the reactive stack.
+ */
+@Slf4j
+@RestController
+@ConditionalOnProperty(name = "jwt.access.algorithm", havingValue = "ES256")
+@RequiredArgsConstructor
+public class JwksController {
+    static final String JWKS_PATH = "/.well-known/jwks.json";
+    private static final Duration MAX_AGE = Duration.ofMinutes(5);
+
+    private final JwtKeys jwtKeys;
+
+    @GetMapping(JWKS_PATH)
+    public ResponseEntity<Map<String, List<Map<String, String>>>> jwks() {
+        log.debug("Received request for the JWK set");
+        return ResponseEntity.ok()
+                .cacheControl(CacheControl.maxAge(MAX_AGE).cachePublic())
+                .body(Map.of("keys", jwtKeys.toJwks()));
+    }
+}
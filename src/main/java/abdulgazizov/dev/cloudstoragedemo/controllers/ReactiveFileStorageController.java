@@ -0,0 +1,338 @@
+package abdulgazizov.dev.cloudstoragedemo.controllers;
+
+import abdulgazizov.dev.cloudstoragedemo.dtos.FileContent;
+import abdulgazizov.dev.cloudstoragedemo.dtos.FileDeleteResult;
+import abdulgazizov.dev.cloudstoragedemo.dtos.FileDto;
+import abdulgazizov.dev.cloudstoragedemo.dtos.FileNameDto;
+import abdulgazizov.dev.cloudstoragedemo.dtos.FileNamesDto;
+import abdulgazizov.dev.cloudstoragedemo.dtos.FileSort;
+import abdulgazizov.dev.cloudstoragedemo.dtos.FileStat;
+import abdulgazizov.dev.cloudstoragedemo.dtos.PresignedUrl;
+import abdulgazizov.dev.cloudstoragedemo.exceptions.FileNotModifiedException;
+import abdulgazizov.dev.cloudstoragedemo.exceptions.RangeNotSatisfiableException;
+import abdulgazizov.dev.cloudstoragedemo.mappers.FileMapper;
+import abdulgazizov.dev.cloudstoragedemo.services.FileStorageService;
+import jakarta.validation.Valid;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.multipart.FilePart;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.lang.NonNull;
+import org.springframework.security.core.context.ReactiveSecurityContextHolder;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.time.Instant;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.stream.Stream;
+
+/**
+ * The routes of {@link FileStorageController} on the reactive stack, served when the application runs with
+ * {@code spring.main.web-application-type=reactive}. Such a node serves the file API only; tokens are issued by
+ * the servlet nodes and checked with the same key.
+ * <p>
+ * Bodies are streamed as {@link DataBuffer}s with backpressure. A download reads the next buffer from the
+ * storage only when the client has taken the previous ones, and an upload is requested from the client a few
+ * buffers at a time, as fast as the storage takes it. A slow client therefore holds no more than a few
+ * buffers, and a download holds no thread. The services and the MinIO SDK are blocking, so their calls run on the bounded
+ * elastic scheduler with the security context of the request.
+ * <p>
+ * Unlike the servlet controller, a request for several ranges is answered with the whole file, as RFC 9110
+ * allows.
+ */
+@Slf4j
+@RestController
+@RequiredArgsConstructor
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReactiveFileStorageController {
+    private static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int UPLOAD_PREFETCH = 4;
+    private final FileStorageService fileStorageService;
+
+    @PostMapping("file")
+    public Mono<ResponseEntity<String>> upload(@RequestPart("file") FilePart file,
+                                               @RequestParam("filename") @NonNull String fileName) {
+        log.debug("Received file upload request: file={}, filename={}", file.filename(), fileName);
+        MediaType contentType = file.headers().getContentType();
+        return upload(file.content(), -1, fileName, contentType == null ? null : contentType.toString());
+    }
+
+    @PostMapping("file/stream")
+    public Mono<ResponseEntity<String>> uploadStream(@RequestParam("filename") @NonNull String fileName,
+                                                     @RequestHeader HttpHeaders headers,
+                                                     @RequestBody Flux<DataBuffer> body) {
+        log.debug("Received streaming upload request: filename={}, size={}", fileName, headers.getContentLength());
+        MediaType contentType = headers.getContentType();
+        return upload(body, headers.getContentLength(), fileName, contentType == null ? null : contentType.toString());
+    }
+
+    @GetMapping("list")
+    public Mono<ResponseEntity<List<FileDto>>> getFiles(@RequestParam("limit") @NonNull int limit,
+                                                        @RequestParam(value = "sort", defaultValue = "name") String sort,
+                                                        @RequestParam(value = "cursor", required = false) String cursor) {
+        log.debug("Received request to get files with limit={}, sort={}, cursor={}", limit, sort, cursor);
+        return blocking(() -> fileStorageService.getFiles(limit, FileSort.fromParam(sort), cursor))
+                .map(page -> {
+                    ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+                    if (page.getNextCursor() != null) {
+                        response.header(NEXT_CURSOR_HEADER, page.getNextCursor());
+                    }
+                    return response.body(page.getFiles().stream().map(FileMapper::toFileDto).toList());
+                });
+    }
+
+    /**
+     * Downloads a file, answering conditional and range requests as {@link FileStorageController#download} does.
+     */
+    @GetMapping("file")
+    public Mono<ResponseEntity<Flux<DataBuffer>>> download(@RequestParam("filename") @NonNull String fileName,
+                                                           @RequestHeader HttpHeaders headers,
+                                                           ServerHttpResponse serverResponse) {
+        log.debug("Received request to download file: {}", fileName);
+        return blocking(() -> open(fileName, headers))
+                .map(download -> download.response().body(read(download.content(), serverResponse.bufferFactory())));
+    }
+
+    @GetMapping("file/url")
+    public Mono<ResponseEntity<PresignedUrl>> downloadUrl(@RequestParam("filename") @NonNull String fileName) {
+        log.debug("Received request for download URL of file: {}", fileName);
+        return blocking(() -> ResponseEntity.ok(fileStorageService.getDownloadUrl(fileName)));
+    }
+
+    @DeleteMapping("file")
+    public Mono<ResponseEntity<String>> delete(@RequestParam("filename") @NonNull String fileName) {
+        log.debug("Received request to delete file: {}", fileName);
+        return blocking(() -> {
+            fileStorageService.delete(fileName);
+            log.info("File deleted successfully: {}", fileName);
+            return ResponseEntity.ok("File deleted successfully");
+        });
+    }
+
+    @PostMapping("files/delete")
+    public Mono<ResponseEntity<List<FileDeleteResult>>> deleteAll(@RequestBody @Valid FileNamesDto fileNamesDto) {
+        log.debug("Received request to delete {} files", fileNamesDto.getFileNames().size());
+        return blocking(() -> ResponseEntity.ok(fileStorageService.delete(fileNamesDto.getFileNames())));
+    }
+
+    /**
+     * Downloads several files as a ZIP archive, as {@link FileStorageController#archive} does. The archive is
+     * written on a worker thread that blocks until the client has taken the buffers written so far.
+     */
+    @PostMapping("files/archive")
+    public Mono<ResponseEntity<Flux<DataBuffer>>> archive(@RequestBody @Valid FileNamesDto fileNamesDto,
+                                                          ServerHttpResponse serverResponse) {
+        log.debug("Received request to archive {} files", fileNamesDto.getFileNames().size());
+        return blocking(() -> fileStorageService.getArchiveEntries(fileNamesDto.getFileNames()))
+                .map(entries -> ResponseEntity.ok()
+                        .header(HttpHeaders.CONTENT_DISPOSITION,
+                                "attachment; filename=\"" + FileStorageController.ARCHIVE_FILE_NAME + "\"")
+                        .contentType(FileStorageController.ARCHIVE_MEDIA_TYPE)
+                        .body(Flux.from(DataBufferUtils.outputStreamPublisher(outputStream -> {
+                            try {
+                                fileStorageService.writeArchive(entries, outputStream);
+                            } catch (IOException e) {
+                                throw new UncheckedIOException(e);
+                            }
+                        }, serverResponse.bufferFactory(), task -> Schedulers.boundedElastic().schedule(task)))));
+    }
+
+    @PutMapping("file")
+    public Mono<ResponseEntity<String>> edit(@RequestParam("filename") @NonNull String oldFileName,
+                                             @RequestBody @Valid FileNameDto fileNameDto) {
+        log.debug("Received request to edit file: oldFilename={}, newFilename={}", oldFileName, fileNameDto.getFileName());
+        return blocking(() -> {
+            fileStorageService.editFileName(fileNameDto.getFileName(), oldFileName);
+            log.info("File edited successfully: oldFilename={}, newFilename={}", oldFileName, fileNameDto.getFileName());
+            return ResponseEntity.ok("File edited successfully");
+        });
+    }
+
+    /**
+     * Streams the body to the storage. The upload runs on a worker thread and reads the body as an
+     * {@link InputStream}; the body is cancelled if the upload fails.
+     *
+     * @param size the size of the body, or -1 if unknown
+     */
+    private Mono<ResponseEntity<String>> upload(Flux<DataBuffer> body, long size, String fileName, String contentType) {
+        return blocking(() -> {
+            try (DataBufferInputStream inputStream = new DataBufferInputStream(body)) {
+                if (inputStream.isEmpty()) {
+                    log.debug("No file provided");
+                    return ResponseEntity.badRequest().body("No file provided");
+                }
+                String customFileName = fileStorageService.upload(inputStream, size, fileName, contentType);
+                log.info("File uploaded successfully: {}", customFileName);
+                return ResponseEntity.ok("File uploaded successfully: " + customFileName);
+            }
+        });
+    }
+
+    private Download open(String fileName, HttpHeaders headers) throws Exception {
+        List<HttpRange> ranges = FileStorageController.requestedRanges(headers);
+        List<String> ifNoneMatch = headers.getIfNoneMatch();
+        if (FileStorageController.isDirectDownload(ranges, ifNoneMatch)) {
+            Long offset = null;
+            Long length = null;
+            if (!ranges.isEmpty()) {
+                offset = ranges.get(0).getRangeStart(Long.MAX_VALUE);
+                long end = ranges.get(0).getRangeEnd(Long.MAX_VALUE);
+                length = end == Long.MAX_VALUE - 1 ? null : end - offset + 1;
+            }
+            long ifModifiedSince = headers.getIfModifiedSince();
+            FileContent content = fileStorageService.download(fileName, offset, length,
+                    ifNoneMatch.isEmpty() ? null : FileStorageController.unquote(ifNoneMatch.get(0)),
+                    ifModifiedSince < 0 ? null : Instant.ofEpochMilli(ifModifiedSince));
+            ResponseEntity.BodyBuilder response = FileStorageController.downloadResponse(fileName, content.file(), !ranges.isEmpty())
+                    .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                    .contentLength(content.length());
+            if (!ranges.isEmpty()) {
+                response.header(HttpHeaders.CONTENT_RANGE, FileStorageController.contentRange(
+                        content.offset(), content.offset() + content.length() - 1, content.file().size()));
+            }
+            return new Download(response, content.content());
+        }
+
+        FileStat file = fileStorageService.getFileStat(fileName);
+        if (FileStorageController.isNotModified(headers, file)) {
+            throw new FileNotModifiedException("File not modified: " + fileName, file.etag());
+        }
+        List<HttpRange> satisfiable = FileStorageController.satisfiableRanges(ranges, file.size());
+        if (satisfiable.isEmpty() && !ranges.isEmpty()) {
+            throw new RangeNotSatisfiableException("Range not satisfiable: " + fileName, file.size());
+        }
+        if (satisfiable.size() != 1) {
+            return new Download(FileStorageController.downloadResponse(fileName, file, false)
+                    .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                    .contentLength(file.size()),
+                    fileStorageService.download(file, 0, file.size()));
+        }
+        long start = satisfiable.get(0).getRangeStart(file.size());
+        long end = satisfiable.get(0).getRangeEnd(file.size());
+        return new Download(FileStorageController.downloadResponse(fileName, file, true)
+                .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                .contentLength(end - start + 1)
+                .header(HttpHeaders.CONTENT_RANGE, FileStorageController.contentRange(start, end, file.size())),
+                fileStorageService.download(file, start, end - start + 1));
+    }
+
+    /**
+     * Reads the content on demand: every request of the response writer reads that many buffers, so the
+     * storage connection is throttled to the speed of the client. The stream is closed on completion,
+     * error or cancellation.
+     */
+    private static Flux<DataBuffer> read(InputStream content, DataBufferFactory bufferFactory) {
+        return DataBufferUtils.readInputStream(() -> content, bufferFactory, BUFFER_SIZE)
+                .subscribeOn(Schedulers.boundedElastic());
+    }
+
+    /**
+     * Runs a blocking call off the event loop. The services read the current user from
+     * {@link SecurityContextHolder}, so the security context of the request is bound to the worker thread
+     * for the duration of the call.
+     */
+    private static <T> Mono<T> blocking(Callable<T> call) {
+        return ReactiveSecurityContextHolder.getContext()
+                .defaultIfEmpty(SecurityContextHolder.createEmptyContext())
+                .flatMap(context -> Mono.fromCallable(() -> {
+                    SecurityContextHolder.setContext(context);
+                    try {
+                        return call.call();
+                    } finally {
+                        SecurityContextHolder.clearContext();
+                    }
+                }).subscribeOn(Schedulers.boundedElastic()));
+    }
+
+    private record Download(ResponseEntity.BodyBuilder response, InputStream content) {
+    }
+
+    /**
+     * Reads a body of {@link DataBuffer}s as a blocking {@link InputStream}. The buffers are requested
+     * {@value #UPLOAD_PREFETCH} at a time, so backpressure reaches the client and the stream holds no more
+     * than that many. Each buffer is released once it has been read; closing the stream cancels the body
+     * and releases the buffers not read yet.
+     */
+    private static class DataBufferInputStream extends InputStream {
+        private final Stream<DataBuffer> stream;
+        private final Iterator<DataBuffer> buffers;
+        private DataBuffer current;
+
+        DataBufferInputStream(Flux<DataBuffer> body) {
+            this.stream = body.doOnDiscard(DataBuffer.class, DataBufferUtils::release).toStream(UPLOAD_PREFETCH);
+            this.buffers = stream.iterator();
+        }
+
+        /**
+         * Waits for the first byte of the body.
+         *
+         * @return true if the body has no content
+         */
+        boolean isEmpty() {
+            return !next();
+        }
+
+        @Override
+        public int read() throws IOException {
+            return next() ? current.read() & 0xff : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            if (!next()) {
+                return -1;
+            }
+            int read = Math.min(len, current.readableByteCount());
+            current.read(b, off, read);
+            return read;
+        }
+
+        @Override
+        public void close() {
+            if (current != null) {
+                DataBufferUtils.release(current);
+                current = null;
+            }
+            stream.close();
+        }
+
+        /**
+         * Moves to a buffer with unread bytes, releasing the buffers that have been read.
+         *
+         * @return false at the end of the body
+         */
+        private boolean next() {
+            while (current == null || current.readableByteCount() == 0) {
+                if (current != null) {
+                    DataBufferUtils.release(current);
+                    current = null;
+                }
+                if (!buffers.hasNext()) {
+                    return false;
+                }
+                current = buffers.next();
+            }
+            return true;
+        }
+    }
+}
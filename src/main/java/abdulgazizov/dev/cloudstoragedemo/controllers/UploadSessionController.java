@@ -0,0 +1,105 @@
+package abdulgazizov.dev.cloudstoragedemo.controllers;
+
+import abdulgazizov.dev.cloudstoragedemo.dtos.PresignedUrl;
+import abdulgazizov.dev.cloudstoragedemo.entity.UploadSession;
+import abdulgazizov.dev.cloudstoragedemo.responses.DirectUploadResponse;
+import abdulgazizov.dev.cloudstoragedemo.responses.UploadSessionResponse;
+import abdulgazizov.dev.cloudstoragedemo.services.UploadSessionService;
+import io.minio.messages.Part;
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.coyote.BadRequestException;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.ResponseEntity;
+import org.springframework.lang.NonNull;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.IOException;
+import java.util.List;
+
+@Slf4j
+@RestController
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+@RequiredArgsConstructor
+@RequestMapping("uploads")
+public class UploadSessionController {
+    private final UploadSessionService uploadSessionService;
+
+    @PreAuthorize("hasAnyRole('ADMIN','USER')")
+    @PostMapping
+    public ResponseEntity<UploadSessionResponse> create(@RequestParam("filename") @NonNull String fileName,
+                                                        @RequestHeader(value = "Content-Type", required = false) String contentType) throws BadRequestException {
+        log.debug("Received request to create upload session: filename={}", fileName);
+        UploadSession session = uploadSessionService.create(fileName, contentType);
+        log.info("Upload session created: {}", session.getId());
+        return ResponseEntity.ok(toResponse(session, List.of()));
+    }
+
+    /**
+     * Starts a direct upload: the client PUTs the file to the returned URL, straight to the storage, and then
+     * completes the session with {@code POST uploads/{id}/complete}.
+     */
+    @PreAuthorize("hasAnyRole('ADMIN','USER')")
+    @PostMapping("direct")
+    public ResponseEntity<DirectUploadResponse> createDirect(@RequestParam("filename") @NonNull String fileName,
+                                                             @RequestHeader(value = "Content-Type", required = false) String contentType) throws BadRequestException {
+        log.debug("Received request to create direct upload session: filename={}", fileName);
+        UploadSession session = uploadSessionService.createDirect(fileName, contentType);
+        PresignedUrl url = uploadSessionService.getUploadUrl(session.getId());
+        log.info("Direct upload session created: {}", session.getId());
+        return ResponseEntity.ok(new DirectUploadResponse(session.getId(), session.getFileName(), url.url(), url.expiresAt()));
+    }
+
+    @PreAuthorize("hasAnyRole('ADMIN','USER')")
+    @GetMapping("{id}/url")
+    public ResponseEntity<PresignedUrl> uploadUrl(@PathVariable("id") String id) throws BadRequestException {
+        log.debug("Received request for upload URL of session: {}", id);
+        return ResponseEntity.ok(uploadSessionService.getUploadUrl(id));
+    }
+
+    @PreAuthorize("hasAnyRole('ADMIN','USER')")
+    @GetMapping("{id}")
+    public ResponseEntity<UploadSessionResponse> get(@PathVariable("id") String id) {
+        log.debug("Received request to get upload session: {}", id);
+        UploadSession session = uploadSessionService.get(id);
+        return ResponseEntity.ok(toResponse(session, uploadSessionService.getParts(id)));
+    }
+
+    @PreAuthorize("hasAnyRole('ADMIN','USER')")
+    @PutMapping("{id}/parts/{partNumber}")
+    public ResponseEntity<String> uploadPart(@PathVariable("id") String id, @PathVariable("partNumber") int partNumber,
+                                             HttpServletRequest request) throws IOException {
+        log.debug("Received part {} of upload session {}", partNumber, id);
+        uploadSessionService.uploadPart(id, partNumber, request.getInputStream(), request.getContentLengthLong());
+        log.info("Part {} of upload session {} uploaded", partNumber, id);
+        return ResponseEntity.ok("Part uploaded successfully: " + partNumber);
+    }
+
+    @PreAuthorize("hasAnyRole('ADMIN','USER')")
+    @PostMapping("{id}/complete")
+    public ResponseEntity<String> complete(@PathVariable("id") String id) throws BadRequestException {
+        log.debug("Received request to complete upload session: {}", id);
+        String fileName = uploadSessionService.complete(id);
+        log.info("Upload session {} completed", id);
+        return ResponseEntity.ok("File uploaded successfully: " + fileName);
+    }
+
+    @PreAuthorize("hasAnyRole('ADMIN','USER')")
+    @DeleteMapping("{id}")
+    public ResponseEntity<String> abort(@PathVariable("id") String id) {
+        log.debug("Received request to abort upload session: {}", id);
+        uploadSessionService.abort(id);
+        log.info("Upload session {} aborted", id);
+        return ResponseEntity.ok("Upload aborted");
+    }
+
+    private static UploadSessionResponse toResponse(UploadSession session, List<Part> parts) {
+        List<UploadSessionResponse.Part> received = parts.stream()
+                .map(part -> new UploadSessionResponse.Part(part.partNumber(), part.partSize(), part.etag()))
+                .toList();
+        long receivedBytes = parts.stream().mapToLong(Part::partSize).sum();
+        return new UploadSessionResponse(session.getId(), session.getFileName(), received, receivedBytes);
+    }
+}
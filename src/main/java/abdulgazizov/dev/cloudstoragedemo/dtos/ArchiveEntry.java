@@ -0,0 +1,15 @@
+package abdulgazizov.dev.cloudstoragedemo.dtos;
+
+import java.time.Instant;
+
+/**
+ * A file to be written to an archive, read from the file index.
+ *
+ * @param fileName    the name of the file, used as the name of the entry
+ * @param storageKey  the key of the object holding the content
+ * @param size        the size of the file in bytes
+ * @param contentType the content type of the file, may be null
+ * @param updatedAt   the time the file was last written or renamed
+ */
+public record ArchiveEntry(String fileName, String storageKey, long size, String contentType, Instant updatedAt) {
+}
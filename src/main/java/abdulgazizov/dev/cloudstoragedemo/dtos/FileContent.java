@@ -0,0 +1,22 @@
+package abdulgazizov.dev.cloudstoragedemo.dtos;
+
+import java.io.InputStream;
+import java.nio.file.Path;
+
+/**
+ * An open download of a file, or of one byte range of it, together with the file metadata that came
+ * with the content.
+ *
+ * @param file      the metadata of the whole file
+ * @param offset    the position of the first byte of the content within the file
+ * @param length    the number of bytes of the content
+ * @param content   the content; must be closed by the caller
+ * @param localFile a local file holding the whole file when the content is served from the disk cache,
+ *                  otherwise null. It is pinned for a while, so the same bytes can be sent from it without
+ *                  reading {@code content} even if the cache evicts the file meanwhile.
+ */
+public record FileContent(FileStat file, long offset, long length, InputStream content, Path localFile) {
+    public FileContent(FileStat file, long offset, long length, InputStream content) {
+        this(file, offset, length, content, null);
+    }
+}
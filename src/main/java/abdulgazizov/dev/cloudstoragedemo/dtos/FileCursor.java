@@ -0,0 +1,45 @@
+package abdulgazizov.dev.cloudstoragedemo.dtos;
+
+import org.apache.coyote.BadRequestException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Position of the last row of a listing page. Serialized into an opaque URL-safe token so clients
+ * do not depend on its layout.
+ *
+ * @param sort     the sort order the cursor was issued for
+ * @param value    the sort key of the last row (empty for {@link FileSort#NAME})
+ * @param fileName the file name of the last row
+ */
+public record FileCursor(FileSort sort, String value, String fileName) {
+    private static final char SEPARATOR = '\0';
+
+    public String encode() {
+        String raw = sort.name() + SEPARATOR + value + SEPARATOR + fileName;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Decodes a cursor previously returned by {@link #encode()}.
+     *
+     * @param token the opaque cursor
+     * @param sort  the sort order of the current request
+     * @return the decoded cursor
+     * @throws BadRequestException if the token is malformed or was issued for another sort order
+     */
+    public static FileCursor decode(String token, FileSort sort) throws BadRequestException {
+        String[] parts;
+        try {
+            parts = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8)
+                    .split(String.valueOf(SEPARATOR), 3);
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestException("Invalid cursor");
+        }
+        if (parts.length != 3 || !sort.name().equals(parts[0])) {
+            throw new BadRequestException("Invalid cursor");
+        }
+        return new FileCursor(sort, parts[1], parts[2]);
+    }
+}
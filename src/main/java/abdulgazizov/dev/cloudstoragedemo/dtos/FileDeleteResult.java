@@ -0,0 +1,12 @@
+package abdulgazizov.dev.cloudstoragedemo.dtos;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * The outcome of deleting one file of a batch.
+ *
+ * @param fileName the name of the file
+ * @param deleted  true if the file was deleted, false if the user has no file with this name
+ */
+public record FileDeleteResult(@JsonProperty("filename") String fileName, boolean deleted) {
+}
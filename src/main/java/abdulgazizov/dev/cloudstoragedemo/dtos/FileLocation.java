@@ -0,0 +1,10 @@
+package abdulgazizov.dev.cloudstoragedemo.dtos;
+
+/**
+ * Where the content of a file is stored, read from the file index.
+ *
+ * @param storageKey the key of the object holding the content
+ * @param checksum   the entity tag of the object, may be null
+ */
+public record FileLocation(String storageKey, String checksum) {
+}
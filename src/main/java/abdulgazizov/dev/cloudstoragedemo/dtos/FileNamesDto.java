@@ -0,0 +1,17 @@
+package abdulgazizov.dev.cloudstoragedemo.dtos;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Size;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+public class FileNamesDto {
+    @NotEmpty
+    @Size(max = 1000)
+    @JsonProperty("filenames")
+    private List<@NotBlank @Size(max = 255) String> fileNames;
+}
@@ -0,0 +1,13 @@
+package abdulgazizov.dev.cloudstoragedemo.dtos;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+public class FilePage {
+    private List<FileSummary> files;
+    private String nextCursor;
+}
@@ -0,0 +1,29 @@
+package abdulgazizov.dev.cloudstoragedemo.dtos;
+
+import org.apache.coyote.BadRequestException;
+
+/**
+ * Sort orders supported by the file listing. Every order is ascending and uses the file name as a tie-breaker,
+ * which keeps the keyset stable.
+ */
+public enum FileSort {
+    NAME,
+    SIZE,
+    EDITED;
+
+    /**
+     * Resolves a sort order from the request parameter value.
+     *
+     * @param value the parameter value, case-insensitive
+     * @return the matching sort order
+     * @throws BadRequestException if the value is unknown
+     */
+    public static FileSort fromParam(String value) throws BadRequestException {
+        for (FileSort sort : values()) {
+            if (sort.name().equalsIgnoreCase(value)) {
+                return sort;
+            }
+        }
+        throw new BadRequestException("Unknown sort order: " + value);
+    }
+}
@@ -0,0 +1,22 @@
+package abdulgazizov.dev.cloudstoragedemo.dtos;
+
+import java.time.Instant;
+
+/**
+ * Metadata of a stored file, read without fetching its content. Used to answer conditional and
+ * range requests before any byte of the object is transferred.
+ *
+ * @param fileName     the name of the file
+ * @param size         the size of the file in bytes
+ * @param etag         the entity tag of the stored object, without quotes
+ * @param lastModified the time the object was last written
+ * @param storageKey   the key of the object holding the content, resolved when the file was looked up
+ */
+public record FileStat(String fileName, long size, String etag, Instant lastModified, String storageKey) {
+    /**
+     * @return the same object under the name of another file; an object is shared by all files of its content
+     */
+    public FileStat withFileName(String fileName) {
+        return new FileStat(fileName, size, etag, lastModified, storageKey);
+    }
+}
@@ -0,0 +1,14 @@
+package abdulgazizov.dev.cloudstoragedemo.dtos;
+
+import java.time.Instant;
+
+/**
+ * The listed columns of a file. Every listing index carries exactly these columns, so a page of
+ * summaries is read from the index without touching the table.
+ *
+ * @param fileName  the name of the file
+ * @param size      the size of the file in bytes
+ * @param updatedAt the time the file was last written or renamed
+ */
+public record FileSummary(String fileName, long size, Instant updatedAt) {
+}
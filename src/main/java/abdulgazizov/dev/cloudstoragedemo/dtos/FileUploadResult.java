@@ -0,0 +1,13 @@
+package abdulgazizov.dev.cloudstoragedemo.dtos;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * The outcome of uploading one file of a batch.
+ *
+ * @param fileName the name of the file
+ * @param uploaded true if the file was stored
+ * @param error    the reason the file was not stored, or null
+ */
+public record FileUploadResult(@JsonProperty("filename") String fileName, boolean uploaded, String error) {
+}
@@ -0,0 +1,12 @@
+package abdulgazizov.dev.cloudstoragedemo.dtos;
+
+import java.time.Instant;
+
+/**
+ * A URL that lets the holder transfer the content of a file directly to or from the storage.
+ *
+ * @param url       the signed URL
+ * @param expiresAt the time the storage stops accepting the URL
+ */
+public record PresignedUrl(String url, Instant expiresAt) {
+}
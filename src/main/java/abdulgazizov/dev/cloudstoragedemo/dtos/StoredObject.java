@@ -0,0 +1,13 @@
+package abdulgazizov.dev.cloudstoragedemo.dtos;
+
+/**
+ * An object just written to the storage for a file.
+ *
+ * @param storageKey  the key of the object
+ * @param size        the size of the content in bytes
+ * @param contentType the content type of the file, may be null
+ * @param etag        the entity tag of the object, may be null or quoted
+ * @param contentHash the hex SHA-256 of the content, or null if the content was not hashed
+ */
+public record StoredObject(String storageKey, long size, String contentType, String etag, String contentHash) {
+}
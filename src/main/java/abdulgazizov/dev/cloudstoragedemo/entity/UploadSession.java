@@ -0,0 +1,43 @@
+package abdulgazizov.dev.cloudstoragedemo.entity;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.time.Instant;
+
+@Entity
+@Table(name = "upload_sessions")
+@Getter
+@Setter
+public class UploadSession {
+    @Id
+    private String id;
+
+    @Column(name = "user_id", nullable = false)
+    private Long ownerId;
+
+    @Column(name = "file_name", nullable = false)
+    private String fileName;
+
+    @Column(name = "object_key", nullable = false)
+    private String objectKey;
+
+    @Column(name = "upload_id")
+    private String uploadId;
+
+    @Column(name = "content_type")
+    private String contentType;
+
+    @Column(name = "created_at", nullable = false)
+    private Instant createdAt;
+
+    @Column(name = "url_expires_at")
+    private Instant urlExpiresAt;
+
+    @Column(name = "closed_at")
+    private Instant closedAt;
+}
@@ -32,9 +32,4 @@ public class User {
     @Enumerated(EnumType.STRING)
     @Column(name = "role_name")
     private Set<Role> roles;
-
-    @ElementCollection(fetch = FetchType.EAGER)
-    @CollectionTable(name = "user_files", joinColumns = @JoinColumn(name = "user_id"))
-    @Column(name = "file_name")
-    private Set<String> files;
 }
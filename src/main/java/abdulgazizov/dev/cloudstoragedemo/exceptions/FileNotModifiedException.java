@@ -0,0 +1,22 @@
+package abdulgazizov.dev.cloudstoragedemo.exceptions;
+
+import lombok.Getter;
+
+import java.io.IOException;
+
+/**
+ * Thrown when a conditional download matches the stored file, so its content does not need to be sent.
+ */
+@Getter
+public class FileNotModifiedException extends IOException {
+    private final String etag;
+
+    public FileNotModifiedException(String message) {
+        this(message, null);
+    }
+
+    public FileNotModifiedException(String message, String etag) {
+        super(message);
+        this.etag = etag;
+    }
+}
@@ -6,6 +6,7 @@ import jakarta.persistence.EntityNotFoundException;
 import jakarta.security.auth.message.AuthException;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.coyote.BadRequestException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.AccessDeniedException;
@@ -40,6 +41,27 @@ public class GlobalExceptionHandler extends ResponseEntityExceptionHandler {
         return ResponseEntity.status(HttpStatus.NOT_FOUND).body(errorResponse);
     }
 
+    @ExceptionHandler(FileNotModifiedException.class)
+    public ResponseEntity<Void> handleFileNotModifiedException(FileNotModifiedException e) {
+        log.debug("File not modified: {}", e.getMessage());
+        ResponseEntity.BodyBuilder response = ResponseEntity.status(HttpStatus.NOT_MODIFIED);
+        if (e.getEtag() != null) {
+            response.eTag(e.getEtag());
+        }
+        return response.build();
+    }
+
+    @ExceptionHandler(RangeNotSatisfiableException.class)
+    public ResponseEntity<ErrorResponse> handleRangeNotSatisfiableException(RangeNotSatisfiableException e) {
+        log.debug("Range not satisfiable: {}", e.getMessage());
+        ErrorResponse error = new ErrorResponse("Range not satisfiable", e.getMessage());
+        ResponseEntity.BodyBuilder response = ResponseEntity.status(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE);
+        if (e.getSize() != null) {
+            response.header(HttpHeaders.CONTENT_RANGE, "bytes */" + e.getSize());
+        }
+        return response.body(error);
+    }
+
     @ExceptionHandler(FileUploadException.class)
     public ResponseEntity<ErrorResponse> handleFileUploadException(FileUploadException e) {
         log.error("File upload error: {}", e.getMessage());
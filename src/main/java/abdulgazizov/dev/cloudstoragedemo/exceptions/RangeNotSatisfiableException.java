@@ -0,0 +1,22 @@
+package abdulgazizov.dev.cloudstoragedemo.exceptions;
+
+import lombok.Getter;
+
+import java.io.IOException;
+
+/**
+ * Thrown when none of the requested byte ranges overlaps the stored file.
+ */
+@Getter
+public class RangeNotSatisfiableException extends IOException {
+    private final Long size;
+
+    public RangeNotSatisfiableException(String message) {
+        this(message, null);
+    }
+
+    public RangeNotSatisfiableException(String message, Long size) {
+        super(message);
+        this.size = size;
+    }
+}
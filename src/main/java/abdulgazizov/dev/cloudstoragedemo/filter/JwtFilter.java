@@ -1,9 +1,7 @@
 package abdulgazizov.dev.cloudstoragedemo.filter;
 
+import abdulgazizov.dev.cloudstoragedemo.jwt.AccessTokenAuthenticator;
 import abdulgazizov.dev.cloudstoragedemo.jwt.JwtAuthentication;
-import abdulgazizov.dev.cloudstoragedemo.jwt.JwtProvider;
-import abdulgazizov.dev.cloudstoragedemo.jwt.JwtUtils;
-import io.jsonwebtoken.Claims;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.ServletRequest;
@@ -17,14 +15,14 @@ import org.springframework.util.StringUtils;
 import org.springframework.web.filter.GenericFilterBean;
 
 import java.io.IOException;
+import java.util.Optional;
 
 @Slf4j
 @Component
 @RequiredArgsConstructor
 public class JwtFilter extends GenericFilterBean {
-    private static final String AUTHORIZATION = "Auth-Token";
-    private final JwtProvider jwtProvider;
-    private final JwtUtils jwtUtils;
+    static final String AUTHORIZATION = "Auth-Token";
+    private final AccessTokenAuthenticator accessTokenAuthenticator;
 
     @Override
     public void doFilter(ServletRequest servletRequest, ServletResponse servletResponse, FilterChain filterChain) throws IOException, ServletException {
@@ -35,19 +33,10 @@ public class JwtFilter extends GenericFilterBean {
 
         if (token != null) {
             log.debug("Validating access token: {}", token);
-            if (jwtProvider.validateAccessToken(token)) {
-                log.info("Access token is valid");
-
-                final Claims claims = jwtProvider.getAccessClaims(token);
-                log.debug("Extracted claims from token: {}", claims);
-
-                final JwtAuthentication jwtInfoToken = jwtUtils.generate(claims);
-                jwtInfoToken.setAuthenticated(true);
-                log.info("Authenticated user: {}", jwtInfoToken.getPrincipal());
-
-                SecurityContextHolder.getContext().setAuthentication(jwtInfoToken);
-            } else {
-                log.warn("Invalid access token: {}", token);
+            final Optional<JwtAuthentication> jwtInfoToken = accessTokenAuthenticator.authenticate(token);
+            if (jwtInfoToken.isPresent()) {
+                log.info("Authenticated user: {}", jwtInfoToken.get().getPrincipal());
+                SecurityContextHolder.getContext().setAuthentication(jwtInfoToken.get());
             }
         } else {
             log.debug("No token found in request");
@@ -57,7 +46,10 @@ public class JwtFilter extends GenericFilterBean {
     }
 
     private String getTokenFromRequest(HttpServletRequest request) {
-        final String bearer = request.getHeader(AUTHORIZATION);
+        return resolveToken(request.getHeader(AUTHORIZATION));
+    }
+
+    static String resolveToken(String bearer) {
         log.debug("Extracting token from header: {}", bearer);
 
         if (StringUtils.hasText(bearer) && bearer.startsWith("Bearer ")) {
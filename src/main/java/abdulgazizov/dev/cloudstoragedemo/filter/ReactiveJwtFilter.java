@@ -0,0 +1,41 @@
+package abdulgazizov.dev.cloudstoragedemo.filter;
+
+import abdulgazizov.dev.cloudstoragedemo.jwt.AccessTokenAuthenticator;
+import abdulgazizov.dev.cloudstoragedemo.jwt.JwtAuthentication;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.security.core.context.ReactiveSecurityContextHolder;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+
+import java.util.Optional;
+
+/**
+ * The reactive counterpart of {@link JwtFilter}: reads the same header and authenticates the exchange
+ * with the same claims. The authentication is stored in the subscriber context instead of a thread-local.
+ * Not a bean, so WebFlux does not add it to every handler chain; the security chain registers it.
+ */
+@Slf4j
+@RequiredArgsConstructor
+public class ReactiveJwtFilter implements WebFilter {
+    private final AccessTokenAuthenticator accessTokenAuthenticator;
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+        final String token = JwtFilter.resolveToken(exchange.getRequest().getHeaders().getFirst(JwtFilter.AUTHORIZATION));
+        if (token == null) {
+            log.debug("No token found in request");
+            return chain.filter(exchange);
+        }
+        final Optional<JwtAuthentication> authentication = accessTokenAuthenticator.authenticate(token);
+        if (authentication.isEmpty()) {
+            return chain.filter(exchange);
+        }
+
+        final JwtAuthentication jwtInfoToken = authentication.get();
+        log.info("Authenticated user: {}", jwtInfoToken.getPrincipal());
+        return chain.filter(exchange).contextWrite(ReactiveSecurityContextHolder.withAuthentication(jwtInfoToken));
+    }
+}
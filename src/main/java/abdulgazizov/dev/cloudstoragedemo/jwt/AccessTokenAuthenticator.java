@@ -0,0 +1,102 @@
+package abdulgazizov.dev.cloudstoragedemo.jwt;
+
+import abdulgazizov.dev.cloudstoragedemo.properties.JwtProperties;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.Date;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Authenticates requests by their access token. A client sends the same token on many requests in a row, so
+ * a verified token is remembered with the authentication built from it: a repeated token costs a SHA-256 of
+ * the token and a hash lookup instead of decoding, verifying the signature and parsing the claims.
+ * <p>
+ * Entries are keyed by the digest of the token, so the cache holds no usable tokens, and expire when the
+ * token does. The cache is bounded by {@code jwt.cache.max-size}; 0 disables it.
+ */
+@Slf4j
+@Component
+public class AccessTokenAuthenticator {
+    private final JwtProvider jwtProvider;
+    private final JwtUtils jwtUtils;
+    private final Cache<String, Verified> verified;
+
+    public AccessTokenAuthenticator(JwtProvider jwtProvider, JwtUtils jwtUtils, JwtProperties jwtProperties,
+                                    MeterRegistry meterRegistry) {
+        this.jwtProvider = jwtProvider;
+        this.jwtUtils = jwtUtils;
+        this.verified = Caffeine.newBuilder()
+                .maximumSize(jwtProperties.cacheMaxSize())
+                .expireAfter(new UntilTokenExpires())
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, verified, "access-tokens");
+    }
+
+    /**
+     * Verifies an access token and builds the authentication of its user, or takes both from the cache.
+     *
+     * @param token the access token sent by the client
+     * @return the authentication, or empty if the token is rejected
+     */
+    public Optional<JwtAuthentication> authenticate(String token) {
+        String key = digest(token);
+        Verified cached = verified.getIfPresent(key);
+        if (cached != null) {
+            return Optional.of(cached.authentication());
+        }
+
+        TokenValidation validation = jwtProvider.parseAccessToken(token);
+        if (!validation.isValid()) {
+            log.warn("Invalid access token: {}", validation.failure());
+            return Optional.empty();
+        }
+        JwtAuthentication authentication = jwtUtils.generate(validation.claims());
+        Date expiration = validation.claims().getExpiration();
+        // a token without an expiration is never cached, so it cannot outlive a change of its user
+        if (expiration != null) {
+            verified.put(key, new Verified(authentication, expiration.getTime()));
+        }
+        return Optional.of(authentication);
+    }
+
+    private static String digest(String token) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return Base64.getEncoder().encodeToString(digest.digest(token.getBytes(StandardCharsets.US_ASCII)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    private record Verified(JwtAuthentication authentication, long expiresAtMillis) {
+    }
+
+    private static final class UntilTokenExpires implements Expiry<String, Verified> {
+        @Override
+        public long expireAfterCreate(String key, Verified value, long currentTime) {
+            return TimeUnit.MILLISECONDS.toNanos(Math.max(0, value.expiresAtMillis() - System.currentTimeMillis()));
+        }
+
+        @Override
+        public long expireAfterUpdate(String key, Verified value, long currentTime, long currentDuration) {
+            return expireAfterCreate(key, value, currentTime);
+        }
+
+        @Override
+        public long expireAfterRead(String key, Verified value, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+    }
+}
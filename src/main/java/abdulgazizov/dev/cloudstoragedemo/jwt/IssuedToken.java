@@ -0,0 +1,12 @@
+package abdulgazizov.dev.cloudstoragedemo.jwt;
+
+import java.time.Instant;
+
+/**
+ * A token just issued, together with the expiration it carries in its {@code exp} claim.
+ *
+ * @param value     the compact token
+ * @param expiresAt the expiration of the token, in whole seconds as in the claim
+ */
+public record IssuedToken(String value, Instant expiresAt) {
+}
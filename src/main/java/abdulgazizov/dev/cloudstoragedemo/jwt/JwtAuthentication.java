@@ -1,26 +1,60 @@
 package abdulgazizov.dev.cloudstoragedemo.jwt;
 
 import abdulgazizov.dev.cloudstoragedemo.entity.Role;
-import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.ToString;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
-import java.util.stream.Collectors;
 
-@Data
+/**
+ * The authentication of a request, built from a verified access token. It is immutable, so one instance is
+ * shared by every request with the same token, and its authorities are computed once: method security asks
+ * for them on every secured call.
+ */
+@Getter
+@ToString
+@EqualsAndHashCode
 public class JwtAuthentication implements Authentication {
-    private boolean authenticated;
-    private String username;
-    private String password;
-    private Long id;
-    private Set<Role> roles;
+    private static final Map<Role, GrantedAuthority> AUTHORITIES = new EnumMap<>(Role.class);
+
+    static {
+        for (Role role : Role.values()) {
+            AUTHORITIES.put(role, new SimpleGrantedAuthority(role.name()));
+        }
+    }
+
+    private final Long id;
+    private final String username;
+    private final Set<Role> roles;
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    private final List<GrantedAuthority> authorities;
+
+    public JwtAuthentication(Long id, String username, Set<Role> roles) {
+        this.id = id;
+        this.username = username;
+        this.roles = roles.isEmpty() ? Collections.emptySet() : Collections.unmodifiableSet(EnumSet.copyOf(roles));
+        List<GrantedAuthority> granted = new ArrayList<>(this.roles.size());
+        for (Role role : this.roles) {
+            granted.add(AUTHORITIES.get(role));
+        }
+        this.authorities = Collections.unmodifiableList(granted);
+    }
 
     @Override
     public Collection<? extends GrantedAuthority> getAuthorities() {
-        return roles.stream().map(role -> new SimpleGrantedAuthority(role.name())).collect(Collectors.toSet());
+        return authorities;
     }
 
     @Override
@@ -40,12 +74,16 @@ public class JwtAuthentication implements Authentication {
 
     @Override
     public boolean isAuthenticated() {
-        return authenticated;
+        return true;
     }
 
+    /**
+     * @throws IllegalArgumentException always: the token was verified when the authentication was built, and
+     *                                  the instance may be shared by other requests
+     */
     @Override
     public void setAuthenticated(boolean isAuthenticated) throws IllegalArgumentException {
-        this.authenticated = isAuthenticated;
+        throw new IllegalArgumentException("JwtAuthentication is immutable");
     }
 
     @Override
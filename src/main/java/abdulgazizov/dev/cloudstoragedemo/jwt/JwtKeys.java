@@ -0,0 +1,180 @@
+package abdulgazizov.dev.cloudstoragedemo.jwt;
+
+import abdulgazizov.dev.cloudstoragedemo.properties.JwtKeyProperties;
+import io.jsonwebtoken.SignatureAlgorithm;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.math.BigInteger;
+import java.security.GeneralSecurityException;
+import java.security.KeyFactory;
+import java.security.PrivateKey;
+import java.security.interfaces.ECPrivateKey;
+import java.security.interfaces.ECPublicKey;
+import java.security.spec.PKCS8EncodedKeySpec;
+import java.security.spec.X509EncodedKeySpec;
+import java.util.*;
+
+/**
+ * The keys access tokens are signed and verified with when they are signed with ES256 instead of the shared
+ * HMAC secret. A verifier needs only the public keys, which are published as a JWK set, so edge nodes can
+ * verify tokens without holding anything that can issue them.
+ * <p>
+ * Every token names its key in the {@code kid} header, and every public key listed is accepted, so keys are
+ * rotated node by node: the next key is published first, becomes the signing key once every verifier knows
+ * it, and the previous key is removed once the tokens signed with it have expired.
+ * <p>
+ * Keys are given as comma-separated {@code kid=base64} pairs: PKCS#8 for private keys, X.509 for public
+ * keys, both on the P-256 curve. A node without private keys only verifies.
+ */
+@Slf4j
+@Component
+public class JwtKeys {
+    private static final int COORDINATE_SIZE = 32;
+
+    private final SignatureAlgorithm algorithm;
+    private final String signingKeyId;
+    private final PrivateKey signingKey;
+    private final Map<String, ECPublicKey> verificationKeys;
+
+    public JwtKeys(JwtKeyProperties properties) {
+        this.algorithm = SignatureAlgorithm.forName(properties.algorithm());
+        if (algorithm != SignatureAlgorithm.HS256 && algorithm != SignatureAlgorithm.ES256) {
+            throw new IllegalArgumentException("Unsupported access token algorithm: " + properties.algorithm());
+        }
+        if (!isAsymmetric()) {
+            this.signingKeyId = null;
+            this.signingKey = null;
+            this.verificationKeys = Map.of();
+            return;
+        }
+
+        Map<String, ECPublicKey> publicKeys = new LinkedHashMap<>();
+        parse(properties.publicKeys()).forEach((id, der) -> publicKeys.put(id, publicKey(id, der)));
+        if (publicKeys.isEmpty()) {
+            throw new IllegalArgumentException("No public keys to verify access tokens with");
+        }
+        this.verificationKeys = Collections.unmodifiableMap(publicKeys);
+
+        Map<String, byte[]> privateKeys = parse(properties.privateKeys());
+        if (privateKeys.isEmpty()) {
+            this.signingKeyId = null;
+            this.signingKey = null;
+            log.info("Access tokens are verified with ES256 keys {}; this node does not sign them", publicKeys.keySet());
+            return;
+        }
+        this.signingKeyId = properties.signingKeyId();
+        if (!privateKeys.containsKey(signingKeyId)) {
+            throw new IllegalArgumentException("No private key for the signing key id: " + signingKeyId);
+        }
+        // без открытого ключа подписывающего ключа узел не примет собственные токены
+        if (!publicKeys.containsKey(signingKeyId)) {
+            throw new IllegalArgumentException("No public key for the signing key id: " + signingKeyId);
+        }
+        this.signingKey = privateKey(signingKeyId, privateKeys.get(signingKeyId));
+        log.info("Access tokens are signed with ES256 key {} and verified with keys {}", signingKeyId, publicKeys.keySet());
+    }
+
+    /**
+     * @return true if access tokens are signed with ES256 keys, false if with the HMAC secret
+     */
+    public boolean isAsymmetric() {
+        return algorithm == SignatureAlgorithm.ES256;
+    }
+
+    public SignatureAlgorithm getAlgorithm() {
+        return algorithm;
+    }
+
+    public String getSigningKeyId() {
+        return signingKeyId;
+    }
+
+    /**
+     * @return the private key access tokens are signed with
+     * @throws IllegalStateException if this node only verifies tokens
+     */
+    public PrivateKey getSigningKey() {
+        if (signingKey == null) {
+            throw new IllegalStateException("This node has no key to sign access tokens with");
+        }
+        return signingKey;
+    }
+
+    /**
+     * @return the public key with the id, or null if tokens signed with it are not accepted
+     */
+    public ECPublicKey getVerificationKey(String keyId) {
+        return keyId == null ? null : verificationKeys.get(keyId);
+    }
+
+    /**
+     * @return the public keys as JSON Web Keys (RFC 7517, 7518), for the {@code keys} member of a JWK set
+     */
+    public List<Map<String, String>> toJwks() {
+        List<Map<String, String>> jwks = new ArrayList<>(verificationKeys.size());
+        verificationKeys.forEach((id, key) -> {
+            Map<String, String> jwk = new LinkedHashMap<>();
+            jwk.put("kty", "EC");
+            jwk.put("crv", "P-256");
+            jwk.put("kid", id);
+            jwk.put("use", "sig");
+            jwk.put("alg", algorithm.getValue());
+            jwk.put("x", coordinate(key.getW().getAffineX()));
+            jwk.put("y", coordinate(key.getW().getAffineY()));
+            jwks.add(jwk);
+        });
+        return jwks;
+    }
+
+    private static Map<String, byte[]> parse(String keys) {
+        Map<String, byte[]> parsed = new LinkedHashMap<>();
+        if (keys == null || keys.isBlank()) {
+            return parsed;
+        }
+        for (String pair : keys.split(",")) {
+            int separator = pair.indexOf('=');
+            if (separator <= 0) {
+                throw new IllegalArgumentException("Key must be given as kid=base64: " + pair.trim());
+            }
+            String id = pair.substring(0, separator).trim();
+            byte[] der = Base64.getMimeDecoder().decode(pair.substring(separator + 1).trim());
+            if (parsed.put(id, der) != null) {
+                throw new IllegalArgumentException("Duplicate key id: " + id);
+            }
+        }
+        return parsed;
+    }
+
+    private static ECPublicKey publicKey(String id, byte[] der) {
+        try {
+            if (KeyFactory.getInstance("EC").generatePublic(new X509EncodedKeySpec(der)) instanceof ECPublicKey key
+                    && key.getParams().getCurve().getField().getFieldSize() == COORDINATE_SIZE * 8) {
+                return key;
+            }
+        } catch (GeneralSecurityException e) {
+            throw new IllegalArgumentException("Invalid public key " + id + ": " + e.getMessage(), e);
+        }
+        throw new IllegalArgumentException("Public key " + id + " is not a P-256 key");
+    }
+
+    private static PrivateKey privateKey(String id, byte[] der) {
+        try {
+            if (KeyFactory.getInstance("EC").generatePrivate(new PKCS8EncodedKeySpec(der)) instanceof ECPrivateKey key
+                    && key.getParams().getCurve().getField().getFieldSize() == COORDINATE_SIZE * 8) {
+                return key;
+            }
+        } catch (GeneralSecurityException e) {
+            throw new IllegalArgumentException("Invalid private key " + id + ": " + e.getMessage(), e);
+        }
+        throw new IllegalArgumentException("Private key " + id + " is not a P-256 key");
+    }
+
+    private static String coordinate(BigInteger value) {
+        byte[] bytes = value.toByteArray();
+        byte[] padded = new byte[COORDINATE_SIZE];
+        int length = Math.min(bytes.length, COORDINATE_SIZE);
+        System.arraycopy(bytes, bytes.length - length, padded, COORDINATE_SIZE - length, length);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(padded);
+    }
+}
@@ -12,22 +12,42 @@ import org.springframework.stereotype.Component;
 
 import javax.crypto.SecretKey;
 import java.security.Key;
+import java.time.Duration;
 import java.time.Instant;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
 import java.util.Date;
+import java.util.UUID;
 
+/**
+ * Issues and verifies the access and refresh tokens. A parser is built once per key: parsers are immutable
+ * and thread-safe, so every request verifies its token with a shared parser, and parses it only once.
+ * <p>
+ * Access tokens are signed with the HMAC secret, or with the ES256 key of {@link JwtKeys}, named in the
+ * {@code kid} header. Refresh tokens are only ever verified by the nodes that issue them and stay on HMAC.
+ */
 @Slf4j
 @Component
 public class JwtProvider {
+    private static final Duration REFRESH_TOKEN_TTL = Duration.ofMinutes(30);
+
     private final SecretKey jwtAccessSecret;
     private final SecretKey jwtRefreshSecret;
+    private final JwtKeys jwtKeys;
+    private final JwtParser accessParser;
+    private final JwtParser refreshParser;
 
     @Autowired
-    public JwtProvider(JwtProperties jwtProperties) {
+    public JwtProvider(JwtProperties jwtProperties, JwtKeys jwtKeys) {
         this.jwtAccessSecret = Keys.hmacShaKeyFor(Decoders.BASE64.decode(jwtProperties.jwtAccessSecret()));
         this.jwtRefreshSecret = Keys.hmacShaKeyFor(Decoders.BASE64.decode(jwtProperties.jwtRefreshSecret()));
-        log.debug("Initialized JwtProvider with access secret {} and refresh secret {}", jwtAccessSecret, jwtRefreshSecret);
+        this.jwtKeys = jwtKeys;
+        this.accessParser = jwtKeys.isAsymmetric()
+                ? Jwts.parserBuilder().setSigningKeyResolver(new KeyIdResolver(jwtKeys)).build()
+                : Jwts.parserBuilder().setSigningKey(jwtAccessSecret).build();
+        this.refreshParser = Jwts.parserBuilder().setSigningKey(jwtRefreshSecret).build();
+        log.debug("Initialized JwtProvider");
     }
 
     public String generateAccessToken(User user) {
@@ -35,75 +55,105 @@ public class JwtProvider {
         final Instant acessExpirationInstant = now.plusMinutes(5).atZone(ZoneId.systemDefault()).toInstant();
         final Date accessExpirationDate = Date.from(acessExpirationInstant);
         log.debug("Generating access token for user {}", user.getUsername());
-        return Jwts.builder()
+        final JwtBuilder builder = Jwts.builder()
                 .setSubject(user.getUsername())
                 .setExpiration(accessExpirationDate)
-                .signWith(jwtAccessSecret)
                 .claim("id", user.getId())
-                .claim("roles", user.getRoles())
-                .compact();
+                .claim("roles", user.getRoles());
+        if (jwtKeys.isAsymmetric()) {
+            builder.setHeaderParam(JwsHeader.KEY_ID, jwtKeys.getSigningKeyId())
+                    .signWith(jwtKeys.getSigningKey(), jwtKeys.getAlgorithm());
+        } else {
+            builder.signWith(jwtAccessSecret);
+        }
+        return builder.compact();
     }
 
-    public String generateRefreshToken(User user) {
-        final LocalDateTime now = LocalDateTime.now();
-        final Instant acessExpirationInstant = now.plusMinutes(30).atZone(ZoneId.systemDefault()).toInstant();
-        final Date accessExpirationDate = Date.from(acessExpirationInstant);
+    /**
+     * Issues a refresh token. Each token gets a random id, so two tokens issued for a user within the same
+     * second still differ and a token can be exchanged only once.
+     */
+    public IssuedToken generateRefreshToken(User user) {
+        // the claim holds whole seconds; the store keeps the same instant
+        final Instant expiresAt = Instant.now().plus(REFRESH_TOKEN_TTL).truncatedTo(ChronoUnit.SECONDS);
         log.debug("Generating refresh token for user {}", user.getUsername());
-        return Jwts.builder()
+        final String token = Jwts.builder()
+                .setId(UUID.randomUUID().toString())
                 .setSubject(user.getUsername())
-                .setExpiration(accessExpirationDate)
-                .signWith(jwtAccessSecret)
+                .setExpiration(Date.from(expiresAt))
+                .signWith(jwtRefreshSecret)
                 .compact();
+        return new IssuedToken(token, expiresAt);
     }
 
-    public boolean validateAccessToken(String accessToken) {
-        log.debug("Validating access token {}", accessToken);
-        return validateToken(accessToken, jwtAccessSecret);
+    /**
+     * Verifies an access token and extracts its claims in one parse.
+     *
+     * @param accessToken the token sent by the client
+     * @return the claims, or the reason the token is rejected
+     */
+    public TokenValidation parseAccessToken(String accessToken) {
+        return parse(accessToken, accessParser);
     }
 
-    public boolean validateRefreshToken(String refreshToken) {
-        log.debug("Validating refresh token {}", refreshToken);
-        return validateToken(refreshToken, jwtRefreshSecret);
+    /**
+     * Verifies a refresh token and extracts its claims in one parse.
+     *
+     * @param refreshToken the token sent by the client
+     * @return the claims, or the reason the token is rejected
+     */
+    public TokenValidation parseRefreshToken(String refreshToken) {
+        return parse(refreshToken, refreshParser);
     }
 
-    private boolean validateToken(String token, Key secret) {
+    private static TokenValidation parse(String token, JwtParser parser) {
         try {
-            Jwts.parserBuilder()
-                    .setSigningKey(secret)
-                    .build()
-                    .parseClaimsJws(token);
-            log.debug("Token {} is valid", token);
-            return true;
-        } catch (ExpiredJwtException expEx) {
-            log.error("Token expired", expEx);
-        } catch (UnsupportedJwtException unsEx) {
-            log.error("Unsupported jwt", unsEx);
-        } catch (MalformedJwtException mjEx) {
-            log.error("Malformed jwt", mjEx);
-        } catch (SignatureException sEx) {
-            log.error("Invalid signature", sEx);
+            return TokenValidation.valid(parser.parseClaimsJws(token).getBody());
+        } catch (ExpiredJwtException e) {
+            log.debug("Token expired: {}", e.getMessage());
+            return TokenValidation.invalid(TokenValidation.Failure.EXPIRED);
+        } catch (UnsupportedJwtException e) {
+            log.warn("Unsupported jwt: {}", e.getMessage());
+            return TokenValidation.invalid(TokenValidation.Failure.UNSUPPORTED);
+        } catch (MalformedJwtException e) {
+            log.warn("Malformed jwt: {}", e.getMessage());
+            return TokenValidation.invalid(TokenValidation.Failure.MALFORMED);
+        } catch (SignatureException e) {
+            log.warn("Invalid signature: {}", e.getMessage());
+            return TokenValidation.invalid(TokenValidation.Failure.INVALID_SIGNATURE);
         } catch (Exception e) {
-            log.error("invalid token", e);
+            log.warn("Invalid token: {}", e.getMessage());
+            return TokenValidation.invalid(TokenValidation.Failure.INVALID);
         }
-        return false;
     }
 
-    public Claims getAccessClaims(String token) {
-        log.debug("Getting access claims for token {}", token);
-        return getClaims(token, jwtAccessSecret);
-    }
+    /**
+     * Picks the public key named by the {@code kid} header of a token. A token without a known key id, or
+     * signed with another algorithm, is rejected before its signature is checked.
+     */
+    private static final class KeyIdResolver extends SigningKeyResolverAdapter {
+        private final JwtKeys jwtKeys;
 
-    public Claims getRefreshClaims(String token) {
-        log.debug("Getting refresh claims for token {}", token);
-        return getClaims(token, jwtRefreshSecret);
-    }
+        private KeyIdResolver(JwtKeys jwtKeys) {
+            this.jwtKeys = jwtKeys;
+        }
 
-    private Claims getClaims(String token, Key secret) {
-        log.debug("Parsing claims for token {}", token);
-        return Jwts.parserBuilder()
-                .setSigningKey(secret)
-                .build()
-                .parseClaimsJws(token)
-                .getBody();
+        // jjwt 0.11 declares the header as a raw type, so the override cannot take a wildcard
+        @Override
+        @SuppressWarnings("rawtypes")
+        public Key resolveSigningKey(JwsHeader header, Claims claims) {
+            return resolve(header);
+        }
+
+        private Key resolve(JwsHeader<?> header) {
+            if (!jwtKeys.getAlgorithm().getValue().equals(header.getAlgorithm())) {
+                throw new UnsupportedJwtException("Unexpected algorithm: " + header.getAlgorithm());
+            }
+            Key key = jwtKeys.getVerificationKey(header.getKeyId());
+            if (key == null) {
+                throw new SignatureException("Unknown key id: " + header.getKeyId());
+            }
+            return key;
+        }
     }
 }
@@ -5,9 +5,9 @@ import io.jsonwebtoken.Claims;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
 
-import java.util.List;
+import java.util.Collection;
+import java.util.EnumSet;
 import java.util.Set;
-import java.util.stream.Collectors;
 
 @Slf4j
 @Component
@@ -15,18 +15,19 @@ public final class JwtUtils {
 
     public JwtAuthentication generate(Claims claims) {
         log.debug("Generating JwtAuthentication from claims {}", claims);
-        final JwtAuthentication jwtInfoToken = new JwtAuthentication();
-        jwtInfoToken.setRoles(getRoles(claims));
-        jwtInfoToken.setId(claims.get("id", Long.class));
-        jwtInfoToken.setUsername(claims.getSubject());
+        final JwtAuthentication jwtInfoToken = new JwtAuthentication(claims.get("id", Long.class), claims.getSubject(),
+                getRoles(claims));
         log.debug("Generated JwtAuthentication: {}", jwtInfoToken);
         return jwtInfoToken;
     }
 
     private static Set<Role> getRoles(Claims claims) {
-        final List<String> roles = claims.get("roles", List.class);
-        return roles.stream()
-                .map(Role::valueOf)
-                .collect(Collectors.toSet());
+        final Set<Role> roles = EnumSet.noneOf(Role.class);
+        if (claims.get("roles") instanceof Collection<?> names) {
+            for (Object name : names) {
+                roles.add(Role.valueOf(name.toString()));
+            }
+        }
+        return roles;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,31 @@
+package abdulgazizov.dev.cloudstoragedemo.jwt;
+
+import io.jsonwebtoken.Claims;
+
+/**
+ * The outcome of parsing a token: its claims if the token is valid, otherwise the reason it was rejected.
+ *
+ * @param claims  the claims of a valid token, or null
+ * @param failure the reason the token was rejected, or null if it is valid
+ */
+public record TokenValidation(Claims claims, Failure failure) {
+    public enum Failure {
+        EXPIRED,
+        UNSUPPORTED,
+        MALFORMED,
+        INVALID_SIGNATURE,
+        INVALID
+    }
+
+    public static TokenValidation valid(Claims claims) {
+        return new TokenValidation(claims, null);
+    }
+
+    public static TokenValidation invalid(Failure failure) {
+        return new TokenValidation(null, failure);
+    }
+
+    public boolean isValid() {
+        return failure == null;
+    }
+}
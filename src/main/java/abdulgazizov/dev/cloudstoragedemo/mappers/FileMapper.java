@@ -1,21 +1,18 @@
 package abdulgazizov.dev.cloudstoragedemo.mappers;
 
 import abdulgazizov.dev.cloudstoragedemo.dtos.FileDto;
-import io.minio.messages.Item;
+import abdulgazizov.dev.cloudstoragedemo.dtos.FileSummary;
 import org.springframework.stereotype.Component;
 
-import java.time.ZonedDateTime;
-
 @Component
 public class FileMapper {
 
-    public static FileDto toFileDto(Item fileItem) {
-        ZonedDateTime lastModified = fileItem.lastModified();
+    public static FileDto toFileDto(FileSummary file) {
         return FileDto.builder()
-                .fileName(fileItem.objectName())
-                .size(fileItem.size())
-                .fileType(determineFileType(fileItem.objectName()))
-                .editedAt(lastModified.toInstant().toEpochMilli())
+                .fileName(file.fileName())
+                .size(file.size())
+                .fileType(determineFileType(file.fileName()))
+                .editedAt(file.updatedAt().toEpochMilli())
                 .build();
     }
 
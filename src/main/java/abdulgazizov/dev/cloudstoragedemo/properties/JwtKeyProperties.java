@@ -0,0 +1,21 @@
+package abdulgazizov.dev.cloudstoragedemo.properties;
+
+import jakarta.validation.constraints.NotEmpty;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+@Component
+public record JwtKeyProperties(
+        @NotEmpty
+        @Value("${jwt.access.algorithm}")
+        String algorithm,
+
+        @Value("${jwt.access.signing-key-id}")
+        String signingKeyId,
+
+        @Value("${jwt.access.private-keys}")
+        String privateKeys,
+
+        @Value("${jwt.access.public-keys}")
+        String publicKeys) {
+}
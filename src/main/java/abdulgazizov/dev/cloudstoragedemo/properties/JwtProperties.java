@@ -1,5 +1,6 @@
 package abdulgazizov.dev.cloudstoragedemo.properties;
 
+import jakarta.validation.constraints.Min;
 import jakarta.validation.constraints.NotEmpty;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
@@ -12,5 +13,13 @@ public record JwtProperties(
 
         @NotEmpty
         @Value("${jwt.secret.refresh}")
-        String jwtRefreshSecret) {
+        String jwtRefreshSecret,
+
+        @Min(0)
+        @Value("${jwt.cache.max-size}")
+        long cacheMaxSize,
+
+        @Min(1)
+        @Value("${jwt.refresh-store.max-size}")
+        long refreshStoreMaxSize) {
 }
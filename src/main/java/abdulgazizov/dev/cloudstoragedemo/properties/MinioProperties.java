@@ -1,9 +1,13 @@
 package abdulgazizov.dev.cloudstoragedemo.properties;
 
+import jakarta.validation.constraints.Min;
 import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
+import java.time.Duration;
+
 @Component
 public record MinioProperties(
         @NotEmpty
@@ -20,5 +24,41 @@ public record MinioProperties(
 
         @NotEmpty
         @Value("${minio.secretKey}")
-        String secretKey) {
+        String secretKey,
+
+        @Min(5 * 1024 * 1024)
+        @Value("${minio.upload.part-size}")
+        long uploadPartSize,
+
+        @Min(0)
+        @Value("${minio.http.max-idle-connections}")
+        int maxIdleConnections,
+
+        @NotNull
+        @Value("${minio.http.keep-alive}")
+        Duration keepAlive,
+
+        @Min(1)
+        @Value("${minio.http.max-requests}")
+        int maxRequests,
+
+        @Min(1)
+        @Value("${minio.http.max-requests-per-host}")
+        int maxRequestsPerHost,
+
+        @NotNull
+        @Value("${minio.http.connect-timeout}")
+        Duration connectTimeout,
+
+        @NotNull
+        @Value("${minio.http.read-timeout}")
+        Duration readTimeout,
+
+        @NotNull
+        @Value("${minio.http.write-timeout}")
+        Duration writeTimeout,
+
+        @NotNull
+        @Value("${minio.presigned.ttl}")
+        Duration presignedUrlTtl) {
 }
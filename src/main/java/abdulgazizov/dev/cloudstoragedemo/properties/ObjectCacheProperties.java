@@ -0,0 +1,41 @@
+package abdulgazizov.dev.cloudstoragedemo.properties;
+
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotEmpty;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+@Component
+public record ObjectCacheProperties(
+        @Value("${object-cache.enabled}")
+        boolean enabled,
+
+        @NotEmpty
+        @Value("${object-cache.dir}")
+        String dir,
+
+        @Min(0)
+        @Value("${object-cache.max-size}")
+        long maxSize,
+
+        @Min(0)
+        @Value("${object-cache.max-object-size}")
+        long maxObjectSize,
+
+        @Min(1)
+        @Value("${object-cache.admission-hits}")
+        int admissionHits,
+
+        @Min(0)
+        @Value("${object-cache.memory.max-size}")
+        long memoryMaxSize,
+
+        @Min(0)
+        @Value("${object-cache.memory.max-object-size}")
+        long memoryMaxObjectSize,
+
+        @Value("${object-cache.pin-ttl}")
+        Duration pinTtl) {
+}
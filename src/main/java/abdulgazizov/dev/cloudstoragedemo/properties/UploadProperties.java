@@ -0,0 +1,23 @@
+package abdulgazizov.dev.cloudstoragedemo.properties;
+
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotNull;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+@Component
+public record UploadProperties(
+        @NotNull
+        @Value("${upload.session.ttl}")
+        Duration sessionTtl,
+
+        @Min(1)
+        @Value("${upload.batch.parallelism}")
+        int batchParallelism,
+
+        @Min(1)
+        @Value("${upload.batch.max-files}")
+        int batchMaxFiles) {
+}
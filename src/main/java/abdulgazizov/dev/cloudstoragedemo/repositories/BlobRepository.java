@@ -0,0 +1,62 @@
+package abdulgazizov.dev.cloudstoragedemo.repositories;
+
+import abdulgazizov.dev.cloudstoragedemo.entity.Blob;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface BlobRepository extends JpaRepository<Blob, Long> {
+    Optional<Blob> findByContentHash(String contentHash);
+
+    Optional<Blob> findByStorageKey(String storageKey);
+
+    /**
+     * Inserts a blob referenced once, unless a blob with the same content exists.
+     *
+     * @return 1 if the blob was inserted, 0 if the content is already stored
+     */
+    @Modifying
+    @Query(value = """
+            INSERT INTO blobs (content_hash, storage_key, size, etag, ref_count, created_at)
+            VALUES (:contentHash, :storageKey, :size, :etag, 1, now())
+            ON CONFLICT (content_hash) DO NOTHING""", nativeQuery = true)
+    int insertIfAbsent(@Param("contentHash") String contentHash, @Param("storageKey") String storageKey,
+                       @Param("size") long size, @Param("etag") String etag);
+
+    @Modifying
+    @Query("update Blob b set b.refCount = b.refCount + 1 where b.contentHash = :contentHash")
+    int incrementRefCount(@Param("contentHash") String contentHash);
+
+    @Modifying
+    @Query("update Blob b set b.refCount = b.refCount - 1 where b.id = :id")
+    int decrementRefCount(@Param("id") Long id);
+
+    @Modifying
+    @Query("update Blob b set b.refCount = b.refCount - :count where b.id = :id")
+    int decrementRefCount(@Param("id") Long id, @Param("count") long count);
+
+    @Modifying
+    @Query("update Blob b set b.size = :size, b.etag = :etag where b.id = :id")
+    int updateObject(@Param("id") Long id, @Param("size") long size, @Param("etag") String etag);
+
+    @Query("select b from Blob b where b.refCount = 0 and b.id > :afterId order by b.id")
+    List<Blob> findUnreferenced(@Param("afterId") long afterId, Limit limit);
+
+    /**
+     * Deletes a blob in its own transaction, unless a file has referenced it again in the meantime.
+     *
+     * @return 1 if the blob was deleted
+     */
+    @Transactional
+    @Modifying
+    @Query("delete from Blob b where b.id = :id and b.refCount = 0")
+    int deleteIfUnreferenced(@Param("id") Long id);
+}
@@ -0,0 +1,117 @@
+package abdulgazizov.dev.cloudstoragedemo.repositories;
+
+import abdulgazizov.dev.cloudstoragedemo.dtos.ArchiveEntry;
+import abdulgazizov.dev.cloudstoragedemo.dtos.FileLocation;
+import abdulgazizov.dev.cloudstoragedemo.dtos.FileSummary;
+import abdulgazizov.dev.cloudstoragedemo.entity.FileMetadata;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface FileMetadataRepository extends JpaRepository<FileMetadata, Long> {
+    List<FileMetadata> findByStorageKeyIn(Collection<String> storageKeys);
+
+    boolean existsByOwnerIdAndFileName(Long ownerId, String fileName);
+
+    /**
+     * Inserts a file unless the owner already has a file with this name, in one statement.
+     *
+     * @return 1 if the file was inserted, 0 if the name is taken
+     */
+    @Modifying
+    @Query(value = """
+            INSERT INTO files (user_id, file_name, blob_id, storage_key, size, content_type, checksum, created_at, updated_at, version)
+            VALUES (:ownerId, :fileName, :blobId, :storageKey, :size, CAST(:contentType AS varchar), CAST(:checksum AS varchar), :now, :now, 0)
+            ON CONFLICT (user_id, file_name) DO NOTHING""", nativeQuery = true)
+    int insertIfAbsent(@Param("ownerId") Long ownerId, @Param("fileName") String fileName, @Param("blobId") Long blobId,
+                       @Param("storageKey") String storageKey, @Param("size") long size,
+                       @Param("contentType") String contentType, @Param("checksum") String checksum,
+                       @Param("now") Instant now);
+
+    /**
+     * Reads files of an owner and locks their rows until the end of the transaction, so a concurrent delete of
+     * the same files waits and then finds none of them.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select f from FileMetadata f where f.ownerId = :ownerId and f.fileName in :fileNames")
+    List<FileMetadata> findForUpdate(@Param("ownerId") Long ownerId, @Param("fileNames") Collection<String> fileNames);
+
+    @Query("""
+            select new abdulgazizov.dev.cloudstoragedemo.dtos.FileLocation(f.storageKey, f.checksum)
+            from FileMetadata f
+            where f.ownerId = :ownerId and f.fileName = :fileName""")
+    Optional<FileLocation> findLocation(@Param("ownerId") Long ownerId, @Param("fileName") String fileName);
+
+    @Query("""
+            select new abdulgazizov.dev.cloudstoragedemo.dtos.ArchiveEntry(f.fileName, f.storageKey, f.size, f.contentType, f.updatedAt)
+            from FileMetadata f
+            where f.ownerId = :ownerId and f.fileName in :fileNames""")
+    List<ArchiveEntry> findArchiveEntries(@Param("ownerId") Long ownerId, @Param("fileNames") Collection<String> fileNames);
+
+    /**
+     * Renames a file in one statement. A file with the new name makes the statement fail on the unique
+     * index of owner and name. The version is bumped so that a concurrent update of the loaded entity fails
+     * its optimistic lock instead of silently undoing the rename.
+     *
+     * @return 1 if the file was renamed, 0 if the owner has no file with the old name
+     */
+    @Modifying
+    @Query("""
+            update FileMetadata f set f.fileName = :newFileName, f.updatedAt = :updatedAt, f.version = f.version + 1
+            where f.ownerId = :ownerId and f.fileName = :oldFileName""")
+    int rename(@Param("ownerId") Long ownerId, @Param("oldFileName") String oldFileName,
+               @Param("newFileName") String newFileName, @Param("updatedAt") Instant updatedAt);
+
+    /**
+     * Updates the size and checksum of the files stored in a blob whose object has been overwritten. The
+     * version is bumped, as for a rename.
+     */
+    @Modifying
+    @Query("""
+            update FileMetadata f set f.size = :size, f.checksum = :checksum, f.updatedAt = :updatedAt, f.version = f.version + 1
+            where f.blobId = :blobId""")
+    int updateObject(@Param("blobId") Long blobId, @Param("size") long size, @Param("checksum") String checksum,
+                     @Param("updatedAt") Instant updatedAt);
+
+    @Query("""
+            select new abdulgazizov.dev.cloudstoragedemo.dtos.FileSummary(f.fileName, f.size, f.updatedAt)
+            from FileMetadata f
+            where f.ownerId = :ownerId and f.fileName > :fileName
+            order by f.fileName""")
+    List<FileSummary> findPageByName(@Param("ownerId") Long ownerId,
+                                     @Param("fileName") String fileName,
+                                     Limit limit);
+
+    @Query("""
+            select new abdulgazizov.dev.cloudstoragedemo.dtos.FileSummary(f.fileName, f.size, f.updatedAt)
+            from FileMetadata f
+            where f.ownerId = :ownerId and f.size >= :size
+              and (f.size > :size or f.fileName > :fileName)
+            order by f.size, f.fileName""")
+    List<FileSummary> findPageBySize(@Param("ownerId") Long ownerId,
+                                     @Param("size") long size,
+                                     @Param("fileName") String fileName,
+                                     Limit limit);
+
+    @Query("""
+            select new abdulgazizov.dev.cloudstoragedemo.dtos.FileSummary(f.fileName, f.size, f.updatedAt)
+            from FileMetadata f
+            where f.ownerId = :ownerId and f.updatedAt >= :updatedAt
+              and (f.updatedAt > :updatedAt or f.fileName > :fileName)
+            order by f.updatedAt, f.fileName""")
+    List<FileSummary> findPageByUpdatedAt(@Param("ownerId") Long ownerId,
+                                          @Param("updatedAt") Instant updatedAt,
+                                          @Param("fileName") String fileName,
+                                          Limit limit);
+}
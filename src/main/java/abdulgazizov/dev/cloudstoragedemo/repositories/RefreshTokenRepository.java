@@ -0,0 +1,64 @@
+package abdulgazizov.dev.cloudstoragedemo.repositories;
+
+import abdulgazizov.dev.cloudstoragedemo.entity.RefreshToken;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface RefreshTokenRepository extends JpaRepository<RefreshToken, String> {
+    /**
+     * Saves the token of a user in one statement, replacing the token saved before.
+     */
+    @Transactional
+    @Modifying
+    @Query(value = """
+            INSERT INTO refresh_tokens (username, token_hash, expires_at)
+            VALUES (:username, :tokenHash, :expiresAt)
+            ON CONFLICT (username) DO UPDATE SET token_hash = excluded.token_hash, expires_at = excluded.expires_at""",
+            nativeQuery = true)
+    int upsert(@Param("username") String username, @Param("tokenHash") String tokenHash,
+               @Param("expiresAt") Instant expiresAt);
+
+    boolean existsByUsernameAndTokenHashAndExpiresAtAfter(String username, String tokenHash, Instant now);
+
+    /**
+     * Replaces the token of a user if it is still the given unexpired token.
+     *
+     * @return 1 if the token was replaced
+     */
+    @Transactional
+    @Modifying
+    @Query("""
+            update RefreshToken t set t.tokenHash = :newTokenHash, t.expiresAt = :expiresAt
+            where t.username = :username and t.tokenHash = :tokenHash and t.expiresAt > :now""")
+    int replace(@Param("username") String username, @Param("tokenHash") String tokenHash,
+                @Param("newTokenHash") String newTokenHash, @Param("expiresAt") Instant expiresAt,
+                @Param("now") Instant now);
+
+    @Transactional
+    @Modifying
+    @Query("delete from RefreshToken t where t.username = :username")
+    int deleteByUsername(@Param("username") String username);
+
+    @Query("select t.username from RefreshToken t where t.expiresAt <= :now order by t.expiresAt")
+    List<String> findExpired(@Param("now") Instant now, Limit limit);
+
+    /**
+     * Deletes the tokens of the users in its own transaction, unless a user has logged in again in the meantime.
+     *
+     * @return the number of tokens deleted
+     */
+    @Transactional
+    @Modifying
+    @Query("delete from RefreshToken t where t.username in :usernames and t.expiresAt <= :now")
+    int deleteExpired(@Param("usernames") Collection<String> usernames, @Param("now") Instant now);
+}
@@ -0,0 +1,53 @@
+package abdulgazizov.dev.cloudstoragedemo.repositories;
+
+import abdulgazizov.dev.cloudstoragedemo.entity.UploadSession;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface UploadSessionRepository extends JpaRepository<UploadSession, String> {
+    Optional<UploadSession> findByIdAndOwnerIdAndClosedAtIsNull(String id, Long ownerId);
+
+    List<UploadSession> findByClosedAtIsNullAndCreatedAtBefore(Instant createdAt, Limit limit);
+
+    /**
+     * Finds closed sessions that no presigned URL can write to any more.
+     */
+    @Query("select s from UploadSession s where s.closedAt is not null and (s.urlExpiresAt is null or s.urlExpiresAt < :now)")
+    List<UploadSession> findClosed(@Param("now") Instant now, Limit limit);
+
+    /**
+     * Records the expiry of a URL signed for an open session. URLs are signed with the same TTL, so the
+     * latest one expires last.
+     *
+     * @return 1 if the session is open, 0 if it has been completed or aborted
+     */
+    @Transactional
+    @Modifying
+    @Query("update UploadSession s set s.urlExpiresAt = :urlExpiresAt where s.id = :id and s.closedAt is null")
+    int extendUrlExpiry(@Param("id") String id, @Param("urlExpiresAt") Instant urlExpiresAt);
+
+    /**
+     * Closes a session, so that only one request completes or aborts it.
+     *
+     * @return 1 if the session was closed, 0 if it is closed already
+     */
+    @Transactional
+    @Modifying
+    @Query("update UploadSession s set s.closedAt = :closedAt where s.id = :id and s.closedAt is null")
+    int close(@Param("id") String id, @Param("closedAt") Instant closedAt);
+
+    @Transactional
+    @Modifying
+    @Query("update UploadSession s set s.closedAt = null where s.id = :id")
+    int reopen(@Param("id") String id);
+}
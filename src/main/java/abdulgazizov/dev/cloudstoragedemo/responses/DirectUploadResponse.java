@@ -0,0 +1,17 @@
+package abdulgazizov.dev.cloudstoragedemo.responses;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.time.Instant;
+
+@Data
+@AllArgsConstructor
+public class DirectUploadResponse {
+    private String id;
+    @JsonProperty("filename")
+    private String fileName;
+    private String url;
+    private Instant expiresAt;
+}
@@ -0,0 +1,25 @@
+package abdulgazizov.dev.cloudstoragedemo.responses;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+public class UploadSessionResponse {
+    private String id;
+    @JsonProperty("filename")
+    private String fileName;
+    private List<Part> parts;
+    private long receivedBytes;
+
+    @Data
+    @AllArgsConstructor
+    public static class Part {
+        private int partNumber;
+        private long size;
+        private String etag;
+    }
+}
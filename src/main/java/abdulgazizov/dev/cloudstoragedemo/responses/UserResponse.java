@@ -9,5 +9,4 @@ import java.util.Set;
 public class UserResponse {
     private String username;
     private Set<Role> roles;
-    private Set<String> files;
 }
@@ -1,11 +1,23 @@
 package abdulgazizov.dev.cloudstoragedemo.services;
 
-import io.minio.messages.Item;
+import abdulgazizov.dev.cloudstoragedemo.dtos.ArchiveEntry;
+import abdulgazizov.dev.cloudstoragedemo.dtos.FileContent;
+import abdulgazizov.dev.cloudstoragedemo.dtos.FileDeleteResult;
+import abdulgazizov.dev.cloudstoragedemo.dtos.FilePage;
+import abdulgazizov.dev.cloudstoragedemo.dtos.FileSort;
+import abdulgazizov.dev.cloudstoragedemo.dtos.FileStat;
+import abdulgazizov.dev.cloudstoragedemo.dtos.FileUploadResult;
+import abdulgazizov.dev.cloudstoragedemo.dtos.PresignedUrl;
+import abdulgazizov.dev.cloudstoragedemo.exceptions.FileNotModifiedException;
+import abdulgazizov.dev.cloudstoragedemo.exceptions.RangeNotSatisfiableException;
 import org.apache.coyote.BadRequestException;
-import org.springframework.core.io.Resource;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.time.Instant;
 import java.util.List;
 
 /**
@@ -22,13 +34,99 @@ public interface FileStorageService {
     String upload(MultipartFile file, String fileName);
 
     /**
-     * Downloads a file from the storage.
+     * Uploads a file by streaming it straight to the storage in fixed-size parts, without buffering
+     * the whole file in memory or on local disk.
      *
-     * @param filename the name of the file to be downloaded
-     * @return a Resource representing the downloaded file
+     * @param inputStream the content of the file
+     * @param size        the size of the file in bytes, or -1 if unknown
+     * @param fileName    the desired file name (optional, if null, a unique name will be generated)
+     * @param contentType the content type of the file, may be null
+     * @return the name of the uploaded file
+     */
+    String upload(InputStream inputStream, long size, String fileName, String contentType);
+
+    /**
+     * Uploads several files, each under its original file name. The files are written to the storage
+     * concurrently and recorded in one transaction. A file that cannot be stored is reported, not rejected.
+     *
+     * @param files the files to be uploaded
+     * @return the outcome for every file, in the order of the request
+     * @throws abdulgazizov.dev.cloudstoragedemo.exceptions.FileUploadException if there are more files than
+     *                                                                           one request may carry
+     */
+    List<FileUploadResult> upload(List<MultipartFile> files);
+
+    /**
+     * Reads the metadata of a file without fetching its content.
+     *
+     * @param fileName the name of the file
+     * @return the size, entity tag and modification time of the file
+     * @throws FileNotFoundException if the file does not exist
+     * @throws IOException           if an I/O error occurs while reading the metadata
+     */
+    FileStat getFileStat(String fileName) throws IOException;
+
+    /**
+     * Downloads a file, or a byte range of it, in a single storage request. The metadata of the file
+     * is taken from the download itself, and the preconditions are evaluated by the storage, so a
+     * not-modified file costs no object read. A file in the local cache is served without a storage
+     * request; a file cached on disk is passed with its content.
+     *
+     * @param fileName        the name of the file
+     * @param offset          the position of the first byte to read, or null to read the whole file
+     * @param length          the number of bytes to read, or null to read up to the end of the file
+     * @param ifNoneMatch     the entity tag the client holds, or null
+     * @param ifModifiedSince the modification time the client holds, or null; ignored with {@code ifNoneMatch}
+     * @return the content and metadata of the file
+     * @throws FileNotFoundException        if the file does not exist
+     * @throws FileNotModifiedException     if the file matches the preconditions
+     * @throws RangeNotSatisfiableException if {@code offset} is past the end of the file
+     * @throws IOException                  if an I/O error occurs while downloading the file
+     */
+    FileContent download(String fileName, Long offset, Long length, String ifNoneMatch, Instant ifModifiedSince) throws IOException;
+
+    /**
+     * Downloads a byte range of a file from the storage. Only the requested bytes are read from the
+     * storage, and the read fails if the file has changed since {@code file} was obtained.
+     *
+     * @param file   the metadata returned by {@link #getFileStat(String)}
+     * @param offset the position of the first byte to read
+     * @param length the number of bytes to read
+     * @return the content of the range
      * @throws IOException if an I/O error occurs while downloading the file
      */
-    Resource download(String filename) throws IOException;
+    InputStream download(FileStat file, long offset, long length) throws IOException;
+
+    /**
+     * Signs a short-lived URL from which the client downloads a file of the current user straight from the
+     * storage, so the content does not pass through the application. The URL names the file as an attachment.
+     *
+     * @param fileName the name of the file
+     * @return the URL and the time it expires
+     * @throws FileNotFoundException if the file does not exist
+     * @throws IOException           if the URL cannot be signed
+     */
+    PresignedUrl getDownloadUrl(String fileName) throws IOException;
+
+    /**
+     * Resolves the files of the current user to be downloaded as an archive, with one query and no storage
+     * request, so a missing file is reported before any byte of the archive is sent.
+     *
+     * @param fileNames the names of the files
+     * @return the distinct files, in the order of the request
+     * @throws FileNotFoundException if the user has no file with one of the names
+     */
+    List<ArchiveEntry> getArchiveEntries(List<String> fileNames) throws FileNotFoundException;
+
+    /**
+     * Streams files as a ZIP archive, reading their content from the storage while the archive is written.
+     * Needs no current user, so it may run after the request thread has returned.
+     *
+     * @param entries      the files returned by {@link #getArchiveEntries(List)}
+     * @param outputStream the stream the archive is written to; it is not closed
+     * @throws IOException if a file cannot be read or the archive cannot be written
+     */
+    void writeArchive(List<ArchiveEntry> entries, OutputStream outputStream) throws IOException;
 
     /**
      * Deletes a file from the storage.
@@ -38,6 +136,15 @@ public interface FileStorageService {
      */
     void delete(String fileName) throws IOException;
 
+    /**
+     * Deletes several files of the current user in one transaction. Names the user has no file with are
+     * reported, not rejected.
+     *
+     * @param fileNames the names of the files to be deleted
+     * @return the outcome for every distinct name, in the order of the request
+     */
+    List<FileDeleteResult> delete(List<String> fileNames);
+
     /**
      * Renames a file in the storage.
      *
@@ -48,11 +155,13 @@ public interface FileStorageService {
     void editFileName(String newFileName, String oldFileName) throws IOException;
 
     /**
-     * Retrieves a list of files from the storage, limited by the specified count.
+     * Retrieves one page of the current user's files, limited by the specified count.
      *
-     * @param limit the maximum number of files to retrieve
-     * @return a list of FileDto objects representing the retrieved files
-     * @throws BadRequestException if the limit is less than or equal to zero
+     * @param limit  the maximum number of files to retrieve
+     * @param sort   the sort order of the listing
+     * @param cursor the cursor returned with the previous page, or null for the first page
+     * @return the page of files and the cursor of the next page, if any
+     * @throws BadRequestException if the limit is less than or equal to zero or the cursor is invalid
      */
-    List<Item> getFiles(int limit) throws BadRequestException;
+    FilePage getFiles(int limit, FileSort sort, String cursor) throws BadRequestException;
 }
@@ -0,0 +1,60 @@
+package abdulgazizov.dev.cloudstoragedemo.services;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.HexFormat;
+
+/**
+ * Keeps the refresh token issued to each user, so that a token is accepted only until it is replaced, expires
+ * or its user logs out. A user has one refresh token at a time; a new login replaces the previous one.
+ * <p>
+ * Tokens are kept as their SHA-256 digests, so the store holds no usable tokens.
+ */
+public interface RefreshTokenStore {
+    /**
+     * Saves the refresh token of a user, replacing the one saved before.
+     *
+     * @param username     the user the token is issued to
+     * @param refreshToken the token issued
+     * @param expiresAt    the moment the token expires and may be forgotten
+     */
+    void save(String username, String refreshToken, Instant expiresAt);
+
+    /**
+     * @return true if the token is the current, unexpired refresh token of the user
+     */
+    boolean contains(String username, String refreshToken);
+
+    /**
+     * Replaces the refresh token of a user, unless it has been replaced or removed in the meantime, so a
+     * token can be exchanged only once even if it is sent to several nodes at the same time.
+     *
+     * @param username        the user the tokens are issued to
+     * @param refreshToken    the token sent by the client
+     * @param newRefreshToken the token issued in its place
+     * @param expiresAt       the moment the new token expires
+     * @return true if the token was replaced, false if it is not the current token of the user
+     */
+    boolean replace(String username, String refreshToken, String newRefreshToken, Instant expiresAt);
+
+    /**
+     * Removes the refresh token of a user, if any.
+     *
+     * @param username the user who logs out
+     */
+    void remove(String username);
+
+    /**
+     * @return the hex SHA-256 digest the token is kept as
+     */
+    static String hash(String refreshToken) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(refreshToken.getBytes(StandardCharsets.US_ASCII)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package abdulgazizov.dev.cloudstoragedemo.services;
+
+import abdulgazizov.dev.cloudstoragedemo.dtos.PresignedUrl;
+import abdulgazizov.dev.cloudstoragedemo.entity.UploadSession;
+import io.minio.messages.Part;
+import org.apache.coyote.BadRequestException;
+
+import java.io.InputStream;
+import java.util.List;
+
+/**
+ * Service interface for resumable uploads. A session wraps a storage multipart upload: parts can be sent
+ * in any order and in parallel, re-sent after a failure, and the session survives application restarts.
+ * <p>
+ * A direct session has no multipart upload: the client writes the whole file to the storage with a presigned
+ * URL and completes the session, so the content never passes through the application.
+ */
+public interface UploadSessionService {
+    /**
+     * Starts a new upload session for the current user.
+     *
+     * @param fileName    the name of the file being uploaded
+     * @param contentType the content type of the file, may be null
+     * @return the created session
+     * @throws BadRequestException if the file name is empty
+     */
+    UploadSession create(String fileName, String contentType) throws BadRequestException;
+
+    /**
+     * Starts a new direct upload session for the current user.
+     *
+     * @param fileName    the name of the file being uploaded
+     * @param contentType the content type of the file, may be null
+     * @return the created session
+     * @throws BadRequestException if the file name is empty
+     */
+    UploadSession createDirect(String fileName, String contentType) throws BadRequestException;
+
+    /**
+     * Signs a short-lived URL to which the client writes the content of a direct session with one PUT request.
+     * A new URL may be requested while the session lasts, e.g. after the previous one has expired.
+     *
+     * @param sessionId the ID of the session
+     * @return the URL and the time it expires
+     * @throws BadRequestException if the session is not a direct session
+     */
+    PresignedUrl getUploadUrl(String sessionId) throws BadRequestException;
+
+    /**
+     * Retrieves an upload session of the current user.
+     *
+     * @param sessionId the ID of the session
+     * @return the session
+     */
+    UploadSession get(String sessionId);
+
+    /**
+     * Stores one part of the file. Sending the same part number again replaces the part.
+     *
+     * @param sessionId  the ID of the session
+     * @param partNumber the number of the part, from 1 to 10000
+     * @param data       the content of the part
+     * @param size       the size of the part in bytes
+     * @throws BadRequestException if the part number or size is invalid, or the session is a direct session
+     */
+    void uploadPart(String sessionId, int partNumber, InputStream data, long size) throws BadRequestException;
+
+    /**
+     * Lists the parts received so far.
+     *
+     * @param sessionId the ID of the session
+     * @return the received parts ordered by part number; none for a direct session
+     */
+    List<Part> getParts(String sessionId);
+
+    /**
+     * Assembles the received parts into the file and closes the session. A direct session records the object
+     * the client has written, with the size and entity tag reported by the storage.
+     *
+     * @param sessionId the ID of the session
+     * @return the name of the uploaded file
+     * @throws BadRequestException if no parts were received, or no object was written for a direct session
+     */
+    String complete(String sessionId) throws BadRequestException;
+
+    /**
+     * Discards the session and every part received.
+     *
+     * @param sessionId the ID of the session
+     */
+    void abort(String sessionId);
+}
@@ -1,22 +1,121 @@
 package abdulgazizov.dev.cloudstoragedemo.services;
 
+import abdulgazizov.dev.cloudstoragedemo.dtos.ArchiveEntry;
+import abdulgazizov.dev.cloudstoragedemo.dtos.FileLocation;
+import abdulgazizov.dev.cloudstoragedemo.dtos.FilePage;
+import abdulgazizov.dev.cloudstoragedemo.dtos.FileSort;
+import abdulgazizov.dev.cloudstoragedemo.dtos.StoredObject;
+import org.apache.coyote.BadRequestException;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
 /**
  * Service interface for managing the association between users and files.
  */
 public interface UserFileService {
     /**
-     * Associates a file with a user.
+     * Checks whether a user owns a file, with a single indexed lookup.
+     *
+     * @param id       the ID of the user
+     * @param fileName the name of the file
+     * @return true if the user has a file with this name
+     */
+    boolean hasFile(Long id, String fileName);
+
+    /**
+     * Reads where the content of a file is stored from the metadata index, without a storage request.
+     *
+     * @param id       the ID of the user
+     * @param fileName the name of the file
+     * @return the location of the content, if the user has the file
+     */
+    Optional<FileLocation> getFileLocation(Long id, String fileName);
+
+    /**
+     * Reads the files to be written to an archive from the metadata index, in one query.
+     *
+     * @param id        the ID of the user
+     * @param fileNames the names of the files
+     * @return the files the user has, in no particular order
+     */
+    List<ArchiveEntry> getArchiveEntries(Long id, Collection<String> fileNames);
+
+    /**
+     * Associates a file with a user and records its metadata in the listing index. The file refers to the
+     * blob with the same content if there is one, otherwise the stored object becomes a new blob. A file
+     * replaced by this one releases its blob.
      *
      * @param id       the ID of the user
      * @param fileName the name of the file to be associated with the user
+     * @param object   the object just stored for the file
+     * @return the key of the object the file refers to; if it is not the key of {@code object}, the
+     * content was already stored and {@code object} is not needed
+     */
+    String addFileToUser(Long id, String fileName, StoredObject object);
+
+    /**
+     * Associates several files with a user in one transaction, as {@link #addFileToUser} does for one.
+     *
+     * @param id      the ID of the user
+     * @param objects the objects just stored, by file name
+     * @return the keys of the objects the files refer to, by file name
      */
-    void addFileToUser(Long id, String fileName);
+    Map<String, String> addFilesToUser(Long id, Map<String, StoredObject> objects);
 
     /**
-     * Disassociates a file from a user.
+     * Disassociates a file from a user and releases its blob. The object is removed by
+     * {@link abdulgazizov.dev.cloudstoragedemo.storage.BlobCollector} once no file refers to it.
      *
      * @param id       the ID of the user
      * @param fileName the name of the file to be disassociated from the user
+     * @return true if the user had the file
+     */
+    boolean removeFileFromUser(Long id, String fileName);
+
+    /**
+     * Disassociates several files from a user in one transaction and releases their blobs.
+     *
+     * @param id        the ID of the user
+     * @param fileNames the names of the files
+     * @return the names of the files the user had
+     */
+    Set<String> removeFilesFromUser(Long id, Collection<String> fileNames);
+
+    /**
+     * Renames a file of a user, keeping its metadata and its object.
+     *
+     * @param id          the ID of the user
+     * @param oldFileName the current name of the file
+     * @param newFileName the new name of the file
+     * @return true if the user had the file
+     * @throws org.springframework.dao.DataIntegrityViolationException if the user already has a file with the new name
+     */
+    boolean renameFileOfUser(Long id, String oldFileName, String newFileName);
+
+    /**
+     * Retrieves one page of the user's files from the listing index using keyset pagination.
+     *
+     * @param id     the ID of the user
+     * @param limit  the maximum number of files on the page
+     * @param sort   the sort order
+     * @param cursor the cursor returned with the previous page, or null for the first page
+     * @return the page of files and the cursor of the next page, if any
+     * @throws BadRequestException if the cursor is malformed
+     */
+    FilePage getFilesOfUser(Long id, int limit, FileSort sort, String cursor) throws BadRequestException;
+
+    /**
+     * Brings the blob stored under a key, and the files referencing it, in line with the object the storage
+     * holds, which a client may have overwritten through a presigned URL.
+     *
+     * @param storageKey the key of the object
+     * @param size       the size of the object
+     * @param etag       the entity tag of the object
+     * @return true if a blob is stored under the key, false if the object belongs to no file
      */
-    void removeFileFromUser(Long id, String fileName);
+    boolean syncStoredObject(String storageKey, long size, String etag);
 }
@@ -2,12 +2,14 @@ package abdulgazizov.dev.cloudstoragedemo.services.impl;
 
 import abdulgazizov.dev.cloudstoragedemo.dtos.JwtRequest;
 import abdulgazizov.dev.cloudstoragedemo.entity.User;
+import abdulgazizov.dev.cloudstoragedemo.jwt.IssuedToken;
 import abdulgazizov.dev.cloudstoragedemo.jwt.JwtAuthentication;
 import abdulgazizov.dev.cloudstoragedemo.jwt.JwtProvider;
+import abdulgazizov.dev.cloudstoragedemo.jwt.TokenValidation;
 import abdulgazizov.dev.cloudstoragedemo.responses.JwtResponse;
 import abdulgazizov.dev.cloudstoragedemo.services.AuthService;
+import abdulgazizov.dev.cloudstoragedemo.services.RefreshTokenStore;
 import abdulgazizov.dev.cloudstoragedemo.services.UserService;
-import io.jsonwebtoken.Claims;
 import jakarta.security.auth.message.AuthException;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -15,15 +17,12 @@ import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
-
 @Slf4j
 @Service
 @RequiredArgsConstructor
 public class AuthServiceImpl implements AuthService {
     private final UserService userService;
-    private final Map<String, String> refreshStorage = new ConcurrentHashMap<>();
+    private final RefreshTokenStore refreshTokenStore;
     private final JwtProvider jwtProvider;
     private final PasswordEncoder passwordEncoder;
 
@@ -34,11 +33,11 @@ public class AuthServiceImpl implements AuthService {
         if (passwordEncoder.matches(request.getPassword(), user.getPassword())) {
             log.info("User authenticated successfully");
             final String accessToken = jwtProvider.generateAccessToken(user);
-            final String refreshToken = jwtProvider.generateRefreshToken(user);
-            refreshStorage.put(user.getUsername(), refreshToken);
+            final IssuedToken refreshToken = jwtProvider.generateRefreshToken(user);
+            refreshTokenStore.save(user.getUsername(), refreshToken.value(), refreshToken.expiresAt());
             log.debug("Generated access token: {}", accessToken);
-            log.debug("Generated refresh token: {}", refreshToken);
-            return new JwtResponse(accessToken, refreshToken);
+            log.debug("Generated refresh token: {}", refreshToken.value());
+            return new JwtResponse(accessToken, refreshToken.value());
         } else {
             log.warn("Invalid password for user {}", request.getLogin());
             throw new AuthException("Password is wrong");
@@ -48,19 +47,18 @@ public class AuthServiceImpl implements AuthService {
     public void logout() throws AuthException {
         log.debug("Received logout request");
         String username = getJwtAuthentication().getUsername();
-        refreshStorage.remove(username);
+        refreshTokenStore.remove(username);
         log.info("Refresh token removed from storage");
     }
 
     public JwtResponse getAccessToken(String refreshToken) throws AuthException {
         log.debug("Received request for new access token: {}", refreshToken);
         refreshToken = refreshToken.substring(7);
-        if (jwtProvider.validateRefreshToken(refreshToken)) {
+        final TokenValidation validation = jwtProvider.parseRefreshToken(refreshToken);
+        if (validation.isValid()) {
             log.info("Refresh token is valid");
-            final Claims claims = jwtProvider.getRefreshClaims(refreshToken);
-            final String username = claims.getSubject();
-            final String saveRefreshToken = refreshStorage.get(username);
-            if (saveRefreshToken != null && saveRefreshToken.equals(refreshToken)) {
+            final String username = validation.claims().getSubject();
+            if (refreshTokenStore.contains(username, refreshToken)) {
                 log.info("Generating new access token for user {}", username);
                 final User user = userService.getByUsername(username);
                 final String accessToken = jwtProvider.generateAccessToken(user);
@@ -78,20 +76,19 @@ public class AuthServiceImpl implements AuthService {
     public JwtResponse refresh(String refreshToken) throws AuthException {
         log.debug("Received refresh token request: {}", refreshToken);
         refreshToken = refreshToken.substring(7);
-        if (jwtProvider.validateRefreshToken(refreshToken)) {
+        final TokenValidation validation = jwtProvider.parseRefreshToken(refreshToken);
+        if (validation.isValid()) {
             log.info("Refresh token is valid");
-            final Claims claims = jwtProvider.getRefreshClaims(refreshToken);
-            final String username = claims.getSubject();
-            final String saveRefreshToken = refreshStorage.get(username);
-            if (saveRefreshToken != null && saveRefreshToken.equals(refreshToken)) {
+            final String username = validation.claims().getSubject();
+            final User user = userService.getByUsername(username);
+            final IssuedToken newRefreshToken = jwtProvider.generateRefreshToken(user);
+            // the token is exchanged only if no other request has exchanged it first
+            if (refreshTokenStore.replace(username, refreshToken, newRefreshToken.value(), newRefreshToken.expiresAt())) {
                 log.info("Generating new access token and refresh token for user {}", username);
-                final User user = userService.getByUsername(username);
                 final String accessToken = jwtProvider.generateAccessToken(user);
-                final String newRefreshToken = jwtProvider.generateRefreshToken(user);
-                refreshStorage.put(username, newRefreshToken);
                 log.debug("Generated new access token: {}", accessToken);
-                log.debug("Generated new refresh token: {}", newRefreshToken);
-                return new JwtResponse(accessToken, newRefreshToken);
+                log.debug("Generated new refresh token: {}", newRefreshToken.value());
+                return new JwtResponse(accessToken, newRefreshToken.value());
             }
         }
         log.warn("Invalid refresh token: {}", refreshToken);
@@ -0,0 +1,69 @@
+package abdulgazizov.dev.cloudstoragedemo.services.impl;
+
+import abdulgazizov.dev.cloudstoragedemo.repositories.RefreshTokenRepository;
+import abdulgazizov.dev.cloudstoragedemo.services.RefreshTokenStore;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Keeps refresh tokens in the database, so every node of the auth tier accepts a token issued by any other
+ * and a logout on one node revokes the token on all of them. Each operation is a single statement on the
+ * primary key; expired tokens are deleted in batches by a scheduled job.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "jwt.refresh-store.type", havingValue = "database", matchIfMissing = true)
+public class DatabaseRefreshTokenStore implements RefreshTokenStore {
+    private static final int CLEANUP_BATCH_SIZE = 1000;
+
+    private final RefreshTokenRepository refreshTokenRepository;
+
+    @Override
+    public void save(String username, String refreshToken, Instant expiresAt) {
+        refreshTokenRepository.upsert(username, RefreshTokenStore.hash(refreshToken), expiresAt);
+    }
+
+    @Override
+    public boolean contains(String username, String refreshToken) {
+        return refreshTokenRepository.existsByUsernameAndTokenHashAndExpiresAtAfter(
+                username, RefreshTokenStore.hash(refreshToken), Instant.now());
+    }
+
+    @Override
+    public boolean replace(String username, String refreshToken, String newRefreshToken, Instant expiresAt) {
+        return refreshTokenRepository.replace(username, RefreshTokenStore.hash(refreshToken),
+                RefreshTokenStore.hash(newRefreshToken), expiresAt, Instant.now()) == 1;
+    }
+
+    @Override
+    public void remove(String username) {
+        refreshTokenRepository.deleteByUsername(username);
+    }
+
+    /**
+     * Deletes expired tokens, one short transaction per batch, so the job never holds many row locks at once.
+     */
+    @Scheduled(fixedDelayString = "${jwt.refresh-store.cleanup-interval}")
+    public void removeExpired() {
+        Instant now = Instant.now();
+        long removed = 0;
+        List<String> expired;
+        do {
+            expired = refreshTokenRepository.findExpired(now, Limit.of(CLEANUP_BATCH_SIZE));
+            if (!expired.isEmpty()) {
+                removed += refreshTokenRepository.deleteExpired(expired, now);
+            }
+        } while (expired.size() == CLEANUP_BATCH_SIZE);
+        if (removed > 0) {
+            log.info("Removed {} expired refresh tokens", removed);
+        }
+    }
+}
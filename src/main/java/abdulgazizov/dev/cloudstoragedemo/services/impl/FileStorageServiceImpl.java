@@ -1,20 +1,40 @@
 package abdulgazizov.dev.cloudstoragedemo.services.impl;
 
-import abdulgazizov.dev.cloudstoragedemo.entity.User;
+import abdulgazizov.dev.cloudstoragedemo.dtos.ArchiveEntry;
+import abdulgazizov.dev.cloudstoragedemo.dtos.FileContent;
+import abdulgazizov.dev.cloudstoragedemo.dtos.FileDeleteResult;
+import abdulgazizov.dev.cloudstoragedemo.dtos.FileLocation;
+import abdulgazizov.dev.cloudstoragedemo.dtos.FilePage;
+import abdulgazizov.dev.cloudstoragedemo.dtos.FileSort;
+import abdulgazizov.dev.cloudstoragedemo.dtos.FileStat;
+import abdulgazizov.dev.cloudstoragedemo.dtos.FileUploadResult;
+import abdulgazizov.dev.cloudstoragedemo.dtos.PresignedUrl;
+import abdulgazizov.dev.cloudstoragedemo.dtos.StoredObject;
+import abdulgazizov.dev.cloudstoragedemo.exceptions.FileNotModifiedException;
 import abdulgazizov.dev.cloudstoragedemo.exceptions.FileUploadException;
+import abdulgazizov.dev.cloudstoragedemo.exceptions.RangeNotSatisfiableException;
 import abdulgazizov.dev.cloudstoragedemo.properties.MinioProperties;
+import abdulgazizov.dev.cloudstoragedemo.properties.UploadProperties;
 import abdulgazizov.dev.cloudstoragedemo.services.AuthService;
 import abdulgazizov.dev.cloudstoragedemo.services.FileStorageService;
 import abdulgazizov.dev.cloudstoragedemo.services.UserFileService;
-import abdulgazizov.dev.cloudstoragedemo.services.UserService;
-import io.minio.*;
-import io.minio.messages.Item;
+import abdulgazizov.dev.cloudstoragedemo.storage.ArchiveWriter;
+import abdulgazizov.dev.cloudstoragedemo.storage.CountingInputStream;
+import abdulgazizov.dev.cloudstoragedemo.storage.LazyInputStream;
+import abdulgazizov.dev.cloudstoragedemo.storage.ObjectCache;
+import abdulgazizov.dev.cloudstoragedemo.storage.ObjectCache.CachedObject;
+import abdulgazizov.dev.cloudstoragedemo.storage.ObjectKeys;
+import abdulgazizov.dev.cloudstoragedemo.storage.ObjectStorage;
+import io.minio.GetObjectResponse;
+import io.minio.StatObjectResponse;
+import io.minio.http.Method;
 import lombok.RequiredArgsConstructor;
-import lombok.SneakyThrows;
 import lombok.extern.slf4j.Slf4j;
+import okhttp3.Headers;
 import org.apache.coyote.BadRequestException;
-import org.springframework.core.io.InputStreamResource;
-import org.springframework.core.io.Resource;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.multipart.MultipartFile;
@@ -22,27 +42,51 @@ import org.springframework.web.multipart.MultipartFile;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.NoSuchFileException;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
 import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
 
 @Slf4j
 @Service
 @RequiredArgsConstructor
 public class FileStorageServiceImpl implements FileStorageService {
-    private final MinioClient minioClient;
+    private static final int MAX_LIST_LIMIT = 1000;
+    private static final int MAX_MULTIPART_PARTS = 10000;
+    private final ObjectStorage objectStorage;
+    private final ObjectCache objectCache;
+    private final ArchiveWriter archiveWriter;
     private final MinioProperties minioProperties;
-    private final UserService userService;
+    private final UploadProperties uploadProperties;
     private final UserFileService userFileService;
     private final AuthService authService;
 
     @Override
-    @Transactional
     public String upload(MultipartFile file, String fileName) {
         log.debug("Uploading file: {}, filename: {}", file.getOriginalFilename(), fileName);
         Long id = authService.getJwtAuthentication().getId();
-        createBucket();
+        ensureBucket();
 
         if (file.isEmpty() || file.getOriginalFilename() == null || file.getOriginalFilename().isEmpty()) {
             log.warn("File is empty");
@@ -53,75 +97,220 @@ public class FileStorageServiceImpl implements FileStorageService {
             fileName = generateFileName(file);
         }
 
+        StoredObject stored;
         try (InputStream inputStream = file.getInputStream()) {
-            saveFile(inputStream, fileName);
+            stored = saveFile(inputStream, file.getSize(), file.getContentType());
         } catch (IOException e) {
             log.error("Error reading file input stream: {}", e.getMessage(), e);
             throw new FileUploadException("File upload failed: " + e.getMessage());
         }
 
-        userFileService.addFileToUser(id, fileName);
+        addFileToUser(id, fileName, stored);
         log.info("File uploaded successfully: {}", fileName);
         return fileName;
     }
 
     @Override
-    @Transactional(readOnly = true)
-    @SneakyThrows
-    public List<Item> getFiles(int limit) throws BadRequestException {
-        log.debug("Getting files with limit: {}", limit);
+    public String upload(InputStream inputStream, long size, String fileName, String contentType) {
+        log.debug("Streaming upload: filename: {}, size: {}", fileName, size);
         Long id = authService.getJwtAuthentication().getId();
-        User user = userService.getById(id);
+        ensureBucket();
 
-        if (limit <= 0) {
-            log.warn("Limit must be greater than 0, received: {}", limit);
-            throw new BadRequestException("Limit must be greater than 0");
+        if (Objects.isNull(fileName) || fileName.isEmpty()) {
+            fileName = UUID.randomUUID().toString();
         }
-        List<Item> files = new ArrayList<>();
+
+        StoredObject stored;
         try {
-            Iterable<Result<Item>> items = minioClient.listObjects(ListObjectsArgs.builder()
-                    .bucket(minioProperties.bucketName())
-                    .build());
+            stored = saveFile(inputStream, size, contentType);
+        } catch (IOException e) {
+            log.error("Error streaming file: {}", e.getMessage(), e);
+            throw new FileUploadException("File upload failed: " + e.getMessage());
+        }
 
-            int count = 0;
+        addFileToUser(id, fileName, stored);
+        log.info("File uploaded successfully: {}, size: {}", fileName, stored.size());
+        return fileName;
+    }
 
-            for (Result<Item> item : items) {
-                if (count >= limit) {
-                    break;
+    @Override
+    public List<FileUploadResult> upload(List<MultipartFile> files) {
+        log.debug("Uploading {} files", files.size());
+        Long id = authService.getJwtAuthentication().getId();
+        if (files.size() > uploadProperties.batchMaxFiles()) {
+            log.warn("Too many files: {}", files.size());
+            throw new FileUploadException("Too many files: at most " + uploadProperties.batchMaxFiles() + " per request");
+        }
+        ensureBucket();
+
+        String[] errors = new String[files.size()];
+        List<Future<StoredObject>> writes = new ArrayList<>(files.size());
+        Set<String> fileNames = new HashSet<>();
+        // virtual threads wait for the storage cheaply; the permits bound how many writes run at once
+        Semaphore permits = new Semaphore(uploadProperties.batchParallelism());
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < files.size(); i++) {
+                MultipartFile file = files.get(i);
+                String fileName = file.getOriginalFilename();
+                if (file.isEmpty() || fileName == null || fileName.isEmpty()) {
+                    errors[i] = "File is empty";
+                } else if (!fileNames.add(fileName)) {
+                    errors[i] = "Duplicate file name";
                 }
-                Item fileItem = item.get();
-
-                if (user.getFiles().contains(fileItem.objectName())) {
-                    files.add(fileItem);
-                    count++;
+                if (errors[i] != null) {
+                    writes.add(null);
+                    continue;
                 }
+                permits.acquireUninterruptibly();
+                writes.add(executor.submit(() -> {
+                    try (InputStream inputStream = file.getInputStream()) {
+                        return saveFile(inputStream, file.getSize(), file.getContentType());
+                    } finally {
+                        permits.release();
+                    }
+                }));
             }
-        } catch (Exception e) {
-            log.error("Error retrieving file list: {}", e.getMessage(), e);
-            throw new RuntimeException("Failed to retrieve files: " + e.getMessage(), e);
         }
-        log.info("Files retrieved successfully, count: {}", files.size());
-        return files;
+
+        Map<String, StoredObject> stored = new LinkedHashMap<>();
+        for (int i = 0; i < files.size(); i++) {
+            Future<StoredObject> write = writes.get(i);
+            if (write == null) {
+                continue;
+            }
+            if (write.state() == Future.State.SUCCESS) {
+                stored.put(files.get(i).getOriginalFilename(), write.resultNow());
+            } else {
+                log.error("Error uploading file {}: {}", files.get(i).getOriginalFilename(), write.exceptionNow().getMessage());
+                errors[i] = "File upload failed: " + write.exceptionNow().getMessage();
+            }
+        }
+        if (!stored.isEmpty()) {
+            addFilesToUser(id, stored);
+        }
+
+        List<FileUploadResult> results = new ArrayList<>(files.size());
+        for (int i = 0; i < files.size(); i++) {
+            results.add(new FileUploadResult(files.get(i).getOriginalFilename(), errors[i] == null, errors[i]));
+        }
+        log.info("Files uploaded: {} of {}", stored.size(), files.size());
+        return results;
     }
 
     @Override
-    @Transactional
-    public Resource download(String fileName) throws IOException {
-        log.debug("Downloading file: {}", fileName);
+    @Transactional(readOnly = true)
+    public FilePage getFiles(int limit, FileSort sort, String cursor) throws BadRequestException {
+        log.debug("Getting files with limit: {}, sort: {}", limit, sort);
+        Long id = authService.getJwtAuthentication().getId();
+
+        if (limit <= 0) {
+            log.warn("Limit must be greater than 0, received: {}", limit);
+            throw new BadRequestException("Limit must be greater than 0");
+        }
+        FilePage page = userFileService.getFilesOfUser(id, Math.min(limit, MAX_LIST_LIMIT), sort, cursor);
+        log.info("Files retrieved successfully, count: {}", page.getFiles().size());
+        return page;
+    }
+
+    @Override
+    public FileStat getFileStat(String fileName) throws IOException {
+        log.debug("Getting file stat: {}", fileName);
+        Long id = authService.getJwtAuthentication().getId();
+        FileLocation location = locate(id, fileName);
+        Optional<CachedObject> cached = objectCache.get(location.storageKey(), location.checksum());
+        if (cached.isPresent()) {
+            // the entry is shared by all files of the object and carries the name it was cached under
+            return cached.get().file().withFileName(fileName);
+        }
         try {
-            findObject(fileName);
+            StatObjectResponse response = objectStorage.stat(location.storageKey());
+            return new FileStat(fileName, response.size(), response.etag(), response.lastModified().toInstant(),
+                    location.storageKey());
+        } catch (FileNotFoundException e) {
+            log.warn("File not found: {}", fileName);
+            throw new FileNotFoundException("File not found: " + fileName);
+        }
+    }
 
-            InputStream inputStream = minioClient.getObject(GetObjectArgs.builder()
-                    .bucket(minioProperties.bucketName())
-                    .object(fileName)
-                    .build());
+    @Override
+    public FileContent download(String fileName, Long offset, Long length, String ifNoneMatch, Instant ifModifiedSince) throws IOException {
+        log.debug("Downloading file: {}, offset: {}, length: {}", fileName, offset, length);
+        Long id = authService.getJwtAuthentication().getId();
+        FileLocation location = locate(id, fileName);
+        String objectKey = location.storageKey();
+        Optional<CachedObject> cached = objectCache.get(objectKey, location.checksum());
+        if (cached.isPresent()) {
+            try {
+                return downloadCached(fileName, cached.get(), offset, length, ifNoneMatch, ifModifiedSince);
+            } catch (NoSuchFileException e) {
+                log.debug("Cached file evicted before it was opened, downloading from storage: {}", fileName);
+            }
+        }
+        GetObjectResponse response;
+        try {
+            response = objectStorage.get(objectKey, args -> {
+                if (offset != null) {
+                    args.offset(offset);
+                    if (length != null) {
+                        args.length(length);
+                    }
+                }
+                if (ifNoneMatch != null) {
+                    args.notMatchETag(ifNoneMatch);
+                } else if (ifModifiedSince != null) {
+                    args.modifiedSince(ZonedDateTime.ofInstant(ifModifiedSince, ZoneOffset.UTC));
+                }
+                return args;
+            });
+        } catch (FileNotFoundException e) {
+            log.warn("File not found: {}", fileName);
+            throw new FileNotFoundException("File not found: " + fileName);
+        } catch (FileNotModifiedException e) {
+            log.debug("File not modified: {}", fileName);
+            throw new FileNotModifiedException("File not modified: " + fileName, ifNoneMatch);
+        } catch (RangeNotSatisfiableException e) {
+            log.debug("Range not satisfiable for file: {}", fileName);
+            throw new RangeNotSatisfiableException("Range not satisfiable: " + fileName, getFileStat(fileName).size());
+        }
+        FileContent content = cache(objectKey, toFileContent(fileName, objectKey, response));
+        log.info("File downloaded successfully: {}", fileName);
+        return content;
+    }
 
-            log.info("File downloaded successfully: {}", fileName);
-            return new InputStreamResource(inputStream);
-        } catch (Exception e) {
-            log.error("Error downloading file: {}", e.getMessage(), e);
-            throw new IOException("Failed to download file: " + e.getMessage(), e);
+    @Override
+    public InputStream download(FileStat file, long offset, long length) throws IOException {
+        log.debug("Downloading file: {}, offset: {}, length: {}", file.fileName(), offset, length);
+        // the file was resolved by getFileStat; looking it up by name again could find another file
+        String objectKey = file.storageKey();
+        Optional<CachedObject> cached = objectCache.get(objectKey, file.etag());
+        if (cached.isPresent()) {
+            try {
+                InputStream inputStream = objectCache.open(cached.get(), offset, length);
+                log.info("File downloaded from cache: {}", file.fileName());
+                return inputStream;
+            } catch (NoSuchFileException e) {
+                log.debug("Cached file evicted before it was opened, downloading from storage: {}", file.fileName());
+            }
+        }
+        if (objectCache.fitsInMemory(file)) {
+            // a small object is read whole, so the other ranges of a multipart download are served from memory
+            byte[] content;
+            try (InputStream inputStream = objectStorage.get(objectKey, args -> args.matchETag(file.etag()))) {
+                content = inputStream.readAllBytes();
+            }
+            log.info("File downloaded successfully: {}", file.fileName());
+            return objectCache.open(objectCache.putInMemory(objectKey, file, content), offset, length);
         }
+        InputStream inputStream = objectStorage.get(objectKey, args -> {
+            args.matchETag(file.etag());
+            if (offset > 0 || length < file.size()) {
+                args.offset(offset).length(length);
+            }
+            return args;
+        });
+        objectCache.admit(objectKey, file);
+        log.info("File downloaded successfully: {}", file.fileName());
+        return inputStream;
     }
 
     @Override
@@ -129,136 +318,300 @@ public class FileStorageServiceImpl implements FileStorageService {
     public void delete(String fileName) throws IOException {
         log.debug("Deleting file: {}", fileName);
         Long id = authService.getJwtAuthentication().getId();
-        User user = userService.getById(id);
-        checkUserHasFile(user, fileName);
-        try {
-            findObject(fileName);
-            removeFile(fileName);
+        // the object is shared with other files of the same content and removed once none is left
+        if (!userFileService.removeFileFromUser(id, fileName)) {
+            log.warn("File not found: User {} does not own the file {}", id, fileName);
+            throw new FileNotFoundException("File not found: " + fileName);
+        }
+        log.info("File deleted successfully: {}", fileName);
+    }
+
+
+    @Override
+    public List<FileDeleteResult> delete(List<String> fileNames) {
+        log.debug("Deleting {} files", fileNames.size());
+        Long id = authService.getJwtAuthentication().getId();
+        List<String> distinct = fileNames.stream().distinct().toList();
+        Set<String> removed = userFileService.removeFilesFromUser(id, distinct);
+        log.info("Files deleted: {} of {}", removed.size(), distinct.size());
+        return distinct.stream()
+                .map(fileName -> new FileDeleteResult(fileName, removed.contains(fileName)))
+                .toList();
+    }
+
+    @Override
+    public PresignedUrl getDownloadUrl(String fileName) throws IOException {
+        log.debug("Signing download URL for file: {}", fileName);
+        Long id = authService.getJwtAuthentication().getId();
+        FileLocation location = locate(id, fileName);
+        Instant expiresAt = Instant.now().plus(minioProperties.presignedUrlTtl());
+        // объекты хранятся под ключами блобов, поэтому имя файла для сохранения передаётся в подписанном параметре
+        String url = objectStorage.presign(Method.GET, location.storageKey(), minioProperties.presignedUrlTtl(),
+                Map.of("response-content-disposition",
+                        ContentDisposition.attachment().filename(fileName, StandardCharsets.UTF_8).build().toString()));
+        log.info("Download URL signed for file: {}", fileName);
+        return new PresignedUrl(url, expiresAt);
+    }
 
-            userFileService.removeFileFromUser(id, fileName);
-            log.info("File deleted successfully: {}", fileName);
-        } catch (Exception e) {
-            log.error("Error deleting file: {}", e.getMessage(), e);
-            throw new IOException("Error deleting file: " + e.getMessage());
+    @Override
+    public List<ArchiveEntry> getArchiveEntries(List<String> fileNames) throws FileNotFoundException {
+        log.debug("Resolving {} files for archive", fileNames.size());
+        Long id = authService.getJwtAuthentication().getId();
+        List<String> distinct = fileNames.stream().distinct().toList();
+        Map<String, ArchiveEntry> found = new HashMap<>();
+        for (ArchiveEntry entry : userFileService.getArchiveEntries(id, distinct)) {
+            found.put(entry.fileName(), entry);
         }
+        List<ArchiveEntry> entries = new ArrayList<>(distinct.size());
+        for (String fileName : distinct) {
+            ArchiveEntry entry = found.get(fileName);
+            if (entry == null) {
+                log.warn("File not found: User {} does not own the file {}", id, fileName);
+                throw new FileNotFoundException("File not found: " + fileName);
+            }
+            entries.add(entry);
+        }
+        return entries;
     }
 
+    @Override
+    public void writeArchive(List<ArchiveEntry> entries, OutputStream outputStream) throws IOException {
+        archiveWriter.write(entries, outputStream);
+    }
 
     @Override
-    @Transactional
     public void editFileName(String newFileName, String oldFileName) throws IOException {
         log.debug("Renaming file: oldFilename={}, newFilename={}", oldFileName, newFileName);
         Long id = authService.getJwtAuthentication().getId();
-        User user = userService.getById(id);
+
+        // объект файла не зависит от имени, поэтому переименование - один UPDATE без запросов к хранилищу;
+        // наличие файлов проверяет сам запрос и уникальный индекс
+        boolean renamed;
         try {
-            checkUserHasFile(user, oldFileName); // проеверка на наличие файла у пользователя
-            findObject(oldFileName); // проверка на наличие старого файла
-            checkObjectDoesNotExist(newFileName); // проверка на отсутствие нового файла
+            renamed = userFileService.renameFileOfUser(id, oldFileName, newFileName);
+        } catch (DataIntegrityViolationException e) {
+            log.warn("File already exists: {}", newFileName);
+            throw new FileUploadException("File already exists: " + newFileName);
+        }
+        if (!renamed) {
+            log.warn("File not found: User {} does not own the file {}", id, oldFileName);
+            throw new FileNotFoundException("File not found: " + oldFileName);
+        }
 
-            userFileService.addFileToUser(id, newFileName); // добавляем информацию о новом файле пользователю
-            userFileService.removeFileFromUser(id, oldFileName); // удаляем информацию о старом файле у пользователя
+        log.info("File renamed successfully from {} to {}", oldFileName, newFileName);
+    }
 
-            copyObject(oldFileName, newFileName); // копируем файл с новым именем
-            removeFile(oldFileName); // удаляем старый файл
+    /**
+     * Looks up where the content of a file is stored. The location carries the entity tag of the object,
+     * which validates a copy in the local cache.
+     *
+     * @param id       the ID of the user
+     * @param fileName the name of the file
+     * @return the location of the content
+     * @throws FileNotFoundException if the user does not own the file
+     */
+    private FileLocation locate(Long id, String fileName) throws FileNotFoundException {
+        return userFileService.getFileLocation(id, fileName).orElseThrow(() -> {
+            log.warn("File not found: User {} does not own the file {}", id, fileName);
+            return new FileNotFoundException("File not found: " + fileName);
+        });
+    }
 
-            log.info("File renamed successfully from {} to {}", oldFileName, newFileName);
-        } catch (Exception e) {
-            log.error("Error renaming file: {}", e.getMessage(), e);
-            throw new IOException("Failed to rename file: " + e.getMessage(), e);
+    /**
+     * Records an uploaded file. If its content was already stored, the file refers to the existing blob
+     * and the object just written is removed again.
+     *
+     * @param id       the ID of the user
+     * @param fileName the name of the file
+     * @param stored   the object written for the file
+     */
+    private void addFileToUser(Long id, String fileName, StoredObject stored) {
+        String storageKey;
+        try {
+            storageKey = userFileService.addFileToUser(id, fileName, stored);
+        } catch (RuntimeException e) {
+            removeQuietly(stored.storageKey());
+            throw e;
+        }
+        if (!stored.storageKey().equals(storageKey)) {
+            log.debug("Content of {} is already stored as {}", fileName, storageKey);
+            removeQuietly(stored.storageKey());
         }
     }
 
     /**
-     * Checks if a file does not exist in the bucket.
+     * Records several uploaded files at once, removing the objects of content that was already stored.
      *
-     * @param fileName the name of the file to check
-     * @throws FileUploadException if the file already exists
+     * @param id     the ID of the user
+     * @param stored the objects written for the files, by file name
      */
-    @SneakyThrows
-    private void checkObjectDoesNotExist(String fileName) {
+    private void addFilesToUser(Long id, Map<String, StoredObject> stored) {
+        Map<String, String> storageKeys;
+        try {
+            storageKeys = userFileService.addFilesToUser(id, stored);
+        } catch (RuntimeException e) {
+            removeAllQuietly(stored.values().stream().map(StoredObject::storageKey).toList());
+            throw e;
+        }
+        removeAllQuietly(stored.entrySet().stream()
+                .filter(entry -> !entry.getValue().storageKey().equals(storageKeys.get(entry.getKey())))
+                .map(entry -> entry.getValue().storageKey())
+                .toList());
+    }
+
+    private void removeAllQuietly(List<String> objectKeys) {
+        if (objectKeys.isEmpty()) {
+            return;
+        }
+        try {
+            objectStorage.removeAll(objectKeys);
+        } catch (IOException e) {
+            log.warn("Failed to remove {} objects: {}", objectKeys.size(), e.getMessage());
+        }
+    }
+
+    private void removeQuietly(String objectKey) {
         try {
-            minioClient.statObject(StatObjectArgs.builder()
-                    .bucket(minioProperties.bucketName())
-                    .object(fileName)
-                    .build());
-            log.warn("File already exists: {}", fileName);
-            throw new FileUploadException("File already exists: " + fileName);
-        } catch (Exception e) {
-            log.debug("File does not exist: {}", fileName);
+            objectStorage.remove(objectKey);
+        } catch (IOException e) {
+            log.warn("Failed to remove object {}: {}", objectKey, e.getMessage());
         }
     }
 
     /**
-     * Copies an object in the MinIO bucket.
+     * Offers a download from the storage to the local cache. A small object read whole is read into
+     * memory and served from there; any other object counts towards its admission to the disk cache.
      *
-     * @param oldFileName the name of the source file
-     * @param newFileName the name of the destination file
+     * @param objectKey the key of the object
+     * @param content   the content read from the storage
+     * @return the content to serve
      */
-    @SneakyThrows
-    private void copyObject(String oldFileName, String newFileName) {
-        minioClient.copyObject(CopyObjectArgs.builder()
-                .bucket(minioProperties.bucketName())
-                .source(CopySource.builder()
-                        .bucket(minioProperties.bucketName())
-                        .object(oldFileName)
-                        .build())
-                .object(newFileName)
-                .build());
+    private FileContent cache(String objectKey, FileContent content) throws IOException {
+        FileStat file = content.file();
+        if (content.length() != file.size() || !objectCache.fitsInMemory(file)) {
+            objectCache.admit(objectKey, file);
+            return content;
+        }
+        byte[] bytes;
+        try (InputStream inputStream = content.content()) {
+            bytes = inputStream.readAllBytes();
+        }
+        CachedObject cached = objectCache.putInMemory(objectKey, file, bytes);
+        return new FileContent(file, 0, bytes.length, objectCache.open(cached, 0, bytes.length));
     }
 
     /**
-     * Checks if a user owns a file.
+     * Serves a download from the local cache, evaluating the preconditions and the range as the
+     * storage would.
+     */
+    private FileContent downloadCached(String fileName, CachedObject cached, Long offset, Long length,
+                                       String ifNoneMatch, Instant ifModifiedSince) throws IOException {
+        FileStat file = cached.file().withFileName(fileName);
+        boolean notModified = ifNoneMatch != null
+                ? ifNoneMatch.equals(file.etag())
+                : ifModifiedSince != null && file.lastModified().getEpochSecond() <= ifModifiedSince.getEpochSecond();
+        if (notModified) {
+            log.debug("File not modified: {}", file.fileName());
+            throw new FileNotModifiedException("File not modified: " + file.fileName(), file.etag());
+        }
+        long start = offset == null ? 0 : offset;
+        if (offset != null && start >= file.size()) {
+            log.debug("Range not satisfiable for file: {}", file.fileName());
+            throw new RangeNotSatisfiableException("Range not satisfiable: " + file.fileName(), file.size());
+        }
+        long available = file.size() - start;
+        long contentLength = length == null ? available : Math.min(length, available);
+        if (cached.path() == null) {
+            InputStream content = objectCache.open(cached, start, contentLength);
+            log.info("File downloaded from cache: {}", file.fileName());
+            return new FileContent(file, start, contentLength, content);
+        }
+        // the file is pinned, so it can be handed to sendfile and is opened only if the content is read
+        CachedObject pinned = objectCache.pin(cached);
+        log.info("File downloaded from cache: {}", file.fileName());
+        return new FileContent(file, start, contentLength,
+                new LazyInputStream(() -> objectCache.open(pinned, start, contentLength)), pinned.path());
+    }
+
+    /**
+     * Reads the file metadata from the headers of a download response.
      *
-     * @param user     the user
-     * @param fileName the name of the file to check
-     * @throws FileNotFoundException if the user does not own the file
+     * @param fileName  the name of the file
+     * @param objectKey the key of the object downloaded
+     * @param response  the download response
+     * @return the content of the response with the metadata of the whole file
      */
-    private void checkUserHasFile(User user, String fileName) throws FileNotFoundException {
-        if (!user.getFiles().contains(fileName)) {
-            log.warn("File not found: User {} does not own the file {}", user.getUsername(), fileName);
-            throw new FileNotFoundException("File not found: " + fileName);
+    private FileContent toFileContent(String fileName, String objectKey, GetObjectResponse response) {
+        Headers headers = response.headers();
+        String etag = headers.get(HttpHeaders.ETAG);
+        if (etag != null && etag.length() > 1 && etag.startsWith("\"") && etag.endsWith("\"")) {
+            etag = etag.substring(1, etag.length() - 1);
         }
+        Date lastModified = headers.getDate(HttpHeaders.LAST_MODIFIED);
+        String contentRange = headers.get(HttpHeaders.CONTENT_RANGE);
+        long offset = 0;
+        long length;
+        long size;
+        if (contentRange != null) {
+            // bytes <first>-<last>/<size>
+            String[] range = contentRange.substring(contentRange.indexOf(' ') + 1).split("[-/]");
+            offset = Long.parseLong(range[0]);
+            length = Long.parseLong(range[1]) - offset + 1;
+            size = Long.parseLong(range[2]);
+        } else {
+            length = Long.parseLong(Objects.requireNonNull(headers.get(HttpHeaders.CONTENT_LENGTH)));
+            size = length;
+        }
+        FileStat file = new FileStat(fileName, size, etag, lastModified == null ? null : lastModified.toInstant(), objectKey);
+        return new FileContent(file, offset, length, response);
     }
 
     /**
-     * Creates a bucket in the MinIO storage if it does not already exist.
+     * Makes sure the bucket exists in the MinIO storage. Free unless the bucket has gone missing.
      *
      * @throws FileUploadException if an error occurs during bucket creation
      */
-    @SneakyThrows
-    private void createBucket() {
-        log.debug("Creating bucket: {}", minioProperties.bucketName());
+    private void ensureBucket() {
         try {
-            boolean found = minioClient.bucketExists(BucketExistsArgs.builder()
-                    .bucket(minioProperties.bucketName())
-                    .build());
-            if (!found) {
-                minioClient.makeBucket(MakeBucketArgs.builder()
-                        .bucket(minioProperties.bucketName())
-                        .build());
-                log.info("Bucket created: {}", minioProperties.bucketName());
-            }
-        } catch (Exception e) {
+            objectStorage.ensureBucket();
+        } catch (IOException e) {
             log.error("Error creating bucket: {}", e.getMessage(), e);
             throw new FileUploadException("File upload failed: " + e.getMessage());
         }
     }
 
     /**
-     * Saves a file to the MinIO storage.
+     * Saves a file to the MinIO storage under a new key. Files larger than one part are sent as a
+     * multipart upload, so at most one part of the file is held in memory. The content is hashed and
+     * counted while it is sent.
      *
      * @param inputStream the input stream of the file
-     * @param fileName    the name of the file to save
-     * @throws Exception if an error occurs during file saving
+     * @param size        the size of the file in bytes, or -1 if unknown
+     * @param contentType the content type of the file, may be null
+     * @return the stored object with the size and SHA-256 of the content that was read
+     * @throws IOException if an error occurs during file saving
      */
-    @SneakyThrows
-    private void saveFile(InputStream inputStream, String fileName) {
-        log.debug("Saving file: {}", fileName);
-        minioClient.putObject(PutObjectArgs.builder()
-                .stream(inputStream, inputStream.available(), -1)
-                .bucket(minioProperties.bucketName())
-                .object(fileName)
-                .build());
+    private StoredObject saveFile(InputStream inputStream, long size, String contentType) throws IOException {
+        String objectKey = ObjectKeys.newBlob();
+        log.debug("Saving file: {}", objectKey);
+        long partSize = minioProperties.uploadPartSize();
+        if (size > 0) {
+            // MinIO accepts at most 10000 parts, so very large files need larger parts
+            partSize = Math.max(partSize, Math.ceilDiv(size, MAX_MULTIPART_PARTS));
+        }
+        MessageDigest digest = sha256();
+        CountingInputStream countingStream = new CountingInputStream(new DigestInputStream(inputStream, digest));
+        String etag = objectStorage.put(objectKey, countingStream, size, partSize, contentType);
+        return new StoredObject(objectKey, countingStream.getCount(), contentType, etag,
+                HexFormat.of().formatHex(digest.digest()));
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
     }
 
     /**
@@ -285,38 +638,5 @@ public class FileStorageServiceImpl implements FileStorageService {
                 .substring(file.getOriginalFilename().lastIndexOf(".") + 1);
     }
 
-    /**
-     * Removes a file from the MinIO storage.
-     *
-     * @param fileName the name of the file to remove
-     * @throws Exception if an error occurs during file removal
-     */
-    @SneakyThrows
-    @Transactional
-    protected void removeFile(String fileName) {
-        log.debug("Removing file: {}", fileName);
-        minioClient.removeObject(RemoveObjectArgs.builder()
-                .bucket(minioProperties.bucketName())
-                .object(fileName)
-                .build());
-    }
 
-    /**
-     * Checks if a file exists in the MinIO storage.
-     *
-     * @param fileName the name of the file to check
-     * @throws FileNotFoundException if the file does not exist
-     */
-    @SneakyThrows
-    private void findObject(String fileName) {
-        log.debug("Checking if file exists: {}", fileName);
-        StatObjectResponse response = minioClient.statObject(StatObjectArgs.builder()
-                .bucket(minioProperties.bucketName())
-                .object(fileName)
-                .build());
-        if (response == null) {
-            log.warn("File not found: {}", fileName);
-            throw new FileNotFoundException("File not found: " + fileName);
-        }
-    }
-}
\ No newline at end of file
+}
@@ -0,0 +1,85 @@
+package abdulgazizov.dev.cloudstoragedemo.services.impl;
+
+import abdulgazizov.dev.cloudstoragedemo.properties.JwtProperties;
+import abdulgazizov.dev.cloudstoragedemo.services.RefreshTokenStore;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps refresh tokens in the memory of this node, for a single node or a tier with sticky sessions.
+ * A token is forgotten when it expires; beyond {@code jwt.refresh-store.max-size} tokens, the least used are
+ * forgotten first and their users have to log in again.
+ */
+@Service
+@ConditionalOnProperty(name = "jwt.refresh-store.type", havingValue = "memory")
+public class InMemoryRefreshTokenStore implements RefreshTokenStore {
+    private final Cache<String, StoredToken> tokens;
+
+    public InMemoryRefreshTokenStore(JwtProperties jwtProperties, MeterRegistry meterRegistry) {
+        this.tokens = Caffeine.newBuilder()
+                .maximumSize(jwtProperties.refreshStoreMaxSize())
+                .expireAfter(new UntilTokenExpires())
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, tokens, "refresh-tokens");
+    }
+
+    @Override
+    public void save(String username, String refreshToken, Instant expiresAt) {
+        tokens.put(username, new StoredToken(RefreshTokenStore.hash(refreshToken), expiresAt.toEpochMilli()));
+    }
+
+    @Override
+    public boolean contains(String username, String refreshToken) {
+        StoredToken stored = tokens.getIfPresent(username);
+        return stored != null && stored.tokenHash().equals(RefreshTokenStore.hash(refreshToken));
+    }
+
+    @Override
+    public boolean replace(String username, String refreshToken, String newRefreshToken, Instant expiresAt) {
+        StoredToken stored = tokens.getIfPresent(username);
+        if (stored == null || !stored.tokenHash().equals(RefreshTokenStore.hash(refreshToken))) {
+            return false;
+        }
+        StoredToken replacement = new StoredToken(RefreshTokenStore.hash(newRefreshToken), expiresAt.toEpochMilli());
+        return tokens.asMap().replace(username, stored, replacement);
+    }
+
+    @Override
+    public void remove(String username) {
+        tokens.invalidate(username);
+    }
+
+    long size() {
+        tokens.cleanUp();
+        return tokens.estimatedSize();
+    }
+
+    private record StoredToken(String tokenHash, long expiresAtMillis) {
+    }
+
+    private static final class UntilTokenExpires implements Expiry<String, StoredToken> {
+        @Override
+        public long expireAfterCreate(String key, StoredToken value, long currentTime) {
+            return TimeUnit.MILLISECONDS.toNanos(Math.max(0, value.expiresAtMillis() - System.currentTimeMillis()));
+        }
+
+        @Override
+        public long expireAfterUpdate(String key, StoredToken value, long currentTime, long currentDuration) {
+            return expireAfterCreate(key, value, currentTime);
+        }
+
+        @Override
+        public long expireAfterRead(String key, StoredToken value, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+    }
+}
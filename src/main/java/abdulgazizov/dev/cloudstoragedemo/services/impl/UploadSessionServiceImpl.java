@@ -0,0 +1,347 @@
+package abdulgazizov.dev.cloudstoragedemo.services.impl;
+
+import abdulgazizov.dev.cloudstoragedemo.dtos.PresignedUrl;
+import abdulgazizov.dev.cloudstoragedemo.dtos.StoredObject;
+import abdulgazizov.dev.cloudstoragedemo.entity.UploadSession;
+import abdulgazizov.dev.cloudstoragedemo.exceptions.FileUploadException;
+import abdulgazizov.dev.cloudstoragedemo.properties.MinioProperties;
+import abdulgazizov.dev.cloudstoragedemo.properties.UploadProperties;
+import abdulgazizov.dev.cloudstoragedemo.repositories.UploadSessionRepository;
+import abdulgazizov.dev.cloudstoragedemo.services.AuthService;
+import abdulgazizov.dev.cloudstoragedemo.services.UploadSessionService;
+import abdulgazizov.dev.cloudstoragedemo.services.UserFileService;
+import abdulgazizov.dev.cloudstoragedemo.storage.MultipartMinioClient;
+import abdulgazizov.dev.cloudstoragedemo.storage.ObjectKeys;
+import abdulgazizov.dev.cloudstoragedemo.storage.ObjectStorage;
+import io.minio.StatObjectResponse;
+import io.minio.http.Method;
+import io.minio.messages.Part;
+import jakarta.persistence.EntityNotFoundException;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.coyote.BadRequestException;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Instant;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class UploadSessionServiceImpl implements UploadSessionService {
+    private static final int MAX_PART_NUMBER = 10000;
+    private static final long MAX_PART_SIZE = 5L * 1024 * 1024 * 1024;
+    private static final int CLEANUP_BATCH_SIZE = 100;
+
+    private final MultipartMinioClient multipartMinioClient;
+    private final ObjectStorage objectStorage;
+    private final MinioProperties minioProperties;
+    private final UploadProperties uploadProperties;
+    private final UploadSessionRepository uploadSessionRepository;
+    private final UserFileService userFileService;
+    private final AuthService authService;
+
+    @Override
+    public UploadSession create(String fileName, String contentType) throws BadRequestException {
+        log.debug("Creating upload session: filename={}", fileName);
+        UploadSession session = newSession(fileName, contentType);
+        try {
+            session.setUploadId(multipartMinioClient.createMultipartUpload(
+                    minioProperties.bucketName(), session.getObjectKey(), contentType));
+        } catch (Exception e) {
+            log.error("Error creating upload session for file {}: {}", fileName, e.getMessage(), e);
+            throw new FileUploadException("File upload failed: " + e.getMessage());
+        }
+
+        UploadSession saved = uploadSessionRepository.save(session);
+        log.info("Upload session created: {}", saved.getId());
+        return saved;
+    }
+
+    @Override
+    public UploadSession createDirect(String fileName, String contentType) throws BadRequestException {
+        log.debug("Creating direct upload session: filename={}", fileName);
+        UploadSession saved = uploadSessionRepository.save(newSession(fileName, contentType));
+        log.info("Direct upload session created: {}", saved.getId());
+        return saved;
+    }
+
+    @Override
+    public PresignedUrl getUploadUrl(String sessionId) throws BadRequestException {
+        log.debug("Signing upload URL for session: {}", sessionId);
+        UploadSession session = get(sessionId);
+        if (!isDirect(session)) {
+            log.warn("Upload session {} takes its content in parts", sessionId);
+            throw new BadRequestException("Upload session takes its content in parts");
+        }
+        Instant expiresAt = Instant.now().plus(minioProperties.presignedUrlTtl());
+        // the expiry is recorded before the URL is handed out, so the session outlives every URL signed for it
+        if (uploadSessionRepository.extendUrlExpiry(sessionId, expiresAt) == 0) {
+            throw new EntityNotFoundException("Upload session not found: " + sessionId);
+        }
+        String url;
+        try {
+            url = objectStorage.presign(Method.PUT, session.getObjectKey(), minioProperties.presignedUrlTtl(), Map.of());
+        } catch (IOException e) {
+            log.error("Error signing upload URL for session {}: {}", sessionId, e.getMessage(), e);
+            throw new FileUploadException("File upload failed: " + e.getMessage());
+        }
+        log.info("Upload URL signed for session: {}", sessionId);
+        return new PresignedUrl(url, expiresAt);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public UploadSession get(String sessionId) {
+        log.debug("Getting upload session: {}", sessionId);
+        Long id = authService.getJwtAuthentication().getId();
+        return uploadSessionRepository.findByIdAndOwnerIdAndClosedAtIsNull(sessionId, id)
+                .orElseThrow(() -> new EntityNotFoundException("Upload session not found: " + sessionId));
+    }
+
+    @Override
+    public void uploadPart(String sessionId, int partNumber, InputStream data, long size) throws BadRequestException {
+        log.debug("Uploading part {} of session {}, size: {}", partNumber, sessionId, size);
+        UploadSession session = get(sessionId);
+        if (isDirect(session)) {
+            log.warn("Upload session {} takes its content through a presigned URL", sessionId);
+            throw new BadRequestException("Upload session takes its content through a presigned URL");
+        }
+        if (partNumber < 1 || partNumber > MAX_PART_NUMBER) {
+            log.warn("Invalid part number: {}", partNumber);
+            throw new BadRequestException("Part number must be between 1 and " + MAX_PART_NUMBER);
+        }
+        if (size <= 0 || size > MAX_PART_SIZE) {
+            log.warn("Invalid part size: {}", size);
+            throw new BadRequestException("Part size must be known and between 1 byte and 5 GiB");
+        }
+        try {
+            multipartMinioClient.uploadPart(minioProperties.bucketName(), session.getObjectKey(),
+                    session.getUploadId(), partNumber, data, size);
+        } catch (Exception e) {
+            log.error("Error uploading part {} of session {}: {}", partNumber, sessionId, e.getMessage(), e);
+            throw new FileUploadException("Part upload failed: " + e.getMessage());
+        }
+        log.info("Part {} of session {} uploaded", partNumber, sessionId);
+    }
+
+    @Override
+    public List<Part> getParts(String sessionId) {
+        UploadSession session = get(sessionId);
+        return isDirect(session) ? List.of() : listParts(session);
+    }
+
+    /**
+     * Completes a session. The storage calls run outside a database transaction, so a slow storage does not
+     * hold a connection; the file is recorded before the session is removed.
+     */
+    @Override
+    public String complete(String sessionId) throws BadRequestException {
+        log.debug("Completing upload session: {}", sessionId);
+        UploadSession session = get(sessionId);
+        if (isDirect(session)) {
+            return completeDirect(session);
+        }
+        List<Part> parts = listParts(session);
+        if (parts.isEmpty()) {
+            log.warn("Upload session {} has no parts", sessionId);
+            throw new BadRequestException("No parts uploaded");
+        }
+        // the storage assembles whatever parts it holds, so a missing part would silently cut the file
+        for (int i = 0; i < parts.size(); i++) {
+            if (parts.get(i).partNumber() != i + 1) {
+                log.warn("Upload session {} is missing part {}", sessionId, i + 1);
+                throw new BadRequestException("Part " + (i + 1) + " is missing");
+            }
+        }
+        Part[] completed = parts.stream()
+                .map(part -> new Part(part.partNumber(), part.etag()))
+                .toArray(Part[]::new);
+        String checksum;
+        try {
+            checksum = multipartMinioClient.completeMultipartUpload(minioProperties.bucketName(), session.getObjectKey(),
+                    session.getUploadId(), completed).etag();
+        } catch (Exception e) {
+            log.error("Error completing upload session {}: {}", sessionId, e.getMessage(), e);
+            throw new FileUploadException("File upload failed: " + e.getMessage());
+        }
+
+        long size = parts.stream().mapToLong(Part::partSize).sum();
+        // the parts are never read back by the server, so the content hash is unknown and the blob is not shared
+        try {
+            userFileService.addFileToUser(session.getOwnerId(), session.getFileName(),
+                    new StoredObject(session.getObjectKey(), size, session.getContentType(), checksum, null));
+        } catch (RuntimeException e) {
+            // the upload is complete, so aborting it no longer releases the object
+            removeQuietly(session.getObjectKey());
+            throw e;
+        }
+        uploadSessionRepository.delete(session);
+        log.info("Upload session {} completed, file: {}, size: {}", sessionId, session.getFileName(), size);
+        return session.getFileName();
+    }
+
+    @Override
+    public void abort(String sessionId) {
+        log.debug("Aborting upload session: {}", sessionId);
+        UploadSession session = get(sessionId);
+        abort(session);
+        log.info("Upload session {} aborted", sessionId);
+    }
+
+    /**
+     * Aborts sessions older than the configured TTL, releasing the parts they hold in the storage, and removes
+     * closed sessions once no presigned URL can write to their object.
+     */
+    @Scheduled(fixedDelayString = "${upload.session.cleanup-interval}")
+    public void abortExpiredSessions() {
+        Instant threshold = Instant.now().minus(uploadProperties.sessionTtl());
+        List<UploadSession> expired;
+        do {
+            expired = uploadSessionRepository.findByClosedAtIsNullAndCreatedAtBefore(threshold, Limit.of(CLEANUP_BATCH_SIZE));
+            expired.forEach(this::abort);
+        } while (expired.size() == CLEANUP_BATCH_SIZE);
+
+        List<UploadSession> closed;
+        boolean removedAll;
+        do {
+            closed = uploadSessionRepository.findClosed(Instant.now(), Limit.of(CLEANUP_BATCH_SIZE));
+            removedAll = true;
+            for (UploadSession session : closed) {
+                removedAll &= removeClosed(session);
+            }
+            // sessions whose object could not be checked are left to the next run
+        } while (removedAll && closed.size() == CLEANUP_BATCH_SIZE);
+    }
+
+    /**
+     * Records the object the client has written with the presigned URL under the key it was written to, so
+     * the content is not copied. The session is closed first, so a concurrent completion finds no session,
+     * and is kept until the URL expires; the storage reports the size and entity tag of the object, the
+     * content is not read, so its hash is unknown and the blob is not shared.
+     */
+    private String completeDirect(UploadSession session) throws BadRequestException {
+        if (uploadSessionRepository.close(session.getId(), Instant.now()) == 0) {
+            throw new EntityNotFoundException("Upload session not found: " + session.getId());
+        }
+        StatObjectResponse stat;
+        try {
+            stat = objectStorage.stat(session.getObjectKey());
+        } catch (FileNotFoundException e) {
+            log.warn("Upload session {} has no content", session.getId());
+            uploadSessionRepository.reopen(session.getId());
+            throw new BadRequestException("No content uploaded");
+        } catch (IOException e) {
+            log.error("Error completing upload session {}: {}", session.getId(), e.getMessage(), e);
+            uploadSessionRepository.reopen(session.getId());
+            throw new FileUploadException("File upload failed: " + e.getMessage());
+        }
+        String contentType = session.getContentType() != null ? session.getContentType() : stat.contentType();
+        try {
+            userFileService.addFileToUser(session.getOwnerId(), session.getFileName(),
+                    new StoredObject(session.getObjectKey(), stat.size(), contentType, stat.etag(), null));
+        } catch (RuntimeException e) {
+            uploadSessionRepository.reopen(session.getId());
+            throw e;
+        }
+        log.info("Upload session {} completed, file: {}, size: {}", session.getId(), session.getFileName(), stat.size());
+        return session.getFileName();
+    }
+
+    /**
+     * Removes a closed session whose URLs have expired. A client may have written the object after the
+     * session was closed: an object that belongs to no file is removed, and a file whose object was
+     * overwritten takes its size and entity tag.
+     *
+     * @return false if the storage could not be reached and the session is kept
+     */
+    private boolean removeClosed(UploadSession session) {
+        try {
+            StatObjectResponse stat = objectStorage.stat(session.getObjectKey());
+            if (!userFileService.syncStoredObject(session.getObjectKey(), stat.size(), stat.etag())) {
+                objectStorage.remove(session.getObjectKey());
+            }
+        } catch (FileNotFoundException e) {
+            log.debug("Upload session {} left no object", session.getId());
+        } catch (IOException e) {
+            log.warn("Error checking the object of upload session {}: {}", session.getId(), e.getMessage());
+            return false;
+        }
+        uploadSessionRepository.delete(session);
+        return true;
+    }
+
+    private UploadSession newSession(String fileName, String contentType) throws BadRequestException {
+        Long id = authService.getJwtAuthentication().getId();
+        if (fileName == null || fileName.isEmpty()) {
+            log.warn("File name is empty");
+            throw new BadRequestException("File name is empty");
+        }
+        try {
+            objectStorage.ensureBucket();
+        } catch (IOException e) {
+            log.error("Error preparing the bucket for file {}: {}", fileName, e.getMessage(), e);
+            throw new FileUploadException("File upload failed: " + e.getMessage());
+        }
+
+        UploadSession session = new UploadSession();
+        session.setId(UUID.randomUUID().toString());
+        session.setOwnerId(id);
+        session.setFileName(fileName);
+        session.setObjectKey(ObjectKeys.newBlob());
+        session.setContentType(contentType);
+        session.setCreatedAt(Instant.now());
+        return session;
+    }
+
+    private static boolean isDirect(UploadSession session) {
+        return session.getUploadId() == null;
+    }
+
+    private void abort(UploadSession session) {
+        if (isDirect(session)) {
+            // the client may have written the object already; removing a missing object is not an error. The
+            // session is kept closed, so that an object written later is removed once the URL expires
+            if (uploadSessionRepository.close(session.getId(), Instant.now()) == 1) {
+                removeQuietly(session.getObjectKey());
+            }
+            return;
+        }
+        try {
+            multipartMinioClient.abortMultipartUpload(minioProperties.bucketName(), session.getObjectKey(), session.getUploadId());
+        } catch (Exception e) {
+            log.warn("Error aborting upload {} of session {}: {}", session.getUploadId(), session.getId(), e.getMessage());
+        }
+        uploadSessionRepository.delete(session);
+    }
+
+    private void removeQuietly(String objectKey) {
+        try {
+            objectStorage.remove(objectKey);
+        } catch (IOException e) {
+            log.warn("Error removing object {}: {}", objectKey, e.getMessage());
+        }
+    }
+
+    private List<Part> listParts(UploadSession session) {
+        List<Part> parts;
+        try {
+            parts = multipartMinioClient.listParts(minioProperties.bucketName(), session.getObjectKey(), session.getUploadId());
+        } catch (Exception e) {
+            log.error("Error listing parts of session {}: {}", session.getId(), e.getMessage(), e);
+            throw new FileUploadException("File upload failed: " + e.getMessage());
+        }
+        return parts.stream()
+                .sorted(Comparator.comparingInt(Part::partNumber))
+                .toList();
+    }
+}
@@ -1,37 +1,259 @@
 package abdulgazizov.dev.cloudstoragedemo.services.impl;
 
-import abdulgazizov.dev.cloudstoragedemo.entity.User;
-import abdulgazizov.dev.cloudstoragedemo.repositories.UserRepository;
+import abdulgazizov.dev.cloudstoragedemo.dtos.ArchiveEntry;
+import abdulgazizov.dev.cloudstoragedemo.dtos.FileCursor;
+import abdulgazizov.dev.cloudstoragedemo.dtos.FileLocation;
+import abdulgazizov.dev.cloudstoragedemo.dtos.FilePage;
+import abdulgazizov.dev.cloudstoragedemo.dtos.FileSort;
+import abdulgazizov.dev.cloudstoragedemo.dtos.FileSummary;
+import abdulgazizov.dev.cloudstoragedemo.dtos.StoredObject;
+import abdulgazizov.dev.cloudstoragedemo.entity.Blob;
+import abdulgazizov.dev.cloudstoragedemo.entity.FileMetadata;
+import abdulgazizov.dev.cloudstoragedemo.repositories.BlobRepository;
+import abdulgazizov.dev.cloudstoragedemo.repositories.FileMetadataRepository;
 import abdulgazizov.dev.cloudstoragedemo.services.UserFileService;
-import jakarta.persistence.EntityNotFoundException;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.coyote.BadRequestException;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
 @Slf4j
 @Service
 @RequiredArgsConstructor
 public class UserFileServiceImpl implements UserFileService {
-    private final UserRepository userRepository;
+    private final FileMetadataRepository fileMetadataRepository;
+    private final BlobRepository blobRepository;
+
+    @Override
+    @Transactional(readOnly = true)
+    public boolean hasFile(Long id, String fileName) {
+        return fileMetadataRepository.existsByOwnerIdAndFileName(id, fileName);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Optional<FileLocation> getFileLocation(Long id, String fileName) {
+        return fileMetadataRepository.findLocation(id, fileName);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<ArchiveEntry> getArchiveEntries(Long id, Collection<String> fileNames) {
+        return fileMetadataRepository.findArchiveEntries(id, fileNames);
+    }
 
     @Override
     @Transactional
-    public void addFileToUser(Long id, String fileName) {
+    public String addFileToUser(Long id, String fileName, StoredObject object) {
         log.debug("Adding file {} to user with id {}", fileName, id);
-        User user = userRepository.findById(id).orElseThrow(() -> new EntityNotFoundException("User not found with id: " + id));
-        user.getFiles().add(fileName);
-        userRepository.save(user);
-        log.info("File {} added to user with id {}", fileName, id);
+        Blob blob = referenceBlob(object);
+        Long replacedBlobId = upsert(id, fileName, blob, object.contentType(), Instant.now());
+        if (replacedBlobId != null) {
+            blobRepository.decrementRefCount(replacedBlobId);
+        }
+        log.info("File {} added to user with id {}, blob: {}", fileName, id, blob.getId());
+        return blob.getStorageKey();
     }
 
     @Override
     @Transactional
-    public void removeFileFromUser(Long id, String fileName) {
+    public Map<String, String> addFilesToUser(Long id, Map<String, StoredObject> objects) {
+        log.debug("Adding {} files to user with id {}", objects.size(), id);
+        Instant now = Instant.now();
+        // the files that exist are locked and overwritten; the others are inserted, or overwritten if a
+        // concurrent upload inserts them first
+        Map<String, FileMetadata> existing = fileMetadataRepository.findForUpdate(id, objects.keySet()).stream()
+                .collect(Collectors.toMap(FileMetadata::getFileName, Function.identity()));
+        Map<String, String> storageKeys = new HashMap<>();
+        List<FileMetadata> files = new ArrayList<>(existing.size());
+        List<Long> replacedBlobIds = new ArrayList<>();
+        objects.forEach((fileName, object) -> {
+            Blob blob = referenceBlob(object);
+            FileMetadata metadata = existing.get(fileName);
+            if (metadata == null) {
+                Long replacedBlobId = upsert(id, fileName, blob, object.contentType(), now);
+                if (replacedBlobId != null) {
+                    replacedBlobIds.add(replacedBlobId);
+                }
+            } else {
+                replacedBlobIds.add(metadata.getBlobId());
+                attach(metadata, blob, object.contentType(), now);
+                files.add(metadata);
+            }
+            storageKeys.put(fileName, blob.getStorageKey());
+        });
+        fileMetadataRepository.saveAll(files);
+        replacedBlobIds.stream()
+                .collect(Collectors.groupingBy(Function.identity(), Collectors.counting()))
+                .forEach(blobRepository::decrementRefCount);
+        log.info("{} files added to user with id {}", objects.size(), id);
+        return storageKeys;
+    }
+
+    @Override
+    @Transactional
+    public boolean removeFileFromUser(Long id, String fileName) {
         log.debug("Removing file {} from user with id {}", fileName, id);
-        User user = userRepository.findById(id).orElseThrow(() -> new EntityNotFoundException("User not found with id: " + id));
-        user.getFiles().remove(fileName);
-        userRepository.save(user);
+        // the row is locked, so a concurrent delete of the same file finds nothing and releases the blob only once
+        List<FileMetadata> metadata = fileMetadataRepository.findForUpdate(id, List.of(fileName));
+        if (metadata.isEmpty()) {
+            return false;
+        }
+        fileMetadataRepository.deleteAllInBatch(metadata);
+        blobRepository.decrementRefCount(metadata.getFirst().getBlobId());
         log.info("File {} removed from user with id {}", fileName, id);
+        return true;
+    }
+
+    @Override
+    @Transactional
+    public Set<String> removeFilesFromUser(Long id, Collection<String> fileNames) {
+        log.debug("Removing {} files from user with id {}", fileNames.size(), id);
+        // the rows are locked, so only the transaction that deletes a file releases its blob
+        List<FileMetadata> files = fileMetadataRepository.findForUpdate(id, fileNames);
+        if (files.isEmpty()) {
+            return Set.of();
+        }
+        fileMetadataRepository.deleteAllInBatch(files);
+        // files with the same content share a blob, which is released once for all of them
+        files.stream()
+                .collect(Collectors.groupingBy(FileMetadata::getBlobId, Collectors.counting()))
+                .forEach(blobRepository::decrementRefCount);
+        log.info("{} files removed from user with id {}", files.size(), id);
+        return files.stream().map(FileMetadata::getFileName).collect(Collectors.toSet());
+    }
+
+    @Override
+    @Transactional
+    public boolean renameFileOfUser(Long id, String oldFileName, String newFileName) {
+        log.debug("Renaming file {} to {} for user with id {}", oldFileName, newFileName, id);
+        if (fileMetadataRepository.rename(id, oldFileName, newFileName, Instant.now()) == 0) {
+            return false;
+        }
+        log.info("File {} renamed to {} for user with id {}", oldFileName, newFileName, id);
+        return true;
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public FilePage getFilesOfUser(Long id, int limit, FileSort sort, String cursor) throws BadRequestException {
+        log.debug("Getting files of user with id {}: limit={}, sort={}, cursor={}", id, limit, sort, cursor);
+        FileCursor position = cursor == null || cursor.isEmpty() ? null : FileCursor.decode(cursor, sort);
+        String afterName = position == null ? "" : position.fileName();
+        // one extra row tells whether there is a next page without a count query
+        Limit fetch = Limit.of(limit + 1);
+
+        List<FileSummary> files;
+        try {
+            files = switch (sort) {
+                case NAME -> fileMetadataRepository.findPageByName(id, afterName, fetch);
+                case SIZE -> fileMetadataRepository.findPageBySize(id,
+                        position == null ? Long.MIN_VALUE : Long.parseLong(position.value()), afterName, fetch);
+                case EDITED -> fileMetadataRepository.findPageByUpdatedAt(id,
+                        position == null ? Instant.EPOCH : Instant.parse(position.value()), afterName, fetch);
+            };
+        } catch (NumberFormatException | DateTimeParseException e) {
+            log.warn("Invalid cursor: {}", cursor);
+            throw new BadRequestException("Invalid cursor");
+        }
+
+        if (files.size() <= limit) {
+            return new FilePage(files, null);
+        }
+        List<FileSummary> page = files.subList(0, limit);
+        FileSummary last = page.getLast();
+        String value = switch (sort) {
+            case NAME -> "";
+            case SIZE -> String.valueOf(last.size());
+            case EDITED -> last.updatedAt().toString();
+        };
+        return new FilePage(page, new FileCursor(sort, value, last.fileName()).encode());
+    }
+
+    @Override
+    @Transactional
+    public boolean syncStoredObject(String storageKey, long size, String etag) {
+        Optional<Blob> blob = blobRepository.findByStorageKey(storageKey);
+        if (blob.isEmpty()) {
+            return false;
+        }
+        if (blob.get().getSize() != size || !Objects.equals(blob.get().getEtag(), etag)) {
+            blobRepository.updateObject(blob.get().getId(), size, etag);
+            int files = fileMetadataRepository.updateObject(blob.get().getId(), size, etag, Instant.now());
+            log.info("Object {} was overwritten, {} files updated, size: {}", storageKey, files, size);
+        }
+        return true;
+    }
+
+    /**
+     * Inserts a file, or overwrites it if the owner already has a file with this name. A concurrent upload of
+     * the same name makes the insert a no-op instead of failing on the unique index; the row it inserted is
+     * then locked and overwritten.
+     *
+     * @return the blob the overwritten file referenced, or null if the file was inserted
+     */
+    private Long upsert(Long id, String fileName, Blob blob, String contentType, Instant now) {
+        // a file deleted between the insert and the lock is inserted again
+        while (fileMetadataRepository.insertIfAbsent(id, fileName, blob.getId(), blob.getStorageKey(), blob.getSize(),
+                contentType, blob.getEtag(), now) == 0) {
+            List<FileMetadata> locked = fileMetadataRepository.findForUpdate(id, List.of(fileName));
+            if (!locked.isEmpty()) {
+                FileMetadata metadata = locked.getFirst();
+                Long replacedBlobId = metadata.getBlobId();
+                attach(metadata, blob, contentType, now);
+                fileMetadataRepository.save(metadata);
+                return replacedBlobId;
+            }
+            log.debug("File {} of user with id {} was deleted concurrently, retrying", fileName, id);
+        }
+        return null;
+    }
+
+    private static void attach(FileMetadata metadata, Blob blob, String contentType, Instant now) {
+        metadata.setBlobId(blob.getId());
+        metadata.setStorageKey(blob.getStorageKey());
+        metadata.setSize(blob.getSize());
+        metadata.setContentType(contentType);
+        metadata.setChecksum(blob.getEtag());
+        metadata.setUpdatedAt(now);
+    }
+
+    /**
+     * Adds a reference to the blob with the content of a stored object, inserting the object as a new
+     * blob if the content is not stored yet. Content that was not hashed always becomes a new blob.
+     */
+    private Blob referenceBlob(StoredObject object) {
+        // the storage may return the entity tag quoted
+        String etag = object.etag() == null ? null : object.etag().replace("\"", "");
+        if (object.contentHash() == null) {
+            Blob blob = new Blob();
+            blob.setStorageKey(object.storageKey());
+            blob.setSize(object.size());
+            blob.setEtag(etag);
+            blob.setRefCount(1);
+            blob.setCreatedAt(Instant.now());
+            return blobRepository.save(blob);
+        }
+        // the collector may delete an unreferenced blob between the insert and the increment; then insert again
+        while (blobRepository.insertIfAbsent(object.contentHash(), object.storageKey(), object.size(), etag) == 0
+                && blobRepository.incrementRefCount(object.contentHash()) == 0) {
+            log.debug("Blob {} was collected concurrently, retrying", object.contentHash());
+        }
+        return blobRepository.findByContentHash(object.contentHash()).orElseThrow();
     }
 }
@@ -0,0 +1,148 @@
+package abdulgazizov.dev.cloudstoragedemo.storage;
+
+import abdulgazizov.dev.cloudstoragedemo.dtos.ArchiveEntry;
+import io.minio.GetObjectResponse;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.UnaryOperator;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Writes files of the storage to a ZIP archive as the archive is sent, without temporary files.
+ * <p>
+ * Only one entry is copied at a time, through the fixed buffers of the deflater, so the memory taken does
+ * not depend on the size of the archive. While an entry is copied, the objects of the next
+ * {@value #READ_AHEAD} entries are already being requested, so the latency of a storage request is paid
+ * once per archive rather than once per entry.
+ * <p>
+ * Content that is already compressed is written without compression. The entries are not {@code STORED},
+ * which would need the CRC of the content before it is read, but deflated at level 0, which costs a few
+ * bytes per 64 KB block and no CPU.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ArchiveWriter {
+    private static final int READ_AHEAD = 2;
+    private static final Set<String> COMPRESSED_TYPES = Set.of(
+            "application/zip", "application/gzip", "application/x-gzip", "application/x-7z-compressed",
+            "application/x-rar-compressed", "application/vnd.rar", "application/x-bzip2", "application/x-xz",
+            "application/zstd", "application/java-archive", "application/epub+zip",
+            "application/vnd.openxmlformats-officedocument.wordprocessingml.document",
+            "application/vnd.openxmlformats-officedocument.spreadsheetml.sheet",
+            "application/vnd.openxmlformats-officedocument.presentationml.presentation");
+    private static final Set<String> COMPRESSED_EXTENSIONS = Set.of(
+            "zip", "gz", "tgz", "7z", "rar", "bz2", "xz", "zst", "jar", "epub", "docx", "xlsx", "pptx",
+            "jpg", "jpeg", "png", "gif", "webp", "heic", "avif", "mp3", "aac", "ogg", "opus", "flac", "m4a",
+            "mp4", "m4v", "mov", "mkv", "webm", "avi");
+    private static final Set<String> UNCOMPRESSED_MEDIA_TYPES = Set.of("image/svg+xml", "image/bmp", "image/tiff", "audio/wav");
+
+    private final ObjectStorage objectStorage;
+
+    /**
+     * Writes the entries to the output stream as a ZIP archive. The output stream is not closed.
+     *
+     * @param entries      the files to be written, in the order of the archive
+     * @param outputStream the stream the archive is written to
+     * @throws IOException if an object cannot be read or the archive cannot be written
+     */
+    public void write(List<ArchiveEntry> entries, OutputStream outputStream) throws IOException {
+        log.debug("Writing archive of {} files", entries.size());
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            Deque<Future<GetObjectResponse>> pending = new ArrayDeque<>();
+            try {
+                ZipOutputStream zip = new ZipOutputStream(outputStream);
+                int next = 0;
+                for (ArchiveEntry entry : entries) {
+                    while (next < entries.size() && pending.size() <= READ_AHEAD) {
+                        pending.add(open(executor, entries.get(next++).storageKey()));
+                    }
+                    try (InputStream content = await(pending.poll())) {
+                        ZipEntry zipEntry = new ZipEntry(entry.fileName());
+                        if (entry.updatedAt() != null) {
+                            zipEntry.setTime(entry.updatedAt().toEpochMilli());
+                        }
+                        zip.setLevel(isCompressed(entry) ? Deflater.NO_COMPRESSION : Deflater.DEFAULT_COMPRESSION);
+                        zip.putNextEntry(zipEntry);
+                        content.transferTo(zip);
+                        zip.closeEntry();
+                    }
+                }
+                zip.finish();
+            } finally {
+                // объекты, запрошенные впрок, закрываются, если архив прерван
+                for (Future<GetObjectResponse> future : pending) {
+                    closeQuietly(future);
+                }
+            }
+        }
+        log.info("Archive of {} files written", entries.size());
+    }
+
+    private Future<GetObjectResponse> open(ExecutorService executor, String objectKey) {
+        return executor.submit(() -> {
+            try {
+                return objectStorage.get(objectKey, UnaryOperator.identity());
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    private static InputStream await(Future<GetObjectResponse> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Archive interrupted");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof UncheckedIOException cause) {
+                throw cause.getCause();
+            }
+            throw new IOException("Failed to read object: " + e.getCause().getMessage(), e.getCause());
+        }
+    }
+
+    private static void closeQuietly(Future<GetObjectResponse> future) {
+        try {
+            future.get().close();
+        } catch (Exception e) {
+            log.debug("Failed to close object read ahead: {}", e.getMessage());
+        }
+    }
+
+    static boolean isCompressed(ArchiveEntry entry) {
+        String contentType = entry.contentType() == null ? "" : entry.contentType().toLowerCase(Locale.ROOT);
+        int parameters = contentType.indexOf(';');
+        if (parameters >= 0) {
+            contentType = contentType.substring(0, parameters).trim();
+        }
+        if (COMPRESSED_TYPES.contains(contentType)) {
+            return true;
+        }
+        if ((contentType.startsWith("image/") || contentType.startsWith("audio/") || contentType.startsWith("video/"))
+                && !UNCOMPRESSED_MEDIA_TYPES.contains(contentType)) {
+            return true;
+        }
+        int dot = entry.fileName().lastIndexOf('.');
+        return dot >= 0 && COMPRESSED_EXTENSIONS.contains(entry.fileName().substring(dot + 1).toLowerCase(Locale.ROOT));
+    }
+}
@@ -0,0 +1,86 @@
+package abdulgazizov.dev.cloudstoragedemo.storage;
+
+import abdulgazizov.dev.cloudstoragedemo.entity.Blob;
+import abdulgazizov.dev.cloudstoragedemo.repositories.BlobRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Removes the objects of blobs that no file refers to any more.
+ * <p>
+ * The row of a blob is deleted before its object, and only while its reference count is zero, so an upload
+ * that references the blob at the same time either keeps it alive or stores its own copy. The objects of a
+ * batch are removed with one multi-object delete request. If an object cannot be removed after its row is
+ * gone, it is logged and left behind as an orphan.
+ * <p>
+ * Blobs are walked in the order of their ids, and a blob whose row cannot be deleted is logged and skipped,
+ * so one bad row cannot keep the collector from reaching the blobs after it.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class BlobCollector {
+    private static final int BATCH_SIZE = 1000;
+
+    private final BlobRepository blobRepository;
+    private final ObjectStorage objectStorage;
+    private final ObjectCache objectCache;
+
+    @Scheduled(fixedDelayString = "${minio.blob-gc.interval}")
+    public void collect() {
+        int removed = 0;
+        long afterId = 0;
+        List<Blob> unreferenced;
+        do {
+            unreferenced = blobRepository.findUnreferenced(afterId, Limit.of(BATCH_SIZE));
+            List<String> objectKeys = new ArrayList<>(unreferenced.size());
+            for (Blob blob : unreferenced) {
+                afterId = blob.getId();
+                if (!delete(blob)) {
+                    continue;
+                }
+                objectCache.evict(blob.getStorageKey());
+                objectKeys.add(blob.getStorageKey());
+            }
+            removed += remove(objectKeys);
+        } while (unreferenced.size() == BATCH_SIZE);
+        if (removed > 0) {
+            log.info("Unreferenced blobs removed: {}", removed);
+        }
+    }
+
+    private boolean delete(Blob blob) {
+        try {
+            if (blobRepository.deleteIfUnreferenced(blob.getId()) == 0) {
+                log.debug("Blob {} was referenced again, keeping it", blob.getId());
+                return false;
+            }
+            return true;
+        } catch (DataAccessException e) {
+            // e.g. a file still refers to a blob whose count has drifted to zero
+            log.error("Failed to delete blob {}: {}", blob.getId(), e.getMessage());
+            return false;
+        }
+    }
+
+    private int remove(List<String> objectKeys) {
+        if (objectKeys.isEmpty()) {
+            return 0;
+        }
+        try {
+            List<String> failed = objectStorage.removeAll(objectKeys);
+            return objectKeys.size() - failed.size();
+        } catch (IOException e) {
+            log.warn("Failed to remove {} objects of collected blobs: {}", objectKeys.size(), e.getMessage());
+            return 0;
+        }
+    }
+}
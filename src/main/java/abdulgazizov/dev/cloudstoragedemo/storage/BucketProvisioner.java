@@ -0,0 +1,30 @@
+package abdulgazizov.dev.cloudstoragedemo.storage;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+
+/**
+ * Provisions the bucket during startup, before the application reports itself ready, so uploads do
+ * not pay for the bucket check. If the storage is unreachable at that point the bucket is provisioned
+ * by the first upload instead.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class BucketProvisioner implements ApplicationRunner {
+    private final ObjectStorage objectStorage;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        try {
+            objectStorage.ensureBucket();
+        } catch (IOException e) {
+            log.warn("Bucket provisioning failed, will retry on first upload: {}", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,177 @@
+package abdulgazizov.dev.cloudstoragedemo.storage;
+
+import abdulgazizov.dev.cloudstoragedemo.entity.Blob;
+import abdulgazizov.dev.cloudstoragedemo.entity.FileMetadata;
+import abdulgazizov.dev.cloudstoragedemo.properties.MinioProperties;
+import abdulgazizov.dev.cloudstoragedemo.repositories.BlobRepository;
+import abdulgazizov.dev.cloudstoragedemo.repositories.FileMetadataRepository;
+import abdulgazizov.dev.cloudstoragedemo.repositories.UserRepository;
+import io.minio.ListObjectsArgs;
+import io.minio.MinioClient;
+import io.minio.Result;
+import io.minio.messages.Item;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * One-off job that fills the file index from the objects in the bucket. Enabled with
+ * {@code minio.metadata-backfill.enabled=true}.
+ * <p>
+ * The database migration can only derive the storage key of the files it already knows; size, checksum,
+ * content type and modification time live in the bucket. The job walks the per-user namespaces
+ * (see {@link ObjectKeys}) once and upserts a row for every object, in batches. Objects of unknown users
+ * are skipped. A new row gets a blob of its own; these blobs have no content hash, so legacy objects are not
+ * deduplicated. Running the job again only refreshes the rows, so it can be restarted safely. It runs after
+ * {@link ObjectKeyMigration}, so objects moved by the migration are indexed in the same start.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "minio.metadata-backfill.enabled", havingValue = "true")
+public class FileMetadataBackfill {
+    private static final int BATCH_SIZE = 500;
+    private static final String CONTENT_TYPE = "content-type";
+
+    private final MinioClient minioClient;
+    private final MinioProperties minioProperties;
+    private final FileMetadataRepository fileMetadataRepository;
+    private final BlobRepository blobRepository;
+    private final UserRepository userRepository;
+
+    @Order(1)
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfill() {
+        log.info("Backfilling file metadata from bucket {}", minioProperties.bucketName());
+        Map<Long, Boolean> knownUsers = new HashMap<>();
+        List<Item> batch = new ArrayList<>(BATCH_SIZE);
+        int indexed = 0;
+        int failed = 0;
+        for (Result<Item> result : minioClient.listObjects(ListObjectsArgs.builder()
+                .bucket(minioProperties.bucketName())
+                .prefix(ObjectKeys.usersPrefix())
+                .recursive(true)
+                .includeUserMetadata(true)
+                .build())) {
+            try {
+                batch.add(result.get());
+            } catch (Exception e) {
+                // the listing cannot continue past a failed page
+                log.error("Failed to list objects: {}", e.getMessage(), e);
+                failed++;
+                break;
+            }
+            if (batch.size() == BATCH_SIZE) {
+                indexed += saveBatch(batch, knownUsers);
+                batch.clear();
+            }
+        }
+        if (!batch.isEmpty()) {
+            indexed += saveBatch(batch, knownUsers);
+        }
+        log.info("File metadata backfill finished: indexed={}, failed={}", indexed, failed);
+    }
+
+    private int saveBatch(List<Item> items, Map<Long, Boolean> knownUsers) {
+        Map<String, FileMetadata> existing = fileMetadataRepository.findByStorageKeyIn(
+                        items.stream().map(Item::objectName).toList()).stream()
+                .collect(Collectors.toMap(FileMetadata::getStorageKey, Function.identity(), (first, second) -> first));
+        List<FileMetadata> files = new ArrayList<>(items.size());
+        List<Blob> blobs = new ArrayList<>();
+        for (Item item : items) {
+            FileMetadata metadata = existing.get(item.objectName());
+            if (metadata == null) {
+                metadata = newMetadata(item, knownUsers);
+                if (metadata == null) {
+                    continue;
+                }
+                blobs.add(newBlob(item));
+            }
+            Instant lastModified = item.lastModified().toInstant();
+            String etag = item.etag() == null ? null : item.etag().replace("\"", "");
+            metadata.setSize(item.size());
+            metadata.setChecksum(etag);
+            metadata.setUpdatedAt(lastModified);
+            if (metadata.getCreatedAt() == null) {
+                metadata.setCreatedAt(lastModified);
+            }
+            if (metadata.getContentType() == null) {
+                metadata.setContentType(contentType(item));
+            }
+            files.add(metadata);
+        }
+        if (!blobs.isEmpty()) {
+            Map<String, Long> blobIds = blobRepository.saveAll(blobs).stream()
+                    .collect(Collectors.toMap(Blob::getStorageKey, Blob::getId));
+            files.stream()
+                    .filter(file -> file.getBlobId() == null)
+                    .forEach(file -> file.setBlobId(blobIds.get(file.getStorageKey())));
+        }
+        fileMetadataRepository.saveAll(files);
+        return files.size();
+    }
+
+    /**
+     * Creates the index row of an object that is not indexed yet.
+     *
+     * @return the new row, or null if the key is not in a namespace of an existing user
+     */
+    private FileMetadata newMetadata(Item item, Map<Long, Boolean> knownUsers) {
+        String key = item.objectName();
+        int slash = key.indexOf('/', ObjectKeys.usersPrefix().length());
+        if (item.isDir() || slash < 0 || slash == key.length() - 1) {
+            log.warn("Skipping object {} outside of user namespaces", key);
+            return null;
+        }
+        Long ownerId;
+        try {
+            ownerId = Long.valueOf(key.substring(ObjectKeys.usersPrefix().length(), slash));
+        } catch (NumberFormatException e) {
+            log.warn("Skipping object {} outside of user namespaces", key);
+            return null;
+        }
+        if (!knownUsers.computeIfAbsent(ownerId, userRepository::existsById)) {
+            log.warn("Skipping object {} of unknown user {}", key, ownerId);
+            return null;
+        }
+        FileMetadata metadata = new FileMetadata();
+        metadata.setOwnerId(ownerId);
+        metadata.setFileName(key.substring(slash + 1));
+        metadata.setStorageKey(key);
+        return metadata;
+    }
+
+    private static Blob newBlob(Item item) {
+        Blob blob = new Blob();
+        blob.setStorageKey(item.objectName());
+        blob.setSize(item.size());
+        blob.setEtag(item.etag() == null ? null : item.etag().replace("\"", ""));
+        blob.setRefCount(1);
+        blob.setCreatedAt(item.lastModified().toInstant());
+        return blob;
+    }
+
+    private static String contentType(Item item) {
+        Map<String, String> userMetadata = item.userMetadata();
+        if (userMetadata == null) {
+            return null;
+        }
+        return userMetadata.entrySet().stream()
+                .filter(entry -> CONTENT_TYPE.equalsIgnoreCase(entry.getKey()))
+                .map(Map.Entry::getValue)
+                .findFirst()
+                .orElse(null);
+    }
+}
@@ -0,0 +1,51 @@
+package abdulgazizov.dev.cloudstoragedemo.storage;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * An {@link InputStream} that opens its source on the first read, so a stream that is never read
+ * never opens a storage connection.
+ */
+public class LazyInputStream extends InputStream {
+    private final Opener opener;
+    private InputStream delegate;
+
+    public LazyInputStream(Opener opener) {
+        this.opener = opener;
+    }
+
+    @Override
+    public int read() throws IOException {
+        return delegate().read();
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        return delegate().read(b, off, len);
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        return delegate().skip(n);
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (delegate != null) {
+            delegate.close();
+        }
+    }
+
+    private InputStream delegate() throws IOException {
+        if (delegate == null) {
+            delegate = opener.open();
+        }
+        return delegate;
+    }
+
+    @FunctionalInterface
+    public interface Opener {
+        InputStream open() throws IOException;
+    }
+}
@@ -0,0 +1,88 @@
+package abdulgazizov.dev.cloudstoragedemo.storage;
+
+import com.google.common.collect.ImmutableMultimap;
+import com.google.common.collect.Multimap;
+import io.minio.MinioAsyncClient;
+import io.minio.ObjectWriteResponse;
+import io.minio.messages.ListPartsResult;
+import io.minio.messages.Part;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Exposes the low-level S3 multipart upload calls, which the MinIO SDK keeps protected, so uploads can be
+ * assembled from parts received in separate requests. The calls wait for the asynchronous variants; the
+ * blocking ones are deprecated.
+ */
+public class MultipartMinioClient extends MinioAsyncClient {
+    private static final int MAX_PARTS_PER_PAGE = 1000;
+    private static final Multimap<String, String> NO_PARAMS = ImmutableMultimap.of();
+
+    public MultipartMinioClient(MinioAsyncClient client) {
+        super(client);
+    }
+
+    /**
+     * Starts a multipart upload.
+     *
+     * @return the upload ID assigned by the storage
+     */
+    public String createMultipartUpload(String bucket, String objectKey, String contentType) throws Exception {
+        Multimap<String, String> headers = contentType == null
+                ? NO_PARAMS
+                : ImmutableMultimap.of("Content-Type", contentType);
+        return await(createMultipartUploadAsync(bucket, null, objectKey, headers, NO_PARAMS)).result().uploadId();
+    }
+
+    /**
+     * Uploads one part of a multipart upload. Uploading the same part number again replaces the part.
+     *
+     * @return the ETag of the part
+     */
+    public String uploadPart(String bucket, String objectKey, String uploadId, int partNumber,
+                             InputStream data, long size) throws Exception {
+        return await(uploadPartAsync(bucket, null, objectKey, data, size, uploadId, partNumber, NO_PARAMS, NO_PARAMS)).etag();
+    }
+
+    /**
+     * Lists every part received so far, following the pagination of the storage.
+     */
+    public List<Part> listParts(String bucket, String objectKey, String uploadId) throws Exception {
+        List<Part> parts = new ArrayList<>();
+        Integer marker = null;
+        ListPartsResult result;
+        do {
+            result = await(listPartsAsync(bucket, null, objectKey, MAX_PARTS_PER_PAGE, marker, uploadId, NO_PARAMS, NO_PARAMS)).result();
+            parts.addAll(result.partList());
+            marker = result.nextPartNumberMarker();
+        } while (result.isTruncated());
+        return parts;
+    }
+
+    public ObjectWriteResponse completeMultipartUpload(String bucket, String objectKey, String uploadId,
+                                                       Part[] parts) throws Exception {
+        return await(completeMultipartUploadAsync(bucket, null, objectKey, uploadId, parts, NO_PARAMS, NO_PARAMS));
+    }
+
+    public void abortMultipartUpload(String bucket, String objectKey, String uploadId) throws Exception {
+        await(abortMultipartUploadAsync(bucket, null, objectKey, uploadId, NO_PARAMS, NO_PARAMS));
+    }
+
+    /**
+     * Waits for a request, rethrowing the error of the storage rather than its wrapper.
+     */
+    private static <T> T await(CompletableFuture<T> future) throws Exception {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof Exception cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,449 @@
+package abdulgazizov.dev.cloudstoragedemo.storage;
+
+import abdulgazizov.dev.cloudstoragedemo.dtos.FileStat;
+import abdulgazizov.dev.cloudstoragedemo.properties.ObjectCacheProperties;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A local cache in front of the storage for frequently downloaded objects, in two tiers:
+ * <ul>
+ *     <li>Objects up to {@code object-cache.memory.max-object-size} are kept in memory. They are cached
+ *     read-through, as a side effect of a download, in a Caffeine cache bounded by bytes. Its W-TinyLFU
+ *     policy only admits an object that is used more often than the one it would evict, so a scan over
+ *     many files does not flush the hot ones.</li>
+ *     <li>Larger objects are kept on local disk as plain files, so they can be sent to the client with
+ *     {@code sendfile}. An object is copied to disk in the background once it has missed
+ *     {@code object-cache.admission-hits} times, and the least recently used files are evicted when the
+ *     tier grows past {@code object-cache.max-size}. The index lives in memory, so the files of a
+ *     previous run are removed on startup.</li>
+ * </ul>
+ * A file handed to a transfer that opens it later is {@linkplain #pin pinned} with a hard link of its own.
+ * An eviction only removes the name the index knows, so the content of a pinned file stays on disk, outside
+ * {@code object-cache.max-size}, until the link is removed {@code object-cache.pin-ttl} later.
+ * An entry is valid for one entity tag of its object: the caller looks it up with the current tag,
+ * taken from the metadata index, and a stale entry is dropped.
+ * <p>
+ * The memory tier reports the {@code cache.*} meters with the tag {@code cache=objects}. Lookups on disk
+ * are counted in the {@code object.cache.requests} counter, tagged with the result, evictions in
+ * {@code object.cache.evictions}, and the bytes on disk are reported by the {@code object.cache.size} gauge.
+ */
+@Slf4j
+@Component
+public class ObjectCache {
+    private static final String FILE_PREFIX = "object-";
+    private static final String PART_PREFIX = "fill-";
+    private static final String PIN_PREFIX = "pin-";
+    private static final int FILL_THREADS = 2;
+    private static final int FILL_QUEUE_CAPACITY = 64;
+    private static final int MAX_TRACKED_MISSES = 10_000;
+
+    private final ObjectStorage objectStorage;
+    private final ObjectCacheProperties properties;
+    private final Path dir;
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter evictions;
+    private final Cache<String, CachedObject> memory;
+    private final ReentrantLock lock = new ReentrantLock();
+    // in access order, so the first entry is the least recently used one
+    private final LinkedHashMap<String, CachedObject> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<String, Integer> missCounts = new HashMap<>();
+    private final Set<String> filling = ConcurrentHashMap.newKeySet();
+    private final Map<Path, Instant> pins = new ConcurrentHashMap<>();
+    private final ExecutorService fillExecutor = new ThreadPoolExecutor(FILL_THREADS, FILL_THREADS,
+            0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(FILL_QUEUE_CAPACITY),
+            Thread.ofPlatform().name("object-cache-fill-", 0).daemon().factory());
+    private long size;
+
+    public ObjectCache(ObjectStorage objectStorage, ObjectCacheProperties properties, MeterRegistry meterRegistry) {
+        this.objectStorage = objectStorage;
+        this.properties = properties;
+        this.dir = Path.of(properties.dir());
+        this.hits = meterRegistry.counter("object.cache.requests", "result", "hit");
+        this.misses = meterRegistry.counter("object.cache.requests", "result", "miss");
+        this.evictions = meterRegistry.counter("object.cache.evictions");
+        this.memory = Caffeine.newBuilder()
+                .maximumWeight(properties.memoryMaxSize())
+                .weigher((String objectKey, CachedObject cached) -> cached.content().length)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, memory, "objects");
+        Gauge.builder("object.cache.size", this, ObjectCache::size).baseUnit("bytes").register(meterRegistry);
+    }
+
+    /**
+     * Creates the cache directory and removes the files left by a previous run.
+     */
+    @PostConstruct
+    public void init() throws IOException {
+        if (!properties.enabled()) {
+            return;
+        }
+        Files.createDirectories(dir);
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, "{" + FILE_PREFIX + "," + PART_PREFIX + "," + PIN_PREFIX + "}*")) {
+            for (Path file : files) {
+                Files.deleteIfExists(file);
+            }
+        }
+        log.info("Object cache enabled in {}, max size: {} bytes", dir, properties.maxSize());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        fillExecutor.shutdownNow();
+    }
+
+    public boolean isEnabled() {
+        return properties.enabled();
+    }
+
+    /**
+     * Looks up an object in memory, then on disk. An entry cached for another entity tag is removed.
+     *
+     * @param objectKey the key of the object
+     * @param etag      the current entity tag of the object, may be null
+     * @return the cached object, if it is cached with this entity tag
+     */
+    public Optional<CachedObject> get(String objectKey, String etag) {
+        if (!properties.enabled() || etag == null) {
+            return Optional.empty();
+        }
+        if (properties.memoryMaxSize() > 0) {
+            CachedObject inMemory = memory.getIfPresent(objectKey);
+            if (inMemory != null) {
+                if (etag.equals(inMemory.file().etag())) {
+                    return Optional.of(inMemory);
+                }
+                memory.invalidate(objectKey);
+            }
+        }
+        CachedObject stale;
+        lock.lock();
+        try {
+            CachedObject cached = entries.get(objectKey);
+            if (cached != null && etag.equals(cached.file().etag())) {
+                hits.increment();
+                return Optional.of(cached);
+            }
+            stale = cached == null ? null : remove(objectKey);
+        } finally {
+            lock.unlock();
+        }
+        misses.increment();
+        delete(stale);
+        return Optional.empty();
+    }
+
+    /**
+     * Tells whether an object belongs in the memory tier. Such an object is read whole from the storage
+     * and passed to {@link #putInMemory}, instead of being {@linkplain #admit admitted} to disk.
+     *
+     * @param file the metadata of the whole object
+     * @return true if the object is small enough to be kept in memory
+     */
+    public boolean fitsInMemory(FileStat file) {
+        return properties.enabled() && properties.memoryMaxSize() > 0
+                && file.etag() != null && file.size() <= properties.memoryMaxObjectSize();
+    }
+
+    /**
+     * Offers an object read from the storage to the memory tier. Whether it is kept depends on how
+     * often it is used compared to the objects already in memory.
+     *
+     * @param objectKey the key of the object
+     * @param file      the metadata of the whole object
+     * @param content   the content of the whole object
+     * @return the object, to be served from the given content whether it was kept or not
+     */
+    public CachedObject putInMemory(String objectKey, FileStat file, byte[] content) {
+        CachedObject cached = new CachedObject(file, null, content);
+        if (fitsInMemory(file) && content.length == file.size()) {
+            memory.put(objectKey, cached);
+        }
+        return cached;
+    }
+
+    /**
+     * Records a download of an object that was not served from the cache, and copies the object to the
+     * cache in the background once it has been downloaded often enough. Objects without an entity tag or
+     * larger than {@code object-cache.max-object-size} are never cached.
+     *
+     * @param objectKey the key of the object
+     * @param file      the metadata of the whole object
+     */
+    public void admit(String objectKey, FileStat file) {
+        if (!properties.enabled() || file.etag() == null || file.size() > properties.maxObjectSize()) {
+            return;
+        }
+        lock.lock();
+        try {
+            if (missCounts.size() >= MAX_TRACKED_MISSES) {
+                missCounts.clear();
+            }
+            if (missCounts.merge(objectKey, 1, Integer::sum) < properties.admissionHits()) {
+                return;
+            }
+            missCounts.remove(objectKey);
+        } finally {
+            lock.unlock();
+        }
+        if (!filling.add(objectKey)) {
+            return;
+        }
+        try {
+            fillExecutor.execute(() -> {
+                try {
+                    fill(objectKey, file);
+                } finally {
+                    filling.remove(objectKey);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            log.debug("Object cache fill queue is full, skipping: {}", objectKey);
+            filling.remove(objectKey);
+        }
+    }
+
+    /**
+     * Removes an object from the cache, e.g. because it was replaced or deleted.
+     *
+     * @param objectKey the key of the object
+     */
+    public void evict(String objectKey) {
+        if (!properties.enabled()) {
+            return;
+        }
+        memory.invalidate(objectKey);
+        CachedObject removed;
+        lock.lock();
+        try {
+            removed = remove(objectKey);
+        } finally {
+            lock.unlock();
+        }
+        delete(removed);
+    }
+
+    /**
+     * Opens a byte range of a cached object. A file is opened right away, so an eviction that deletes it
+     * later does not cut the download short: the open channel keeps the content readable.
+     *
+     * @param cached the cached object
+     * @param offset the position of the first byte
+     * @param length the number of bytes
+     * @return the content of the range; must be closed by the caller
+     * @throws NoSuchFileException if the file was evicted since the object was looked up
+     */
+    public InputStream open(CachedObject cached, long offset, long length) throws IOException {
+        if (cached.content() != null) {
+            return new ByteArrayInputStream(cached.content(), (int) offset, (int) length);
+        }
+        return new RegionInputStream(FileChannel.open(cached.path(), StandardOpenOption.READ), offset, offset + length);
+    }
+
+    /**
+     * Pins the file of an object cached on disk for a transfer that opens it later, such as a
+     * {@code sendfile} the connector performs after the controller returns. The pin is a hard link to the
+     * file, which an eviction leaves in place; once the transfer has opened the link, its open descriptor
+     * keeps the content readable after the link is removed.
+     *
+     * @param cached an object cached on disk
+     * @return the object, with the path of the link
+     * @throws NoSuchFileException if the file was evicted since the object was looked up
+     */
+    public CachedObject pin(CachedObject cached) throws IOException {
+        Path link = dir.resolve(PIN_PREFIX + UUID.randomUUID());
+        Files.createLink(link, cached.path());
+        pins.put(link, Instant.now());
+        return new CachedObject(cached.file(), link, null);
+    }
+
+    /**
+     * Removes the links of pins older than {@code object-cache.pin-ttl}. The connector gives no callback
+     * once a {@code sendfile} is done, but it opens the file as soon as the request has been handled.
+     */
+    @Scheduled(fixedDelayString = "${object-cache.pin-ttl}")
+    public void unpinExpired() {
+        Instant threshold = Instant.now().minus(properties.pinTtl());
+        pins.forEach((link, pinnedAt) -> {
+            if (pinnedAt.isBefore(threshold) && pins.remove(link, pinnedAt)) {
+                deleteQuietly(link);
+            }
+        });
+    }
+
+    /**
+     * Copies an object from the storage to the cache. The copy is written to a temporary file and
+     * moved into place, so a partially written file is never served.
+     */
+    void fill(String objectKey, FileStat file) {
+        Path part = null;
+        try {
+            part = Files.createTempFile(dir, PART_PREFIX, ".part");
+            try (InputStream inputStream = objectStorage.get(objectKey, args -> args.matchETag(file.etag()))) {
+                Files.copy(inputStream, part, StandardCopyOption.REPLACE_EXISTING);
+            }
+            if (Files.size(part) != file.size()) {
+                log.debug("Object changed while being cached, skipping: {}", objectKey);
+                return;
+            }
+            Path target = dir.resolve(FILE_PREFIX + UUID.randomUUID());
+            Files.move(part, target, StandardCopyOption.ATOMIC_MOVE);
+            part = null;
+            putOnDisk(objectKey, new CachedObject(file, target, null));
+            log.debug("Object cached: {}, size: {}", objectKey, file.size());
+        } catch (IOException e) {
+            log.warn("Failed to cache object {}: {}", objectKey, e.getMessage());
+        } finally {
+            if (part != null) {
+                deleteQuietly(part);
+            }
+        }
+    }
+
+    long size() {
+        lock.lock();
+        try {
+            return size;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void putOnDisk(String objectKey, CachedObject cached) {
+        List<CachedObject> evicted = new ArrayList<>();
+        lock.lock();
+        try {
+            CachedObject replaced = entries.put(objectKey, cached);
+            if (replaced != null) {
+                size -= replaced.file().size();
+                evicted.add(replaced);
+            }
+            size += cached.file().size();
+            Iterator<Map.Entry<String, CachedObject>> iterator = entries.entrySet().iterator();
+            while (size > properties.maxSize() && iterator.hasNext()) {
+                CachedObject eldest = iterator.next().getValue();
+                iterator.remove();
+                size -= eldest.file().size();
+                evicted.add(eldest);
+                evictions.increment();
+            }
+        } finally {
+            lock.unlock();
+        }
+        evicted.forEach(this::delete);
+    }
+
+    /**
+     * Removes an entry from the index. Must be called with the lock held; the file is deleted by the
+     * caller after releasing it.
+     */
+    private CachedObject remove(String objectKey) {
+        CachedObject removed = entries.remove(objectKey);
+        if (removed != null) {
+            size -= removed.file().size();
+        }
+        return removed;
+    }
+
+    private void delete(CachedObject cached) {
+        if (cached != null) {
+            deleteQuietly(cached.path());
+        }
+    }
+
+    private static void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            log.warn("Failed to delete cached file {}: {}", path, e.getMessage());
+        }
+    }
+
+    /**
+     * An object in the cache, held either in memory or in a file.
+     *
+     * @param file    the metadata of the object when it was cached
+     * @param path    the file holding the content of the object, or null for an object in memory
+     * @param content the content of the object in memory, or null for an object on disk
+     */
+    public record CachedObject(FileStat file, Path path, byte[] content) {
+    }
+
+    /**
+     * Reads a byte range of a file with positional reads.
+     */
+    private static class RegionInputStream extends InputStream {
+        private final FileChannel channel;
+        private final long end;
+        private long position;
+
+        RegionInputStream(FileChannel channel, long position, long end) {
+            this.channel = channel;
+            this.position = position;
+            this.end = end;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] b = new byte[1];
+            return read(b, 0, 1) < 0 ? -1 : b[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (position >= end) {
+                return -1;
+            }
+            int read = channel.read(ByteBuffer.wrap(b, off, (int) Math.min(len, end - position)), position);
+            if (read > 0) {
+                position += read;
+            }
+            return read;
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+}
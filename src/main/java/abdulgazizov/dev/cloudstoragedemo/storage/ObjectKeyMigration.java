@@ -0,0 +1,144 @@
+package abdulgazizov.dev.cloudstoragedemo.storage;
+
+import abdulgazizov.dev.cloudstoragedemo.entity.FileMetadata;
+import abdulgazizov.dev.cloudstoragedemo.properties.MinioProperties;
+import abdulgazizov.dev.cloudstoragedemo.repositories.FileMetadataRepository;
+import io.minio.*;
+import io.minio.errors.ErrorResponseException;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.annotation.Order;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * One-off job that moves objects stored under the bare file name into the per-user namespace
+ * (see {@link ObjectKeys}). Enabled with {@code minio.key-migration.enabled=true}.
+ * <p>
+ * The job first copies every legacy object to its new key and checks the size of the copy, then removes in
+ * batches the legacy objects it has copied. A legacy name shared by several users is removed only if no owner
+ * failed to get a copy. Objects that already exist under the new key are left untouched and their legacy
+ * names are not removed, so a restarted job removes nothing it has not copied itself. File names that look
+ * like keys of the new namespaces are never read or removed, as they may name the object of another user.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "minio.key-migration.enabled", havingValue = "true")
+public class ObjectKeyMigration {
+    private static final int PAGE_SIZE = 500;
+    private static final String NO_SUCH_KEY = "NoSuchKey";
+
+    private final MinioClient minioClient;
+    private final ObjectStorage objectStorage;
+    private final MinioProperties minioProperties;
+    private final FileMetadataRepository fileMetadataRepository;
+
+    @Order(0)
+    @EventListener(ApplicationReadyEvent.class)
+    public void migrate() {
+        log.info("Migrating object keys to per-user prefixes in bucket {}", minioProperties.bucketName());
+        Set<String> failed = new HashSet<>();
+        Set<String> copied = new LinkedHashSet<>();
+        Pageable pageable = PageRequest.of(0, PAGE_SIZE, Sort.by("id"));
+        Page<FileMetadata> page;
+        do {
+            page = fileMetadataRepository.findAll(pageable);
+            for (FileMetadata file : page) {
+                try {
+                    if (copyLegacyObject(file)) {
+                        copied.add(file.getFileName());
+                    }
+                } catch (Exception e) {
+                    log.error("Failed to migrate file {} of user {}: {}", file.getFileName(), file.getOwnerId(), e.getMessage(), e);
+                    failed.add(file.getFileName());
+                }
+            }
+            pageable = page.nextPageable();
+        } while (page.hasNext());
+
+        int copiedCount = copied.size();
+        copied.removeAll(failed);
+        int removed = removeLegacyObjects(copied);
+        log.info("Object key migration finished: copied={}, removed={}, failed={}", copiedCount, removed, failed.size());
+    }
+
+    /**
+     * Copies the legacy object of a file to the storage key of its blob and checks that the copy is complete.
+     *
+     * @return true if the object was copied, false if there was nothing to copy
+     */
+    private boolean copyLegacyObject(FileMetadata file) throws Exception {
+        String legacyKey = file.getFileName();
+        if (ObjectKeys.isNamespaced(legacyKey)) {
+            log.warn("File {} of user {} is named like an object key, skipping", legacyKey, file.getOwnerId());
+            return false;
+        }
+        String objectKey = file.getStorageKey();
+        if (stat(objectKey) != null) {
+            return false;
+        }
+        StatObjectResponse source = stat(legacyKey);
+        if (source == null) {
+            log.warn("Legacy object {} not found, skipping", legacyKey);
+            return false;
+        }
+        minioClient.copyObject(CopyObjectArgs.builder()
+                .bucket(minioProperties.bucketName())
+                .source(CopySource.builder()
+                        .bucket(minioProperties.bucketName())
+                        .object(legacyKey)
+                        .build())
+                .object(objectKey)
+                .build());
+        StatObjectResponse copy = stat(objectKey);
+        if (copy == null || copy.size() != source.size()) {
+            throw new IllegalStateException("Copy of " + legacyKey + " to " + objectKey + " is incomplete");
+        }
+        log.debug("Copied {} to {}", legacyKey, objectKey);
+        return true;
+    }
+
+    /**
+     * @return the metadata of the object, or null if there is no object with the key
+     */
+    private StatObjectResponse stat(String objectKey) throws Exception {
+        try {
+            return minioClient.statObject(StatObjectArgs.builder()
+                    .bucket(minioProperties.bucketName())
+                    .object(objectKey)
+                    .build());
+        } catch (ErrorResponseException e) {
+            if (NO_SUCH_KEY.equals(e.errorResponse().code())) {
+                return null;
+            }
+            throw e;
+        }
+    }
+
+    private int removeLegacyObjects(Set<String> legacyKeys) {
+        if (legacyKeys.isEmpty()) {
+            return 0;
+        }
+        try {
+            List<String> failed = objectStorage.removeAll(legacyKeys);
+            failed.forEach(legacyKey -> log.error("Failed to remove legacy object {}", legacyKey));
+            return legacyKeys.size() - failed.size();
+        } catch (IOException e) {
+            log.error("Failed to remove legacy objects: {}", e.getMessage(), e);
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package abdulgazizov.dev.cloudstoragedemo.storage;
+
+import java.util.UUID;
+
+/**
+ * Builds object keys inside the bucket. Content is stored under {@code b/} with a random key and shared by
+ * all files with the same content, so a key never changes while a file refers to it. Objects written before
+ * live in the per-user {@code u/{userId}/} namespaces and keep their keys.
+ */
+public final class ObjectKeys {
+    private static final String USER_PREFIX = "u/";
+    private static final String BLOB_PREFIX = "b/";
+
+    private ObjectKeys() {
+    }
+
+    /**
+     * @return the key prefix shared by the namespaces of all users
+     */
+    public static String usersPrefix() {
+        return USER_PREFIX;
+    }
+
+    /**
+     * @param userId the ID of the owner
+     * @return the key prefix of all objects of the user, ending with a slash
+     */
+    public static String userPrefix(Long userId) {
+        return USER_PREFIX + userId + "/";
+    }
+
+    /**
+     * @param key an object key
+     * @return true if the key lies in the namespace of the users or of the blobs, so it is not a legacy file name
+     */
+    public static boolean isNamespaced(String key) {
+        return key.startsWith(USER_PREFIX) || key.startsWith(BLOB_PREFIX);
+    }
+
+    /**
+     * @return a new, unique key for the content of a file
+     */
+    public static String newBlob() {
+        return BLOB_PREFIX + UUID.randomUUID();
+    }
+
+    /**
+     * @param userId   the ID of the owner
+     * @param fileName the user-visible file name
+     * @return the key the object of the file had before content was shared
+     */
+    public static String of(Long userId, String fileName) {
+        return userPrefix(userId) + fileName;
+    }
+}
@@ -0,0 +1,281 @@
+package abdulgazizov.dev.cloudstoragedemo.storage;
+
+import abdulgazizov.dev.cloudstoragedemo.exceptions.FileNotModifiedException;
+import abdulgazizov.dev.cloudstoragedemo.exceptions.RangeNotSatisfiableException;
+import abdulgazizov.dev.cloudstoragedemo.properties.MinioProperties;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.minio.*;
+import io.minio.errors.ErrorResponseException;
+import io.minio.errors.ServerException;
+import io.minio.http.Method;
+import io.minio.messages.DeleteError;
+import io.minio.messages.DeleteObject;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.UnaryOperator;
+
+/**
+ * Access to the objects of the configured bucket. Every call is a single round-trip to the storage:
+ * existence is not checked up front but derived from the outcome of the operation itself, with a
+ * missing object reported as {@link FileNotFoundException}.
+ * <p>
+ * Each call is recorded in the {@code storage.requests} timer, tagged with the operation and its outcome.
+ * <p>
+ * The bucket is provisioned once by {@link #ensureBucket()}; a NoSuchBucket error from any operation
+ * forgets it, so the next upload provisions it again.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ObjectStorage {
+    private static final String METRIC_NAME = "storage.requests";
+    private static final String NO_SUCH_KEY = "NoSuchKey";
+    private static final String NO_SUCH_BUCKET = "NoSuchBucket";
+    private static final String INVALID_RANGE = "InvalidRange";
+    private static final int NOT_MODIFIED = 304;
+    private static final int MAX_REMOVE_BATCH = 1000;
+
+    private final MinioClient minioClient;
+    private final MinioProperties minioProperties;
+    private final MeterRegistry meterRegistry;
+    private final Set<String> knownBuckets = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Reads the metadata of an object.
+     *
+     * @param objectKey the key of the object
+     * @return the metadata of the object
+     * @throws FileNotFoundException if the object does not exist
+     */
+    public StatObjectResponse stat(String objectKey) throws IOException {
+        return execute("stat", objectKey, () -> minioClient.statObject(StatObjectArgs.builder()
+                .bucket(minioProperties.bucketName())
+                .object(objectKey)
+                .build()));
+    }
+
+    /**
+     * Opens the content of an object. The response headers carry the object metadata, so no separate
+     * {@link #stat(String)} is needed to describe the content.
+     *
+     * @param objectKey the key of the object
+     * @param options   customizes the request, e.g. with a byte range or preconditions
+     * @return the content of the object; must be closed by the caller
+     * @throws FileNotFoundException        if the object does not exist
+     * @throws FileNotModifiedException     if a precondition reports the object as not modified
+     * @throws RangeNotSatisfiableException if the requested range starts past the end of the object
+     */
+    public GetObjectResponse get(String objectKey, UnaryOperator<GetObjectArgs.Builder> options) throws IOException {
+        return execute("get", objectKey, () -> minioClient.getObject(options.apply(GetObjectArgs.builder()
+                        .bucket(minioProperties.bucketName())
+                        .object(objectKey))
+                .build()));
+    }
+
+    /**
+     * Stores an object, replacing any existing object with the same key.
+     *
+     * @param objectKey   the key of the object
+     * @param inputStream the content of the object
+     * @param size        the size of the content in bytes, or -1 if unknown
+     * @param partSize    the size of the parts of a multipart upload
+     * @param contentType the content type of the object, may be null
+     * @return the entity tag of the stored object, without quotes
+     */
+    public String put(String objectKey, InputStream inputStream, long size, long partSize, String contentType) throws IOException {
+        PutObjectArgs.Builder args = PutObjectArgs.builder()
+                .stream(inputStream, size, partSize)
+                .bucket(minioProperties.bucketName())
+                .object(objectKey);
+        if (contentType != null) {
+            args.contentType(contentType);
+        }
+        return execute("put", objectKey, () -> minioClient.putObject(args.build()).etag());
+    }
+
+    /**
+     * Copies an object within the bucket.
+     *
+     * @param sourceKey the key of the object to copy
+     * @param targetKey the key of the copy
+     * @throws FileNotFoundException if the source object does not exist
+     */
+    public void copy(String sourceKey, String targetKey) throws IOException {
+        execute("copy", sourceKey, () -> minioClient.copyObject(CopyObjectArgs.builder()
+                .bucket(minioProperties.bucketName())
+                .source(CopySource.builder()
+                        .bucket(minioProperties.bucketName())
+                        .object(sourceKey)
+                        .build())
+                .object(targetKey)
+                .build()));
+    }
+
+    /**
+     * Removes an object. Removing a missing object is not an error.
+     *
+     * @param objectKey the key of the object
+     */
+    public void remove(String objectKey) throws IOException {
+        execute("remove", objectKey, () -> {
+            minioClient.removeObject(RemoveObjectArgs.builder()
+                    .bucket(minioProperties.bucketName())
+                    .object(objectKey)
+                    .build());
+            return null;
+        });
+    }
+
+    /**
+     * Signs a URL that lets its holder read or write an object directly until it expires, without credentials.
+     * The URL is signed locally; the storage is only asked once for the region of the bucket.
+     *
+     * @param method      {@link Method#GET} to read the object, {@link Method#PUT} to write it
+     * @param objectKey   the key of the object
+     * @param expiry      how long the URL stays valid, at most 7 days
+     * @param queryParams extra signed parameters, e.g. {@code response-content-disposition} for a read
+     * @return the signed URL
+     */
+    public String presign(Method method, String objectKey, Duration expiry, Map<String, String> queryParams) throws IOException {
+        return execute("presign_" + method.name().toLowerCase(Locale.ROOT), objectKey,
+                () -> minioClient.getPresignedObjectUrl(GetPresignedObjectUrlArgs.builder()
+                        .method(method)
+                        .bucket(minioProperties.bucketName())
+                        .object(objectKey)
+                        .expiry((int) expiry.toSeconds())
+                        .extraQueryParams(queryParams)
+                        .build()));
+    }
+
+    /**
+     * Removes objects with multi-object delete requests of up to {@value #MAX_REMOVE_BATCH} keys each.
+     * Removing a missing object is not an error.
+     *
+     * @param objectKeys the keys of the objects
+     * @return the keys of the objects the storage failed to remove
+     */
+    public List<String> removeAll(Collection<String> objectKeys) throws IOException {
+        List<String> failed = new ArrayList<>();
+        List<DeleteObject> batch = new ArrayList<>(Math.min(objectKeys.size(), MAX_REMOVE_BATCH));
+        for (String objectKey : objectKeys) {
+            batch.add(new DeleteObject(objectKey));
+            if (batch.size() == MAX_REMOVE_BATCH) {
+                failed.addAll(removeBatch(batch));
+                batch = new ArrayList<>(MAX_REMOVE_BATCH);
+            }
+        }
+        if (!batch.isEmpty()) {
+            failed.addAll(removeBatch(batch));
+        }
+        return failed;
+    }
+
+    /**
+     * Makes sure the bucket exists, creating it if needed. The outcome is cached, so after the first
+     * call this costs no round-trip until the storage reports the bucket as missing.
+     */
+    public void ensureBucket() throws IOException {
+        String bucket = minioProperties.bucketName();
+        if (knownBuckets.contains(bucket)) {
+            return;
+        }
+        boolean found = execute("bucket_exists", bucket, () -> minioClient.bucketExists(BucketExistsArgs.builder()
+                .bucket(bucket)
+                .build()));
+        if (!found) {
+            try {
+                execute("make_bucket", bucket, () -> {
+                    minioClient.makeBucket(MakeBucketArgs.builder()
+                            .bucket(bucket)
+                            .build());
+                    return null;
+                });
+                log.info("Bucket created: {}", bucket);
+            } catch (IOException e) {
+                // another instance may have created the bucket in the meantime
+                if (!(e.getCause() instanceof ErrorResponseException error && isBucketOwned(error))) {
+                    throw e;
+                }
+            }
+        }
+        knownBuckets.add(bucket);
+    }
+
+    private List<String> removeBatch(List<DeleteObject> batch) throws IOException {
+        return execute("remove_batch", batch.size() + " objects", () -> {
+            List<String> failed = new ArrayList<>();
+            // removeObjects is lazy: the request is sent while the results are iterated, and only errors are returned
+            for (Result<DeleteError> result : minioClient.removeObjects(RemoveObjectsArgs.builder()
+                    .bucket(minioProperties.bucketName())
+                    .objects(batch)
+                    .build())) {
+                DeleteError error = result.get();
+                log.warn("Failed to remove object {}: {}", error.objectName(), error.message());
+                failed.add(error.objectName());
+            }
+            return failed;
+        });
+    }
+
+    private <T> T execute(String operation, String objectKey, StorageCall<T> call) throws IOException {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String outcome = "error";
+        try {
+            T result = call.execute();
+            outcome = "success";
+            return result;
+        } catch (ErrorResponseException e) {
+            String code = e.errorResponse().code();
+            if (NO_SUCH_KEY.equals(code)) {
+                outcome = "not_found";
+                throw new FileNotFoundException("File not found: " + objectKey);
+            }
+            if (NO_SUCH_BUCKET.equals(code)) {
+                knownBuckets.remove(minioProperties.bucketName());
+                log.warn("Bucket {} no longer exists", minioProperties.bucketName());
+            }
+            if (INVALID_RANGE.equals(code)) {
+                outcome = "invalid_range";
+                throw new RangeNotSatisfiableException("Range not satisfiable: " + objectKey);
+            }
+            throw new IOException("Storage " + operation + " failed: " + e.getMessage(), e);
+        } catch (ServerException e) {
+            // MinIO reports a satisfied If-None-Match or If-Modified-Since on GET as a server error
+            if (e.statusCode() == NOT_MODIFIED) {
+                outcome = "not_modified";
+                throw new FileNotModifiedException("File not modified: " + objectKey);
+            }
+            throw new IOException("Storage " + operation + " failed: " + e.getMessage(), e);
+        } catch (IOException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IOException("Storage " + operation + " failed: " + e.getMessage(), e);
+        } finally {
+            sample.stop(meterRegistry.timer(METRIC_NAME, "operation", operation, "outcome", outcome));
+        }
+    }
+
+    private static boolean isBucketOwned(ErrorResponseException e) {
+        String code = e.errorResponse().code();
+        return "BucketAlreadyOwnedByYou".equals(code) || "BucketAlreadyExists".equals(code);
+    }
+
+    @FunctionalInterface
+    private interface StorageCall<T> {
+        T execute() throws Exception;
+    }
+}
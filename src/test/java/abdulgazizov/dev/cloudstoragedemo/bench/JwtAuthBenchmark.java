@@ -0,0 +1,249 @@
+package abdulgazizov.dev.cloudstoragedemo.bench;
+
+import abdulgazizov.dev.cloudstoragedemo.entity.Role;
+import abdulgazizov.dev.cloudstoragedemo.entity.User;
+import abdulgazizov.dev.cloudstoragedemo.filter.JwtFilter;
+import abdulgazizov.dev.cloudstoragedemo.jwt.AccessTokenAuthenticator;
+import abdulgazizov.dev.cloudstoragedemo.jwt.JwtKeys;
+import abdulgazizov.dev.cloudstoragedemo.jwt.JwtProvider;
+import abdulgazizov.dev.cloudstoragedemo.jwt.JwtUtils;
+import abdulgazizov.dev.cloudstoragedemo.jwt.TokenValidation;
+import abdulgazizov.dev.cloudstoragedemo.properties.JwtKeyProperties;
+import abdulgazizov.dev.cloudstoragedemo.properties.JwtProperties;
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.io.Decoders;
+import io.jsonwebtoken.security.Keys;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.FilterChain;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.security.authentication.AbstractAuthenticationToken;
+import org.springframework.security.config.annotation.method.configuration.EnableMethodSecurity;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import java.security.Key;
+import java.util.Collection;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * The cost of authenticating one request with an access token. The baseline parses the token the way
+ * {@code JwtFilter} used to: a new parser is built and the signature verified once to validate the token and
+ * once more to read its claims. The other benchmarks take the current path: one pre-built parser, and the
+ * whole filter with the verified-token cache disabled and enabled.
+ * <p>
+ * The {@code securedCall} benchmarks add a {@code @PreAuthorize} check like the one on the controllers, which
+ * reads the authorities of the authentication on every call. The baseline builds them from the roles on each
+ * read, as {@code JwtAuthentication} used to; {@code filterThenSecuredCall} is the whole path of a request.
+ * They are meant to be run with the GC profiler, which reports the bytes allocated per operation.
+ * <p>
+ * The benchmarks are compiled with the tests and run with the JMH runner:
+ * <pre>
+ * mvn test-compile dependency:build-classpath -Dmdep.outputFile=target/test-classpath.txt
+ * java -cp target/test-classes:target/classes:$(cat target/test-classpath.txt) org.openjdk.jmh.Main JwtAuthBenchmark -prof gc
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JwtAuthBenchmark {
+    private static final String ACCESS_SECRET = "U0RTRkZkZ3Nuc2duc3RuZGZuZGZnbmRmZ25kZm5kZm5kZmduZGZuZA==";
+    private static final String REFRESH_SECRET = "YXNkZ2hzZXRodHJ3aGU2NTQ1NjMzbmRibiBkYXNyZ2VhcmdlcWE=";
+    // a cache of size 0 evicts asynchronously, so the verifying filter takes a different token each time
+    private static final int TOKENS = 256;
+
+    private Key accessKey;
+    private String token;
+    private JwtProvider jwtProvider;
+    private JwtFilter verifyingFilter;
+    private JwtFilter cachingFilter;
+    private MockHttpServletRequest request;
+    private MockHttpServletRequest[] requests;
+    private int next;
+    private MockHttpServletResponse response;
+    private FilterChain chain;
+    private Authentication authenticated;
+    private AnnotationConfigApplicationContext context;
+    private SecuredFiles securedFiles;
+    private Authentication streamingAuthentication;
+    private Authentication jwtAuthentication;
+    private FilterChain securedChain;
+
+    @Setup
+    public void setUp() {
+        // the filters log every request, which would be measured along with them
+        ((Logger) LoggerFactory.getLogger(org.slf4j.Logger.ROOT_LOGGER_NAME)).setLevel(Level.WARN);
+
+        accessKey = Keys.hmacShaKeyFor(Decoders.BASE64.decode(ACCESS_SECRET));
+        JwtKeys jwtKeys = new JwtKeys(new JwtKeyProperties("HS256", "", "", ""));
+        jwtProvider = new JwtProvider(new JwtProperties(ACCESS_SECRET, REFRESH_SECRET, 0, 1), jwtKeys);
+        token = jwtProvider.generateAccessToken(user(1L));
+
+        verifyingFilter = new JwtFilter(new AccessTokenAuthenticator(jwtProvider, new JwtUtils(),
+                new JwtProperties(ACCESS_SECRET, REFRESH_SECRET, 0, 1), new SimpleMeterRegistry()));
+        cachingFilter = new JwtFilter(new AccessTokenAuthenticator(jwtProvider, new JwtUtils(),
+                new JwtProperties(ACCESS_SECRET, REFRESH_SECRET, 10_000, 1), new SimpleMeterRegistry()));
+        request = request(token);
+        requests = new MockHttpServletRequest[TOKENS];
+        for (int i = 0; i < TOKENS; i++) {
+            requests[i] = request(jwtProvider.generateAccessToken(user(i + 1L)));
+        }
+        response = new MockHttpServletResponse();
+        chain = (request, response) -> authenticated = SecurityContextHolder.getContext().getAuthentication();
+
+        context = new AnnotationConfigApplicationContext(MethodSecurityConfig.class);
+        securedFiles = context.getBean(SecuredFiles.class);
+        streamingAuthentication = new StreamingAuthentication(Set.of(Role.ROLE_USER));
+        jwtAuthentication = new JwtUtils().generate(jwtProvider.parseAccessToken(token).claims());
+        securedChain = (request, response) -> securedFiles.read("file.txt");
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public Claims parserRebuiltTwice() {
+        Jwts.parserBuilder().setSigningKey(accessKey).build().parseClaimsJws(token);
+        return Jwts.parserBuilder().setSigningKey(accessKey).build().parseClaimsJws(token).getBody();
+    }
+
+    @Benchmark
+    public TokenValidation parserPrebuilt() {
+        return jwtProvider.parseAccessToken(token);
+    }
+
+    @Benchmark
+    public Authentication filterVerifying() throws Exception {
+        next = (next + 1) % TOKENS;
+        return filter(verifyingFilter, requests[next]);
+    }
+
+    @Benchmark
+    public Authentication filterCached() throws Exception {
+        return filter(cachingFilter, request);
+    }
+
+    @Benchmark
+    public String securedCallStreamingAuthorities() {
+        return securedCall(streamingAuthentication);
+    }
+
+    @Benchmark
+    public String securedCall() {
+        return securedCall(jwtAuthentication);
+    }
+
+    @Benchmark
+    public void filterThenSecuredCall() throws Exception {
+        try {
+            cachingFilter.doFilter(request, response, securedChain);
+        } finally {
+            SecurityContextHolder.clearContext();
+        }
+    }
+
+    private String securedCall(Authentication authentication) {
+        SecurityContextHolder.getContext().setAuthentication(authentication);
+        try {
+            return securedFiles.read("file.txt");
+        } finally {
+            SecurityContextHolder.clearContext();
+        }
+    }
+
+    private Authentication filter(JwtFilter filter, MockHttpServletRequest request) throws Exception {
+        try {
+            filter.doFilter(request, response, chain);
+            return authenticated;
+        } finally {
+            SecurityContextHolder.clearContext();
+        }
+    }
+
+    private static MockHttpServletRequest request(String token) {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/file");
+        request.addHeader("Auth-Token", "Bearer " + token);
+        return request;
+    }
+
+    private static User user(long id) {
+        User user = new User();
+        user.setId(id);
+        user.setUsername("username");
+        user.setRoles(Set.of(Role.ROLE_USER));
+        return user;
+    }
+
+    @Configuration
+    @EnableMethodSecurity
+    public static class MethodSecurityConfig {
+        @Bean
+        public SecuredFiles securedFiles() {
+            return new SecuredFiles();
+        }
+    }
+
+    public static class SecuredFiles {
+        @PreAuthorize("hasAnyRole('ADMIN','USER')")
+        public String read(String filename) {
+            return filename;
+        }
+    }
+
+    /**
+     * Builds a new set of authorities on every read, as {@code JwtAuthentication} did before they were
+     * computed once.
+     */
+    private static class StreamingAuthentication extends AbstractAuthenticationToken {
+        private final Set<Role> roles;
+
+        StreamingAuthentication(Set<Role> roles) {
+            super(null);
+            this.roles = roles;
+            setAuthenticated(true);
+        }
+
+        @Override
+        public Collection<GrantedAuthority> getAuthorities() {
+            return roles.stream().map(role -> new SimpleGrantedAuthority(role.name())).collect(Collectors.toSet());
+        }
+
+        @Override
+        public Object getCredentials() {
+            return null;
+        }
+
+        @Override
+        public Object getPrincipal() {
+            return "username";
+        }
+    }
+}
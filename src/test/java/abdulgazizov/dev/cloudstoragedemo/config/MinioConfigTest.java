@@ -0,0 +1,72 @@
+package abdulgazizov.dev.cloudstoragedemo.config;
+
+import abdulgazizov.dev.cloudstoragedemo.properties.MinioProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import okhttp3.OkHttpClient;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.env.MockEnvironment;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MinioConfigTest {
+    private SimpleMeterRegistry meterRegistry;
+
+    private MinioConfig minioConfig;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        minioConfig = new MinioConfig(new MinioProperties("bucket", "http://localhost:9000", "access", "secret",
+                5 * 1024 * 1024, 16, Duration.ofMinutes(1), 64, 32,
+                Duration.ofSeconds(3), Duration.ofSeconds(30), Duration.ofSeconds(40), Duration.ofMinutes(15)));
+    }
+
+    @Test
+    @DisplayName("HTTP-клиент MinIO: настройки пула, диспетчера и таймаутов")
+    void minioHttpClient_testAppliesProperties() {
+        //when
+        OkHttpClient client = minioConfig.minioHttpClient(meterRegistry, new MockEnvironment());
+
+        //then
+        assertEquals(64, client.dispatcher().getMaxRequests());
+        assertEquals(32, client.dispatcher().getMaxRequestsPerHost());
+        assertEquals(3_000, client.connectTimeoutMillis());
+        assertEquals(30_000, client.readTimeoutMillis());
+        assertEquals(40_000, client.writeTimeoutMillis());
+    }
+
+    @Test
+    @DisplayName("HTTP-клиент MinIO: запросы выполняются на виртуальных потоках, если они включены")
+    void minioHttpClient_testVirtualThreadDispatcher() throws Exception {
+        //given
+        MockEnvironment environment = new MockEnvironment().withProperty("spring.threads.virtual.enabled", "true");
+
+        //when
+        OkHttpClient client = minioConfig.minioHttpClient(meterRegistry, environment);
+
+        //then
+        assertTrue(client.dispatcher().executorService().submit(() -> Thread.currentThread().isVirtual()).get());
+    }
+
+    @Test
+    @DisplayName("HTTP-клиент MinIO: метрики пула и диспетчера")
+    void minioHttpClientMetrics_testRegistersGauges() {
+        //given
+        OkHttpClient client = minioConfig.minioHttpClient(meterRegistry, new MockEnvironment());
+
+        //when
+        minioConfig.minioHttpClientMetrics(client).bindTo(meterRegistry);
+
+        //then
+        assertEquals(0, meterRegistry.get("minio.http.pool.connection.count").tag("state", "idle").gauge().value());
+        assertEquals(16, meterRegistry.get("minio.http.pool.connection.limit").gauge().value());
+        assertNotNull(meterRegistry.get("minio.http.dispatcher.running").tag("client", "minio").gauge());
+        assertEquals(0, meterRegistry.get("minio.http.dispatcher.queued").gauge().value());
+    }
+}
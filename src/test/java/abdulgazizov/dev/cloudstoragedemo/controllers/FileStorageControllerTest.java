@@ -1,35 +1,60 @@
 package abdulgazizov.dev.cloudstoragedemo.controllers;
 
+import abdulgazizov.dev.cloudstoragedemo.dtos.ArchiveEntry;
+import abdulgazizov.dev.cloudstoragedemo.dtos.FileContent;
+import abdulgazizov.dev.cloudstoragedemo.dtos.FileDeleteResult;
 import abdulgazizov.dev.cloudstoragedemo.dtos.FileDto;
 import abdulgazizov.dev.cloudstoragedemo.dtos.FileNameDto;
+import abdulgazizov.dev.cloudstoragedemo.dtos.FileNamesDto;
+import abdulgazizov.dev.cloudstoragedemo.dtos.FilePage;
+import abdulgazizov.dev.cloudstoragedemo.dtos.FileSort;
+import abdulgazizov.dev.cloudstoragedemo.dtos.FileStat;
+import abdulgazizov.dev.cloudstoragedemo.dtos.FileSummary;
+import abdulgazizov.dev.cloudstoragedemo.dtos.FileUploadResult;
+import abdulgazizov.dev.cloudstoragedemo.exceptions.FileNotModifiedException;
 import abdulgazizov.dev.cloudstoragedemo.exceptions.FileUploadException;
+import abdulgazizov.dev.cloudstoragedemo.exceptions.RangeNotSatisfiableException;
 import abdulgazizov.dev.cloudstoragedemo.mappers.FileMapper;
 import abdulgazizov.dev.cloudstoragedemo.services.FileStorageService;
-import io.minio.messages.Item;
 import org.apache.coyote.BadRequestException;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
-import org.springframework.core.io.ByteArrayResource;
-import org.springframework.core.io.Resource;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockHttpServletRequest;
 import org.springframework.mock.web.MockMultipartFile;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
-import java.time.ZonedDateTime;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
 import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
 
 @ExtendWith(MockitoExtension.class)
 class FileStorageControllerTest {
+    private static final Instant LAST_MODIFIED = Instant.parse("2024-01-01T00:00:00Z");
+
     @Mock
     private FileStorageService fileStorageService;
 
@@ -68,6 +93,37 @@ class FileStorageControllerTest {
         assertEquals("No file provided", response.getBody());
     }
 
+    @Test
+    @DisplayName("Потоковая загрузка файла: успешно")
+    void uploadStream_testSuccess() throws IOException {
+        //given
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setContent("Hello World".getBytes());
+        request.setContentType("text/plain");
+        String filename = "example.txt";
+
+        when(fileStorageService.upload(any(InputStream.class), eq(11L), eq(filename), eq("text/plain"))).thenReturn(filename);
+        //when
+        var response = fileStorageController.uploadStream(filename, request);
+        //then
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals("File uploaded successfully: " + filename, response.getBody());
+    }
+
+    @Test
+    @DisplayName("Потоковая загрузка файла: пустое тело запроса")
+    void uploadStream_testEmptyBody() throws IOException {
+        //given
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setContent(new byte[0]);
+        //when
+        var response = fileStorageController.uploadStream("example.txt", request);
+        //then
+        assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
+        assertEquals("No file provided", response.getBody());
+        verifyNoInteractions(fileStorageService);
+    }
+
     @Test
     @DisplayName("Загрузка файла: ошибка сохранения")
     void upload_FileSaveError() throws Exception {
@@ -92,17 +148,13 @@ class FileStorageControllerTest {
         //given
         int limit = 5;
 
-        Item item = mock(Item.class);
-        when(item.objectName()).thenReturn("file1.txt");
-        when(item.size()).thenReturn(1234L);
-        when(item.lastModified()).thenReturn(ZonedDateTime.now());
+        FileSummary file = new FileSummary("file1.txt", 1234L, Instant.now());
 
-        List<Item> items = List.of(item);
-        when(fileStorageService.getFiles(limit)).thenReturn(items);
-        FileDto expectedFileDto = FileMapper.toFileDto(item);
+        when(fileStorageService.getFiles(limit, FileSort.NAME, null)).thenReturn(new FilePage(List.of(file), null));
+        FileDto expectedFileDto = FileMapper.toFileDto(file);
 
         //when
-        var response = fileStorageController.getFiles(limit);
+        var response = fileStorageController.getFiles(limit, "name", null);
 
         //then
         assertNotNull(response);
@@ -110,6 +162,21 @@ class FileStorageControllerTest {
         assertNotNull(response.getBody());
         assertEquals(1, response.getBody().size());
         assertEquals(expectedFileDto, response.getBody().getFirst());
+        assertFalse(response.getHeaders().containsKey("X-Next-Cursor"));
+    }
+
+    @Test
+    @DisplayName("Получение списка файлов: курсор следующей страницы")
+    void getFiles_NextCursorHeader() throws BadRequestException {
+        //given
+        when(fileStorageService.getFiles(1, FileSort.EDITED, "cursor")).thenReturn(new FilePage(List.of(), "next"));
+
+        //when
+        var response = fileStorageController.getFiles(1, "edited", "cursor");
+
+        //then
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals("next", response.getHeaders().getFirst("X-Next-Cursor"));
     }
 
     @Test
@@ -118,11 +185,11 @@ class FileStorageControllerTest {
         //given
         int limit = 0;
 
-        when(fileStorageService.getFiles(limit)).thenThrow(new BadRequestException("Limit must be greater than 0"));
+        when(fileStorageService.getFiles(limit, FileSort.NAME, null)).thenThrow(new BadRequestException("Limit must be greater than 0"));
 
         //when
         BadRequestException exception = assertThrows(BadRequestException.class,
-                () -> fileStorageController.getFiles(limit));
+                () -> fileStorageController.getFiles(limit, "name", null));
 
         //then
         assertNotNull(exception);
@@ -130,21 +197,92 @@ class FileStorageControllerTest {
     }
 
     @Test
-    @DisplayName("Скачивание файла: успешно")
+    @DisplayName("Получение списка файлов: неизвестная сортировка")
+    void getFiles_UnknownSort() {
+        //when
+        BadRequestException exception = assertThrows(BadRequestException.class,
+                () -> fileStorageController.getFiles(5, "color", null));
+
+        //then
+        assertEquals("Unknown sort order: color", exception.getMessage());
+        verifyNoInteractions(fileStorageService);
+    }
+
+    @Test
+    @DisplayName("Скачивание файла: закреплённый файл из локального кэша передаётся через sendfile")
+    void download_testSendfile(@TempDir Path dir) throws Exception {
+        //given
+        String fileName = "example.txt";
+        Path localFile = Files.write(dir.resolve("pin-1"), "Hello, world!".getBytes());
+        FileStat file = new FileStat(fileName, 13, "etag", LAST_MODIFIED, "b/" + fileName);
+        InputStream content = mock(InputStream.class);
+        HttpHeaders headers = new HttpHeaders();
+        headers.setRange(List.of(HttpRange.createByteRange(7, 11)));
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setAttribute("org.apache.tomcat.sendfile.support", true);
+
+        when(fileStorageService.download(fileName, 7L, 5L, null, null))
+                .thenReturn(new FileContent(file, 7, 5, content, localFile));
+
+        //when
+        var response = fileStorageController.download(fileName, headers, request);
+
+        //then
+        assertEquals(HttpStatus.PARTIAL_CONTENT, response.getStatusCode());
+        assertEquals(5, response.getHeaders().getContentLength());
+        assertEquals("bytes 7-11/13", response.getHeaders().getFirst(HttpHeaders.CONTENT_RANGE));
+        assertNull(response.getBody());
+        assertEquals(localFile.toRealPath().toString(), request.getAttribute("org.apache.tomcat.sendfile.filename"));
+        assertEquals(7L, request.getAttribute("org.apache.tomcat.sendfile.start"));
+        assertEquals(12L, request.getAttribute("org.apache.tomcat.sendfile.end"));
+        verify(content).close();
+        verify(content, never()).read(any(), anyInt(), anyInt());
+    }
+
+    @Test
+    @DisplayName("Скачивание файла: без поддержки sendfile файл из кэша отдаётся потоком")
+    void download_testCachedWithoutSendfile() throws Exception {
+        //given
+        String fileName = "example.txt";
+        FileStat file = new FileStat(fileName, 13, "etag", LAST_MODIFIED, "b/" + fileName);
+        InputStream content = new ByteArrayInputStream("Hello, world!".getBytes());
+        MockHttpServletRequest request = new MockHttpServletRequest();
+
+        when(fileStorageService.download(fileName, null, null, null, null))
+                .thenReturn(new FileContent(file, 0, 13, content, Path.of("pin-1")));
+
+        //when
+        var response = fileStorageController.download(fileName, new HttpHeaders(), request);
+
+        //then
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertNotNull(response.getBody());
+        assertSame(content, response.getBody().getInputStream());
+        assertNull(request.getAttribute("org.apache.tomcat.sendfile.filename"));
+    }
+
+    @Test
+    @DisplayName("Скачивание файла: успешно, одним запросом к хранилищу")
     void download_FileSuccessfully() throws Exception {
         //given
         String fileName = "example.txt";
-        Resource file = new ByteArrayResource("Hello, world!".getBytes());
+        FileStat file = new FileStat(fileName, 13, "etag", LAST_MODIFIED, "b/" + fileName);
+        InputStream content = new ByteArrayInputStream("Hello, world!".getBytes());
 
-        when(fileStorageService.download(fileName)).thenReturn(file);
+        when(fileStorageService.download(fileName, null, null, null, null)).thenReturn(new FileContent(file, 0, 13, content));
 
         //when
-        var response = fileStorageController.download(fileName);
+        var response = fileStorageController.download(fileName, new HttpHeaders(), new MockHttpServletRequest());
 
         //then
         assertNotNull(response);
         assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals(13, response.getHeaders().getContentLength());
+        assertEquals("\"etag\"", response.getHeaders().getETag());
+        assertEquals(LAST_MODIFIED.toEpochMilli(), response.getHeaders().getLastModified());
+        assertEquals("bytes", response.getHeaders().getFirst(HttpHeaders.ACCEPT_RANGES));
         assertNotNull(response.getBody());
+        verify(fileStorageService, never()).getFileStat(any());
     }
 
     @Test
@@ -153,17 +291,180 @@ class FileStorageControllerTest {
         //given
         String fileName = "nonexistent.txt";
 
-        when(fileStorageService.download(fileName)).thenThrow(new FileNotFoundException("File not found"));
+        when(fileStorageService.download(fileName, null, null, null, null)).thenThrow(new FileNotFoundException("File not found"));
 
         //when
         Exception exception = assertThrows(FileNotFoundException.class,
-                () -> fileStorageController.download(fileName));
+                () -> fileStorageController.download(fileName, new HttpHeaders(), new MockHttpServletRequest()));
 
         //then
         assertNotNull(exception);
         assertTrue(exception.getMessage().contains("File not found"));
     }
 
+    @Test
+    @DisplayName("Скачивание файла: условия передаются в хранилище")
+    void download_ConditionsArePassedToStorage() throws Exception {
+        //given
+        String fileName = "example.txt";
+        HttpHeaders headers = new HttpHeaders();
+        headers.setIfNoneMatch("W/\"etag\"");
+
+        when(fileStorageService.download(fileName, null, null, "etag", null))
+                .thenThrow(new FileNotModifiedException("File not modified", "etag"));
+
+        //when
+        //then
+        assertThrows(FileNotModifiedException.class, () -> fileStorageController.download(fileName, headers, new MockHttpServletRequest()));
+    }
+
+    @Test
+    @DisplayName("Скачивание файла: If-Modified-Since передаётся в хранилище")
+    void download_IfModifiedSinceIsPassedToStorage() throws Exception {
+        //given
+        String fileName = "example.txt";
+        HttpHeaders headers = new HttpHeaders();
+        headers.setIfModifiedSince(LAST_MODIFIED.toEpochMilli());
+
+        when(fileStorageService.download(fileName, null, null, null, LAST_MODIFIED))
+                .thenThrow(new FileNotModifiedException("File not modified"));
+
+        //when
+        //then
+        assertThrows(FileNotModifiedException.class, () -> fileStorageController.download(fileName, headers, new MockHttpServletRequest()));
+    }
+
+    @Test
+    @DisplayName("Скачивание файла: несколько ETag сравниваются с метаданными")
+    void download_NotModifiedByOneOfETags() throws Exception {
+        //given
+        String fileName = "example.txt";
+        HttpHeaders headers = new HttpHeaders();
+        headers.setIfNoneMatch(List.of("\"other\"", "\"etag\""));
+
+        when(fileStorageService.getFileStat(fileName)).thenReturn(new FileStat(fileName, 13, "etag", LAST_MODIFIED, "b/" + fileName));
+
+        //when
+        FileNotModifiedException exception = assertThrows(FileNotModifiedException.class,
+                () -> fileStorageController.download(fileName, headers, new MockHttpServletRequest()));
+
+        //then
+        assertEquals("etag", exception.getEtag());
+        verify(fileStorageService, never()).download(any(), anyLong(), anyLong());
+    }
+
+    @Test
+    @DisplayName("Скачивание диапазона: один диапазон")
+    void download_SingleRange() throws Exception {
+        //given
+        String fileName = "example.txt";
+        FileStat file = new FileStat(fileName, 13, "etag", LAST_MODIFIED, "b/" + fileName);
+        HttpHeaders headers = new HttpHeaders();
+        headers.set(HttpHeaders.RANGE, "bytes=7-");
+
+        when(fileStorageService.download(fileName, 7L, null, null, null))
+                .thenReturn(new FileContent(file, 7, 6, new ByteArrayInputStream("world!".getBytes())));
+
+        //when
+        var response = fileStorageController.download(fileName, headers, new MockHttpServletRequest());
+
+        //then
+        assertEquals(HttpStatus.PARTIAL_CONTENT, response.getStatusCode());
+        assertEquals("bytes 7-12/13", response.getHeaders().getFirst(HttpHeaders.CONTENT_RANGE));
+        assertEquals(6, response.getHeaders().getContentLength());
+        assertArrayEquals("world!".getBytes(), response.getBody().getInputStream().readAllBytes());
+    }
+
+    @Test
+    @DisplayName("Скачивание диапазона: диапазон с концом")
+    void download_SingleClosedRange() throws Exception {
+        //given
+        String fileName = "example.txt";
+        FileStat file = new FileStat(fileName, 13, "etag", LAST_MODIFIED, "b/" + fileName);
+        HttpHeaders headers = new HttpHeaders();
+        headers.set(HttpHeaders.RANGE, "bytes=0-4");
+
+        when(fileStorageService.download(fileName, 0L, 5L, null, null))
+                .thenReturn(new FileContent(file, 0, 5, new ByteArrayInputStream("Hello".getBytes())));
+
+        //when
+        var response = fileStorageController.download(fileName, headers, new MockHttpServletRequest());
+
+        //then
+        assertEquals(HttpStatus.PARTIAL_CONTENT, response.getStatusCode());
+        assertEquals("bytes 0-4/13", response.getHeaders().getFirst(HttpHeaders.CONTENT_RANGE));
+    }
+
+    @Test
+    @DisplayName("Скачивание диапазона: суффикс файла")
+    void download_SuffixRange() throws Exception {
+        //given
+        String fileName = "example.txt";
+        FileStat file = new FileStat(fileName, 13, "etag", LAST_MODIFIED, "b/" + fileName);
+        HttpHeaders headers = new HttpHeaders();
+        headers.set(HttpHeaders.RANGE, "bytes=-6");
+
+        when(fileStorageService.getFileStat(fileName)).thenReturn(file);
+        when(fileStorageService.download(file, 7, 6)).thenReturn(new ByteArrayInputStream("world!".getBytes()));
+
+        //when
+        var response = fileStorageController.download(fileName, headers, new MockHttpServletRequest());
+
+        //then
+        assertEquals(HttpStatus.PARTIAL_CONTENT, response.getStatusCode());
+        assertEquals("bytes 7-12/13", response.getHeaders().getFirst(HttpHeaders.CONTENT_RANGE));
+    }
+
+    @Test
+    @DisplayName("Скачивание диапазона: несколько диапазонов")
+    void download_MultipleRanges() throws Exception {
+        //given
+        String fileName = "example.txt";
+        FileStat file = new FileStat(fileName, 13, "etag", LAST_MODIFIED, "b/" + fileName);
+        HttpHeaders headers = new HttpHeaders();
+        headers.set(HttpHeaders.RANGE, "bytes=0-4, -6");
+
+        when(fileStorageService.getFileStat(fileName)).thenReturn(file);
+        when(fileStorageService.download(file, 0, 5)).thenReturn(new ByteArrayInputStream("Hello".getBytes()));
+        when(fileStorageService.download(file, 7, 6)).thenReturn(new ByteArrayInputStream("world!".getBytes()));
+
+        //when
+        var response = fileStorageController.download(fileName, headers, new MockHttpServletRequest());
+
+        //then
+        assertEquals(HttpStatus.PARTIAL_CONTENT, response.getStatusCode());
+        MediaType contentType = response.getHeaders().getContentType();
+        assertEquals("multipart", contentType.getType());
+        assertEquals("byteranges", contentType.getSubtype());
+        verify(fileStorageService, never()).download(any(), anyLong(), anyLong());
+
+        byte[] body = response.getBody().getInputStream().readAllBytes();
+        String content = new String(body, StandardCharsets.US_ASCII);
+        assertEquals(response.getHeaders().getContentLength(), body.length);
+        assertTrue(content.contains("Content-Range: bytes 0-4/13\r\n\r\nHello\r\n"));
+        assertTrue(content.contains("Content-Range: bytes 7-12/13\r\n\r\nworld!\r\n"));
+        assertTrue(content.endsWith("--" + contentType.getParameter("boundary") + "--\r\n"));
+    }
+
+    @Test
+    @DisplayName("Скачивание диапазона: ни один диапазон не попадает в файл")
+    void download_RangeNotSatisfiable() throws Exception {
+        //given
+        String fileName = "example.txt";
+        HttpHeaders headers = new HttpHeaders();
+        headers.set(HttpHeaders.RANGE, "bytes=100-200, 300-400");
+
+        when(fileStorageService.getFileStat(fileName)).thenReturn(new FileStat(fileName, 13, "etag", LAST_MODIFIED, "b/" + fileName));
+
+        //when
+        RangeNotSatisfiableException exception = assertThrows(RangeNotSatisfiableException.class,
+                () -> fileStorageController.download(fileName, headers, new MockHttpServletRequest()));
+
+        //then
+        assertEquals(13L, exception.getSize());
+        verify(fileStorageService, never()).download(any(), anyLong(), anyLong());
+    }
+
     @Test
     @DisplayName("Удаление файла: успешно")
     void delete_FileSuccessfully() throws Exception {
@@ -181,6 +482,61 @@ class FileStorageControllerTest {
         assertEquals("File deleted successfully", response.getBody());
     }
 
+    @Test
+    @DisplayName("Пакетная загрузка: результат по каждому файлу")
+    void uploadAll_testResults() {
+        //given
+        List<MultipartFile> files = List.of(new MockMultipartFile("files", "a.txt", "text/plain", "a".getBytes()));
+        List<FileUploadResult> results = List.of(new FileUploadResult("a.txt", true, null));
+        when(fileStorageService.upload(files)).thenReturn(results);
+
+        //when
+        var response = fileStorageController.uploadAll(files);
+
+        //then
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals(results, response.getBody());
+    }
+
+    @Test
+    @DisplayName("Удаление нескольких файлов: результат по каждому имени")
+    void deleteAll_testResults() {
+        //given
+        FileNamesDto fileNamesDto = new FileNamesDto();
+        fileNamesDto.setFileNames(List.of("a.txt", "missing.txt"));
+        List<FileDeleteResult> results = List.of(new FileDeleteResult("a.txt", true), new FileDeleteResult("missing.txt", false));
+        when(fileStorageService.delete(List.of("a.txt", "missing.txt"))).thenReturn(results);
+
+        //when
+        var response = fileStorageController.deleteAll(fileNamesDto);
+
+        //then
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals(results, response.getBody());
+    }
+
+    @Test
+    @DisplayName("Архив файлов: файлы проверяются до начала ответа")
+    void archive_testStreams() throws Exception {
+        //given
+        FileNamesDto fileNamesDto = new FileNamesDto();
+        fileNamesDto.setFileNames(List.of("a.txt"));
+        List<ArchiveEntry> entries = List.of(new ArchiveEntry("a.txt", "b/a", 1, "text/plain", Instant.EPOCH));
+        when(fileStorageService.getArchiveEntries(List.of("a.txt"))).thenReturn(entries);
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+
+        //when
+        var response = fileStorageController.archive(fileNamesDto);
+        verify(fileStorageService, never()).writeArchive(any(), any());
+        response.getBody().writeTo(outputStream);
+
+        //then
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals("application/zip", response.getHeaders().getContentType().toString());
+        assertEquals("attachment; filename=\"files.zip\"", response.getHeaders().getFirst(HttpHeaders.CONTENT_DISPOSITION));
+        verify(fileStorageService).writeArchive(entries, outputStream);
+    }
+
     @Test
     @DisplayName("Удаление файла: ошибка удаления")
     void delete_FileDeletionError() throws Exception {
@@ -0,0 +1,143 @@
+package abdulgazizov.dev.cloudstoragedemo.controllers;
+
+import abdulgazizov.dev.cloudstoragedemo.dtos.FileContent;
+import abdulgazizov.dev.cloudstoragedemo.dtos.FileStat;
+import abdulgazizov.dev.cloudstoragedemo.entity.Role;
+import abdulgazizov.dev.cloudstoragedemo.entity.User;
+import abdulgazizov.dev.cloudstoragedemo.jwt.JwtProvider;
+import abdulgazizov.dev.cloudstoragedemo.repositories.BlobRepository;
+import abdulgazizov.dev.cloudstoragedemo.repositories.FileMetadataRepository;
+import abdulgazizov.dev.cloudstoragedemo.repositories.RefreshTokenRepository;
+import abdulgazizov.dev.cloudstoragedemo.repositories.UploadSessionRepository;
+import abdulgazizov.dev.cloudstoragedemo.repositories.UserRepository;
+import abdulgazizov.dev.cloudstoragedemo.services.FileStorageService;
+import abdulgazizov.dev.cloudstoragedemo.storage.ObjectStorage;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.boot.test.web.server.LocalServerPort;
+
+import java.io.ByteArrayInputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.when;
+
+/**
+ * Boots the servlet application on a random port with virtual threads and a Tomcat pool far smaller than
+ * the number of concurrent downloads. The storage and the database are replaced by mocks; the download
+ * goes through the connector, the security filters and the controller.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "spring.threads.virtual.enabled=true",
+        "server.tomcat.threads.max=" + FileStorageControllerVirtualThreadsTest.MAX_THREADS,
+        "spring.autoconfigure.exclude="
+                + "org.springframework.boot.autoconfigure.jdbc.DataSourceAutoConfiguration,"
+                + "org.springframework.boot.autoconfigure.orm.jpa.HibernateJpaAutoConfiguration,"
+                + "org.springframework.boot.autoconfigure.data.jpa.JpaRepositoriesAutoConfiguration,"
+                + "org.springframework.boot.autoconfigure.liquibase.LiquibaseAutoConfiguration",
+        "minio.url=http://localhost:9000",
+        "minio.accessKey=access",
+        "minio.secretKey=secret",
+        "minio.bucket=bucket"
+})
+class FileStorageControllerVirtualThreadsTest {
+    static final int MAX_THREADS = 4;
+    private static final int DOWNLOADS = MAX_THREADS * 10;
+    private static final Duration STORAGE_DELAY = Duration.ofSeconds(1);
+    private static final FileStat FILE = new FileStat("file.txt", 5, "etag", Instant.parse("2024-01-01T00:00:00Z"), "b/1");
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private JwtProvider jwtProvider;
+
+    @MockBean
+    private FileStorageService fileStorageService;
+
+    @MockBean
+    private ObjectStorage objectStorage;
+
+    @MockBean
+    private UserRepository userRepository;
+
+    @MockBean
+    private FileMetadataRepository fileMetadataRepository;
+
+    @MockBean
+    private BlobRepository blobRepository;
+
+    @MockBean
+    private RefreshTokenRepository refreshTokenRepository;
+
+    @MockBean
+    private UploadSessionRepository uploadSessionRepository;
+
+    @Test
+    @DisplayName("Виртуальные потоки: загрузки сверх пула Tomcat ждут хранилище одновременно")
+    void download_testScalesPastTomcatPool() throws Exception {
+        //given
+        Queue<Thread> requestThreads = new ConcurrentLinkedQueue<>();
+        when(fileStorageService.download(eq("file.txt"), any(), any(), any(), any())).thenAnswer(invocation -> {
+            requestThreads.add(Thread.currentThread());
+            Thread.sleep(STORAGE_DELAY);
+            return new FileContent(FILE, 0, 5, new ByteArrayInputStream("Hello".getBytes()));
+        });
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/file?filename=file.txt"))
+                .header("Auth-Token", "Bearer " + jwtProvider.generateAccessToken(user()))
+                .build();
+
+        //when
+        List<HttpResponse<String>> responses = new ArrayList<>(DOWNLOADS);
+        long start = System.nanoTime();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+             HttpClient client = HttpClient.newBuilder().executor(executor).build()) {
+            List<CompletableFuture<HttpResponse<String>>> futures = new ArrayList<>(DOWNLOADS);
+            for (int i = 0; i < DOWNLOADS; i++) {
+                futures.add(client.sendAsync(request, HttpResponse.BodyHandlers.ofString()));
+            }
+            for (CompletableFuture<HttpResponse<String>> future : futures) {
+                responses.add(future.get(30, TimeUnit.SECONDS));
+            }
+        }
+        Duration elapsed = Duration.ofNanos(System.nanoTime() - start);
+
+        //then
+        responses.forEach(response -> {
+            assertEquals(200, response.statusCode());
+            assertEquals("Hello", response.body());
+        });
+        assertEquals(DOWNLOADS, requestThreads.size());
+        assertTrue(requestThreads.stream().allMatch(Thread::isVirtual));
+        // a pool of MAX_THREADS platform threads would need DOWNLOADS / MAX_THREADS delays one after another;
+        // half of that leaves room for connection setup on a loaded machine
+        assertTrue(elapsed.compareTo(STORAGE_DELAY.multipliedBy(DOWNLOADS / MAX_THREADS / 2)) < 0, "Downloads took " + elapsed);
+    }
+
+    private static User user() {
+        User user = new User();
+        user.setId(1L);
+        user.setUsername("username");
+        user.setRoles(Set.of(Role.ROLE_USER));
+        return user;
+    }
+}
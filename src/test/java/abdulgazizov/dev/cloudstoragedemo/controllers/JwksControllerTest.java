@@ -0,0 +1,42 @@
+package abdulgazizov.dev.cloudstoragedemo.controllers;
+
+import abdulgazizov.dev.cloudstoragedemo.jwt.JwtKeys;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class JwksControllerTest {
+    @Mock
+    private JwtKeys jwtKeys;
+
+    @InjectMocks
+    private JwksController jwksController;
+
+    @Test
+    @DisplayName("JWK set: открытые ключи отдаются с кэшированием")
+    void jwks_testSuccess() {
+        //given
+        List<Map<String, String>> keys = List.of(Map.of("kid", "current", "kty", "EC"));
+        when(jwtKeys.toJwks()).thenReturn(keys);
+
+        //when
+        var response = jwksController.jwks();
+
+        //then
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals(Map.of("keys", keys), response.getBody());
+        assertEquals("max-age=300, public", response.getHeaders().getFirst(HttpHeaders.CACHE_CONTROL));
+    }
+}
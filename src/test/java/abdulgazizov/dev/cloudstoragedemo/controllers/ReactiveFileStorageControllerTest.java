@@ -0,0 +1,278 @@
+package abdulgazizov.dev.cloudstoragedemo.controllers;
+
+import abdulgazizov.dev.cloudstoragedemo.dtos.FileContent;
+import abdulgazizov.dev.cloudstoragedemo.dtos.FilePage;
+import abdulgazizov.dev.cloudstoragedemo.dtos.FileSort;
+import abdulgazizov.dev.cloudstoragedemo.dtos.FileStat;
+import abdulgazizov.dev.cloudstoragedemo.dtos.FileSummary;
+import abdulgazizov.dev.cloudstoragedemo.entity.Role;
+import abdulgazizov.dev.cloudstoragedemo.exceptions.FileNotModifiedException;
+import abdulgazizov.dev.cloudstoragedemo.exceptions.FileUploadException;
+import abdulgazizov.dev.cloudstoragedemo.exceptions.GlobalExceptionHandler;
+import abdulgazizov.dev.cloudstoragedemo.jwt.JwtAuthentication;
+import abdulgazizov.dev.cloudstoragedemo.services.FileStorageService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.MultipartBodyBuilder;
+import org.springframework.security.core.context.ReactiveSecurityContextHolder;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import org.springframework.web.reactive.function.BodyInserters;
+import reactor.core.publisher.Flux;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ReactiveFileStorageControllerTest {
+    private static final Instant LAST_MODIFIED = Instant.parse("2024-01-01T00:00:00Z");
+    private static final byte[] CONTENT = "Hello, World!".getBytes(StandardCharsets.UTF_8);
+
+    @Mock
+    private FileStorageService fileStorageService;
+
+    @InjectMocks
+    private ReactiveFileStorageController reactiveFileStorageController;
+
+    private JwtAuthentication authentication;
+
+    private WebTestClient webTestClient;
+
+    @BeforeEach
+    void setUp() {
+        authentication = new JwtAuthentication(1L, "user", Set.of(Role.ROLE_USER));
+        webTestClient = WebTestClient.bindToController(reactiveFileStorageController)
+                .controllerAdvice(new GlobalExceptionHandler())
+                .webFilter((exchange, chain) -> chain.filter(exchange)
+                        .contextWrite(ReactiveSecurityContextHolder.withAuthentication(authentication)))
+                .build();
+    }
+
+    @Test
+    @DisplayName("Скачивание файла: содержимое передаётся потоком с заголовками файла")
+    void download_testStreamsWholeFile() throws Exception {
+        //given
+        FileStat file = new FileStat("file.txt", CONTENT.length, "etag", LAST_MODIFIED, "b/file.txt");
+        when(fileStorageService.download("file.txt", null, null, null, null))
+                .thenReturn(new FileContent(file, 0, CONTENT.length, new ByteArrayInputStream(CONTENT)));
+
+        //when
+        byte[] body = webTestClient.get().uri("/file?filename=file.txt")
+                .exchange()
+                //then
+                .expectStatus().isOk()
+                .expectHeader().contentLength(CONTENT.length)
+                .expectHeader().valueEquals(HttpHeaders.ETAG, "\"etag\"")
+                .expectHeader().valueEquals(HttpHeaders.ACCEPT_RANGES, "bytes")
+                .expectBody(byte[].class).returnResult().getResponseBody();
+        assertArrayEquals(CONTENT, body);
+    }
+
+    @Test
+    @DisplayName("Скачивание файла: диапазон байтов")
+    void download_testRange() throws Exception {
+        //given
+        FileStat file = new FileStat("file.txt", CONTENT.length, "etag", LAST_MODIFIED, "b/file.txt");
+        when(fileStorageService.download("file.txt", 7L, 5L, null, null))
+                .thenReturn(new FileContent(file, 7, 5, new ByteArrayInputStream(CONTENT, 7, 5)));
+
+        //when
+        webTestClient.get().uri("/file?filename=file.txt")
+                .header(HttpHeaders.RANGE, "bytes=7-11")
+                .exchange()
+                //then
+                .expectStatus().isEqualTo(HttpStatus.PARTIAL_CONTENT)
+                .expectHeader().valueEquals(HttpHeaders.CONTENT_RANGE, "bytes 7-11/13")
+                .expectBody(String.class).isEqualTo("World");
+    }
+
+    @Test
+    @DisplayName("Скачивание файла: суффиксный диапазон читается после запроса метаданных")
+    void download_testSuffixRange() throws Exception {
+        //given
+        FileStat file = new FileStat("file.txt", CONTENT.length, "etag", LAST_MODIFIED, "b/file.txt");
+        when(fileStorageService.getFileStat("file.txt")).thenReturn(file);
+        when(fileStorageService.download(file, 12, 1)).thenReturn(new ByteArrayInputStream(CONTENT, 12, 1));
+
+        //when
+        webTestClient.get().uri("/file?filename=file.txt")
+                .header(HttpHeaders.RANGE, "bytes=-1")
+                .exchange()
+                //then
+                .expectStatus().isEqualTo(HttpStatus.PARTIAL_CONTENT)
+                .expectHeader().valueEquals(HttpHeaders.CONTENT_RANGE, "bytes 12-12/13")
+                .expectBody(String.class).isEqualTo("!");
+    }
+
+    @Test
+    @DisplayName("Скачивание файла: файл не изменился")
+    void download_testNotModified() throws Exception {
+        //given
+        when(fileStorageService.download("file.txt", null, null, "etag", null))
+                .thenThrow(new FileNotModifiedException("File not modified: file.txt", "etag"));
+
+        //when
+        webTestClient.get().uri("/file?filename=file.txt")
+                .header(HttpHeaders.IF_NONE_MATCH, "\"etag\"")
+                .exchange()
+                //then
+                .expectStatus().isNotModified()
+                .expectHeader().valueEquals(HttpHeaders.ETAG, "\"etag\"");
+    }
+
+    @Test
+    @DisplayName("Загрузка файла: тело передаётся сервису потоком от имени пользователя")
+    void upload_testStreamsBodyAsUser() throws Exception {
+        //given
+        AtomicReference<Object> principal = new AtomicReference<>();
+        AtomicReference<byte[]> uploaded = new AtomicReference<>();
+        // the size of a part is not known before it has been read
+        when(fileStorageService.upload(any(InputStream.class), eq(-1L), eq("file.txt"), eq("text/plain")))
+                .thenAnswer(invocation -> {
+                    principal.set(SecurityContextHolder.getContext().getAuthentication());
+                    uploaded.set(invocation.getArgument(0, InputStream.class).readAllBytes());
+                    return "file.txt";
+                });
+        MultipartBodyBuilder multipart = new MultipartBodyBuilder();
+        multipart.part("file", new ByteArrayResource(CONTENT) {
+            @Override
+            public String getFilename() {
+                return "local.txt";
+            }
+        }).contentType(MediaType.TEXT_PLAIN);
+
+        //when
+        webTestClient.post().uri("/file?filename=file.txt")
+                .body(BodyInserters.fromMultipartData(multipart.build()))
+                .exchange()
+                //then
+                .expectStatus().isOk()
+                .expectBody(String.class).isEqualTo("File uploaded successfully: file.txt");
+        assertEquals(authentication, principal.get());
+        assertArrayEquals(CONTENT, uploaded.get());
+    }
+
+    @Test
+    @DisplayName("Потоковая загрузка файла: тело из нескольких буферов передаётся сервису с его размером")
+    void uploadStream_testStreamsBuffers() throws Exception {
+        //given
+        byte[] content = new byte[320 * 1024];
+        new Random(1).nextBytes(content);
+        AtomicReference<byte[]> uploaded = new AtomicReference<>();
+        when(fileStorageService.upload(any(InputStream.class), eq((long) content.length), eq("file.bin"), eq("application/octet-stream")))
+                .thenAnswer(invocation -> {
+                    uploaded.set(invocation.getArgument(0, InputStream.class).readAllBytes());
+                    return "file.bin";
+                });
+        DefaultDataBufferFactory bufferFactory = new DefaultDataBufferFactory();
+        Flux<DataBuffer> body = Flux.range(0, content.length / (16 * 1024))
+                .map(i -> (DataBuffer) bufferFactory.wrap(Arrays.copyOfRange(content, i * 16 * 1024, (i + 1) * 16 * 1024)));
+
+        //when
+        webTestClient.post().uri("/file/stream?filename=file.bin")
+                .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                .contentLength(content.length)
+                .body(body, DataBuffer.class)
+                .exchange()
+                //then
+                .expectStatus().isOk()
+                .expectBody(String.class).isEqualTo("File uploaded successfully: file.bin");
+        assertArrayEquals(content, uploaded.get());
+    }
+
+    @Test
+    @DisplayName("Потоковая загрузка файла: ошибка хранилища отменяет чтение тела")
+    void uploadStream_testStorageErrorCancelsBody() {
+        //given
+        AtomicBoolean cancelled = new AtomicBoolean();
+        when(fileStorageService.upload(any(InputStream.class), anyLong(), eq("file.bin"), any()))
+                .thenAnswer(invocation -> {
+                    invocation.getArgument(0, InputStream.class).read(new byte[1]);
+                    throw new FileUploadException("File upload failed: MinIO error");
+                });
+        DefaultDataBufferFactory bufferFactory = new DefaultDataBufferFactory();
+        Flux<DataBuffer> body = Flux.range(0, 1024)
+                .map(i -> (DataBuffer) bufferFactory.wrap(new byte[1024]))
+                .doOnCancel(() -> cancelled.set(true));
+
+        //when
+        webTestClient.post().uri("/file/stream?filename=file.bin")
+                .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                .body(body, DataBuffer.class)
+                .exchange()
+                //then
+                .expectStatus().isBadRequest();
+        assertTrue(cancelled.get());
+    }
+
+    @Test
+    @DisplayName("Потоковая загрузка файла: пустое тело")
+    void uploadStream_testEmptyBody() {
+        //when
+        webTestClient.post().uri("/file/stream?filename=file.txt")
+                .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                .bodyValue(new byte[0])
+                .exchange()
+                //then
+                .expectStatus().isBadRequest()
+                .expectBody(String.class).isEqualTo("No file provided");
+        verifyNoInteractions(fileStorageService);
+    }
+
+    @Test
+    @DisplayName("Получение списка файлов: страница и курсор следующей страницы")
+    void getFiles_testPageAndCursor() throws Exception {
+        //given
+        when(fileStorageService.getFiles(2, FileSort.SIZE, null))
+                .thenReturn(new FilePage(List.of(new FileSummary("a.txt", 1, LAST_MODIFIED)), "next"));
+
+        //when
+        webTestClient.get().uri("/list?limit=2&sort=size")
+                .exchange()
+                //then
+                .expectStatus().isOk()
+                .expectHeader().valueEquals("X-Next-Cursor", "next")
+                .expectBody()
+                .jsonPath("$[0].filename").isEqualTo("a.txt")
+                .jsonPath("$[0].size").isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Удаление файла: успешно")
+    void delete_testSuccess() throws Exception {
+        //when
+        webTestClient.delete().uri("/file?filename=file.txt")
+                .exchange()
+                //then
+                .expectStatus().isOk()
+                .expectBody(String.class).isEqualTo("File deleted successfully");
+        verify(fileStorageService).delete("file.txt");
+    }
+}
@@ -0,0 +1,130 @@
+package abdulgazizov.dev.cloudstoragedemo.controllers;
+
+import abdulgazizov.dev.cloudstoragedemo.dtos.PresignedUrl;
+import abdulgazizov.dev.cloudstoragedemo.entity.UploadSession;
+import abdulgazizov.dev.cloudstoragedemo.responses.DirectUploadResponse;
+import abdulgazizov.dev.cloudstoragedemo.responses.UploadSessionResponse;
+import abdulgazizov.dev.cloudstoragedemo.services.UploadSessionService;
+import io.minio.messages.Part;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.web.MockHttpServletRequest;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Instant;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class UploadSessionControllerTest {
+    @Mock
+    private UploadSessionService uploadSessionService;
+
+    @InjectMocks
+    private UploadSessionController uploadSessionController;
+
+    private UploadSession session;
+
+    @BeforeEach
+    public void setup() {
+        session = new UploadSession();
+        session.setId("session");
+        session.setFileName("file.txt");
+    }
+
+    @Test
+    @DisplayName("Создание сессии загрузки: успешно")
+    void create_testSuccess() throws IOException {
+        //given
+        when(uploadSessionService.create("file.txt", "text/plain")).thenReturn(session);
+
+        //when
+        var response = uploadSessionController.create("file.txt", "text/plain");
+
+        //then
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        UploadSessionResponse body = response.getBody();
+        assertNotNull(body);
+        assertEquals("session", body.getId());
+        assertTrue(body.getParts().isEmpty());
+        assertEquals(0, body.getReceivedBytes());
+    }
+
+    @Test
+    @DisplayName("Прямая загрузка: возвращает сессию и ссылку для загрузки")
+    void createDirect_testSuccess() throws IOException {
+        //given
+        Instant expiresAt = Instant.parse("2024-01-01T00:15:00Z");
+        when(uploadSessionService.createDirect("file.txt", "text/plain")).thenReturn(session);
+        when(uploadSessionService.getUploadUrl("session")).thenReturn(new PresignedUrl("http://minio/bucket/b/1?signed", expiresAt));
+
+        //when
+        var response = uploadSessionController.createDirect("file.txt", "text/plain");
+
+        //then
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals(new DirectUploadResponse("session", "file.txt", "http://minio/bucket/b/1?signed", expiresAt), response.getBody());
+    }
+
+    @Test
+    @DisplayName("Получение сессии загрузки: возвращает принятые части")
+    void get_testReturnsReceivedParts() {
+        //given
+        Part part = mock(Part.class);
+        when(part.partNumber()).thenReturn(1);
+        when(part.partSize()).thenReturn(5L);
+        when(part.etag()).thenReturn("etag");
+        when(uploadSessionService.get("session")).thenReturn(session);
+        when(uploadSessionService.getParts("session")).thenReturn(List.of(part));
+
+        //when
+        var response = uploadSessionController.get("session");
+
+        //then
+        UploadSessionResponse body = response.getBody();
+        assertNotNull(body);
+        assertEquals(1, body.getParts().size());
+        assertEquals("etag", body.getParts().get(0).getEtag());
+        assertEquals(5, body.getReceivedBytes());
+    }
+
+    @Test
+    @DisplayName("Загрузка части: тело запроса передаётся в сервис")
+    void uploadPart_testSuccess() throws IOException {
+        //given
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setContent("Hello".getBytes());
+
+        //when
+        var response = uploadSessionController.uploadPart("session", 2, request);
+
+        //then
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        verify(uploadSessionService).uploadPart(eq("session"), eq(2), any(InputStream.class), eq(5L));
+    }
+
+    @Test
+    @DisplayName("Завершение загрузки: успешно")
+    void complete_testSuccess() throws IOException {
+        //given
+        when(uploadSessionService.complete("session")).thenReturn("file.txt");
+
+        //when
+        var response = uploadSessionController.complete("session");
+
+        //then
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals("File uploaded successfully: file.txt", response.getBody());
+    }
+}
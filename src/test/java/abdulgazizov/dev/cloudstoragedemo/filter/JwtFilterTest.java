@@ -1,10 +1,8 @@
 package abdulgazizov.dev.cloudstoragedemo.filter;
 
+import abdulgazizov.dev.cloudstoragedemo.entity.Role;
+import abdulgazizov.dev.cloudstoragedemo.jwt.AccessTokenAuthenticator;
 import abdulgazizov.dev.cloudstoragedemo.jwt.JwtAuthentication;
-import abdulgazizov.dev.cloudstoragedemo.jwt.JwtProvider;
-import abdulgazizov.dev.cloudstoragedemo.jwt.JwtUtils;
-import io.jsonwebtoken.Claims;
-import io.jsonwebtoken.Jwts;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import org.junit.jupiter.api.BeforeEach;
@@ -19,24 +17,18 @@ import org.springframework.mock.web.MockHttpServletResponse;
 import org.springframework.security.core.context.SecurityContextHolder;
 
 import java.io.IOException;
-import java.util.List;
+import java.util.Optional;
+import java.util.Set;
 
 import static org.junit.jupiter.api.Assertions.assertNull;
-import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
 class JwtFilterTest {
 
     @Mock
-    private JwtProvider jwtProvider;
-
-
-//    @Mock
-//    private JwtAuthentication jwtAuthentication;
-
-    @Mock
-    private JwtUtils jwtUtils;
+    private AccessTokenAuthenticator accessTokenAuthenticator;
 
     @InjectMocks
     private JwtFilter jwtFilter;
@@ -58,29 +50,18 @@ class JwtFilterTest {
     void doFilter_testShouldAuthenticateWithValidToken() throws IOException, ServletException {
         //given
         String token = "validToken";
-        String username = "testUser";
-        Claims claims = Jwts.claims().setSubject(username);
-
-        List<String> roles = List.of("ROLE_ADMIN");
-        claims.put("roles", roles);
-
-        JwtAuthentication jwtInfoToken = new JwtAuthentication();
-        jwtInfoToken.setAuthenticated(true);
-        jwtInfoToken.setUsername(username);
+        JwtAuthentication jwtInfoToken = new JwtAuthentication(1L, "testUser", Set.of(Role.ROLE_USER));
 
         request.addHeader("Auth-Token", "Bearer " + token);
 
-        when(jwtProvider.validateAccessToken(token)).thenReturn(true);
-        when(jwtProvider.getAccessClaims(token)).thenReturn(claims);
-        when(jwtUtils.generate(claims)).thenReturn(jwtInfoToken);
+        when(accessTokenAuthenticator.authenticate(token)).thenReturn(Optional.of(jwtInfoToken));
 
         //when
         jwtFilter.doFilter(request, response, filterChain);
 
         //then
-        verify(jwtUtils).generate(claims);
         verify(filterChain).doFilter(request, response);
-        assertTrue(jwtInfoToken.isAuthenticated());
+        assertSame(jwtInfoToken, SecurityContextHolder.getContext().getAuthentication());
     }
 
     @Test
@@ -91,11 +72,11 @@ class JwtFilterTest {
 
         request.addHeader("Auth-Token", "Bearer " + token);
 
-        when(jwtProvider.validateAccessToken(token)).thenReturn(false);
+        when(accessTokenAuthenticator.authenticate(token)).thenReturn(Optional.empty());
 
         jwtFilter.doFilter(request, response, filterChain);
 
-        verify(jwtProvider).validateAccessToken(token);
+        verify(accessTokenAuthenticator).authenticate(token);
         verify(filterChain).doFilter(request, response);
         assertNull(SecurityContextHolder.getContext().getAuthentication());
     }
@@ -105,8 +86,8 @@ class JwtFilterTest {
     void shouldIgnoreRequestWithoutToken() throws IOException, ServletException {
         jwtFilter.doFilter(request, response, filterChain);
 
-        verify(jwtProvider, never()).validateAccessToken(anyString());
+        verify(accessTokenAuthenticator, never()).authenticate(anyString());
         verify(filterChain).doFilter(request, response);
         assert(SecurityContextHolder.getContext().getAuthentication() == null);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,90 @@
+package abdulgazizov.dev.cloudstoragedemo.filter;
+
+import abdulgazizov.dev.cloudstoragedemo.entity.Role;
+import abdulgazizov.dev.cloudstoragedemo.jwt.AccessTokenAuthenticator;
+import abdulgazizov.dev.cloudstoragedemo.jwt.JwtAuthentication;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.ReactiveSecurityContextHolder;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.web.server.WebFilterChain;
+
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ReactiveJwtFilterTest {
+    @Mock
+    private AccessTokenAuthenticator accessTokenAuthenticator;
+
+    @InjectMocks
+    private ReactiveJwtFilter reactiveJwtFilter;
+
+    private final AtomicReference<Authentication> authentication = new AtomicReference<>();
+
+    private final WebFilterChain chain = exchange -> ReactiveSecurityContextHolder.getContext()
+            .map(SecurityContext::getAuthentication)
+            .doOnNext(authentication::set)
+            .then();
+
+    @Test
+    @DisplayName("Аутентификация запроса с действительным токеном")
+    void filter_testShouldAuthenticateWithValidToken() {
+        //given
+        String token = "validToken";
+        JwtAuthentication jwtInfoToken = new JwtAuthentication(1L, "testUser", Set.of(Role.ROLE_USER));
+        when(accessTokenAuthenticator.authenticate(token)).thenReturn(Optional.of(jwtInfoToken));
+        MockServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.get("/file")
+                .header("Auth-Token", "Bearer " + token));
+
+        //when
+        reactiveJwtFilter.filter(exchange, chain).block();
+
+        //then
+        assertSame(jwtInfoToken, authentication.get());
+        assertTrue(jwtInfoToken.isAuthenticated());
+    }
+
+    @Test
+    @DisplayName("Продолжение обработки без аутентификации при недействительном токене")
+    void filter_testShouldNotAuthenticateWithInvalidToken() {
+        //given
+        when(accessTokenAuthenticator.authenticate("invalidToken")).thenReturn(Optional.empty());
+        MockServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.get("/file")
+                .header("Auth-Token", "Bearer invalidToken"));
+
+        //when
+        reactiveJwtFilter.filter(exchange, chain).block();
+
+        //then
+        assertNull(authentication.get());
+    }
+
+    @Test
+    @DisplayName("Пропуск фильтра без аутентификации, если токен отсутствует")
+    void filter_testShouldIgnoreRequestWithoutToken() {
+        //given
+        MockServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.get("/file"));
+
+        //when
+        reactiveJwtFilter.filter(exchange, chain).block();
+
+        //then
+        verify(accessTokenAuthenticator, never()).authenticate(anyString());
+        assertNull(authentication.get());
+    }
+}
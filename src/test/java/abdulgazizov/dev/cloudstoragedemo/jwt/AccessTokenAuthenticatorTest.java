@@ -0,0 +1,84 @@
+package abdulgazizov.dev.cloudstoragedemo.jwt;
+
+import abdulgazizov.dev.cloudstoragedemo.entity.Role;
+import abdulgazizov.dev.cloudstoragedemo.entity.User;
+import abdulgazizov.dev.cloudstoragedemo.properties.JwtKeyProperties;
+import abdulgazizov.dev.cloudstoragedemo.properties.JwtProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.Optional;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class AccessTokenAuthenticatorTest {
+    private static final String ACCESS_SECRET = "U0RTRkZkZ3Nuc2duc3RuZGZuZGZnbmRmZ25kZm5kZm5kZmduZGZuZA==";
+    private static final String REFRESH_SECRET = "YXNkZ2hzZXRodHJ3aGU2NTQ1NjMzbmRibiBkYXNyZ2VhcmdlcWE=";
+
+    private JwtProvider jwtProvider;
+    private AccessTokenAuthenticator accessTokenAuthenticator;
+    private String token;
+
+    @BeforeEach
+    void setUp() {
+        JwtProperties jwtProperties = new JwtProperties(ACCESS_SECRET, REFRESH_SECRET, 100, 1);
+        jwtProvider = spy(new JwtProvider(jwtProperties, new JwtKeys(new JwtKeyProperties("HS256", "", "", ""))));
+        accessTokenAuthenticator = new AccessTokenAuthenticator(jwtProvider, new JwtUtils(), jwtProperties, new SimpleMeterRegistry());
+        User user = new User();
+        user.setId(1L);
+        user.setUsername("username");
+        user.setRoles(Set.of(Role.ROLE_USER));
+        token = jwtProvider.generateAccessToken(user);
+    }
+
+    @Test
+    @DisplayName("Кэш токенов: повторный токен не проверяется заново")
+    void authenticate_testCachesVerifiedToken() {
+        //when
+        Optional<JwtAuthentication> first = accessTokenAuthenticator.authenticate(token);
+        Optional<JwtAuthentication> second = accessTokenAuthenticator.authenticate(token);
+
+        //then
+        assertTrue(first.isPresent());
+        assertTrue(first.get().isAuthenticated());
+        assertEquals("username", first.get().getUsername());
+        assertEquals(1L, first.get().getId());
+        assertSame(first.get(), second.get());
+        verify(jwtProvider, times(1)).parseAccessToken(token);
+    }
+
+    @Test
+    @DisplayName("Кэш токенов: отклонённый токен не кэшируется")
+    void authenticate_testRejectedTokenNotCached() {
+        //given
+        String forged = token.substring(0, token.length() - 2) + "xx";
+
+        //when
+        Optional<JwtAuthentication> first = accessTokenAuthenticator.authenticate(forged);
+        Optional<JwtAuthentication> second = accessTokenAuthenticator.authenticate(forged);
+
+        //then
+        assertTrue(first.isEmpty());
+        assertTrue(second.isEmpty());
+        verify(jwtProvider, times(2)).parseAccessToken(forged);
+    }
+
+    @Test
+    @DisplayName("Кэш токенов: токен обновления не принимается как токен доступа")
+    void authenticate_testRefreshToken() {
+        //given
+        User user = new User();
+        user.setUsername("username");
+        String refreshToken = jwtProvider.generateRefreshToken(user).value();
+
+        //when
+        Optional<JwtAuthentication> authentication = accessTokenAuthenticator.authenticate(refreshToken);
+
+        //then
+        assertTrue(authentication.isEmpty());
+    }
+}
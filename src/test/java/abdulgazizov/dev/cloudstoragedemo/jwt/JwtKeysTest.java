@@ -0,0 +1,90 @@
+package abdulgazizov.dev.cloudstoragedemo.jwt;
+
+import abdulgazizov.dev.cloudstoragedemo.properties.JwtKeyProperties;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigInteger;
+import java.security.GeneralSecurityException;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.interfaces.ECPublicKey;
+import java.security.spec.ECGenParameterSpec;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JwtKeysTest {
+    @Test
+    @DisplayName("Ключи JWT: открытые ключи публикуются как JWK")
+    void toJwks_testPublicKeys() {
+        //given
+        KeyPair first = generateKeyPair();
+        KeyPair second = generateKeyPair();
+        JwtKeys jwtKeys = new JwtKeys(new JwtKeyProperties("ES256", "second",
+                "second=" + encode(second.getPrivate().getEncoded()),
+                "first=" + encode(first.getPublic().getEncoded()) + ", second=" + encode(second.getPublic().getEncoded())));
+
+        //when
+        List<Map<String, String>> jwks = jwtKeys.toJwks();
+
+        //then
+        assertEquals(2, jwks.size());
+        Map<String, String> jwk = jwks.get(0);
+        assertEquals("first", jwk.get("kid"));
+        assertEquals("EC", jwk.get("kty"));
+        assertEquals("P-256", jwk.get("crv"));
+        assertEquals("ES256", jwk.get("alg"));
+        ECPublicKey key = (ECPublicKey) first.getPublic();
+        byte[] x = Base64.getUrlDecoder().decode(jwk.get("x"));
+        assertEquals(32, x.length);
+        assertEquals(key.getW().getAffineX(), new BigInteger(1, x));
+        assertEquals(key.getW().getAffineY(), new BigInteger(1, Base64.getUrlDecoder().decode(jwk.get("y"))));
+        assertFalse(jwk.containsKey("d"));
+        assertEquals("second", jwks.get(1).get("kid"));
+    }
+
+    @Test
+    @DisplayName("Ключи JWT: режим HMAC не требует ключей")
+    void constructor_testHmac() {
+        //when
+        JwtKeys jwtKeys = new JwtKeys(new JwtKeyProperties("HS256", "", "", ""));
+
+        //then
+        assertFalse(jwtKeys.isAsymmetric());
+        assertTrue(jwtKeys.toJwks().isEmpty());
+    }
+
+    @Test
+    @DisplayName("Ключи JWT: ошибки конфигурации обнаруживаются при старте")
+    void constructor_testInvalidConfiguration() {
+        //given
+        KeyPair keyPair = generateKeyPair();
+        String privateKey = "current=" + encode(keyPair.getPrivate().getEncoded());
+        String publicKey = "current=" + encode(keyPair.getPublic().getEncoded());
+
+        //when & then
+        assertThrows(IllegalArgumentException.class, () -> new JwtKeys(new JwtKeyProperties("RS256", "", "", "")));
+        assertThrows(IllegalArgumentException.class, () -> new JwtKeys(new JwtKeyProperties("ES256", "", "", "")));
+        assertThrows(IllegalArgumentException.class, () -> new JwtKeys(new JwtKeyProperties("ES256", "other", privateKey, publicKey)));
+        assertThrows(IllegalArgumentException.class, () -> new JwtKeys(new JwtKeyProperties("ES256", "current", privateKey, "other=" + encode(keyPair.getPublic().getEncoded()))));
+        assertThrows(IllegalArgumentException.class, () -> new JwtKeys(new JwtKeyProperties("ES256", "", "", "current=bm90IGEga2V5")));
+        assertThrows(IllegalArgumentException.class, () -> new JwtKeys(new JwtKeyProperties("ES256", "", "", publicKey + "," + publicKey)));
+    }
+
+    static KeyPair generateKeyPair() {
+        try {
+            KeyPairGenerator generator = KeyPairGenerator.getInstance("EC");
+            generator.initialize(new ECGenParameterSpec("secp256r1"));
+            return generator.generateKeyPair();
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String encode(byte[] der) {
+        return Base64.getEncoder().encodeToString(der);
+    }
+}
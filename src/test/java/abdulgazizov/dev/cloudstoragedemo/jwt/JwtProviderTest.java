@@ -0,0 +1,208 @@
+package abdulgazizov.dev.cloudstoragedemo.jwt;
+
+import abdulgazizov.dev.cloudstoragedemo.entity.Role;
+import abdulgazizov.dev.cloudstoragedemo.entity.User;
+import abdulgazizov.dev.cloudstoragedemo.properties.JwtKeyProperties;
+import abdulgazizov.dev.cloudstoragedemo.properties.JwtProperties;
+import io.jsonwebtoken.JwsHeader;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.SignatureAlgorithm;
+import io.jsonwebtoken.io.Decoders;
+import io.jsonwebtoken.security.Keys;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.security.KeyPair;
+import java.util.Base64;
+import java.util.Date;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JwtProviderTest {
+    private static final String ACCESS_SECRET = "U0RTRkZkZ3Nuc2duc3RuZGZuZGZnbmRmZ25kZm5kZm5kZmduZGZuZA==";
+    private static final String REFRESH_SECRET = "YXNkZ2hzZXRodHJ3aGU2NTQ1NjMzbmRibiBkYXNyZ2VhcmdlcWE=";
+
+    private JwtProvider jwtProvider;
+    private User user;
+
+    @BeforeEach
+    void setUp() {
+        jwtProvider = new JwtProvider(jwtProperties(), keys("HS256", "", "", ""));
+        user = new User();
+        user.setId(1L);
+        user.setUsername("username");
+        user.setRoles(Set.of(Role.ROLE_USER));
+    }
+
+    @Test
+    @DisplayName("Токен доступа: проверка и извлечение утверждений за один разбор")
+    void parseAccessToken_testValid() {
+        //given
+        String token = jwtProvider.generateAccessToken(user);
+
+        //when
+        TokenValidation validation = jwtProvider.parseAccessToken(token);
+
+        //then
+        assertTrue(validation.isValid());
+        assertEquals("username", validation.claims().getSubject());
+        assertEquals(1L, validation.claims().get("id", Long.class));
+    }
+
+    @Test
+    @DisplayName("Токен обновления: подписан ключом обновления")
+    void parseRefreshToken_testSignedWithRefreshKey() {
+        //given
+        IssuedToken token = jwtProvider.generateRefreshToken(user);
+
+        //when
+        TokenValidation refresh = jwtProvider.parseRefreshToken(token.value());
+        TokenValidation access = jwtProvider.parseAccessToken(token.value());
+
+        //then
+        assertTrue(refresh.isValid());
+        assertEquals("username", refresh.claims().getSubject());
+        assertEquals(token.expiresAt(), refresh.claims().getExpiration().toInstant());
+        assertEquals(TokenValidation.Failure.INVALID_SIGNATURE, access.failure());
+    }
+
+    @Test
+    @DisplayName("Токен обновления: токены, выданные в одну секунду, различаются")
+    void generateRefreshToken_testUniqueWithinSecond() {
+        //when
+        IssuedToken first = jwtProvider.generateRefreshToken(user);
+        IssuedToken second = jwtProvider.generateRefreshToken(user);
+
+        //then
+        assertNotEquals(first.value(), second.value());
+        assertNotNull(jwtProvider.parseRefreshToken(first.value()).claims().getId());
+    }
+
+    @Test
+    @DisplayName("Токен доступа: истёкший токен")
+    void parseAccessToken_testExpired() {
+        //given
+        String token = Jwts.builder()
+                .setSubject("username")
+                .setExpiration(new Date(System.currentTimeMillis() - 60_000))
+                .signWith(Keys.hmacShaKeyFor(Decoders.BASE64.decode(ACCESS_SECRET)))
+                .compact();
+
+        //when
+        TokenValidation validation = jwtProvider.parseAccessToken(token);
+
+        //then
+        assertFalse(validation.isValid());
+        assertNull(validation.claims());
+        assertEquals(TokenValidation.Failure.EXPIRED, validation.failure());
+    }
+
+    @Test
+    @DisplayName("Токен доступа: испорченный токен")
+    void parseAccessToken_testMalformed() {
+        //when
+        TokenValidation validation = jwtProvider.parseAccessToken("not.a.token");
+
+        //then
+        assertEquals(TokenValidation.Failure.MALFORMED, validation.failure());
+    }
+
+    @Test
+    @DisplayName("Токен доступа ES256: подписан текущим ключом и содержит его идентификатор")
+    void generateAccessToken_testSignedWithKeyId() {
+        //given
+        KeyPair current = JwtKeysTest.generateKeyPair();
+        jwtProvider = new JwtProvider(jwtProperties(), keys("ES256", "current",
+                "current=" + encode(current.getPrivate().getEncoded()), "current=" + encode(current.getPublic().getEncoded())));
+
+        //when
+        String token = jwtProvider.generateAccessToken(user);
+        TokenValidation validation = jwtProvider.parseAccessToken(token);
+
+        //then
+        assertTrue(validation.isValid());
+        assertEquals("username", validation.claims().getSubject());
+        JwsHeader<?> header = Jwts.parserBuilder().setSigningKey(current.getPublic()).build().parseClaimsJws(token).getHeader();
+        assertEquals("current", header.getKeyId());
+        assertEquals("ES256", header.getAlgorithm());
+    }
+
+    @Test
+    @DisplayName("Токен доступа ES256: токены предыдущего ключа принимаются, пока ключ опубликован")
+    void parseAccessToken_testRotation() {
+        //given
+        KeyPair previous = JwtKeysTest.generateKeyPair();
+        KeyPair current = JwtKeysTest.generateKeyPair();
+        String previousToken = jwtProvider(previous, "previous", "previous=" + encode(previous.getPublic().getEncoded()))
+                .generateAccessToken(user);
+        JwtProvider rotated = jwtProvider(current, "current", "previous=" + encode(previous.getPublic().getEncoded())
+                + ",current=" + encode(current.getPublic().getEncoded()));
+        JwtProvider retired = jwtProvider(current, "current", "current=" + encode(current.getPublic().getEncoded()));
+
+        //when
+        TokenValidation accepted = rotated.parseAccessToken(previousToken);
+        TokenValidation rejected = retired.parseAccessToken(previousToken);
+
+        //then
+        assertTrue(accepted.isValid());
+        assertEquals(TokenValidation.Failure.INVALID_SIGNATURE, rejected.failure());
+    }
+
+    @Test
+    @DisplayName("Токен доступа ES256: токен с общим секретом или чужим ключом отклоняется")
+    void parseAccessToken_testRejectsOtherKeys() {
+        //given
+        KeyPair current = JwtKeysTest.generateKeyPair();
+        KeyPair forged = JwtKeysTest.generateKeyPair();
+        String hmacToken = jwtProvider.generateAccessToken(user);
+        String forgedToken = Jwts.builder()
+                .setSubject("username")
+                .setHeaderParam(JwsHeader.KEY_ID, "current")
+                .signWith(forged.getPrivate(), SignatureAlgorithm.ES256)
+                .compact();
+        jwtProvider = jwtProvider(current, "current", "current=" + encode(current.getPublic().getEncoded()));
+
+        //when
+        TokenValidation hmac = jwtProvider.parseAccessToken(hmacToken);
+        TokenValidation forgedKey = jwtProvider.parseAccessToken(forgedToken);
+
+        //then
+        assertEquals(TokenValidation.Failure.UNSUPPORTED, hmac.failure());
+        assertEquals(TokenValidation.Failure.INVALID_SIGNATURE, forgedKey.failure());
+    }
+
+    @Test
+    @DisplayName("Токен доступа ES256: узел без закрытого ключа только проверяет токены")
+    void generateAccessToken_testVerifyOnlyNode() {
+        //given
+        KeyPair current = JwtKeysTest.generateKeyPair();
+        String token = jwtProvider(current, "current", "current=" + encode(current.getPublic().getEncoded()))
+                .generateAccessToken(user);
+        JwtProvider verifier = new JwtProvider(jwtProperties(),
+                keys("ES256", "", "", "current=" + encode(current.getPublic().getEncoded())));
+
+        //when & then
+        assertTrue(verifier.parseAccessToken(token).isValid());
+        assertThrows(IllegalStateException.class, () -> verifier.generateAccessToken(user));
+        assertTrue(verifier.parseRefreshToken(verifier.generateRefreshToken(user).value()).isValid());
+    }
+
+    private static JwtProvider jwtProvider(KeyPair signingKey, String signingKeyId, String publicKeys) {
+        return new JwtProvider(jwtProperties(), keys("ES256", signingKeyId,
+                signingKeyId + "=" + encode(signingKey.getPrivate().getEncoded()), publicKeys));
+    }
+
+    private static JwtProperties jwtProperties() {
+        return new JwtProperties(ACCESS_SECRET, REFRESH_SECRET, 0, 1);
+    }
+
+    private static JwtKeys keys(String algorithm, String signingKeyId, String privateKeys, String publicKeys) {
+        return new JwtKeys(new JwtKeyProperties(algorithm, signingKeyId, privateKeys, publicKeys));
+    }
+
+    private static String encode(byte[] der) {
+        return Base64.getEncoder().encodeToString(der);
+    }
+}
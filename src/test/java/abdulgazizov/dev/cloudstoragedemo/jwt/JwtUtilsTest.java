@@ -0,0 +1,67 @@
+package abdulgazizov.dev.cloudstoragedemo.jwt;
+
+import abdulgazizov.dev.cloudstoragedemo.entity.Role;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JwtUtilsTest {
+    private final JwtUtils jwtUtils = new JwtUtils();
+
+    @Test
+    @DisplayName("Аутентификация из утверждений: роли и полномочия вычисляются один раз")
+    void generate_testPrecomputedAuthorities() {
+        //given
+        Claims claims = Jwts.claims().setSubject("username");
+        claims.put("id", 1L);
+        claims.put("roles", List.of("ROLE_USER", "ROLE_ADMIN"));
+
+        //when
+        JwtAuthentication authentication = jwtUtils.generate(claims);
+
+        //then
+        assertEquals(1L, authentication.getId());
+        assertEquals("username", authentication.getPrincipal());
+        assertEquals(Set.of(Role.ROLE_USER, Role.ROLE_ADMIN), authentication.getRoles());
+        assertTrue(authentication.isAuthenticated());
+        assertSame(authentication.getAuthorities(), authentication.getAuthorities());
+        assertEquals(List.of("ROLE_USER", "ROLE_ADMIN"), authentication.getAuthorities().stream()
+                .map(Object::toString).toList());
+    }
+
+    @Test
+    @DisplayName("Аутентификация из утверждений: объект неизменяем")
+    void generate_testImmutable() {
+        //given
+        Claims claims = Jwts.claims().setSubject("username");
+        claims.put("roles", List.of("ROLE_USER"));
+
+        //when
+        JwtAuthentication authentication = jwtUtils.generate(claims);
+
+        //then
+        assertThrows(IllegalArgumentException.class, () -> authentication.setAuthenticated(false));
+        assertThrows(UnsupportedOperationException.class, () -> authentication.getRoles().add(Role.ROLE_ADMIN));
+        assertTrue(authentication.isAuthenticated());
+    }
+
+    @Test
+    @DisplayName("Аутентификация из утверждений: токен без ролей")
+    void generate_testNoRoles() {
+        //given
+        Claims claims = Jwts.claims().setSubject("username");
+
+        //when
+        JwtAuthentication authentication = jwtUtils.generate(claims);
+
+        //then
+        assertTrue(authentication.getRoles().isEmpty());
+        assertTrue(authentication.getAuthorities().isEmpty());
+    }
+}
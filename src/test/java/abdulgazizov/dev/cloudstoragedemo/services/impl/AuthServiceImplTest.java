@@ -2,9 +2,13 @@ package abdulgazizov.dev.cloudstoragedemo.services.impl;
 
 import abdulgazizov.dev.cloudstoragedemo.dtos.JwtRequest;
 import abdulgazizov.dev.cloudstoragedemo.entity.User;
+import abdulgazizov.dev.cloudstoragedemo.jwt.IssuedToken;
 import abdulgazizov.dev.cloudstoragedemo.jwt.JwtProvider;
+import abdulgazizov.dev.cloudstoragedemo.jwt.TokenValidation;
 import abdulgazizov.dev.cloudstoragedemo.responses.JwtResponse;
+import abdulgazizov.dev.cloudstoragedemo.services.RefreshTokenStore;
 import abdulgazizov.dev.cloudstoragedemo.services.UserService;
+import io.jsonwebtoken.Jwts;
 import jakarta.persistence.EntityNotFoundException;
 import jakarta.security.auth.message.AuthException;
 import org.apache.coyote.BadRequestException;
@@ -17,17 +21,25 @@ import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.security.crypto.password.PasswordEncoder;
 
+import java.time.Instant;
+
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
 class AuthServiceImplTest {
+    private static final Instant EXPIRES_AT = Instant.parse("2024-01-01T00:30:00Z");
+
     @Mock
     private UserService userService;
     @Mock
     private JwtProvider jwtProvider;
     @Mock
     private PasswordEncoder passwordEncoder;
+    @Mock
+    private RefreshTokenStore refreshTokenStore;
     @InjectMocks
     private AuthServiceImpl authService;
 
@@ -55,13 +67,14 @@ class AuthServiceImplTest {
         when(userService.getByUsername(jwtRequest.getLogin())).thenReturn(user);
         when(passwordEncoder.matches(jwtRequest.getPassword(), user.getPassword())).thenReturn(true);
         when(jwtProvider.generateAccessToken(user)).thenReturn(accessToken);
-        when(jwtProvider.generateRefreshToken(user)).thenReturn(refreshToken);
+        when(jwtProvider.generateRefreshToken(user)).thenReturn(new IssuedToken(refreshToken, EXPIRES_AT));
         //when
         JwtResponse jwtResponse = authService.login(jwtRequest);
         //then
         assertNotNull(jwtResponse);
         assertEquals(accessToken, jwtResponse.getAccessToken());
         assertEquals(refreshToken, jwtResponse.getRefreshToken());
+        verify(refreshTokenStore).save(user.getUsername(), refreshToken, EXPIRES_AT);
     }
 
     @Test
@@ -99,5 +112,66 @@ class AuthServiceImplTest {
         verify(userService).getByUsername(jwtRequest.getLogin());
         verifyNoInteractions(passwordEncoder);
         verifyNoInteractions(jwtProvider);
+        verifyNoInteractions(refreshTokenStore);
+    }
+
+    @Test
+    @DisplayName("Обновление токенов: токен заменяется новым")
+    void refresh_testReplacesToken() throws AuthException {
+        //given
+        givenValidRefreshToken();
+        when(userService.getByUsername(user.getUsername())).thenReturn(user);
+        when(jwtProvider.generateRefreshToken(user)).thenReturn(new IssuedToken("newRefreshToken", EXPIRES_AT));
+        when(refreshTokenStore.replace(user.getUsername(), refreshToken, "newRefreshToken", EXPIRES_AT))
+                .thenReturn(true);
+        when(jwtProvider.generateAccessToken(user)).thenReturn(accessToken);
+
+        //when
+        JwtResponse jwtResponse = authService.refresh("Bearer " + refreshToken);
+
+        //then
+        assertEquals(accessToken, jwtResponse.getAccessToken());
+        assertEquals("newRefreshToken", jwtResponse.getRefreshToken());
+    }
+
+    @Test
+    @DisplayName("Обновление токенов: уже обменянный токен отклоняется")
+    void refresh_testRejectsReplacedToken() {
+        //given
+        givenValidRefreshToken();
+        when(userService.getByUsername(user.getUsername())).thenReturn(user);
+        when(jwtProvider.generateRefreshToken(user)).thenReturn(new IssuedToken("newRefreshToken", EXPIRES_AT));
+        when(refreshTokenStore.replace(user.getUsername(), refreshToken, "newRefreshToken", EXPIRES_AT))
+                .thenReturn(false);
+
+        //when
+        AuthException thrown = assertThrows(AuthException.class, () -> authService.refresh("Bearer " + refreshToken));
+
+        //then
+        assertEquals("JWT tokens is not valid", thrown.getMessage());
+        verify(jwtProvider, never()).generateAccessToken(any());
+    }
+
+    @Test
+    @DisplayName("Новый access токен: выдаётся только по сохранённому refresh токену")
+    void getAccessToken_testChecksStore() throws AuthException {
+        //given
+        givenValidRefreshToken();
+        when(refreshTokenStore.contains(user.getUsername(), refreshToken)).thenReturn(true);
+        when(userService.getByUsername(user.getUsername())).thenReturn(user);
+        when(jwtProvider.generateAccessToken(user)).thenReturn(accessToken);
+
+        //when
+        JwtResponse jwtResponse = authService.getAccessToken("Bearer " + refreshToken);
+
+        //then
+        assertEquals(accessToken, jwtResponse.getAccessToken());
+        assertNull(jwtResponse.getRefreshToken());
+        verify(refreshTokenStore, never()).replace(anyString(), anyString(), anyString(), any());
+    }
+
+    private void givenValidRefreshToken() {
+        when(jwtProvider.parseRefreshToken(refreshToken))
+                .thenReturn(TokenValidation.valid(Jwts.claims().setSubject(user.getUsername())));
     }
 }
\ No newline at end of file
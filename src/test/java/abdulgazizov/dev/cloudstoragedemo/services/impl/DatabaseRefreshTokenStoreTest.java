@@ -0,0 +1,94 @@
+package abdulgazizov.dev.cloudstoragedemo.services.impl;
+
+import abdulgazizov.dev.cloudstoragedemo.repositories.RefreshTokenRepository;
+import abdulgazizov.dev.cloudstoragedemo.services.RefreshTokenStore;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Limit;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class DatabaseRefreshTokenStoreTest {
+    @Mock
+    private RefreshTokenRepository refreshTokenRepository;
+
+    @InjectMocks
+    private DatabaseRefreshTokenStore refreshTokenStore;
+
+    @Test
+    @DisplayName("Хранилище refresh токенов в БД: сохраняется хэш токена")
+    void save_testStoresHash() {
+        //given
+        Instant expiresAt = Instant.parse("2024-01-01T00:30:00Z");
+
+        //when
+        refreshTokenStore.save("username", "token", expiresAt);
+
+        //then
+        String hash = RefreshTokenStore.hash("token");
+        assertEquals(64, hash.length());
+        assertNotEquals("token", hash);
+        verify(refreshTokenRepository).upsert("username", hash, expiresAt);
+    }
+
+    @Test
+    @DisplayName("Хранилище refresh токенов в БД: обмен токена зависит от числа изменённых строк")
+    void replace_testUsesConditionalUpdate() {
+        //given
+        Instant expiresAt = Instant.parse("2024-01-01T00:30:00Z");
+        when(refreshTokenRepository.replace(eq("username"), eq(RefreshTokenStore.hash("token")),
+                eq(RefreshTokenStore.hash("next")), eq(expiresAt), any(Instant.class))).thenReturn(1, 0);
+
+        //when
+        boolean first = refreshTokenStore.replace("username", "token", "next", expiresAt);
+        boolean second = refreshTokenStore.replace("username", "token", "next", expiresAt);
+
+        //then
+        assertTrue(first);
+        assertFalse(second);
+    }
+
+    @Test
+    @DisplayName("Хранилище refresh токенов в БД: истёкшие токены удаляются пачками")
+    void removeExpired_testDeletesInBatches() {
+        //given
+        List<String> fullBatch = new ArrayList<>(IntStream.range(0, 1000).mapToObj(i -> "user" + i).toList());
+        List<String> lastBatch = List.of("last");
+        when(refreshTokenRepository.findExpired(any(Instant.class), eq(Limit.of(1000)))).thenReturn(fullBatch).thenReturn(lastBatch);
+        when(refreshTokenRepository.deleteExpired(any(), any(Instant.class))).thenReturn(1000, 1);
+
+        //when
+        refreshTokenStore.removeExpired();
+
+        //then
+        verify(refreshTokenRepository).deleteExpired(eq(fullBatch), any(Instant.class));
+        verify(refreshTokenRepository).deleteExpired(eq(lastBatch), any(Instant.class));
+        verify(refreshTokenRepository, times(2)).findExpired(any(Instant.class), any());
+    }
+
+    @Test
+    @DisplayName("Хранилище refresh токенов в БД: без истёкших токенов ничего не удаляется")
+    void removeExpired_testNothingExpired() {
+        //given
+        when(refreshTokenRepository.findExpired(any(Instant.class), eq(Limit.of(1000)))).thenReturn(List.of());
+
+        //when
+        refreshTokenStore.removeExpired();
+
+        //then
+        verify(refreshTokenRepository, never()).deleteExpired(any(), any());
+    }
+}
@@ -1,29 +1,45 @@
 package abdulgazizov.dev.cloudstoragedemo.services.impl;
 
-import abdulgazizov.dev.cloudstoragedemo.dtos.FileDto;
+import abdulgazizov.dev.cloudstoragedemo.dtos.ArchiveEntry;
+import abdulgazizov.dev.cloudstoragedemo.dtos.FileContent;
+import abdulgazizov.dev.cloudstoragedemo.dtos.FileDeleteResult;
+import abdulgazizov.dev.cloudstoragedemo.dtos.FileLocation;
+import abdulgazizov.dev.cloudstoragedemo.dtos.FilePage;
+import abdulgazizov.dev.cloudstoragedemo.dtos.FileSort;
+import abdulgazizov.dev.cloudstoragedemo.dtos.FileStat;
+import abdulgazizov.dev.cloudstoragedemo.dtos.FileSummary;
+import abdulgazizov.dev.cloudstoragedemo.dtos.FileUploadResult;
+import abdulgazizov.dev.cloudstoragedemo.dtos.PresignedUrl;
+import abdulgazizov.dev.cloudstoragedemo.dtos.StoredObject;
 import abdulgazizov.dev.cloudstoragedemo.entity.Role;
 import abdulgazizov.dev.cloudstoragedemo.entity.User;
+import abdulgazizov.dev.cloudstoragedemo.exceptions.FileNotModifiedException;
 import abdulgazizov.dev.cloudstoragedemo.exceptions.FileUploadException;
+import abdulgazizov.dev.cloudstoragedemo.exceptions.RangeNotSatisfiableException;
 import abdulgazizov.dev.cloudstoragedemo.jwt.JwtAuthentication;
 import abdulgazizov.dev.cloudstoragedemo.properties.MinioProperties;
+import abdulgazizov.dev.cloudstoragedemo.properties.UploadProperties;
 import abdulgazizov.dev.cloudstoragedemo.services.AuthService;
 import abdulgazizov.dev.cloudstoragedemo.services.UserFileService;
-import abdulgazizov.dev.cloudstoragedemo.services.UserService;
-import io.minio.*;
-import io.minio.messages.Item;
+import abdulgazizov.dev.cloudstoragedemo.storage.ObjectCache;
+import abdulgazizov.dev.cloudstoragedemo.storage.ObjectCache.CachedObject;
+import abdulgazizov.dev.cloudstoragedemo.storage.ObjectStorage;
+import io.minio.GetObjectArgs;
+import io.minio.GetObjectResponse;
+import io.minio.StatObjectResponse;
+import io.minio.http.Method;
 import lombok.SneakyThrows;
+import okhttp3.Headers;
 import org.apache.coyote.BadRequestException;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.ArgumentCaptor;
-import org.mockito.Captor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
-import org.springframework.core.io.InputStreamResource;
-import org.springframework.core.io.Resource;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.mock.web.MockMultipartFile;
 import org.springframework.web.multipart.MultipartFile;
 
@@ -31,29 +47,42 @@ import java.io.ByteArrayInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.time.Instant;
 import java.time.ZonedDateTime;
 import java.util.Collections;
-import java.util.HashSet;
+import java.util.HexFormat;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 import java.util.Set;
+import java.util.function.UnaryOperator;
 
 import static org.junit.jupiter.api.Assertions.*;
-import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
 class FileStorageServiceImplTest {
+    private static final long PART_SIZE = 5L * 1024 * 1024;
+
     @InjectMocks
     private FileStorageServiceImpl fileStorageService;
 
     @Mock
-    private MinioClient minioClient;
+    private ObjectStorage objectStorage;
+
+    @Mock
+    private ObjectCache objectCache;
 
     @Mock
     private MinioProperties minioProperties;
 
     @Mock
-    private UserService userService;
+    private UploadProperties uploadProperties;
 
     @Mock
     private UserFileService userFileService;
@@ -64,9 +93,6 @@ class FileStorageServiceImplTest {
     @Mock
     private JwtAuthentication jwtAuthentication;
 
-    @Captor
-    private ArgumentCaptor<PutObjectArgs> putObjectArgsCaptor;
-
     private User user;
 
     @BeforeEach
@@ -76,13 +102,6 @@ class FileStorageServiceImplTest {
         user.setPassword("password");
         user.setRoles(Collections.singleton(Role.ROLE_USER));
         user.setId(1L);
-
-
-        Set<String> files = new HashSet<>();
-        files.add("file1.txt");
-        files.add("file2.txt");
-
-        user.setFiles(files);
     }
 
     @SneakyThrows
@@ -96,25 +115,196 @@ class FileStorageServiceImplTest {
 
         when(authService.getJwtAuthentication()).thenReturn(jwtAuthentication);
         when(jwtAuthentication.getId()).thenReturn(user.getId());
-        when(minioProperties.bucketName()).thenReturn("bucket");
+        when(minioProperties.uploadPartSize()).thenReturn(PART_SIZE);
+        when(objectStorage.put(startsWith("b/"), any(InputStream.class), anyLong(), anyLong(), any())).thenAnswer(invocation -> {
+            invocation.getArgument(1, InputStream.class).readAllBytes();
+            return "etag";
+        });
+        when(userFileService.addFileToUser(eq(user.getId()), eq(fileName), any())).thenAnswer(invocation ->
+                invocation.getArgument(2, StoredObject.class).storageKey());
         //when
         String customFileName = fileStorageService.upload(file, fileName);
 
         //then
-        verify(minioClient).putObject(putObjectArgsCaptor.capture());
-        PutObjectArgs capturedArgs = putObjectArgsCaptor.getValue();
+        ArgumentCaptor<String> keyCaptor = ArgumentCaptor.forClass(String.class);
+        verify(objectStorage).put(keyCaptor.capture(), any(InputStream.class), eq(file.getSize()), eq(PART_SIZE), eq("text/plain"));
+
+        assertEquals(fileName, customFileName);
+
+        verify(objectStorage).ensureBucket();
+        verify(userFileService).addFileToUser(user.getId(), customFileName, new StoredObject(keyCaptor.getValue(),
+                file.getSize(), file.getContentType(), "etag", sha256(file.getBytes())));
+        verify(objectStorage, never()).remove(any());
+
+    }
+
+    @SneakyThrows
+    @Test
+    @DisplayName("Потоковая загрузка файла: размер неизвестен")
+    void upload_testStreamingUploadWithUnknownSize() {
+        //given
+        byte[] content = "Hello, World!".getBytes();
+        String fileName = "example.txt";
 
-        assertNotNull(capturedArgs);
-        assertNotNull(customFileName);
-        assertEquals(fileName, capturedArgs.object());
+        when(authService.getJwtAuthentication()).thenReturn(jwtAuthentication);
+        when(jwtAuthentication.getId()).thenReturn(user.getId());
+        when(minioProperties.uploadPartSize()).thenReturn(PART_SIZE);
+        when(objectStorage.put(anyString(), any(InputStream.class), anyLong(), anyLong(), any())).thenAnswer(invocation -> {
+            invocation.getArgument(1, InputStream.class).readAllBytes();
+            return "etag";
+        });
+        //when
+        String customFileName = fileStorageService.upload(new ByteArrayInputStream(content), -1, fileName, "text/plain");
+
+        //then
         assertEquals(fileName, customFileName);
-        assertEquals(file.getSize(), capturedArgs.stream().available());
+        ArgumentCaptor<StoredObject> storedCaptor = ArgumentCaptor.forClass(StoredObject.class);
+        verify(objectStorage).put(startsWith("b/"), any(InputStream.class), eq(-1L), eq(PART_SIZE), eq("text/plain"));
+        verify(userFileService).addFileToUser(eq(user.getId()), eq(fileName), storedCaptor.capture());
+        assertEquals(content.length, storedCaptor.getValue().size());
+        assertEquals(sha256(content), storedCaptor.getValue().contentHash());
+    }
+
+    @SneakyThrows
+    @Test
+    @DisplayName("Загрузка файла: содержимое уже хранится, новый объект удаляется")
+    void upload_testDuplicateContent() {
+        //given
+        when(authService.getJwtAuthentication()).thenReturn(jwtAuthentication);
+        when(jwtAuthentication.getId()).thenReturn(user.getId());
+        when(minioProperties.uploadPartSize()).thenReturn(PART_SIZE);
+        when(objectStorage.put(anyString(), any(InputStream.class), anyLong(), anyLong(), any())).thenReturn("etag");
+        when(userFileService.addFileToUser(eq(user.getId()), eq("copy.txt"), any())).thenReturn("b/existing");
+
+        //when
+        fileStorageService.upload(new ByteArrayInputStream("Hello".getBytes()), 5, "copy.txt", null);
+
+        //then
+        ArgumentCaptor<String> keyCaptor = ArgumentCaptor.forClass(String.class);
+        verify(objectStorage).put(keyCaptor.capture(), any(InputStream.class), eq(5L), eq(PART_SIZE), isNull());
+        verify(objectStorage).remove(keyCaptor.getValue());
+    }
 
-        verify(minioClient).bucketExists(BucketExistsArgs.builder()
-                .bucket(minioProperties.bucketName())
-                .build());
-        verify(userFileService).addFileToUser(user.getId(), customFileName);
+    @SneakyThrows
+    @Test
+    @DisplayName("Загрузка файла: ошибка индекса, новый объект удаляется")
+    void upload_testIndexError() {
+        //given
+        when(authService.getJwtAuthentication()).thenReturn(jwtAuthentication);
+        when(jwtAuthentication.getId()).thenReturn(user.getId());
+        when(minioProperties.uploadPartSize()).thenReturn(PART_SIZE);
+        when(objectStorage.put(anyString(), any(InputStream.class), anyLong(), anyLong(), any())).thenReturn("etag");
+        when(userFileService.addFileToUser(eq(user.getId()), eq("file.txt"), any())).thenThrow(new IllegalStateException("index down"));
 
+        //when
+        assertThrows(IllegalStateException.class,
+                () -> fileStorageService.upload(new ByteArrayInputStream("Hello".getBytes()), 5, "file.txt", null));
+
+        //then
+        ArgumentCaptor<String> keyCaptor = ArgumentCaptor.forClass(String.class);
+        verify(objectStorage).put(keyCaptor.capture(), any(InputStream.class), eq(5L), eq(PART_SIZE), isNull());
+        verify(objectStorage).remove(keyCaptor.getValue());
+    }
+
+    @SneakyThrows
+    @Test
+    @DisplayName("Потоковая загрузка файла: большой файл укладывается в 10000 частей")
+    void upload_testStreamingUploadOfHugeFileGrowsPartSize() {
+        //given
+        long size = PART_SIZE * 20000;
+
+        when(authService.getJwtAuthentication()).thenReturn(jwtAuthentication);
+        when(jwtAuthentication.getId()).thenReturn(user.getId());
+        when(minioProperties.uploadPartSize()).thenReturn(PART_SIZE);
+        //when
+        fileStorageService.upload(new ByteArrayInputStream(new byte[0]), size, "huge.bin", null);
+
+        //then
+        verify(objectStorage).put(startsWith("b/"), any(InputStream.class), eq(size), eq(PART_SIZE * 2), isNull());
+    }
+
+    @SneakyThrows
+    @Test
+    @DisplayName("Потоковая загрузка файла: ошибка хранилища")
+    void upload_testStreamingUploadStorageError() {
+        //given
+        when(authService.getJwtAuthentication()).thenReturn(jwtAuthentication);
+        when(jwtAuthentication.getId()).thenReturn(user.getId());
+        when(minioProperties.uploadPartSize()).thenReturn(PART_SIZE);
+        doThrow(new IOException("Storage put failed")).when(objectStorage)
+                .put(anyString(), any(InputStream.class), anyLong(), anyLong(), any());
+
+        //when
+        FileUploadException thrown = assertThrows(FileUploadException.class,
+                () -> fileStorageService.upload(new ByteArrayInputStream(new byte[1]), 1, "file.bin", null));
+
+        //then
+        assertTrue(thrown.getMessage().contains("Storage put failed"));
+        verifyNoInteractions(userFileService);
+    }
+
+    @SneakyThrows
+    @Test
+    @DisplayName("Пакетная загрузка: результат по каждому файлу, метаданные записываются одним вызовом")
+    void upload_testBatch() {
+        //given
+        List<MultipartFile> files = List.of(
+                new MockMultipartFile("files", "a.txt", "text/plain", "a".getBytes()),
+                new MockMultipartFile("files", "empty.txt", "text/plain", new byte[0]),
+                new MockMultipartFile("files", "a.txt", "text/plain", "again".getBytes()),
+                new MockMultipartFile("files", "broken.txt", "text/plain", "broken".getBytes()),
+                new MockMultipartFile("files", "copy.txt", "text/plain", "copy".getBytes()));
+
+        when(authService.getJwtAuthentication()).thenReturn(jwtAuthentication);
+        when(jwtAuthentication.getId()).thenReturn(user.getId());
+        when(uploadProperties.batchMaxFiles()).thenReturn(10);
+        when(uploadProperties.batchParallelism()).thenReturn(2);
+        when(minioProperties.uploadPartSize()).thenReturn(PART_SIZE);
+        when(objectStorage.put(anyString(), any(InputStream.class), anyLong(), anyLong(), any())).thenAnswer(invocation -> {
+            if (new String(invocation.getArgument(1, InputStream.class).readAllBytes()).equals("broken")) {
+                throw new IOException("Storage put failed");
+            }
+            return "etag";
+        });
+        ArgumentCaptor<Map<String, StoredObject>> storedCaptor = ArgumentCaptor.captor();
+        when(userFileService.addFilesToUser(eq(user.getId()), storedCaptor.capture())).thenAnswer(invocation -> Map.of(
+                "a.txt", storedCaptor.getValue().get("a.txt").storageKey(),
+                "copy.txt", "b/existing"));
+
+        //when
+        List<FileUploadResult> results = fileStorageService.upload(files);
+
+        //then
+        assertEquals(List.of(
+                new FileUploadResult("a.txt", true, null),
+                new FileUploadResult("empty.txt", false, "File is empty"),
+                new FileUploadResult("a.txt", false, "Duplicate file name"),
+                new FileUploadResult("broken.txt", false, "File upload failed: Storage put failed"),
+                new FileUploadResult("copy.txt", true, null)), results);
+        assertEquals(List.of("a.txt", "copy.txt"), List.copyOf(storedCaptor.getValue().keySet()));
+        assertEquals(sha256("copy".getBytes()), storedCaptor.getValue().get("copy.txt").contentHash());
+        verify(objectStorage, times(3)).put(startsWith("b/"), any(InputStream.class), anyLong(), eq(PART_SIZE), eq("text/plain"));
+        verify(objectStorage).removeAll(List.of(storedCaptor.getValue().get("copy.txt").storageKey()));
+        verify(objectStorage).ensureBucket();
+    }
+
+    @Test
+    @DisplayName("Пакетная загрузка: слишком много файлов")
+    void upload_testBatchTooManyFiles() {
+        //given
+        List<MultipartFile> files = List.of(
+                new MockMultipartFile("files", "a.txt", "text/plain", "a".getBytes()),
+                new MockMultipartFile("files", "b.txt", "text/plain", "b".getBytes()));
+        when(authService.getJwtAuthentication()).thenReturn(jwtAuthentication);
+        when(jwtAuthentication.getId()).thenReturn(user.getId());
+        when(uploadProperties.batchMaxFiles()).thenReturn(1);
+
+        //when
+        FileUploadException thrown = assertThrows(FileUploadException.class, () -> fileStorageService.upload(files));
+
+        //then
+        assertEquals("Too many files: at most 1 per request", thrown.getMessage());
+        verifyNoInteractions(objectStorage, userFileService);
     }
 
     @SneakyThrows
@@ -127,7 +317,6 @@ class FileStorageServiceImplTest {
 
         when(authService.getJwtAuthentication()).thenReturn(jwtAuthentication);
         when(jwtAuthentication.getId()).thenReturn(user.getId());
-        when(minioProperties.bucketName()).thenReturn("bucket");
         //when
         FileUploadException thrown = assertThrows(FileUploadException.class, () -> fileStorageService.upload(file, fileName));
 
@@ -145,7 +334,6 @@ class FileStorageServiceImplTest {
 
         when(authService.getJwtAuthentication()).thenReturn(jwtAuthentication);
         when(jwtAuthentication.getId()).thenReturn(user.getId());
-        when(minioProperties.bucketName()).thenReturn("bucket");
 
         //when & then
         FileUploadException thrown = assertThrows(FileUploadException.class, () -> fileStorageService.upload(file, fileName));
@@ -153,28 +341,154 @@ class FileStorageServiceImplTest {
     }
 
     @Test
-    @DisplayName("Скачивание файла: успешно")
-    void download_ExistingFile_Success() throws Exception {
+    @DisplayName("Метаданные файла: успешно")
+    void getFileStat_testSuccess() throws Exception {
+        //given
+        String fileName = "existing.txt";
+        StatObjectResponse statObjectResponse = mock(StatObjectResponse.class);
+        when(statObjectResponse.size()).thenReturn(12L);
+        when(statObjectResponse.etag()).thenReturn("etag");
+        when(statObjectResponse.lastModified()).thenReturn(ZonedDateTime.parse("2024-01-01T00:00:00Z"));
+
+        when(authService.getJwtAuthentication()).thenReturn(jwtAuthentication);
+        when(jwtAuthentication.getId()).thenReturn(user.getId());
+        stubLocation(fileName);
+        when(objectStorage.stat("b/" + fileName)).thenReturn(statObjectResponse);
+
+        //when
+        FileStat stat = fileStorageService.getFileStat(fileName);
+
+        //then
+        assertEquals(new FileStat(fileName, 12L, "etag", Instant.parse("2024-01-01T00:00:00Z"), "b/" + fileName), stat);
+    }
+
+    @Test
+    @DisplayName("Метаданные файла: файл не найден")
+    void getFileStat_testFileNotFound() throws Exception {
+        //given
+        String fileName = "nonExisting.txt";
+        when(authService.getJwtAuthentication()).thenReturn(jwtAuthentication);
+        when(jwtAuthentication.getId()).thenReturn(user.getId());
+        stubLocation(fileName);
+        when(objectStorage.stat("b/" + fileName)).thenThrow(new FileNotFoundException("File not found: b/" + fileName));
+
+        //when
+        FileNotFoundException thrown = assertThrows(FileNotFoundException.class, () -> fileStorageService.getFileStat(fileName));
+
+        //then
+        assertEquals("File not found: " + fileName, thrown.getMessage());
+    }
+
+    @Test
+    @DisplayName("Скачивание файла: файла нет в индексе")
+    void download_testNotIndexed() {
+        //given
+        when(authService.getJwtAuthentication()).thenReturn(jwtAuthentication);
+        when(jwtAuthentication.getId()).thenReturn(user.getId());
+        when(userFileService.getFileLocation(user.getId(), "nonExisting.txt")).thenReturn(Optional.empty());
+
+        //when
+        FileNotFoundException thrown = assertThrows(FileNotFoundException.class,
+                () -> fileStorageService.download("nonExisting.txt", null, null, null, null));
+
+        //then
+        assertEquals("File not found: nonExisting.txt", thrown.getMessage());
+        verifyNoInteractions(objectStorage);
+    }
+
+    @Test
+    @DisplayName("Скачивание файла: метаданные берутся из ответа хранилища")
+    void download_testSingleRequest() throws Exception {
         //given
         String fileName = "existing.txt";
-        InputStream fakeStream = new ByteArrayInputStream("File content".getBytes());
+        GetObjectResponse getObjectResponse = mock(GetObjectResponse.class);
+        when(getObjectResponse.headers()).thenReturn(Headers.of(
+                "ETag", "\"etag\"",
+                "Last-Modified", "Mon, 01 Jan 2024 00:00:00 GMT",
+                "Content-Length", "12"));
+
+        when(authService.getJwtAuthentication()).thenReturn(jwtAuthentication);
+        when(jwtAuthentication.getId()).thenReturn(user.getId());
+        stubLocation(fileName);
+        when(objectStorage.get(eq("b/" + fileName), any())).thenReturn(getObjectResponse);
+
+        //when
+        FileContent content = fileStorageService.download(fileName, null, null, null, null);
 
+        //then
+        assertEquals(new FileStat(fileName, 12, "etag", Instant.parse("2024-01-01T00:00:00Z"), "b/" + fileName), content.file());
+        assertEquals(0, content.offset());
+        assertEquals(12, content.length());
+        assertSame(getObjectResponse, content.content());
+        verify(objectStorage, never()).stat(any());
+    }
+
+    @Test
+    @DisplayName("Скачивание диапазона: размер файла берётся из Content-Range")
+    void download_testSingleRequestRange() throws Exception {
+        //given
+        String fileName = "existing.txt";
         GetObjectResponse getObjectResponse = mock(GetObjectResponse.class);
-        when(getObjectResponse.readAllBytes()).thenReturn(fakeStream.readAllBytes());
-        StatObjectResponse statObjectResponse = mock(StatObjectResponse.class);
+        when(getObjectResponse.headers()).thenReturn(Headers.of(
+                "ETag", "\"etag\"",
+                "Content-Length", "20",
+                "Content-Range", "bytes 10-29/100"));
+        ArgumentCaptor<UnaryOperator<GetObjectArgs.Builder>> optionsCaptor = ArgumentCaptor.captor();
+
+        when(authService.getJwtAuthentication()).thenReturn(jwtAuthentication);
+        when(jwtAuthentication.getId()).thenReturn(user.getId());
+        stubLocation(fileName);
+        when(objectStorage.get(eq("b/" + fileName), optionsCaptor.capture())).thenReturn(getObjectResponse);
 
-        when(minioProperties.bucketName()).thenReturn("bucket");
-        when(minioClient.getObject(any(GetObjectArgs.class))).thenReturn(getObjectResponse);
-        when(minioClient.statObject(any(StatObjectArgs.class))).thenReturn(statObjectResponse);
+        //when
+        FileContent content = fileStorageService.download(fileName, 10L, 20L, "etag", null);
+
+        //then
+        assertEquals(100, content.file().size());
+        assertEquals(10, content.offset());
+        assertEquals(20, content.length());
+        GetObjectArgs args = applyOptions(optionsCaptor.getValue());
+        assertEquals(10L, args.offset());
+        assertEquals(20L, args.length());
+        assertEquals("etag", args.notMatchETag());
+    }
+
+    @Test
+    @DisplayName("Скачивание файла: файл не изменён")
+    void download_testNotModified() throws Exception {
+        //given
+        when(authService.getJwtAuthentication()).thenReturn(jwtAuthentication);
+        when(jwtAuthentication.getId()).thenReturn(user.getId());
+        stubLocation("existing.txt");
+        when(objectStorage.get(eq("b/existing.txt"), any())).thenThrow(new FileNotModifiedException("File not modified"));
 
         //when
-        Resource resource = fileStorageService.download(fileName);
+        FileNotModifiedException thrown = assertThrows(FileNotModifiedException.class,
+                () -> fileStorageService.download("existing.txt", null, null, "etag", null));
 
         //then
-        assertNotNull(resource);
-        assertInstanceOf(InputStreamResource.class, resource);
-        byte[] actualData = resource.getInputStream().readAllBytes();
-        assertArrayEquals("File content".getBytes(), actualData);
+        assertEquals("etag", thrown.getEtag());
+    }
+
+    @Test
+    @DisplayName("Скачивание диапазона: диапазон за пределами файла")
+    void download_testRangeNotSatisfiable() throws Exception {
+        //given
+        StatObjectResponse statObjectResponse = mock(StatObjectResponse.class);
+        when(statObjectResponse.size()).thenReturn(12L);
+        when(statObjectResponse.lastModified()).thenReturn(ZonedDateTime.now());
+        when(authService.getJwtAuthentication()).thenReturn(jwtAuthentication);
+        when(jwtAuthentication.getId()).thenReturn(user.getId());
+        stubLocation("existing.txt");
+        when(objectStorage.get(eq("b/existing.txt"), any())).thenThrow(new RangeNotSatisfiableException("Range not satisfiable"));
+        when(objectStorage.stat("b/existing.txt")).thenReturn(statObjectResponse);
+
+        //when
+        RangeNotSatisfiableException thrown = assertThrows(RangeNotSatisfiableException.class,
+                () -> fileStorageService.download("existing.txt", 100L, null, null, null));
+
+        //then
+        assertEquals(12L, thrown.getSize());
     }
 
     @Test
@@ -182,18 +496,244 @@ class FileStorageServiceImplTest {
     void download_ExistingFile_Fail() throws Exception {
         //given
         String fileName = "nonExisting.txt";
-        when(minioProperties.bucketName()).thenReturn("bucket");
-        when(minioClient.statObject(any(StatObjectArgs.class))).thenThrow(new FileNotFoundException("File not found: " + fileName));
+        when(authService.getJwtAuthentication()).thenReturn(jwtAuthentication);
+        when(jwtAuthentication.getId()).thenReturn(user.getId());
+        stubLocation(fileName);
+        when(objectStorage.get(eq("b/" + fileName), any())).thenThrow(new FileNotFoundException("File not found: b/" + fileName));
         //when
 
-        IOException thrown = assertThrows(IOException.class, () -> fileStorageService.download(fileName));
+        FileNotFoundException thrown = assertThrows(FileNotFoundException.class,
+                () -> fileStorageService.download(fileName, null, null, null, null));
         //then
-        assertNotNull(thrown);
-        assertTrue(thrown.getMessage().contains("File not found: " + fileName));
+        assertEquals("File not found: " + fileName, thrown.getMessage());
+    }
+
+    @Test
+    @DisplayName("Скачивание файла: файл из локального кэша отдаётся без запроса к хранилищу")
+    void download_testCached() throws Exception {
+        //given
+        String fileName = "existing.txt";
+        FileStat file = new FileStat(fileName, 100, "etag", Instant.parse("2024-01-01T00:00:00Z"), "b/" + fileName);
+        CachedObject cached = new CachedObject(file, Path.of("object-1"), null);
+        CachedObject pinned = new CachedObject(file, Path.of("pin-1"), null);
+        InputStream inputStream = new ByteArrayInputStream(new byte[10]);
+
+        when(authService.getJwtAuthentication()).thenReturn(jwtAuthentication);
+        when(jwtAuthentication.getId()).thenReturn(user.getId());
+        stubLocation(fileName);
+        when(objectCache.get("b/" + fileName, "etag")).thenReturn(Optional.of(cached));
+        when(objectCache.pin(cached)).thenReturn(pinned);
+        when(objectCache.open(pinned, 90, 10)).thenReturn(inputStream);
+
+        //when
+        FileContent content = fileStorageService.download(fileName, 90L, 20L, null, null);
+
+        //then
+        assertEquals(90, content.offset());
+        assertEquals(10, content.length());
+        // the pinned file is handed out for sendfile and opened only when the content is read
+        assertEquals(Path.of("pin-1"), content.localFile());
+        verify(objectCache, never()).open(any(), anyLong(), anyLong());
+        assertEquals(10, content.content().readAllBytes().length);
+        verifyNoInteractions(objectStorage);
+    }
+
+    @Test
+    @DisplayName("Скачивание файла: файл, вытесненный из кэша до закрепления, читается из хранилища")
+    void download_testCachedFileEvicted() throws Exception {
+        //given
+        String fileName = "existing.txt";
+        FileStat file = new FileStat(fileName, 12, "etag", Instant.parse("2024-01-01T00:00:00Z"), "b/" + fileName);
+        CachedObject cached = new CachedObject(file, Path.of("object-1"), null);
+        GetObjectResponse getObjectResponse = mock(GetObjectResponse.class);
+        when(getObjectResponse.headers()).thenReturn(Headers.of("ETag", "\"etag\"", "Content-Length", "12"));
+
+        when(authService.getJwtAuthentication()).thenReturn(jwtAuthentication);
+        when(jwtAuthentication.getId()).thenReturn(user.getId());
+        stubLocation(fileName);
+        when(objectCache.get("b/" + fileName, "etag")).thenReturn(Optional.of(cached));
+        when(objectCache.pin(cached)).thenThrow(new NoSuchFileException("object-1"));
+        when(objectStorage.get(eq("b/" + fileName), any())).thenReturn(getObjectResponse);
+
+        //when
+        FileContent content = fileStorageService.download(fileName, null, null, null, null);
+
+        //then
+        assertSame(getObjectResponse, content.content());
+        assertEquals(12, content.length());
+    }
+
+    @Test
+    @DisplayName("Скачивание файла: файл из локального кэша не изменён")
+    void download_testCachedNotModified() throws Exception {
+        //given
+        String fileName = "existing.txt";
+        FileStat file = new FileStat(fileName, 100, "etag", Instant.parse("2024-01-01T00:00:00Z"), "b/" + fileName);
+
+        when(authService.getJwtAuthentication()).thenReturn(jwtAuthentication);
+        when(jwtAuthentication.getId()).thenReturn(user.getId());
+        stubLocation(fileName);
+        when(objectCache.get("b/" + fileName, "etag")).thenReturn(Optional.of(new CachedObject(file, Path.of("object-1"), null)));
+
+        //when
+        assertThrows(FileNotModifiedException.class,
+                () -> fileStorageService.download(fileName, null, null, null, Instant.parse("2024-01-01T00:00:00Z")));
+        assertThrows(RangeNotSatisfiableException.class,
+                () -> fileStorageService.download(fileName, 100L, null, null, null));
+
+        //then
+        verifyNoInteractions(objectStorage);
+        verify(objectCache, never()).open(any(), anyLong(), anyLong());
+    }
+
+    @Test
+    @DisplayName("Скачивание файла: промах кэша учитывается для допуска в кэш")
+    void download_testCacheMiss() throws Exception {
+        //given
+        String fileName = "existing.txt";
+        GetObjectResponse getObjectResponse = mock(GetObjectResponse.class);
+        when(getObjectResponse.headers()).thenReturn(Headers.of("ETag", "\"etag\"", "Content-Length", "12"));
+
+        when(authService.getJwtAuthentication()).thenReturn(jwtAuthentication);
+        when(jwtAuthentication.getId()).thenReturn(user.getId());
+        stubLocation(fileName);
+        when(objectCache.get("b/" + fileName, "etag")).thenReturn(Optional.empty());
+        when(objectStorage.get(eq("b/" + fileName), any())).thenReturn(getObjectResponse);
+
+        //when
+        FileContent content = fileStorageService.download(fileName, null, null, null, null);
+
+        //then
+        assertSame(getObjectResponse, content.content());
+        verify(objectCache).admit("b/" + fileName, new FileStat(fileName, 12, "etag", null, "b/" + fileName));
+    }
+
+    @Test
+    @DisplayName("Скачивание файла: маленький файл читается целиком и кэшируется в памяти")
+    void download_testReadThroughMemoryCache() throws Exception {
+        //given
+        String fileName = "existing.txt";
+        FileStat file = new FileStat(fileName, 12, "etag", null, "b/" + fileName);
+        GetObjectResponse getObjectResponse = mock(GetObjectResponse.class);
+        when(getObjectResponse.headers()).thenReturn(Headers.of("ETag", "\"etag\"", "Content-Length", "12"));
+        when(getObjectResponse.readAllBytes()).thenReturn("Hello world!".getBytes());
+        CachedObject cached = new CachedObject(file, null, "Hello world!".getBytes());
+        InputStream inputStream = new ByteArrayInputStream(cached.content());
+
+        when(authService.getJwtAuthentication()).thenReturn(jwtAuthentication);
+        when(jwtAuthentication.getId()).thenReturn(user.getId());
+        stubLocation(fileName);
+        when(objectStorage.get(eq("b/" + fileName), any())).thenReturn(getObjectResponse);
+        when(objectCache.fitsInMemory(file)).thenReturn(true);
+        when(objectCache.putInMemory(eq("b/" + fileName), eq(file), any())).thenReturn(cached);
+        when(objectCache.open(cached, 0, 12)).thenReturn(inputStream);
+
+        //when
+        FileContent content = fileStorageService.download(fileName, null, null, null, null);
+
+        //then
+        assertEquals(new FileContent(file, 0, 12, inputStream), content);
+        verify(getObjectResponse).close();
+        verify(objectCache, never()).admit(any(), any());
+    }
+
+    @Test
+    @DisplayName("Скачивание диапазона: маленький файл читается целиком для следующих диапазонов")
+    void download_testRangeOfSmallFile() throws Exception {
+        //given
+        String fileName = "existing.txt";
+        FileStat file = new FileStat(fileName, 12, "etag", Instant.parse("2024-01-01T00:00:00Z"), "b/" + fileName);
+        GetObjectResponse getObjectResponse = mock(GetObjectResponse.class);
+        when(getObjectResponse.readAllBytes()).thenReturn("Hello world!".getBytes());
+        CachedObject cached = new CachedObject(file, null, "Hello world!".getBytes());
+        InputStream inputStream = new ByteArrayInputStream("world".getBytes());
+        ArgumentCaptor<UnaryOperator<GetObjectArgs.Builder>> optionsCaptor = ArgumentCaptor.captor();
+
+        when(objectCache.get("b/" + fileName, "etag")).thenReturn(Optional.empty());
+        when(objectCache.fitsInMemory(file)).thenReturn(true);
+        when(objectStorage.get(eq("b/" + fileName), optionsCaptor.capture())).thenReturn(getObjectResponse);
+        when(objectCache.putInMemory(eq("b/" + fileName), eq(file), any())).thenReturn(cached);
+        when(objectCache.open(cached, 6, 5)).thenReturn(inputStream);
+
+        //when
+        InputStream content = fileStorageService.download(file, 6, 5);
+
+        //then
+        assertSame(inputStream, content);
+        GetObjectArgs args = applyOptions(optionsCaptor.getValue());
+        assertNull(args.offset());
+        assertEquals("etag", args.matchETag());
+    }
+
+    @Test
+    @DisplayName("Скачивание диапазона: общий блоб в кэше отдаётся под именем файла пользователя")
+    void download_testSharedBlobAfterRename() throws Exception {
+        //given
+        // блоб закэширован под именем файла другого пользователя, который затем переименован
+        FileStat cachedFile = new FileStat("other.txt", 12, "etag", Instant.parse("2024-01-01T00:00:00Z"), "b/shared");
+        CachedObject cached = new CachedObject(cachedFile, null, "Hello world!".getBytes());
+        InputStream inputStream = new ByteArrayInputStream("world".getBytes());
+
+        when(authService.getJwtAuthentication()).thenReturn(jwtAuthentication);
+        when(jwtAuthentication.getId()).thenReturn(user.getId());
+        when(userFileService.getFileLocation(user.getId(), "renamed.txt"))
+                .thenReturn(Optional.of(new FileLocation("b/shared", "etag")));
+        when(objectCache.get("b/shared", "etag")).thenReturn(Optional.of(cached));
+        when(objectCache.open(cached, 6, 5)).thenReturn(inputStream);
+
+        //when
+        FileStat stat = fileStorageService.getFileStat("renamed.txt");
+        InputStream content = fileStorageService.download(stat, 6, 5);
+
+        //then
+        assertEquals(new FileStat("renamed.txt", 12, "etag", Instant.parse("2024-01-01T00:00:00Z"), "b/shared"), stat);
+        assertSame(inputStream, content);
+        verify(userFileService, times(1)).getFileLocation(any(), any());
+        verify(userFileService, never()).getFileLocation(user.getId(), "other.txt");
+        verifyNoInteractions(objectStorage);
+    }
+
+    @Test
+    @DisplayName("Скачивание диапазона: запрашиваются только нужные байты")
+    void download_testRange() throws Exception {
+        //given
+        FileStat file = new FileStat("existing.txt", 100, "etag", Instant.now(), "b/existing.txt");
+        GetObjectResponse getObjectResponse = mock(GetObjectResponse.class);
+        ArgumentCaptor<UnaryOperator<GetObjectArgs.Builder>> optionsCaptor = ArgumentCaptor.captor();
+
+        when(objectStorage.get(eq("b/existing.txt"), optionsCaptor.capture())).thenReturn(getObjectResponse);
+
+        //when
+        InputStream inputStream = fileStorageService.download(file, 10, 20);
+
+        //then
+        assertSame(getObjectResponse, inputStream);
+        GetObjectArgs args = applyOptions(optionsCaptor.getValue());
+        assertEquals(10L, args.offset());
+        assertEquals(20L, args.length());
+        assertEquals("etag", args.matchETag());
+    }
+
+    @Test
+    @DisplayName("Скачивание файла целиком: без диапазона")
+    void download_testWholeFile() throws Exception {
+        //given
+        FileStat file = new FileStat("existing.txt", 0, "etag", Instant.now(), "b/existing.txt");
+        ArgumentCaptor<UnaryOperator<GetObjectArgs.Builder>> optionsCaptor = ArgumentCaptor.captor();
+
+        when(objectStorage.get(eq("b/existing.txt"), optionsCaptor.capture())).thenReturn(mock(GetObjectResponse.class));
+
+        //when
+        fileStorageService.download(file, 0, 0);
+
+        //then
+        GetObjectArgs args = applyOptions(optionsCaptor.getValue());
+        assertNull(args.offset());
+        assertNull(args.length());
     }
 
     @Test
-    @DisplayName("Переименование файла: успешно")
+    @DisplayName("Переименование файла: успешно, без запросов к хранилищу")
     void editFileName_Success() throws Exception {
         //given
         String oldFileName = "file1.txt";
@@ -201,19 +741,14 @@ class FileStorageServiceImplTest {
 
         when(authService.getJwtAuthentication()).thenReturn(jwtAuthentication);
         when(jwtAuthentication.getId()).thenReturn(user.getId());
-        when(minioProperties.bucketName()).thenReturn("bucket");
-        when(userService.getById(user.getId())).thenReturn(user);
-
-        when(minioClient.statObject(any(StatObjectArgs.class))).thenReturn(mock(StatObjectResponse.class));
-        when(minioClient.copyObject(any(CopyObjectArgs.class))).thenReturn(mock(ObjectWriteResponse.class));
-        doNothing().when(minioClient).removeObject(any(RemoveObjectArgs.class));
+        when(userFileService.renameFileOfUser(user.getId(), oldFileName, newFileName)).thenReturn(true);
 
         //when
         fileStorageService.editFileName(newFileName, oldFileName);
 
         //then
-        verify(userFileService).removeFileFromUser(user.getId(), oldFileName);
-        verify(userFileService).addFileToUser(user.getId(), newFileName);
+        verify(userFileService, never()).hasFile(any(), any());
+        verifyNoInteractions(objectStorage, objectCache);
     }
 
     @Test
@@ -224,14 +759,118 @@ class FileStorageServiceImplTest {
         String newFileName = "newName.txt";
         when(authService.getJwtAuthentication()).thenReturn(jwtAuthentication);
         when(jwtAuthentication.getId()).thenReturn(user.getId());
-        when(userService.getById(user.getId())).thenReturn(user);
+        when(userFileService.renameFileOfUser(user.getId(), oldFileName, newFileName)).thenReturn(false);
 
         //when
         FileNotFoundException exception = assertThrows(FileNotFoundException.class, () -> fileStorageService.editFileName(newFileName, oldFileName));
 
         //then
-        assertNotNull(exception);
-        assertTrue(exception.getMessage().contains("File not found: "));
+        assertEquals("File not found: " + oldFileName, exception.getMessage());
+    }
+
+    @Test
+    @DisplayName("Переименовывание файла: файл с новым именем уже существует")
+    void editFileName_testTargetExists() throws Exception {
+        //given
+        when(authService.getJwtAuthentication()).thenReturn(jwtAuthentication);
+        when(jwtAuthentication.getId()).thenReturn(user.getId());
+        when(userFileService.renameFileOfUser(user.getId(), "file1.txt", "file2.txt"))
+                .thenThrow(new DataIntegrityViolationException("duplicate key value violates unique constraint"));
+
+        //when
+        FileUploadException exception = assertThrows(FileUploadException.class, () -> fileStorageService.editFileName("file2.txt", "file1.txt"));
+
+        //then
+        assertEquals("File already exists: file2.txt", exception.getMessage());
+        verifyNoInteractions(objectStorage);
+    }
+
+    @Test
+    @DisplayName("Удаление нескольких файлов: результат по каждому имени")
+    void delete_testBatch() {
+        //given
+        when(authService.getJwtAuthentication()).thenReturn(jwtAuthentication);
+        when(jwtAuthentication.getId()).thenReturn(user.getId());
+        when(userFileService.removeFilesFromUser(user.getId(), List.of("a.txt", "missing.txt")))
+                .thenReturn(Set.of("a.txt"));
+
+        //when
+        List<FileDeleteResult> results = fileStorageService.delete(List.of("a.txt", "missing.txt", "a.txt"));
+
+        //then
+        assertEquals(List.of(new FileDeleteResult("a.txt", true), new FileDeleteResult("missing.txt", false)), results);
+        verifyNoInteractions(objectStorage, objectCache);
+    }
+
+    @Test
+    @DisplayName("Ссылка на скачивание: подписывается для объекта файла с его именем")
+    void getDownloadUrl_testSigned() throws Exception {
+        //given
+        when(authService.getJwtAuthentication()).thenReturn(jwtAuthentication);
+        when(jwtAuthentication.getId()).thenReturn(user.getId());
+        stubLocation("отчёт.pdf");
+        when(minioProperties.presignedUrlTtl()).thenReturn(Duration.ofMinutes(15));
+        when(objectStorage.presign(eq(Method.GET), eq("b/отчёт.pdf"), eq(Duration.ofMinutes(15)), anyMap()))
+                .thenReturn("http://minio/bucket/b/1?signed");
+
+        //when
+        PresignedUrl url = fileStorageService.getDownloadUrl("отчёт.pdf");
+
+        //then
+        assertEquals("http://minio/bucket/b/1?signed", url.url());
+        assertTrue(url.expiresAt().isAfter(Instant.now().plus(Duration.ofMinutes(14))));
+        verify(objectStorage).presign(eq(Method.GET), eq("b/отчёт.pdf"), eq(Duration.ofMinutes(15)), argThat(params ->
+                params.get("response-content-disposition").startsWith("attachment; filename=")
+                        && params.get("response-content-disposition").contains("UTF-8''")));
+    }
+
+    @Test
+    @DisplayName("Ссылка на скачивание: чужой или отсутствующий файл")
+    void getDownloadUrl_testFileNotFound() throws Exception {
+        //given
+        when(authService.getJwtAuthentication()).thenReturn(jwtAuthentication);
+        when(jwtAuthentication.getId()).thenReturn(user.getId());
+        when(userFileService.getFileLocation(user.getId(), "missing.txt")).thenReturn(Optional.empty());
+
+        //when
+        //then
+        assertThrows(FileNotFoundException.class, () -> fileStorageService.getDownloadUrl("missing.txt"));
+        verify(objectStorage, never()).presign(any(), any(), any(), any());
+    }
+
+    @Test
+    @DisplayName("Архив файлов: файлы в порядке запроса без повторов")
+    void getArchiveEntries_testOrder() throws Exception {
+        //given
+        ArchiveEntry a = new ArchiveEntry("a.txt", "b/a", 1, "text/plain", Instant.EPOCH);
+        ArchiveEntry b = new ArchiveEntry("b.png", "b/b", 2, "image/png", Instant.EPOCH);
+        when(authService.getJwtAuthentication()).thenReturn(jwtAuthentication);
+        when(jwtAuthentication.getId()).thenReturn(user.getId());
+        when(userFileService.getArchiveEntries(user.getId(), List.of("b.png", "a.txt"))).thenReturn(List.of(a, b));
+
+        //when
+        List<ArchiveEntry> entries = fileStorageService.getArchiveEntries(List.of("b.png", "a.txt", "b.png"));
+
+        //then
+        assertEquals(List.of(b, a), entries);
+        verifyNoInteractions(objectStorage);
+    }
+
+    @Test
+    @DisplayName("Архив файлов: отсутствующий файл")
+    void getArchiveEntries_testFileNotFound() {
+        //given
+        when(authService.getJwtAuthentication()).thenReturn(jwtAuthentication);
+        when(jwtAuthentication.getId()).thenReturn(user.getId());
+        when(userFileService.getArchiveEntries(user.getId(), List.of("a.txt", "missing.txt")))
+                .thenReturn(List.of(new ArchiveEntry("a.txt", "b/a", 1, "text/plain", Instant.EPOCH)));
+
+        //when
+        Exception exception = assertThrows(FileNotFoundException.class,
+                () -> fileStorageService.getArchiveEntries(List.of("a.txt", "missing.txt")));
+
+        //then
+        assertEquals("File not found: missing.txt", exception.getMessage());
     }
 
     @Test
@@ -242,17 +881,13 @@ class FileStorageServiceImplTest {
 
         when(authService.getJwtAuthentication()).thenReturn(jwtAuthentication);
         when(jwtAuthentication.getId()).thenReturn(user.getId());
-        when(minioProperties.bucketName()).thenReturn("bucket");
-        when(userService.getById(user.getId())).thenReturn(user);
-
-        when(minioClient.statObject(any(StatObjectArgs.class))).thenReturn(mock(StatObjectResponse.class));
-        doNothing().when(minioClient).removeObject(any(RemoveObjectArgs.class));
+        when(userFileService.removeFileFromUser(user.getId(), fileName)).thenReturn(true);
 
         //when
         fileStorageService.delete(fileName);
 
         //then
-        verify(userFileService).removeFileFromUser(user.getId(), fileName);
+        verifyNoInteractions(objectStorage, objectCache);
     }
 
     @Test
@@ -263,7 +898,7 @@ class FileStorageServiceImplTest {
 
         when(authService.getJwtAuthentication()).thenReturn(jwtAuthentication);
         when(jwtAuthentication.getId()).thenReturn(user.getId());
-        when(userService.getById(user.getId())).thenReturn(user);
+        when(userFileService.removeFileFromUser(user.getId(), fileName)).thenReturn(false);
 
         //when
         FileNotFoundException exception = assertThrows(FileNotFoundException.class, () -> fileStorageService.delete(fileName));
@@ -271,6 +906,7 @@ class FileStorageServiceImplTest {
         //then
         assertNotNull(exception);
         assertTrue(exception.getMessage().contains("File not found: "));
+        verifyNoInteractions(objectStorage);
     }
 
     @Test
@@ -278,76 +914,68 @@ class FileStorageServiceImplTest {
     void getFiles_ValidLimit_Success() throws Exception {
         //given
         int limit = 2;
-        Set<String> userFiles = Set.of("file1.txt", "file2.txt");
+        FilePage page = new FilePage(List.of(createSummary("file1.txt", 123), createSummary("file2.txt", 456)), "next");
 
-        User user = mock(User.class);
-        when(user.getFiles()).thenReturn(userFiles);
         when(authService.getJwtAuthentication()).thenReturn(jwtAuthentication);
-        when(userService.getById(user.getId())).thenReturn(user);
-        when(minioProperties.bucketName()).thenReturn("bucket");
-
-        List<Result<Item>> results = List.of(
-                createMockItemResult("file1.txt", 123, ZonedDateTime.now()),
-                createMockItemResult("file2.txt", 456, ZonedDateTime.now()),
-                createMockItemResult("file3.txt", 789, ZonedDateTime.now())
-        );
-        when(minioClient.listObjects(any(ListObjectsArgs.class))).thenReturn(results);
+        when(jwtAuthentication.getId()).thenReturn(user.getId());
+        when(userFileService.getFilesOfUser(user.getId(), limit, FileSort.NAME, null)).thenReturn(page);
 
         // when
-        List<Item> files = fileStorageService.getFiles(limit);
+        FilePage files = fileStorageService.getFiles(limit, FileSort.NAME, null);
 
         // then
         assertNotNull(files);
-        assertEquals(2, files.size());
-        assertTrue(files.stream().anyMatch(f -> f.objectName().equals("file1.txt")));
-        assertTrue(files.stream().anyMatch(f -> f.objectName().equals("file2.txt")));
+        assertEquals(2, files.getFiles().size());
+        assertEquals("next", files.getNextCursor());
+        verifyNoInteractions(objectStorage);
     }
 
     @Test
-    @DisplayName("Получение файлов: неверный лимит")
-    void getFiles_InvalidLimit_ThrowsBadRequestException() {
-        // given
-        int invalidLimit = 0;
+    @DisplayName("Получение файлов: лимит ограничен сверху")
+    void getFiles_HugeLimit_IsCapped() throws Exception {
+        //given
         when(authService.getJwtAuthentication()).thenReturn(jwtAuthentication);
         when(jwtAuthentication.getId()).thenReturn(user.getId());
-        when(userService.getById(user.getId())).thenReturn(user);
+        when(userFileService.getFilesOfUser(eq(user.getId()), anyInt(), eq(FileSort.SIZE), eq("cursor")))
+                .thenReturn(new FilePage(List.of(), null));
 
         // when
-        BadRequestException exception = assertThrows(BadRequestException.class, () -> fileStorageService.getFiles(invalidLimit));
+        fileStorageService.getFiles(Integer.MAX_VALUE, FileSort.SIZE, "cursor");
 
-        //then
-        assertEquals("Limit must be greater than 0", exception.getMessage());
+        // then
+        verify(userFileService).getFilesOfUser(user.getId(), 1000, FileSort.SIZE, "cursor");
     }
 
     @Test
-    @DisplayName("Получение файлов: ошибка получения")
-    void getFiles_ErrorListingFiles_ThrowsRuntimeException() {
+    @DisplayName("Получение файлов: неверный лимит")
+    void getFiles_InvalidLimit_ThrowsBadRequestException() {
         // given
-        int limit = 2;
+        int invalidLimit = 0;
         when(authService.getJwtAuthentication()).thenReturn(jwtAuthentication);
         when(jwtAuthentication.getId()).thenReturn(user.getId());
-        when(minioProperties.bucketName()).thenReturn("bucket");
-        when(minioClient.listObjects(any(ListObjectsArgs.class))).thenThrow(new RuntimeException("MinIO error"));
 
-        //when
-        Exception exception = assertThrows(RuntimeException.class, () -> fileStorageService.getFiles(limit));
+        // when
+        BadRequestException exception = assertThrows(BadRequestException.class, () -> fileStorageService.getFiles(invalidLimit, FileSort.NAME, null));
 
         //then
-        assertEquals("Failed to retrieve files: MinIO error", exception.getMessage());
+        assertEquals("Limit must be greater than 0", exception.getMessage());
+        verifyNoInteractions(userFileService);
     }
 
-    private Result<Item> createMockItemResult(String fileName, long size, ZonedDateTime lastModified) {
-        Item item = mock(Item.class);
-        lenient().when(item.objectName()).thenReturn(fileName);
-        lenient().when(item.size()).thenReturn(size);
-        lenient().when(item.lastModified()).thenReturn(lastModified);
+    private void stubLocation(String fileName) {
+        when(userFileService.getFileLocation(user.getId(), fileName))
+                .thenReturn(Optional.of(new FileLocation("b/" + fileName, "etag")));
+    }
+
+    private static String sha256(byte[] content) throws Exception {
+        return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(content));
+    }
+
+    private static GetObjectArgs applyOptions(UnaryOperator<GetObjectArgs.Builder> options) {
+        return options.apply(GetObjectArgs.builder().bucket("bucket").object("object")).build();
+    }
 
-        Result<Item> result = mock(Result.class);
-        try {
-            lenient().when(result.get()).thenReturn(item);
-        } catch (Exception e) {
-            fail("Failed to create mock item result");
-        }
-        return result;
+    private static FileSummary createSummary(String fileName, long size) {
+        return new FileSummary(fileName, size, Instant.now());
     }
 }
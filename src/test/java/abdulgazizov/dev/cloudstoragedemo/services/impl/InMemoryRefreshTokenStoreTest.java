@@ -0,0 +1,84 @@
+package abdulgazizov.dev.cloudstoragedemo.services.impl;
+
+import abdulgazizov.dev.cloudstoragedemo.properties.JwtProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class InMemoryRefreshTokenStoreTest {
+    private static final Instant EXPIRES_AT = Instant.now().plus(Duration.ofMinutes(30));
+
+    @Test
+    @DisplayName("Хранилище refresh токенов в памяти: сохраняется только последний токен пользователя")
+    void save_testReplacesPreviousToken() {
+        //given
+        InMemoryRefreshTokenStore store = store(10);
+
+        //when
+        store.save("username", "first", EXPIRES_AT);
+        store.save("username", "second", EXPIRES_AT);
+
+        //then
+        assertFalse(store.contains("username", "first"));
+        assertTrue(store.contains("username", "second"));
+        assertFalse(store.contains("other", "second"));
+    }
+
+    @Test
+    @DisplayName("Хранилище refresh токенов в памяти: токен обменивается один раз")
+    void replace_testExchangesOnce() {
+        //given
+        InMemoryRefreshTokenStore store = store(10);
+        store.save("username", "token", EXPIRES_AT);
+
+        //when
+        boolean first = store.replace("username", "token", "next", EXPIRES_AT);
+        boolean second = store.replace("username", "token", "other", EXPIRES_AT);
+
+        //then
+        assertTrue(first);
+        assertFalse(second);
+        assertTrue(store.contains("username", "next"));
+    }
+
+    @Test
+    @DisplayName("Хранилище refresh токенов в памяти: истёкший и удалённый токен не принимается")
+    void contains_testExpiredAndRemoved() {
+        //given
+        InMemoryRefreshTokenStore store = store(10);
+        store.save("expired", "token", Instant.now().minusSeconds(1));
+        store.save("username", "token", EXPIRES_AT);
+
+        //when
+        store.remove("username");
+
+        //then
+        assertFalse(store.contains("expired", "token"));
+        assertFalse(store.replace("expired", "token", "next", EXPIRES_AT));
+        assertFalse(store.contains("username", "token"));
+    }
+
+    @Test
+    @DisplayName("Хранилище refresh токенов в памяти: число токенов ограничено")
+    void save_testBoundedSize() {
+        //given
+        InMemoryRefreshTokenStore store = store(2);
+
+        //when
+        for (int i = 0; i < 10; i++) {
+            store.save("user" + i, "token", EXPIRES_AT);
+        }
+
+        //then
+        assertTrue(store.size() <= 2);
+    }
+
+    private static InMemoryRefreshTokenStore store(long maxSize) {
+        return new InMemoryRefreshTokenStore(new JwtProperties("access", "refresh", 0, maxSize), new SimpleMeterRegistry());
+    }
+}
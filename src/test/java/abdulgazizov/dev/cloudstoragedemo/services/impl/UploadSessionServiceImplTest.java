@@ -0,0 +1,569 @@
+package abdulgazizov.dev.cloudstoragedemo.services.impl;
+
+import abdulgazizov.dev.cloudstoragedemo.dtos.PresignedUrl;
+import abdulgazizov.dev.cloudstoragedemo.dtos.StoredObject;
+import abdulgazizov.dev.cloudstoragedemo.entity.UploadSession;
+import abdulgazizov.dev.cloudstoragedemo.exceptions.FileUploadException;
+import abdulgazizov.dev.cloudstoragedemo.jwt.JwtAuthentication;
+import abdulgazizov.dev.cloudstoragedemo.properties.MinioProperties;
+import abdulgazizov.dev.cloudstoragedemo.properties.UploadProperties;
+import abdulgazizov.dev.cloudstoragedemo.repositories.UploadSessionRepository;
+import abdulgazizov.dev.cloudstoragedemo.services.AuthService;
+import abdulgazizov.dev.cloudstoragedemo.services.UserFileService;
+import abdulgazizov.dev.cloudstoragedemo.storage.MultipartMinioClient;
+import abdulgazizov.dev.cloudstoragedemo.storage.ObjectStorage;
+import io.minio.ObjectWriteResponse;
+import io.minio.StatObjectResponse;
+import io.minio.http.Method;
+import io.minio.messages.Part;
+import jakarta.persistence.EntityNotFoundException;
+import org.apache.coyote.BadRequestException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Limit;
+
+import java.io.ByteArrayInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class UploadSessionServiceImplTest {
+    private static final String BUCKET = "bucket";
+    private static final String SESSION_ID = "session";
+
+    @InjectMocks
+    private UploadSessionServiceImpl uploadSessionService;
+
+    @Mock
+    private MultipartMinioClient multipartMinioClient;
+
+    @Mock
+    private ObjectStorage objectStorage;
+
+    @Mock
+    private MinioProperties minioProperties;
+
+    @Mock
+    private UploadProperties uploadProperties;
+
+    @Mock
+    private UploadSessionRepository uploadSessionRepository;
+
+    @Mock
+    private UserFileService userFileService;
+
+    @Mock
+    private AuthService authService;
+
+    @Mock
+    private JwtAuthentication jwtAuthentication;
+
+    private UploadSession session;
+
+    @BeforeEach
+    public void setup() {
+        session = new UploadSession();
+        session.setId(SESSION_ID);
+        session.setOwnerId(1L);
+        session.setFileName("file.txt");
+        session.setObjectKey("b/upload");
+        session.setUploadId("upload");
+        session.setContentType("text/plain");
+        session.setCreatedAt(Instant.now());
+    }
+
+    @Test
+    @DisplayName("Создание сессии загрузки: успешно")
+    void create_testSuccess() throws Exception {
+        //given
+        when(authService.getJwtAuthentication()).thenReturn(jwtAuthentication);
+        when(jwtAuthentication.getId()).thenReturn(1L);
+        when(minioProperties.bucketName()).thenReturn(BUCKET);
+        when(multipartMinioClient.createMultipartUpload(eq(BUCKET), startsWith("b/"), eq("text/plain"))).thenReturn("upload");
+        when(uploadSessionRepository.save(any(UploadSession.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        //when
+        UploadSession created = uploadSessionService.create("file.txt", "text/plain");
+
+        //then
+        assertNotNull(created.getId());
+        assertEquals(1L, created.getOwnerId());
+        assertTrue(created.getObjectKey().startsWith("b/"));
+        assertEquals("upload", created.getUploadId());
+        verify(objectStorage).ensureBucket();
+    }
+
+    @Test
+    @DisplayName("Создание сессии загрузки: ошибка хранилища")
+    void create_testStorageError() throws Exception {
+        //given
+        when(authService.getJwtAuthentication()).thenReturn(jwtAuthentication);
+        when(jwtAuthentication.getId()).thenReturn(1L);
+        when(minioProperties.bucketName()).thenReturn(BUCKET);
+        when(multipartMinioClient.createMultipartUpload(eq(BUCKET), startsWith("b/"), eq("text/plain")))
+                .thenThrow(new IOException("MinIO error"));
+
+        //when
+        FileUploadException thrown = assertThrows(FileUploadException.class,
+                () -> uploadSessionService.create("file.txt", "text/plain"));
+
+        //then
+        assertEquals("File upload failed: MinIO error", thrown.getMessage());
+        verifyNoInteractions(uploadSessionRepository);
+    }
+
+    @Test
+    @DisplayName("Создание сессии загрузки: пустое имя файла")
+    void create_testEmptyFileName() {
+        //given
+        when(authService.getJwtAuthentication()).thenReturn(jwtAuthentication);
+        when(jwtAuthentication.getId()).thenReturn(1L);
+
+        //when
+        //then
+        assertThrows(BadRequestException.class, () -> uploadSessionService.create("", "text/plain"));
+        verifyNoInteractions(multipartMinioClient, uploadSessionRepository);
+    }
+
+    @Test
+    @DisplayName("Получение сессии загрузки: чужая сессия")
+    void get_testNotOwner() {
+        //given
+        when(authService.getJwtAuthentication()).thenReturn(jwtAuthentication);
+        when(jwtAuthentication.getId()).thenReturn(2L);
+        when(uploadSessionRepository.findByIdAndOwnerIdAndClosedAtIsNull(SESSION_ID, 2L)).thenReturn(Optional.empty());
+
+        //when
+        //then
+        assertThrows(EntityNotFoundException.class, () -> uploadSessionService.get(SESSION_ID));
+    }
+
+    @Test
+    @DisplayName("Загрузка части: успешно")
+    void uploadPart_testSuccess() throws Exception {
+        //given
+        givenSession();
+        InputStream data = new ByteArrayInputStream(new byte[10]);
+
+        //when
+        uploadSessionService.uploadPart(SESSION_ID, 3, data, 10);
+
+        //then
+        verify(multipartMinioClient).uploadPart(BUCKET, "b/upload", "upload", 3, data, 10);
+    }
+
+    @Test
+    @DisplayName("Загрузка части: неверный номер части")
+    void uploadPart_testInvalidPartNumber() {
+        //given
+        when(authService.getJwtAuthentication()).thenReturn(jwtAuthentication);
+        when(jwtAuthentication.getId()).thenReturn(1L);
+        when(uploadSessionRepository.findByIdAndOwnerIdAndClosedAtIsNull(SESSION_ID, 1L)).thenReturn(Optional.of(session));
+
+        //when
+        //then
+        assertThrows(BadRequestException.class,
+                () -> uploadSessionService.uploadPart(SESSION_ID, 10001, new ByteArrayInputStream(new byte[1]), 1));
+        verifyNoInteractions(multipartMinioClient);
+    }
+
+    @Test
+    @DisplayName("Загрузка части: неизвестный размер")
+    void uploadPart_testUnknownSize() {
+        //given
+        when(authService.getJwtAuthentication()).thenReturn(jwtAuthentication);
+        when(jwtAuthentication.getId()).thenReturn(1L);
+        when(uploadSessionRepository.findByIdAndOwnerIdAndClosedAtIsNull(SESSION_ID, 1L)).thenReturn(Optional.of(session));
+
+        //when
+        //then
+        assertThrows(BadRequestException.class,
+                () -> uploadSessionService.uploadPart(SESSION_ID, 1, new ByteArrayInputStream(new byte[1]), -1));
+        verifyNoInteractions(multipartMinioClient);
+    }
+
+    @Test
+    @DisplayName("Загрузка части: ошибка хранилища")
+    void uploadPart_testStorageError() throws Exception {
+        //given
+        givenSession();
+        when(multipartMinioClient.uploadPart(anyString(), anyString(), anyString(), anyInt(), any(), anyLong()))
+                .thenThrow(new RuntimeException("MinIO error"));
+
+        //when
+        //then
+        assertThrows(FileUploadException.class,
+                () -> uploadSessionService.uploadPart(SESSION_ID, 1, new ByteArrayInputStream(new byte[1]), 1));
+    }
+
+    @Test
+    @DisplayName("Завершение загрузки: успешно")
+    void complete_testSuccess() throws Exception {
+        //given
+        givenSession();
+        Part second = mockPart(2, "etag2", 4);
+        Part first = mockPart(1, "etag1", 6);
+        when(multipartMinioClient.listParts(BUCKET, "b/upload", "upload")).thenReturn(List.of(second, first));
+        ArgumentCaptor<Part[]> partsCaptor = ArgumentCaptor.forClass(Part[].class);
+        when(multipartMinioClient.completeMultipartUpload(eq(BUCKET), eq("b/upload"), eq("upload"), partsCaptor.capture()))
+                .thenReturn(new ObjectWriteResponse(null, BUCKET, null, "b/upload", "etag-2", null));
+
+        //when
+        String fileName = uploadSessionService.complete(SESSION_ID);
+
+        //then
+        assertEquals("file.txt", fileName);
+        Part[] completed = partsCaptor.getValue();
+        assertEquals(1, completed[0].partNumber());
+        assertEquals("etag1", completed[0].etag());
+        assertEquals(2, completed[1].partNumber());
+        verify(userFileService).addFileToUser(1L, "file.txt", new StoredObject("b/upload", 10, "text/plain", "etag-2", null));
+        verify(uploadSessionRepository).delete(session);
+    }
+
+    @Test
+    @DisplayName("Завершение загрузки: собранный объект удаляется, если файл не удалось записать")
+    void complete_testRecordFails() throws Exception {
+        //given
+        givenSession();
+        Part first = mockPart(1, "etag1", 6);
+        when(multipartMinioClient.listParts(BUCKET, "b/upload", "upload")).thenReturn(List.of(first));
+        when(multipartMinioClient.completeMultipartUpload(eq(BUCKET), eq("b/upload"), eq("upload"), any()))
+                .thenReturn(new ObjectWriteResponse(null, BUCKET, null, "b/upload", "etag-1", null));
+        when(userFileService.addFileToUser(eq(1L), eq("file.txt"), any())).thenThrow(new IllegalStateException("DB error"));
+
+        //when
+        assertThrows(IllegalStateException.class, () -> uploadSessionService.complete(SESSION_ID));
+
+        //then
+        verify(objectStorage).remove("b/upload");
+        verify(uploadSessionRepository, never()).delete(any());
+    }
+
+    @Test
+    @DisplayName("Завершение загрузки: нет загруженных частей")
+    void complete_testNoParts() throws Exception {
+        //given
+        givenSession();
+        when(multipartMinioClient.listParts(BUCKET, "b/upload", "upload")).thenReturn(List.of());
+
+        //when
+        //then
+        assertThrows(BadRequestException.class, () -> uploadSessionService.complete(SESSION_ID));
+        verify(multipartMinioClient, never()).completeMultipartUpload(any(), any(), any(), any());
+        verifyNoInteractions(userFileService);
+    }
+
+    @Test
+    @DisplayName("Завершение загрузки: пропущенная часть")
+    void complete_testMissingPart() throws Exception {
+        //given
+        givenSession();
+        Part first = mockPart(1, "etag1", 6);
+        Part second = mockPart(2, "etag2", 6);
+        Part fourth = mockPart(4, "etag4", 6);
+        when(multipartMinioClient.listParts(BUCKET, "b/upload", "upload")).thenReturn(List.of(fourth, first, second));
+
+        //when
+        BadRequestException thrown = assertThrows(BadRequestException.class, () -> uploadSessionService.complete(SESSION_ID));
+
+        //then
+        assertEquals("Part 3 is missing", thrown.getMessage());
+        verify(multipartMinioClient, never()).completeMultipartUpload(any(), any(), any(), any());
+        verifyNoInteractions(userFileService);
+    }
+
+    @Test
+    @DisplayName("Прямая загрузка: сессия без multipart-загрузки")
+    void createDirect_testSuccess() throws Exception {
+        //given
+        when(authService.getJwtAuthentication()).thenReturn(jwtAuthentication);
+        when(jwtAuthentication.getId()).thenReturn(1L);
+        when(uploadSessionRepository.save(any(UploadSession.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        //when
+        UploadSession created = uploadSessionService.createDirect("file.txt", "text/plain");
+
+        //then
+        assertTrue(created.getObjectKey().startsWith("b/"));
+        assertNull(created.getUploadId());
+        verify(objectStorage).ensureBucket();
+        verifyNoInteractions(multipartMinioClient);
+    }
+
+    @Test
+    @DisplayName("Прямая загрузка: ссылка подписывается для ключа сессии")
+    void getUploadUrl_testSigned() throws Exception {
+        //given
+        givenDirectSession();
+        when(minioProperties.presignedUrlTtl()).thenReturn(Duration.ofMinutes(15));
+        when(uploadSessionRepository.extendUrlExpiry(eq(SESSION_ID), any(Instant.class))).thenReturn(1);
+        when(objectStorage.presign(Method.PUT, "b/upload", Duration.ofMinutes(15), Map.of())).thenReturn("http://minio/bucket/b/upload?signed");
+
+        //when
+        PresignedUrl url = uploadSessionService.getUploadUrl(SESSION_ID);
+
+        //then
+        assertEquals("http://minio/bucket/b/upload?signed", url.url());
+        // the session is kept until the URL expires
+        verify(uploadSessionRepository).extendUrlExpiry(SESSION_ID, url.expiresAt());
+    }
+
+    @Test
+    @DisplayName("Прямая загрузка: для закрытой сессии ссылка не выдаётся")
+    void getUploadUrl_testClosedSession() throws Exception {
+        //given
+        givenDirectSession();
+        when(minioProperties.presignedUrlTtl()).thenReturn(Duration.ofMinutes(15));
+        when(uploadSessionRepository.extendUrlExpiry(eq(SESSION_ID), any(Instant.class))).thenReturn(0);
+
+        //when
+        //then
+        assertThrows(EntityNotFoundException.class, () -> uploadSessionService.getUploadUrl(SESSION_ID));
+        verify(objectStorage, never()).presign(any(), any(), any(), any());
+    }
+
+    @Test
+    @DisplayName("Прямая загрузка: для сессии с частями ссылка не выдаётся")
+    void getUploadUrl_testMultipartSession() {
+        //given
+        when(authService.getJwtAuthentication()).thenReturn(jwtAuthentication);
+        when(jwtAuthentication.getId()).thenReturn(1L);
+        when(uploadSessionRepository.findByIdAndOwnerIdAndClosedAtIsNull(SESSION_ID, 1L)).thenReturn(Optional.of(session));
+
+        //when
+        //then
+        assertThrows(BadRequestException.class, () -> uploadSessionService.getUploadUrl(SESSION_ID));
+        verifyNoInteractions(objectStorage);
+    }
+
+    @Test
+    @DisplayName("Прямая загрузка: части не принимаются")
+    void uploadPart_testDirectSession() {
+        //given
+        givenDirectSession();
+
+        //when
+        //then
+        assertThrows(BadRequestException.class,
+                () -> uploadSessionService.uploadPart(SESSION_ID, 1, new ByteArrayInputStream(new byte[1]), 1));
+        verifyNoInteractions(multipartMinioClient);
+    }
+
+    @Test
+    @DisplayName("Прямая загрузка: завершение записывает объект под ключом, по которому его загрузил клиент")
+    void complete_testDirect() throws Exception {
+        //given
+        givenDirectSession();
+        StatObjectResponse stat = mock(StatObjectResponse.class);
+        when(stat.size()).thenReturn(42L);
+        when(stat.etag()).thenReturn("etag");
+        when(uploadSessionRepository.close(eq(SESSION_ID), any(Instant.class))).thenReturn(1);
+        when(objectStorage.stat("b/upload")).thenReturn(stat);
+
+        //when
+        String fileName = uploadSessionService.complete(SESSION_ID);
+
+        //then
+        assertEquals("file.txt", fileName);
+        verify(userFileService).addFileToUser(1L, "file.txt", new StoredObject("b/upload", 42, "text/plain", "etag", null));
+        // the session stays closed until the URL expires, and the object is neither copied nor removed
+        verify(uploadSessionRepository, never()).delete(any());
+        verify(objectStorage, never()).copy(any(), any());
+        verify(objectStorage, never()).remove(any());
+        verifyNoInteractions(multipartMinioClient);
+    }
+
+    @Test
+    @DisplayName("Прямая загрузка: сессия открывается снова, если файл не удалось записать")
+    void complete_testDirectRecordFails() throws Exception {
+        //given
+        givenDirectSession();
+        StatObjectResponse stat = mock(StatObjectResponse.class);
+        when(stat.size()).thenReturn(42L);
+        when(stat.etag()).thenReturn("etag");
+        when(uploadSessionRepository.close(eq(SESSION_ID), any(Instant.class))).thenReturn(1);
+        when(objectStorage.stat("b/upload")).thenReturn(stat);
+        when(userFileService.addFileToUser(eq(1L), eq("file.txt"), any())).thenThrow(new IllegalStateException("DB error"));
+
+        //when
+        assertThrows(IllegalStateException.class, () -> uploadSessionService.complete(SESSION_ID));
+
+        //then
+        verify(uploadSessionRepository).reopen(SESSION_ID);
+        verify(objectStorage, never()).remove(any());
+    }
+
+    @Test
+    @DisplayName("Прямая загрузка: завершение без загруженного объекта")
+    void complete_testDirectNoContent() throws Exception {
+        //given
+        givenDirectSession();
+        when(uploadSessionRepository.close(eq(SESSION_ID), any(Instant.class))).thenReturn(1);
+        when(objectStorage.stat("b/upload")).thenThrow(new FileNotFoundException("File not found: b/upload"));
+
+        //when
+        //then
+        assertThrows(BadRequestException.class, () -> uploadSessionService.complete(SESSION_ID));
+        verifyNoInteractions(userFileService);
+        verify(uploadSessionRepository).reopen(SESSION_ID);
+    }
+
+    @Test
+    @DisplayName("Прямая загрузка: сессию завершает только один запрос")
+    void complete_testDirectConcurrent() throws Exception {
+        //given
+        givenDirectSession();
+        when(uploadSessionRepository.close(eq(SESSION_ID), any(Instant.class))).thenReturn(0);
+
+        //when
+        //then
+        assertThrows(EntityNotFoundException.class, () -> uploadSessionService.complete(SESSION_ID));
+        verifyNoInteractions(userFileService);
+        verify(objectStorage, never()).stat(any());
+    }
+
+    @Test
+    @DisplayName("Прямая загрузка: отмена удаляет загруженный объект и закрывает сессию")
+    void abort_testDirect() throws Exception {
+        //given
+        givenDirectSession();
+        when(uploadSessionRepository.close(eq(SESSION_ID), any(Instant.class))).thenReturn(1);
+
+        //when
+        uploadSessionService.abort(SESSION_ID);
+
+        //then
+        verify(objectStorage).remove("b/upload");
+        verify(uploadSessionRepository, never()).delete(any());
+        verifyNoInteractions(multipartMinioClient);
+    }
+
+    @Test
+    @DisplayName("Отмена загрузки: успешно")
+    void abort_testSuccess() throws Exception {
+        //given
+        givenSession();
+
+        //when
+        uploadSessionService.abort(SESSION_ID);
+
+        //then
+        verify(multipartMinioClient).abortMultipartUpload(BUCKET, "b/upload", "upload");
+        verify(uploadSessionRepository).delete(session);
+    }
+
+    @Test
+    @DisplayName("Очистка просроченных сессий: сессия удаляется даже при ошибке хранилища")
+    void abortExpiredSessions_testStorageError() throws Exception {
+        //given
+        when(uploadProperties.sessionTtl()).thenReturn(Duration.ofHours(24));
+        when(minioProperties.bucketName()).thenReturn(BUCKET);
+        when(uploadSessionRepository.findByClosedAtIsNullAndCreatedAtBefore(any(Instant.class), any(Limit.class))).thenReturn(List.of(session));
+        doThrow(new RuntimeException("MinIO error")).when(multipartMinioClient).abortMultipartUpload(any(), any(), any());
+
+        //when
+        uploadSessionService.abortExpiredSessions();
+
+        //then
+        verify(uploadSessionRepository).delete(session);
+    }
+
+    @Test
+    @DisplayName("Очистка закрытых сессий: объект без файла удаляется после истечения ссылки")
+    void abortExpiredSessions_testClosedOrphan() throws Exception {
+        //given
+        givenClosedSession();
+        StatObjectResponse stat = mock(StatObjectResponse.class);
+        when(stat.size()).thenReturn(42L);
+        when(stat.etag()).thenReturn("etag");
+        when(objectStorage.stat("b/upload")).thenReturn(stat);
+        when(userFileService.syncStoredObject("b/upload", 42L, "etag")).thenReturn(false);
+
+        //when
+        uploadSessionService.abortExpiredSessions();
+
+        //then
+        verify(objectStorage).remove("b/upload");
+        verify(uploadSessionRepository).delete(session);
+    }
+
+    @Test
+    @DisplayName("Очистка закрытых сессий: объект записанного файла остаётся")
+    void abortExpiredSessions_testClosedCompleted() throws Exception {
+        //given
+        givenClosedSession();
+        StatObjectResponse stat = mock(StatObjectResponse.class);
+        when(stat.size()).thenReturn(43L);
+        when(stat.etag()).thenReturn("overwritten");
+        when(objectStorage.stat("b/upload")).thenReturn(stat);
+        when(userFileService.syncStoredObject("b/upload", 43L, "overwritten")).thenReturn(true);
+
+        //when
+        uploadSessionService.abortExpiredSessions();
+
+        //then
+        verify(objectStorage, never()).remove(any());
+        verify(uploadSessionRepository).delete(session);
+    }
+
+    @Test
+    @DisplayName("Очистка закрытых сессий: сессия остаётся при ошибке хранилища")
+    void abortExpiredSessions_testClosedStorageError() throws Exception {
+        //given
+        givenClosedSession();
+        when(objectStorage.stat("b/upload")).thenThrow(new IOException("MinIO error"));
+
+        //when
+        uploadSessionService.abortExpiredSessions();
+
+        //then
+        verifyNoInteractions(userFileService);
+        verify(uploadSessionRepository, never()).delete(any());
+    }
+
+    private void givenSession() {
+        when(authService.getJwtAuthentication()).thenReturn(jwtAuthentication);
+        when(jwtAuthentication.getId()).thenReturn(1L);
+        when(minioProperties.bucketName()).thenReturn(BUCKET);
+        when(uploadSessionRepository.findByIdAndOwnerIdAndClosedAtIsNull(SESSION_ID, 1L)).thenReturn(Optional.of(session));
+    }
+
+    private void givenDirectSession() {
+        session.setUploadId(null);
+        when(authService.getJwtAuthentication()).thenReturn(jwtAuthentication);
+        when(jwtAuthentication.getId()).thenReturn(1L);
+        when(uploadSessionRepository.findByIdAndOwnerIdAndClosedAtIsNull(SESSION_ID, 1L)).thenReturn(Optional.of(session));
+    }
+
+    private void givenClosedSession() {
+        session.setUploadId(null);
+        session.setClosedAt(Instant.now().minus(Duration.ofHours(1)));
+        when(uploadProperties.sessionTtl()).thenReturn(Duration.ofHours(24));
+        when(uploadSessionRepository.findClosed(any(Instant.class), any(Limit.class))).thenReturn(List.of(session));
+    }
+
+    private static Part mockPart(int partNumber, String etag, long size) {
+        Part part = mock(Part.class);
+        when(part.partNumber()).thenReturn(partNumber);
+        lenient().when(part.etag()).thenReturn(etag);
+        lenient().when(part.partSize()).thenReturn(size);
+        return part;
+    }
+}
@@ -1,28 +1,48 @@
 package abdulgazizov.dev.cloudstoragedemo.services.impl;
 
+import abdulgazizov.dev.cloudstoragedemo.dtos.FileCursor;
+import abdulgazizov.dev.cloudstoragedemo.dtos.FilePage;
+import abdulgazizov.dev.cloudstoragedemo.dtos.FileSort;
+import abdulgazizov.dev.cloudstoragedemo.dtos.FileSummary;
+import abdulgazizov.dev.cloudstoragedemo.dtos.StoredObject;
+import abdulgazizov.dev.cloudstoragedemo.entity.Blob;
+import abdulgazizov.dev.cloudstoragedemo.entity.FileMetadata;
 import abdulgazizov.dev.cloudstoragedemo.entity.Role;
 import abdulgazizov.dev.cloudstoragedemo.entity.User;
-import abdulgazizov.dev.cloudstoragedemo.repositories.UserRepository;
-import jakarta.persistence.EntityNotFoundException;
+import abdulgazizov.dev.cloudstoragedemo.repositories.BlobRepository;
+import abdulgazizov.dev.cloudstoragedemo.repositories.FileMetadataRepository;
+import org.apache.coyote.BadRequestException;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Limit;
 
+import java.time.Instant;
 import java.util.Collections;
-import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
 class UserFileServiceImplTest {
     @Mock
-    private UserRepository userRepository;
+    private FileMetadataRepository fileMetadataRepository;
+
+    @Mock
+    private BlobRepository blobRepository;
 
     @InjectMocks
     private UserFileServiceImpl userFileService;
@@ -37,40 +57,169 @@ class UserFileServiceImplTest {
         user.setPassword("password");
         user.setId(1L);
         user.setRoles(Collections.singleton(Role.ROLE_USER));
-        user.setFiles(new HashSet<>());
         fileName = "file.txt";
     }
 
+    @Test
+    @DisplayName("Проверка владения файлом: одна индексированная выборка")
+    void hasFile_testExistsQuery() {
+        //given
+        when(fileMetadataRepository.existsByOwnerIdAndFileName(1L, fileName)).thenReturn(true);
+        //when
+        boolean hasFile = userFileService.hasFile(1L, fileName);
+        //then
+        assertTrue(hasFile);
+        verify(fileMetadataRepository, never()).findAll();
+    }
+
     @Test
     @DisplayName("Добавление файла: Успешный сценарий")
     void addFileToUser_testSuccess() {
         //given
         Long id = 1L;
-        when(userRepository.findById(id)).thenReturn(Optional.of(user));
+        when(blobRepository.insertIfAbsent("hash", "b/new", 42L, "etag")).thenReturn(1);
+        when(blobRepository.findByContentHash("hash")).thenReturn(Optional.of(blob(7L, "b/new")));
+        when(fileMetadataRepository.insertIfAbsent(eq(id), eq(fileName), eq(7L), eq("b/new"), eq(42L), eq("text/plain"),
+                eq("etag"), any(Instant.class))).thenReturn(1);
         //when
-        userFileService.addFileToUser(id, fileName);
+        String storageKey = userFileService.addFileToUser(id, fileName,
+                new StoredObject("b/new", 42L, "text/plain", "\"etag\"", "hash"));
         //then
-        assertEquals(1, user.getFiles().size());
-        assertEquals(fileName, user.getFiles().iterator().next());
+        assertEquals("b/new", storageKey);
+        verify(fileMetadataRepository, never()).findForUpdate(any(), any());
+        verify(fileMetadataRepository, never()).save(any());
+        verify(blobRepository, never()).incrementRefCount(any());
+        verify(blobRepository, never()).decrementRefCount(any());
+    }
 
-        verify(userRepository).findById(id);
-        verify(userRepository).save(user);
+    @Test
+    @DisplayName("Добавление файла: содержимое уже хранится")
+    void addFileToUser_testDuplicateContent() {
+        //given
+        Long id = 1L;
+        when(blobRepository.insertIfAbsent("hash", "b/new", 42L, "etag")).thenReturn(0);
+        when(blobRepository.incrementRefCount("hash")).thenReturn(1);
+        when(blobRepository.findByContentHash("hash")).thenReturn(Optional.of(blob(3L, "b/existing")));
+        when(fileMetadataRepository.insertIfAbsent(eq(id), eq(fileName), eq(3L), eq("b/existing"), eq(42L),
+                eq("text/plain"), eq("etag"), any(Instant.class))).thenReturn(1);
+        //when
+        String storageKey = userFileService.addFileToUser(id, fileName,
+                new StoredObject("b/new", 42L, "text/plain", "etag", "hash"));
+        //then
+        assertEquals("b/existing", storageKey);
+        verify(fileMetadataRepository).insertIfAbsent(eq(id), eq(fileName), eq(3L), eq("b/existing"), eq(42L),
+                eq("text/plain"), eq("etag"), any(Instant.class));
     }
 
     @Test
-    @DisplayName("Добавление файла: пользователь не найден")
-    void addFileToUser_testUserNotFound() {
+    @DisplayName("Добавление файла: блоб удалён сборщиком между вставкой и увеличением счётчика")
+    void addFileToUser_testBlobCollectedConcurrently() {
         //given
-        Long id = 2L;
-        when(userRepository.findById(id)).thenThrow(new EntityNotFoundException("User with id " + id + " not found"));
+        when(blobRepository.insertIfAbsent("hash", "b/new", 42L, "etag")).thenReturn(0, 1);
+        when(blobRepository.incrementRefCount("hash")).thenReturn(0);
+        when(blobRepository.findByContentHash("hash")).thenReturn(Optional.of(blob(7L, "b/new")));
+        when(fileMetadataRepository.insertIfAbsent(any(), any(), any(), any(), anyLong(), any(), any(), any())).thenReturn(1);
+        //when
+        String storageKey = userFileService.addFileToUser(1L, fileName,
+                new StoredObject("b/new", 42L, "text/plain", "etag", "hash"));
+        //then
+        assertEquals("b/new", storageKey);
+        verify(blobRepository, times(2)).insertIfAbsent("hash", "b/new", 42L, "etag");
+    }
 
+    @Test
+    @DisplayName("Добавление файла: содержимое без хеша хранится отдельным блобом")
+    void addFileToUser_testWithoutHash() {
+        //given
+        when(blobRepository.save(any(Blob.class))).thenAnswer(invocation -> {
+            Blob blob = invocation.getArgument(0);
+            blob.setId(9L);
+            return blob;
+        });
+        when(fileMetadataRepository.insertIfAbsent(any(), any(), any(), any(), anyLong(), any(), any(), any())).thenReturn(1);
         //when
-        EntityNotFoundException thrown = assertThrows(EntityNotFoundException.class, () -> userRepository.findById(id));
+        String storageKey = userFileService.addFileToUser(1L, fileName,
+                new StoredObject("b/upload", 42L, null, "etag", null));
+        //then
+        assertEquals("b/upload", storageKey);
+        ArgumentCaptor<Blob> captor = ArgumentCaptor.forClass(Blob.class);
+        verify(blobRepository).save(captor.capture());
+        assertNull(captor.getValue().getContentHash());
+        assertEquals(1, captor.getValue().getRefCount());
+        verify(blobRepository, never()).insertIfAbsent(any(), any(), anyLong(), any());
+    }
 
+    @Test
+    @DisplayName("Добавление файла: перезапись существующего файла")
+    void addFileToUser_testOverwrite() {
+        //given
+        Long id = 1L;
+        FileMetadata metadata = metadata(fileName, 10L);
+        Instant createdAt = metadata.getCreatedAt();
+        when(blobRepository.insertIfAbsent("hash", "b/new", 42L, "etag")).thenReturn(1);
+        when(blobRepository.findByContentHash("hash")).thenReturn(Optional.of(blob(7L, "b/new")));
+        when(fileMetadataRepository.insertIfAbsent(eq(id), eq(fileName), eq(7L), eq("b/new"), eq(42L), eq("text/plain"),
+                eq("etag"), any(Instant.class))).thenReturn(0);
+        when(fileMetadataRepository.findForUpdate(id, List.of(fileName))).thenReturn(List.of(metadata));
+        //when
+        userFileService.addFileToUser(id, fileName, new StoredObject("b/new", 42L, "text/plain", "etag", "hash"));
         //then
-        assertTrue(thrown.getMessage().contains("User with id " + id + " not found"));
-        verify(userRepository).findById(id);
-        verify(userRepository, never()).save(user);
+        assertEquals(42L, metadata.getSize());
+        assertEquals(7L, metadata.getBlobId());
+        assertEquals("etag", metadata.getChecksum());
+        assertEquals(createdAt, metadata.getCreatedAt());
+        verify(fileMetadataRepository).save(metadata);
+        verify(blobRepository).decrementRefCount(1L);
+    }
+
+    @Test
+    @DisplayName("Добавление файла: файл с тем же именем удалён между вставкой и блокировкой")
+    void addFileToUser_testDeletedConcurrently() {
+        //given
+        Long id = 1L;
+        when(blobRepository.insertIfAbsent("hash", "b/new", 42L, "etag")).thenReturn(1);
+        when(blobRepository.findByContentHash("hash")).thenReturn(Optional.of(blob(7L, "b/new")));
+        when(fileMetadataRepository.insertIfAbsent(eq(id), eq(fileName), eq(7L), eq("b/new"), eq(42L), eq("text/plain"),
+                eq("etag"), any(Instant.class))).thenReturn(0, 1);
+        when(fileMetadataRepository.findForUpdate(id, List.of(fileName))).thenReturn(List.of());
+        //when
+        String storageKey = userFileService.addFileToUser(id, fileName,
+                new StoredObject("b/new", 42L, "text/plain", "etag", "hash"));
+        //then
+        assertEquals("b/new", storageKey);
+        verify(fileMetadataRepository, times(2)).insertIfAbsent(eq(id), eq(fileName), eq(7L), eq("b/new"), eq(42L),
+                eq("text/plain"), eq("etag"), any(Instant.class));
+        verify(fileMetadataRepository, never()).save(any());
+        verify(blobRepository, never()).decrementRefCount(any());
+    }
+
+    @Test
+    @DisplayName("Добавление нескольких файлов: существующие блокируются одной выборкой, новые вставляются")
+    void addFilesToUser_testSuccess() {
+        //given
+        Long id = user.getId();
+        FileMetadata existing = metadata("old.txt", 10L);
+        Map<String, StoredObject> objects = new LinkedHashMap<>();
+        objects.put("old.txt", new StoredObject("b/one", 42L, "text/plain", "etag", "one"));
+        objects.put("new.txt", new StoredObject("b/two", 42L, "text/plain", "etag", "two"));
+        when(fileMetadataRepository.findForUpdate(id, objects.keySet())).thenReturn(List.of(existing));
+        when(blobRepository.insertIfAbsent("one", "b/one", 42L, "etag")).thenReturn(1);
+        when(blobRepository.insertIfAbsent("two", "b/two", 42L, "etag")).thenReturn(0);
+        when(blobRepository.incrementRefCount("two")).thenReturn(1);
+        when(blobRepository.findByContentHash("one")).thenReturn(Optional.of(blob(7L, "b/one")));
+        when(blobRepository.findByContentHash("two")).thenReturn(Optional.of(blob(8L, "b/existing")));
+        when(fileMetadataRepository.insertIfAbsent(eq(id), eq("new.txt"), eq(8L), eq("b/existing"), eq(42L),
+                eq("text/plain"), eq("etag"), any(Instant.class))).thenReturn(1);
+        //when
+        Map<String, String> storageKeys = userFileService.addFilesToUser(id, objects);
+        //then
+        assertEquals(Map.of("old.txt", "b/one", "new.txt", "b/existing"), storageKeys);
+        ArgumentCaptor<List<FileMetadata>> captor = ArgumentCaptor.captor();
+        verify(fileMetadataRepository).saveAll(captor.capture());
+        assertEquals(List.of(existing), captor.getValue());
+        assertEquals(7L, existing.getBlobId());
+        verify(fileMetadataRepository, never()).insertIfAbsent(eq(id), eq("old.txt"), any(), any(), anyLong(), any(), any(), any());
+        verify(blobRepository).decrementRefCount(1L, 1L);
     }
 
     @Test
@@ -78,31 +227,184 @@ class UserFileServiceImplTest {
     void removeFileFromUser_testSuccess() {
         //given
         Long id = user.getId();
-        user.getFiles().add(fileName);
-        when(userRepository.findById(id)).thenReturn(Optional.of(user));
+        FileMetadata metadata = metadata(fileName, 10L);
+        when(fileMetadataRepository.findForUpdate(id, List.of(fileName))).thenReturn(List.of(metadata));
+        //when
+        boolean removed = userFileService.removeFileFromUser(id, fileName);
+        //then
+        assertTrue(removed);
+        verify(fileMetadataRepository).deleteAllInBatch(List.of(metadata));
+        verify(blobRepository).decrementRefCount(1L);
+    }
+
+    @Test
+    @DisplayName("Удаление файла: файла нет")
+    void removeFileFromUser_testNotFound() {
+        //given
+        when(fileMetadataRepository.findForUpdate(user.getId(), List.of(fileName))).thenReturn(List.of());
+        //when
+        boolean removed = userFileService.removeFileFromUser(user.getId(), fileName);
+        //then
+        assertFalse(removed);
+        verifyNoInteractions(blobRepository);
+    }
+
+    @Test
+    @DisplayName("Удаление нескольких файлов: один запрос на выборку и удаление, блоб освобождается один раз")
+    void removeFilesFromUser_testSuccess() {
+        //given
+        Long id = user.getId();
+        FileMetadata first = metadata("a.txt", 10L);
+        FileMetadata second = metadata("b.txt", 10L);
+        FileMetadata other = metadata("c.txt", 20L);
+        other.setBlobId(2L);
+        List<String> names = List.of("a.txt", "b.txt", "c.txt", "missing.txt");
+        when(fileMetadataRepository.findForUpdate(id, names)).thenReturn(List.of(first, second, other));
         //when
-        userFileService.removeFileFromUser(id, fileName);
+        Set<String> removed = userFileService.removeFilesFromUser(id, names);
         //then
-        assertEquals(0, user.getFiles().size());
+        assertEquals(Set.of("a.txt", "b.txt", "c.txt"), removed);
+        verify(fileMetadataRepository).deleteAllInBatch(List.of(first, second, other));
+        verify(blobRepository).decrementRefCount(1L, 2L);
+        verify(blobRepository).decrementRefCount(2L, 1L);
+        verifyNoMoreInteractions(blobRepository);
+    }
 
-        verify(userRepository).findById(id);
-        verify(userRepository).save(user);
+    @Test
+    @DisplayName("Удаление нескольких файлов: ни одного файла нет")
+    void removeFilesFromUser_testNoneFound() {
+        //given
+        when(fileMetadataRepository.findForUpdate(user.getId(), List.of("missing.txt"))).thenReturn(List.of());
+        //when
+        Set<String> removed = userFileService.removeFilesFromUser(user.getId(), List.of("missing.txt"));
+        //then
+        assertTrue(removed.isEmpty());
+        verify(fileMetadataRepository, never()).deleteAllInBatch(any());
+        verifyNoInteractions(blobRepository);
+    }
+
+    @Test
+    @DisplayName("Переименование файла: один запрос UPDATE")
+    void renameFileOfUser_testSuccess() {
+        //given
+        Long id = user.getId();
+        when(fileMetadataRepository.rename(eq(id), eq(fileName), eq("renamed.txt"), any(Instant.class))).thenReturn(1);
+        //when
+        boolean renamed = userFileService.renameFileOfUser(id, fileName, "renamed.txt");
+        //then
+        assertTrue(renamed);
+        verify(fileMetadataRepository, never()).findForUpdate(any(), any());
+        verify(fileMetadataRepository, never()).save(any());
+        verifyNoInteractions(blobRepository);
     }
 
     @Test
-    @DisplayName("Удаление файла: пользователь не найден")
-    void removeFileFromUser_testUserNotFound() {
+    @DisplayName("Переименование файла: файла нет")
+    void renameFileOfUser_testNotFound() {
         //given
-        Long id = 2L;
-        when(userRepository.findById(id)).thenThrow(new EntityNotFoundException("User with id " + id + " not found"));
+        when(fileMetadataRepository.rename(eq(user.getId()), eq(fileName), eq("renamed.txt"), any(Instant.class))).thenReturn(0);
+        //when
+        boolean renamed = userFileService.renameFileOfUser(user.getId(), fileName, "renamed.txt");
+        //then
+        assertFalse(renamed);
+    }
 
+    @Test
+    @DisplayName("Список файлов: первая страница и курсор")
+    void getFilesOfUser_testFirstPage() throws BadRequestException {
+        //given
+        Long id = user.getId();
+        when(fileMetadataRepository.findPageByName(id, "", Limit.of(3)))
+                .thenReturn(List.of(summary("a.txt", 1), summary("b.txt", 2), summary("c.txt", 3)));
         //when
-        EntityNotFoundException thrown = assertThrows(EntityNotFoundException.class, () -> userRepository.findById(id));
+        FilePage page = userFileService.getFilesOfUser(id, 2, FileSort.NAME, null);
+        //then
+        assertEquals(2, page.getFiles().size());
+        assertEquals("b.txt", page.getFiles().getLast().fileName());
+        assertEquals(new FileCursor(FileSort.NAME, "", "b.txt"), FileCursor.decode(page.getNextCursor(), FileSort.NAME));
+    }
 
+    @Test
+    @DisplayName("Список файлов: последняя страница без курсора")
+    void getFilesOfUser_testLastPage() throws BadRequestException {
+        //given
+        Long id = user.getId();
+        String cursor = new FileCursor(FileSort.SIZE, "2", "b.txt").encode();
+        when(fileMetadataRepository.findPageBySize(id, 2L, "b.txt", Limit.of(3)))
+                .thenReturn(List.of(summary("c.txt", 3)));
+        //when
+        FilePage page = userFileService.getFilesOfUser(id, 2, FileSort.SIZE, cursor);
         //then
-        assertTrue(thrown.getMessage().contains("User with id " + id + " not found"));
-        verify(userRepository).findById(id);
-        verify(userRepository, never()).save(user);
+        assertEquals(1, page.getFiles().size());
+        assertNull(page.getNextCursor());
+    }
+
+    @Test
+    @DisplayName("Список файлов: курсор другой сортировки")
+    void getFilesOfUser_testCursorOfAnotherSort() {
+        //given
+        String cursor = new FileCursor(FileSort.NAME, "", "b.txt").encode();
+        //when
+        BadRequestException thrown = assertThrows(BadRequestException.class,
+                () -> userFileService.getFilesOfUser(user.getId(), 2, FileSort.EDITED, cursor));
+        //then
+        assertEquals("Invalid cursor", thrown.getMessage());
+        verifyNoInteractions(fileMetadataRepository);
+    }
+
+    private FileMetadata metadata(String name, long size) {
+        FileMetadata metadata = new FileMetadata();
+        metadata.setOwnerId(user.getId());
+        metadata.setFileName(name);
+        metadata.setBlobId(1L);
+        metadata.setStorageKey("b/blob");
+        metadata.setSize(size);
+        metadata.setCreatedAt(Instant.EPOCH);
+        metadata.setUpdatedAt(Instant.EPOCH);
+        return metadata;
+    }
+
+    @Test
+    @DisplayName("Синхронизация объекта: перезаписанный объект обновляет блоб и файлы")
+    void syncStoredObject_testOverwritten() {
+        //given
+        when(blobRepository.findByStorageKey("b/upload")).thenReturn(Optional.of(blob(7L, "b/upload")));
+
+        //when
+        boolean referenced = userFileService.syncStoredObject("b/upload", 43L, "overwritten");
+
+        //then
+        assertTrue(referenced);
+        verify(blobRepository).updateObject(7L, 43L, "overwritten");
+        verify(fileMetadataRepository).updateObject(eq(7L), eq(43L), eq("overwritten"), any(Instant.class));
+    }
+
+    @Test
+    @DisplayName("Синхронизация объекта: неизменённый объект и объект без блоба")
+    void syncStoredObject_testUnchangedOrUnreferenced() {
+        //given
+        when(blobRepository.findByStorageKey("b/upload")).thenReturn(Optional.of(blob(7L, "b/upload")));
+        when(blobRepository.findByStorageKey("b/orphan")).thenReturn(Optional.empty());
+
+        //when
+        //then
+        assertTrue(userFileService.syncStoredObject("b/upload", 42L, "etag"));
+        assertFalse(userFileService.syncStoredObject("b/orphan", 42L, "etag"));
+        verify(blobRepository, never()).updateObject(any(), anyLong(), any());
+        verifyNoInteractions(fileMetadataRepository);
+    }
+
+    private static Blob blob(Long id, String storageKey) {
+        Blob blob = new Blob();
+        blob.setId(id);
+        blob.setStorageKey(storageKey);
+        blob.setSize(42L);
+        blob.setEtag("etag");
+        blob.setRefCount(1);
+        return blob;
+    }
 
+    private static FileSummary summary(String name, long size) {
+        return new FileSummary(name, size, Instant.now());
     }
-}
\ No newline at end of file
+}
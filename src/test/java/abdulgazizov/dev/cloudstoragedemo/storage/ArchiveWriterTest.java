@@ -0,0 +1,115 @@
+package abdulgazizov.dev.cloudstoragedemo.storage;
+
+import abdulgazizov.dev.cloudstoragedemo.dtos.ArchiveEntry;
+import io.minio.GetObjectResponse;
+import okhttp3.Headers;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class ArchiveWriterTest {
+    private static final Instant UPDATED_AT = Instant.parse("2024-01-01T00:00:00Z");
+
+    @Mock
+    private ObjectStorage objectStorage;
+
+    @InjectMocks
+    private ArchiveWriter archiveWriter;
+
+    @Test
+    @DisplayName("Архив файлов: записи в порядке запроса с содержимым файлов")
+    void write_testEntries() throws Exception {
+        //given
+        byte[] text = "Hello, world! ".repeat(1000).getBytes(StandardCharsets.UTF_8);
+        byte[] image = new byte[16 * 1024];
+        new Random(42).nextBytes(image);
+        stubContent("b/text", text);
+        stubContent("b/image", image);
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+
+        //when
+        archiveWriter.write(List.of(entry("a.txt", "b/text", text.length, "text/plain"),
+                entry("b.jpg", "b/image", image.length, "image/jpeg")), outputStream);
+
+        //then
+        try (ZipInputStream zip = new ZipInputStream(new ByteArrayInputStream(outputStream.toByteArray()))) {
+            ZipEntry first = zip.getNextEntry();
+            assertEquals("a.txt", first.getName());
+            assertEquals(UPDATED_AT.toEpochMilli(), first.getTime());
+            assertArrayEquals(text, zip.readAllBytes());
+            ZipEntry second = zip.getNextEntry();
+            assertEquals("b.jpg", second.getName());
+            assertArrayEquals(image, zip.readAllBytes());
+            assertNull(zip.getNextEntry());
+        }
+        // текст сжат, случайные байты изображения записаны без сжатия
+        assertTrue(outputStream.size() < image.length + text.length / 10);
+    }
+
+    @Test
+    @DisplayName("Архив файлов: при ошибке объекты, запрошенные впрок, закрываются")
+    void write_testClosesReadAhead() throws Exception {
+        //given
+        AtomicBoolean closed = new AtomicBoolean();
+        when(objectStorage.get(eq("b/missing"), any())).thenThrow(new FileNotFoundException("Object not found: b/missing"));
+        when(objectStorage.get(eq("b/next"), any())).thenAnswer(invocation -> response("b/next", new ByteArrayInputStream(new byte[1]) {
+            @Override
+            public void close() {
+                closed.set(true);
+            }
+        }));
+
+        //when
+        Exception exception = assertThrows(FileNotFoundException.class, () -> archiveWriter.write(
+                List.of(entry("a.txt", "b/missing", 1, "text/plain"), entry("b.txt", "b/next", 1, "text/plain")),
+                new ByteArrayOutputStream()));
+
+        //then
+        assertEquals("Object not found: b/missing", exception.getMessage());
+        assertTrue(closed.get());
+    }
+
+    @Test
+    @DisplayName("Архив файлов: сжатые форматы определяются по типу и расширению")
+    void isCompressed_testTypes() {
+        assertTrue(ArchiveWriter.isCompressed(entry("photo", "b/1", 1, "image/png")));
+        assertTrue(ArchiveWriter.isCompressed(entry("data.zip", "b/1", 1, "application/octet-stream")));
+        assertTrue(ArchiveWriter.isCompressed(entry("film", "b/1", 1, "video/mp4; codecs=avc1")));
+        assertFalse(ArchiveWriter.isCompressed(entry("logo.svg", "b/1", 1, "image/svg+xml")));
+        assertFalse(ArchiveWriter.isCompressed(entry("notes.txt", "b/1", 1, null)));
+    }
+
+    private void stubContent(String key, byte[] content) throws Exception {
+        when(objectStorage.get(eq(key), any())).thenAnswer(invocation -> response(key, new ByteArrayInputStream(content)));
+    }
+
+    private static GetObjectResponse response(String key, InputStream content) {
+        return new GetObjectResponse(Headers.of(), "bucket", null, key, content);
+    }
+
+    private static ArchiveEntry entry(String fileName, String storageKey, long size, String contentType) {
+        return new ArchiveEntry(fileName, storageKey, size, contentType, UPDATED_AT);
+    }
+}
@@ -0,0 +1,121 @@
+package abdulgazizov.dev.cloudstoragedemo.storage;
+
+import abdulgazizov.dev.cloudstoragedemo.entity.Blob;
+import abdulgazizov.dev.cloudstoragedemo.repositories.BlobRepository;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Limit;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class BlobCollectorTest {
+    @Mock
+    private BlobRepository blobRepository;
+
+    @Mock
+    private ObjectStorage objectStorage;
+
+    @Mock
+    private ObjectCache objectCache;
+
+    @InjectMocks
+    private BlobCollector blobCollector;
+
+    @Test
+    @DisplayName("Сборка блобов: объекты удаляются одним запросом после строк")
+    void collect_testRemovesUnreferencedBlobs() throws Exception {
+        //given
+        when(blobRepository.findUnreferenced(0L, Limit.of(1000))).thenReturn(List.of(blob(1L, "b/one"), blob(2L, "b/two"), blob(3L, "b/three")));
+        when(blobRepository.deleteIfUnreferenced(1L)).thenReturn(1);
+        when(blobRepository.deleteIfUnreferenced(2L)).thenReturn(0);
+        when(blobRepository.deleteIfUnreferenced(3L)).thenReturn(1);
+        when(objectStorage.removeAll(List.of("b/one", "b/three"))).thenReturn(List.of("b/three"));
+
+        //when
+        blobCollector.collect();
+
+        //then
+        var order = inOrder(blobRepository, objectCache, objectStorage);
+        order.verify(blobRepository).deleteIfUnreferenced(1L);
+        order.verify(objectCache).evict("b/one");
+        order.verify(blobRepository).deleteIfUnreferenced(3L);
+        order.verify(objectStorage).removeAll(List.of("b/one", "b/three"));
+        verify(objectCache, never()).evict("b/two");
+    }
+
+    @Test
+    @DisplayName("Сборка блобов: ошибка хранилища не прерывает сборку")
+    void collect_testStorageError() throws Exception {
+        //given
+        when(blobRepository.findUnreferenced(0L, Limit.of(1000))).thenReturn(List.of(blob(1L, "b/one")));
+        when(blobRepository.deleteIfUnreferenced(1L)).thenReturn(1);
+        when(objectStorage.removeAll(List.of("b/one"))).thenThrow(new IOException("Storage remove_batch failed"));
+
+        //when & then
+        assertDoesNotThrow(() -> blobCollector.collect());
+    }
+
+    @Test
+    @DisplayName("Сборка блобов: снова используемый блоб сохраняется")
+    void collect_testKeepsReferencedAgain() throws Exception {
+        //given
+        when(blobRepository.findUnreferenced(0L, Limit.of(1000))).thenReturn(List.of(blob(1L, "b/one")));
+        when(blobRepository.deleteIfUnreferenced(1L)).thenReturn(0);
+
+        //when
+        blobCollector.collect();
+
+        //then
+        verifyNoInteractions(objectStorage, objectCache);
+    }
+
+    @Test
+    @DisplayName("Сборка блобов: ошибка удаления строки не останавливает сборку")
+    void collect_testSkipsFailingBlob() throws Exception {
+        //given
+        when(blobRepository.findUnreferenced(0L, Limit.of(1000))).thenReturn(List.of(blob(1L, "b/one"), blob(2L, "b/two")));
+        when(blobRepository.deleteIfUnreferenced(1L)).thenThrow(new DataIntegrityViolationException("fk_files_blobs"));
+        when(blobRepository.deleteIfUnreferenced(2L)).thenReturn(1);
+        when(objectStorage.removeAll(List.of("b/two"))).thenReturn(List.of());
+
+        //when
+        blobCollector.collect();
+
+        //then
+        verify(objectStorage).removeAll(List.of("b/two"));
+        verify(objectCache, never()).evict("b/one");
+    }
+
+    @Test
+    @DisplayName("Сборка блобов: следующая пачка читается после последнего блоба")
+    void collect_testPagesById() {
+        //given
+        List<Blob> full = LongStream.rangeClosed(1, 1000).mapToObj(id -> blob(id, "b/" + id)).toList();
+        when(blobRepository.findUnreferenced(0L, Limit.of(1000))).thenReturn(full);
+        when(blobRepository.findUnreferenced(1000L, Limit.of(1000))).thenReturn(List.of());
+
+        //when
+        blobCollector.collect();
+
+        //then
+        verify(blobRepository).findUnreferenced(1000L, Limit.of(1000));
+    }
+
+    private static Blob blob(Long id, String storageKey) {
+        Blob blob = new Blob();
+        blob.setId(id);
+        blob.setStorageKey(storageKey);
+        return blob;
+    }
+}
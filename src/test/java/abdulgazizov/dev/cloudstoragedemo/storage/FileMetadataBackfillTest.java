@@ -0,0 +1,146 @@
+package abdulgazizov.dev.cloudstoragedemo.storage;
+
+import abdulgazizov.dev.cloudstoragedemo.entity.Blob;
+import abdulgazizov.dev.cloudstoragedemo.entity.FileMetadata;
+import abdulgazizov.dev.cloudstoragedemo.properties.MinioProperties;
+import abdulgazizov.dev.cloudstoragedemo.repositories.BlobRepository;
+import abdulgazizov.dev.cloudstoragedemo.repositories.FileMetadataRepository;
+import abdulgazizov.dev.cloudstoragedemo.repositories.UserRepository;
+import io.minio.ListObjectsArgs;
+import io.minio.MinioClient;
+import io.minio.Result;
+import io.minio.messages.Item;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class FileMetadataBackfillTest {
+    private static final ZonedDateTime LAST_MODIFIED = ZonedDateTime.of(2024, 1, 1, 0, 0, 0, 0, ZoneOffset.UTC);
+
+    @Mock
+    private MinioClient minioClient;
+
+    @Mock
+    private MinioProperties minioProperties;
+
+    @Mock
+    private FileMetadataRepository fileMetadataRepository;
+
+    @Mock
+    private BlobRepository blobRepository;
+
+    @Mock
+    private UserRepository userRepository;
+
+    @InjectMocks
+    private FileMetadataBackfill fileMetadataBackfill;
+
+    @BeforeEach
+    void setUp() {
+        when(minioProperties.bucketName()).thenReturn("bucket");
+    }
+
+    @Test
+    @DisplayName("Заполнение индекса: новые объекты добавляются, объекты неизвестных пользователей пропускаются")
+    void backfill_testIndexesObjectsOfExistingUsers() {
+        //given
+        List<Result<Item>> items = List.of(
+                new Result<>(item("u/1/a.txt", 12, "text/plain")),
+                new Result<>(item("u/1/docs/b.pdf", 34, null)),
+                new Result<>(item("u/2/c.txt", 56, null)),
+                new Result<>(item("u/x/d.txt", 78, null)));
+        when(minioClient.listObjects(any(ListObjectsArgs.class))).thenReturn(items);
+        when(fileMetadataRepository.findByStorageKeyIn(anyCollection())).thenReturn(List.of());
+        when(userRepository.existsById(1L)).thenReturn(true);
+        when(userRepository.existsById(2L)).thenReturn(false);
+        when(blobRepository.saveAll(anyList())).thenAnswer(invocation -> {
+            List<Blob> blobs = invocation.getArgument(0);
+            for (int i = 0; i < blobs.size(); i++) {
+                blobs.get(i).setId(10L + i);
+            }
+            return blobs;
+        });
+
+        //when
+        fileMetadataBackfill.backfill();
+
+        //then
+        ArgumentCaptor<List<FileMetadata>> captor = ArgumentCaptor.captor();
+        verify(fileMetadataRepository).saveAll(captor.capture());
+        List<FileMetadata> saved = captor.getValue();
+        assertEquals(List.of("a.txt", "docs/b.pdf"), saved.stream().map(FileMetadata::getFileName).toList());
+        FileMetadata first = saved.getFirst();
+        assertEquals(1L, first.getOwnerId());
+        assertEquals("u/1/a.txt", first.getStorageKey());
+        assertEquals(10L, first.getBlobId());
+        assertEquals(11L, saved.get(1).getBlobId());
+        assertEquals(12L, first.getSize());
+        assertEquals("etag", first.getChecksum());
+        assertEquals("text/plain", first.getContentType());
+        assertEquals(LAST_MODIFIED.toInstant(), first.getCreatedAt());
+        assertEquals(LAST_MODIFIED.toInstant(), first.getUpdatedAt());
+        verify(userRepository, times(1)).existsById(1L);
+        ArgumentCaptor<List<Blob>> blobCaptor = ArgumentCaptor.captor();
+        verify(blobRepository).saveAll(blobCaptor.capture());
+        Blob blob = blobCaptor.getValue().getFirst();
+        assertEquals("u/1/a.txt", blob.getStorageKey());
+        assertEquals("etag", blob.getEtag());
+        assertEquals(1, blob.getRefCount());
+        assertNull(blob.getContentHash());
+    }
+
+    @Test
+    @DisplayName("Заполнение индекса: существующая запись обновляется")
+    void backfill_testRefreshesExistingRows() {
+        //given
+        FileMetadata existing = new FileMetadata();
+        existing.setOwnerId(1L);
+        existing.setFileName("a.txt");
+        existing.setStorageKey("u/1/a.txt");
+        existing.setContentType("text/markdown");
+        existing.setCreatedAt(Instant.EPOCH);
+        List<Result<Item>> items = List.of(new Result<>(item("u/1/a.txt", 12, "text/plain")));
+        when(minioClient.listObjects(any(ListObjectsArgs.class))).thenReturn(items);
+        when(fileMetadataRepository.findByStorageKeyIn(List.of("u/1/a.txt"))).thenReturn(List.of(existing));
+
+        //when
+        fileMetadataBackfill.backfill();
+
+        //then
+        verify(fileMetadataRepository).saveAll(List.of(existing));
+        assertEquals(12L, existing.getSize());
+        assertEquals("text/markdown", existing.getContentType());
+        assertEquals(Instant.EPOCH, existing.getCreatedAt());
+        assertEquals(LAST_MODIFIED.toInstant(), existing.getUpdatedAt());
+        verifyNoInteractions(userRepository, blobRepository);
+    }
+
+    private static Item item(String objectName, long size, String contentType) {
+        Item item = mock(Item.class);
+        when(item.objectName()).thenReturn(objectName);
+        lenient().when(item.size()).thenReturn(size);
+        lenient().when(item.etag()).thenReturn("\"etag\"");
+        lenient().when(item.lastModified()).thenReturn(LAST_MODIFIED);
+        lenient().when(item.userMetadata()).thenReturn(contentType == null ? null : Map.of("Content-Type", contentType));
+        return item;
+    }
+}
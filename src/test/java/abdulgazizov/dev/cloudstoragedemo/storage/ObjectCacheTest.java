@@ -0,0 +1,328 @@
+package abdulgazizov.dev.cloudstoragedemo.storage;
+
+import abdulgazizov.dev.cloudstoragedemo.dtos.FileStat;
+import abdulgazizov.dev.cloudstoragedemo.properties.ObjectCacheProperties;
+import abdulgazizov.dev.cloudstoragedemo.storage.ObjectCache.CachedObject;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.minio.GetObjectResponse;
+import okhttp3.Headers;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ObjectCacheTest {
+    private static final String KEY = "u/1/file.txt";
+    private static final byte[] CONTENT = "Hello, world!".getBytes(StandardCharsets.UTF_8);
+    private static final FileStat FILE = new FileStat("file.txt", CONTENT.length, "etag", Instant.parse("2024-01-01T00:00:00Z"), KEY);
+
+    @Mock
+    private ObjectStorage objectStorage;
+
+    @TempDir
+    private Path dir;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private ObjectCache objectCache;
+
+    @AfterEach
+    void tearDown() {
+        if (objectCache != null) {
+            objectCache.shutdown();
+        }
+    }
+
+    @Test
+    @DisplayName("Кэш объектов: выключенный кэш ничего не хранит")
+    void get_testDisabled() throws Exception {
+        //given
+        objectCache = cache(false, 1024, 2);
+
+        //when
+        objectCache.admit(KEY, FILE);
+        objectCache.admit(KEY, FILE);
+
+        //then
+        assertTrue(objectCache.get(KEY, "etag").isEmpty());
+        verifyNoInteractions(objectStorage);
+    }
+
+    @Test
+    @DisplayName("Кэш объектов: объект копируется после нескольких промахов")
+    void admit_testCopiesAfterMisses() throws Exception {
+        //given
+        objectCache = cache(true, 1024, 2);
+        stubContent(KEY, CONTENT);
+
+        //when
+        objectCache.admit(KEY, FILE);
+        verify(objectStorage, after(100).never()).get(any(), any());
+        objectCache.admit(KEY, FILE);
+
+        //then
+        verify(objectStorage, timeout(1000)).get(eq(KEY), any());
+        Optional<CachedObject> cached = awaitCached(KEY, "etag");
+        assertTrue(cached.isPresent());
+        assertEquals(FILE, cached.get().file());
+        assertArrayEquals(CONTENT, Files.readAllBytes(cached.get().path()));
+    }
+
+    @Test
+    @DisplayName("Кэш объектов: слишком большие объекты не кэшируются")
+    void admit_testSkipsLargeObjects() throws Exception {
+        //given
+        objectCache = cache(true, 4, 1);
+
+        //when
+        objectCache.admit(KEY, FILE);
+
+        //then
+        verify(objectStorage, after(100).never()).get(any(), any());
+    }
+
+    @Test
+    @DisplayName("Кэш объектов: чтение диапазона из файла")
+    void open_testRange() throws Exception {
+        //given
+        objectCache = cache(true, 1024, 1);
+        stubContent(KEY, CONTENT);
+        objectCache.fill(KEY, FILE);
+        CachedObject cached = objectCache.get(KEY, "etag").orElseThrow();
+
+        //when
+        byte[] range;
+        try (InputStream inputStream = objectCache.open(cached, 7, 5)) {
+            range = inputStream.readAllBytes();
+        }
+
+        //then
+        assertEquals("world", new String(range, StandardCharsets.UTF_8));
+    }
+
+    @Test
+    @DisplayName("Кэш объектов: открытый диапазон читается после вытеснения файла")
+    void open_testEvictedWhileOpen() throws Exception {
+        //given
+        objectCache = cache(true, 1024, 1);
+        stubContent(KEY, CONTENT);
+        objectCache.fill(KEY, FILE);
+        CachedObject cached = objectCache.get(KEY, "etag").orElseThrow();
+
+        //when
+        byte[] range;
+        try (InputStream inputStream = objectCache.open(cached, 7, 5)) {
+            objectCache.evict(KEY);
+            range = inputStream.readAllBytes();
+        }
+
+        //then
+        assertEquals("world", new String(range, StandardCharsets.UTF_8));
+        assertFalse(Files.exists(cached.path()));
+        assertThrows(NoSuchFileException.class, () -> objectCache.open(cached, 7, 5));
+    }
+
+    @Test
+    @DisplayName("Кэш объектов: закреплённый файл остаётся после вытеснения до снятия закрепления")
+    void pin_testSurvivesEviction() throws Exception {
+        //given
+        objectCache = cache(true, 1024, 1);
+        stubContent(KEY, CONTENT);
+        objectCache.fill(KEY, FILE);
+        CachedObject cached = objectCache.get(KEY, "etag").orElseThrow();
+
+        //when
+        CachedObject pinned = objectCache.pin(cached);
+        objectCache.evict(KEY);
+
+        //then
+        assertFalse(Files.exists(cached.path()));
+        assertArrayEquals(CONTENT, Files.readAllBytes(pinned.path()));
+        assertEquals(0, objectCache.size());
+        assertThrows(NoSuchFileException.class, () -> objectCache.pin(cached));
+
+        Thread.sleep(5);
+        objectCache.unpinExpired();
+        assertFalse(Files.exists(pinned.path()));
+    }
+
+    @Test
+    @DisplayName("Кэш объектов: устаревшая запись удаляется")
+    void get_testStaleEntry() throws Exception {
+        //given
+        objectCache = cache(true, 1024, 1);
+        stubContent(KEY, CONTENT);
+        objectCache.fill(KEY, FILE);
+        Path path = objectCache.get(KEY, "etag").orElseThrow().path();
+
+        //when
+        Optional<CachedObject> cached = objectCache.get(KEY, "other-etag");
+
+        //then
+        assertTrue(cached.isEmpty());
+        assertFalse(Files.exists(path));
+        assertEquals(0, objectCache.size());
+    }
+
+    @Test
+    @DisplayName("Кэш объектов: при переполнении вытесняются давно не использованные объекты")
+    void fill_testEvictsLeastRecentlyUsed() throws Exception {
+        //given
+        objectCache = cache(true, 2L * CONTENT.length, 1);
+        stubContent("u/1/a.txt", CONTENT);
+        stubContent("u/1/b.txt", CONTENT);
+        stubContent("u/1/c.txt", CONTENT);
+        objectCache.fill("u/1/a.txt", FILE);
+        objectCache.fill("u/1/b.txt", FILE);
+        objectCache.get("u/1/a.txt", "etag");
+
+        //when
+        objectCache.fill("u/1/c.txt", FILE);
+
+        //then
+        assertTrue(objectCache.get("u/1/a.txt", "etag").isPresent());
+        assertTrue(objectCache.get("u/1/b.txt", "etag").isEmpty());
+        assertTrue(objectCache.get("u/1/c.txt", "etag").isPresent());
+        assertEquals(2L * CONTENT.length, objectCache.size());
+    }
+
+    @Test
+    @DisplayName("Кэш объектов: объект, изменившийся во время копирования, не кэшируется")
+    void fill_testSizeMismatch() throws Exception {
+        //given
+        objectCache = cache(true, 1024, 1);
+        stubContent(KEY, "Hello".getBytes(StandardCharsets.UTF_8));
+
+        //when
+        objectCache.fill(KEY, FILE);
+
+        //then
+        assertTrue(objectCache.get(KEY, "etag").isEmpty());
+        try (var files = Files.list(dir)) {
+            assertEquals(0, files.count());
+        }
+    }
+
+    @Test
+    @DisplayName("Кэш объектов в памяти: маленький объект отдаётся из памяти")
+    void putInMemory_testSmallObject() throws Exception {
+        //given
+        objectCache = memoryCache(64);
+
+        //when
+        objectCache.putInMemory(KEY, FILE, CONTENT);
+        Optional<CachedObject> cached = objectCache.get(KEY, "etag");
+
+        //then
+        assertTrue(cached.isPresent());
+        assertNull(cached.get().path());
+        try (InputStream inputStream = objectCache.open(cached.get(), 7, 5)) {
+            assertEquals("world", new String(inputStream.readAllBytes(), StandardCharsets.UTF_8));
+        }
+        assertEquals(1, meterRegistry.get("cache.gets").tag("cache", "objects").tag("result", "hit")
+                .functionCounter().count());
+        verifyNoInteractions(objectStorage);
+    }
+
+    @Test
+    @DisplayName("Кэш объектов в памяти: большой объект не хранится в памяти")
+    void putInMemory_testLargeObject() throws Exception {
+        //given
+        objectCache = memoryCache(4);
+
+        //when
+        boolean fits = objectCache.fitsInMemory(FILE);
+        CachedObject served = objectCache.putInMemory(KEY, FILE, CONTENT);
+
+        //then
+        assertFalse(fits);
+        assertSame(CONTENT, served.content());
+        assertTrue(objectCache.get(KEY, "etag").isEmpty());
+    }
+
+    @Test
+    @DisplayName("Кэш объектов в памяти: устаревшая и удалённая запись не отдаётся")
+    void get_testMemoryInvalidation() throws Exception {
+        //given
+        objectCache = memoryCache(64);
+        objectCache.putInMemory(KEY, FILE, CONTENT);
+        objectCache.putInMemory("u/1/other.txt", FILE, CONTENT);
+
+        //when
+        objectCache.evict("u/1/other.txt");
+
+        //then
+        assertTrue(objectCache.get(KEY, "other-etag").isEmpty());
+        assertTrue(objectCache.get(KEY, "etag").isEmpty());
+        assertTrue(objectCache.get("u/1/other.txt", "etag").isEmpty());
+    }
+
+    @Test
+    @DisplayName("Кэш объектов: файлы прошлого запуска удаляются при старте")
+    void init_testRemovesLeftovers() throws Exception {
+        //given
+        Files.write(dir.resolve("object-leftover"), CONTENT);
+        Files.write(dir.resolve("pin-leftover"), CONTENT);
+        Files.write(dir.resolve("unrelated.txt"), CONTENT);
+        objectCache = new ObjectCache(objectStorage, properties(true, 1024, 1), new SimpleMeterRegistry());
+
+        //when
+        objectCache.init();
+
+        //then
+        assertFalse(Files.exists(dir.resolve("object-leftover")));
+        assertFalse(Files.exists(dir.resolve("pin-leftover")));
+        assertTrue(Files.exists(dir.resolve("unrelated.txt")));
+    }
+
+    private ObjectCache cache(boolean enabled, long maxSize, int admissionHits) throws Exception {
+        ObjectCache cache = new ObjectCache(objectStorage, properties(enabled, maxSize, admissionHits), new SimpleMeterRegistry());
+        cache.init();
+        return cache;
+    }
+
+    private ObjectCacheProperties properties(boolean enabled, long maxSize, int admissionHits) {
+        return new ObjectCacheProperties(enabled, dir.toString(), maxSize, Math.min(maxSize, 64), admissionHits, 0, 0, Duration.ZERO);
+    }
+
+    private ObjectCache memoryCache(long memoryMaxObjectSize) throws Exception {
+        ObjectCache cache = new ObjectCache(objectStorage,
+                new ObjectCacheProperties(true, dir.toString(), 1024, 1024, 2, 1024, memoryMaxObjectSize, Duration.ZERO), meterRegistry);
+        cache.init();
+        return cache;
+    }
+
+    private void stubContent(String key, byte[] content) throws Exception {
+        when(objectStorage.get(eq(key), any())).thenAnswer(invocation ->
+                new GetObjectResponse(Headers.of(), "bucket", null, key, new ByteArrayInputStream(content)));
+    }
+
+    private Optional<CachedObject> awaitCached(String key, String etag) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 1000;
+        Optional<CachedObject> cached = objectCache.get(key, etag);
+        while (cached.isEmpty() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+            cached = objectCache.get(key, etag);
+        }
+        return cached;
+    }
+}
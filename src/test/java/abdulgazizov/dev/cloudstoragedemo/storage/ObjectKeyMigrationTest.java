@@ -0,0 +1,159 @@
+package abdulgazizov.dev.cloudstoragedemo.storage;
+
+import abdulgazizov.dev.cloudstoragedemo.entity.FileMetadata;
+import abdulgazizov.dev.cloudstoragedemo.properties.MinioProperties;
+import abdulgazizov.dev.cloudstoragedemo.repositories.FileMetadataRepository;
+import io.minio.*;
+import io.minio.errors.ErrorResponseException;
+import io.minio.messages.ErrorResponse;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ObjectKeyMigrationTest {
+    @Mock
+    private MinioClient minioClient;
+
+    @Mock
+    private ObjectStorage objectStorage;
+
+    @Mock
+    private MinioProperties minioProperties;
+
+    @Mock
+    private FileMetadataRepository fileMetadataRepository;
+
+    @InjectMocks
+    private ObjectKeyMigration objectKeyMigration;
+
+    @BeforeEach
+    void setUp() {
+        when(minioProperties.bucketName()).thenReturn("bucket");
+    }
+
+    @Test
+    @DisplayName("Миграция ключей: объекты копируются и старые ключи удаляются пачкой")
+    void migrate_testCopiesAndRemovesLegacyObjects() throws Exception {
+        //given
+        when(fileMetadataRepository.findAll(any(Pageable.class)))
+                .thenReturn(new PageImpl<>(List.of(file(1L, "a.txt"), file(2L, "a.txt"), file(2L, "b.txt"))));
+        givenBucket("a.txt", "b.txt");
+        when(objectStorage.removeAll(any())).thenReturn(List.of());
+
+        //when
+        objectKeyMigration.migrate();
+
+        //then
+        ArgumentCaptor<CopyObjectArgs> copyCaptor = ArgumentCaptor.forClass(CopyObjectArgs.class);
+        verify(minioClient, times(3)).copyObject(copyCaptor.capture());
+        assertEquals(List.of("u/1/a.txt", "u/2/a.txt", "u/2/b.txt"),
+                copyCaptor.getAllValues().stream().map(CopyObjectArgs::object).toList());
+        verify(objectStorage).removeAll(Set.of("a.txt", "b.txt"));
+    }
+
+    @Test
+    @DisplayName("Миграция ключей: уже перенесённый объект не перезаписывается и не удаляется")
+    void migrate_testSkipsMigratedObjects() throws Exception {
+        //given
+        when(fileMetadataRepository.findAll(any(Pageable.class)))
+                .thenReturn(new PageImpl<>(List.of(file(1L, "a.txt"))));
+        givenBucket("a.txt", "u/1/a.txt");
+
+        //when
+        objectKeyMigration.migrate();
+
+        //then
+        verify(minioClient, never()).copyObject(any(CopyObjectArgs.class));
+        verify(objectStorage, never()).removeAll(any());
+    }
+
+    @Test
+    @DisplayName("Миграция ключей: имена в новых пространствах ключей не читаются и не удаляются")
+    void migrate_testSkipsNamespacedNames() throws Exception {
+        //given
+        when(fileMetadataRepository.findAll(any(Pageable.class)))
+                .thenReturn(new PageImpl<>(List.of(file(1L, "u/2/secret.txt"), file(1L, "b/0f8e2d34"))));
+        givenBucket("u/2/secret.txt", "b/0f8e2d34");
+
+        //when
+        objectKeyMigration.migrate();
+
+        //then
+        verify(minioClient, never()).statObject(any(StatObjectArgs.class));
+        verify(minioClient, never()).copyObject(any(CopyObjectArgs.class));
+        verify(objectStorage, never()).removeAll(any());
+    }
+
+    @Test
+    @DisplayName("Миграция ключей: неполная копия не приводит к удалению старого объекта")
+    void migrate_testKeepsLegacyObjectOfIncompleteCopy() throws Exception {
+        //given
+        when(fileMetadataRepository.findAll(any(Pageable.class)))
+                .thenReturn(new PageImpl<>(List.of(file(1L, "a.txt"))));
+        StatObjectResponse source = mock(StatObjectResponse.class);
+        when(source.size()).thenReturn(10L);
+        StatObjectResponse copy = mock(StatObjectResponse.class);
+        when(copy.size()).thenReturn(4L);
+        when(minioClient.statObject(argThat((StatObjectArgs args) -> args != null && args.object().equals("u/1/a.txt"))))
+                .thenThrow(noSuchKey())
+                .thenReturn(copy);
+        when(minioClient.statObject(argThat((StatObjectArgs args) -> args != null && args.object().equals("a.txt"))))
+                .thenReturn(source);
+
+        //when
+        objectKeyMigration.migrate();
+
+        //then
+        verify(minioClient).copyObject(any(CopyObjectArgs.class));
+        verify(objectStorage, never()).removeAll(any());
+    }
+
+    /**
+     * Simulates a bucket holding the given objects, to which copies are added.
+     */
+    private void givenBucket(String... objectKeys) throws Exception {
+        Set<String> stored = new HashSet<>(List.of(objectKeys));
+        StatObjectResponse stat = mock(StatObjectResponse.class);
+        lenient().when(stat.size()).thenReturn(10L);
+        lenient().when(minioClient.statObject(any(StatObjectArgs.class))).thenAnswer(invocation -> {
+            if (!stored.contains(invocation.<StatObjectArgs>getArgument(0).object())) {
+                throw noSuchKey();
+            }
+            return stat;
+        });
+        lenient().when(minioClient.copyObject(any(CopyObjectArgs.class))).thenAnswer(invocation -> {
+            stored.add(invocation.<CopyObjectArgs>getArgument(0).object());
+            return null;
+        });
+    }
+
+    private static FileMetadata file(Long ownerId, String fileName) {
+        FileMetadata metadata = new FileMetadata();
+        metadata.setOwnerId(ownerId);
+        metadata.setFileName(fileName);
+        metadata.setStorageKey("u/" + ownerId + "/" + fileName);
+        return metadata;
+    }
+
+    private static ErrorResponseException noSuchKey() {
+        ErrorResponse response = new ErrorResponse("NoSuchKey", "Object does not exist", "bucket", null, null, null, null);
+        return new ErrorResponseException(response, null, null);
+    }
+}
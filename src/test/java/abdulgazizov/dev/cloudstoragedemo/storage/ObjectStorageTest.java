@@ -0,0 +1,227 @@
+package abdulgazizov.dev.cloudstoragedemo.storage;
+
+import abdulgazizov.dev.cloudstoragedemo.exceptions.FileNotModifiedException;
+import abdulgazizov.dev.cloudstoragedemo.exceptions.RangeNotSatisfiableException;
+import abdulgazizov.dev.cloudstoragedemo.properties.MinioProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.minio.*;
+import io.minio.errors.ErrorResponseException;
+import io.minio.errors.ServerException;
+import io.minio.http.Method;
+import io.minio.messages.DeleteError;
+import io.minio.messages.ErrorResponse;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ObjectStorageTest {
+    @Mock
+    private MinioClient minioClient;
+
+    @Mock
+    private MinioProperties minioProperties;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private ObjectStorage objectStorage;
+
+    @BeforeEach
+    public void setup() {
+        meterRegistry = new SimpleMeterRegistry();
+        objectStorage = new ObjectStorage(minioClient, minioProperties, meterRegistry);
+        when(minioProperties.bucketName()).thenReturn("bucket");
+    }
+
+    @Test
+    @DisplayName("Скачивание объекта: успешно, запрос учтён в метриках")
+    void get_testSuccess() throws Exception {
+        //given
+        GetObjectResponse response = mock(GetObjectResponse.class);
+        when(minioClient.getObject(any(GetObjectArgs.class))).thenReturn(response);
+
+        //when
+        GetObjectResponse result = objectStorage.get("u/1/file.txt", args -> args.offset(5L));
+
+        //then
+        assertSame(response, result);
+        verify(minioClient).getObject(argThat(args -> args.object().equals("u/1/file.txt") && args.offset() == 5L));
+        assertEquals(1, count("get", "success"));
+    }
+
+    @Test
+    @DisplayName("Подпись ссылки: метод, срок действия и параметры передаются клиенту")
+    void presign_testArgs() throws Exception {
+        //given
+        when(minioClient.getPresignedObjectUrl(any(GetPresignedObjectUrlArgs.class))).thenReturn("http://localhost:9000/bucket/b/1?X-Amz-Signature=s");
+
+        //when
+        String url = objectStorage.presign(Method.GET, "b/1", Duration.ofMinutes(15),
+                Map.of("response-content-disposition", "attachment"));
+
+        //then
+        assertEquals("http://localhost:9000/bucket/b/1?X-Amz-Signature=s", url);
+        verify(minioClient).getPresignedObjectUrl(argThat(args -> args.method() == Method.GET
+                && args.object().equals("b/1")
+                && args.expiry() == 900
+                && args.extraQueryParams().get("response-content-disposition").contains("attachment")));
+        assertEquals(1, count("presign_get", "success"));
+    }
+
+    @Test
+    @DisplayName("Скачивание объекта: NoSuchKey превращается в FileNotFoundException")
+    void get_testNoSuchKey() throws Exception {
+        //given
+        when(minioClient.getObject(any(GetObjectArgs.class))).thenThrow(errorResponse("NoSuchKey"));
+
+        //when
+        //then
+        assertThrows(FileNotFoundException.class, () -> objectStorage.get("u/1/file.txt", args -> args));
+        assertEquals(1, count("get", "not_found"));
+    }
+
+    @Test
+    @DisplayName("Скачивание объекта: ответ 304")
+    void get_testNotModified() throws Exception {
+        //given
+        when(minioClient.getObject(any(GetObjectArgs.class)))
+                .thenThrow(new ServerException("server failed with HTTP status code 304", 304, ""));
+
+        //when
+        //then
+        assertThrows(FileNotModifiedException.class, () -> objectStorage.get("u/1/file.txt", args -> args));
+        assertEquals(1, count("get", "not_modified"));
+    }
+
+    @Test
+    @DisplayName("Скачивание объекта: неверный диапазон")
+    void get_testInvalidRange() throws Exception {
+        //given
+        when(minioClient.getObject(any(GetObjectArgs.class))).thenThrow(errorResponse("InvalidRange"));
+
+        //when
+        //then
+        assertThrows(RangeNotSatisfiableException.class, () -> objectStorage.get("u/1/file.txt", args -> args.offset(100L)));
+    }
+
+    @Test
+    @DisplayName("Копирование объекта: прочие ошибки хранилища")
+    void copy_testStorageError() throws Exception {
+        //given
+        when(minioClient.copyObject(any(CopyObjectArgs.class))).thenThrow(errorResponse("AccessDenied"));
+
+        //when
+        IOException exception = assertThrows(IOException.class, () -> objectStorage.copy("u/1/a.txt", "u/1/b.txt"));
+
+        //then
+        assertFalse(exception instanceof FileNotFoundException);
+        assertEquals(1, count("copy", "error"));
+    }
+
+    @Test
+    @DisplayName("Проверка бакета: результат кэшируется")
+    void ensureBucket_testCached() throws Exception {
+        //given
+        when(minioClient.bucketExists(any(BucketExistsArgs.class))).thenReturn(true);
+
+        //when
+        objectStorage.ensureBucket();
+        objectStorage.ensureBucket();
+
+        //then
+        verify(minioClient, times(1)).bucketExists(any(BucketExistsArgs.class));
+        verify(minioClient, never()).makeBucket(any());
+    }
+
+    @Test
+    @DisplayName("Проверка бакета: бакет создаётся, если его нет")
+    void ensureBucket_testCreated() throws Exception {
+        //given
+        when(minioClient.bucketExists(any(BucketExistsArgs.class))).thenReturn(false);
+
+        //when
+        objectStorage.ensureBucket();
+
+        //then
+        verify(minioClient).makeBucket(argThat(args -> args.bucket().equals("bucket")));
+    }
+
+    @Test
+    @DisplayName("Проверка бакета: бакет создан другим экземпляром")
+    void ensureBucket_testCreatedConcurrently() throws Exception {
+        //given
+        when(minioClient.bucketExists(any(BucketExistsArgs.class))).thenReturn(false);
+        doThrow(errorResponse("BucketAlreadyOwnedByYou")).when(minioClient).makeBucket(any());
+
+        //when
+        objectStorage.ensureBucket();
+        objectStorage.ensureBucket();
+
+        //then
+        verify(minioClient, times(1)).bucketExists(any(BucketExistsArgs.class));
+    }
+
+    @Test
+    @DisplayName("Проверка бакета: NoSuchBucket сбрасывает кэш")
+    void ensureBucket_testInvalidatedByNoSuchBucket() throws Exception {
+        //given
+        when(minioClient.bucketExists(any(BucketExistsArgs.class))).thenReturn(true);
+        doThrow(errorResponse("NoSuchBucket")).when(minioClient).removeObject(any());
+        objectStorage.ensureBucket();
+
+        //when
+        assertThrows(IOException.class, () -> objectStorage.remove("u/1/file.txt"));
+        objectStorage.ensureBucket();
+
+        //then
+        verify(minioClient, times(2)).bucketExists(any(BucketExistsArgs.class));
+    }
+
+    @Test
+    @DisplayName("Удаление объектов: пачки не больше 1000 ключей, ошибки возвращаются")
+    void removeAll_testBatches() throws Exception {
+        //given
+        List<String> keys = IntStream.range(0, 2500).mapToObj(i -> "b/" + i).toList();
+        DeleteError error = mock(DeleteError.class);
+        when(error.objectName()).thenReturn("b/7");
+        when(minioClient.removeObjects(any(RemoveObjectsArgs.class)))
+                .thenReturn(List.of(new Result<>(error)))
+                .thenReturn(List.of());
+
+        //when
+        List<String> failed = objectStorage.removeAll(keys);
+
+        //then
+        assertEquals(List.of("b/7"), failed);
+        ArgumentCaptor<RemoveObjectsArgs> captor = ArgumentCaptor.forClass(RemoveObjectsArgs.class);
+        verify(minioClient, times(3)).removeObjects(captor.capture());
+        assertEquals(List.of(1000, 1000, 500), captor.getAllValues().stream()
+                .map(args -> ((Collection<?>) args.objects()).size())
+                .toList());
+        assertEquals(3, count("remove_batch", "success"));
+    }
+
+    private double count(String operation, String outcome) {
+        return meterRegistry.get("storage.requests").tag("operation", operation).tag("outcome", outcome).timer().count();
+    }
+
+    private static ErrorResponseException errorResponse(String code) {
+        return new ErrorResponseException(new ErrorResponse(code, code, "bucket", null, null, null, null), null, null);
+    }
+}